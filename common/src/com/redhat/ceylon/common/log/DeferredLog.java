@@ -0,0 +1,108 @@
+package com.redhat.ceylon.common.log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages logged by a thread which does some work on
+ * behalf of another thread, so that they can be logged by
+ * that other thread once it uses the result of the work.
+ *
+ * Only loggers which can't be used by several threads
+ * {@link #defer(Logger, Level, String) defer} their
+ * messages, other loggers log them right away.
+ */
+public final class DeferredLog {
+
+    public enum Level {
+        ERROR, WARNING, INFO, DEBUG
+    }
+
+    private static final ThreadLocal<DeferredLog> current =
+            new ThreadLocal<DeferredLog>();
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private DeferredLog previous;
+
+    /**
+     * Defer the messages logged by the current thread to
+     * this log, until {@link #end()}.
+     */
+    public void begin() {
+        previous = current.get();
+        current.set(this);
+    }
+
+    /**
+     * Defer the messages logged by the current thread to
+     * the log they were deferred to before {@link #begin()},
+     * if any.
+     */
+    public void end() {
+        if (previous == null) {
+            current.remove();
+        }
+        else {
+            current.set(previous);
+            previous = null;
+        }
+    }
+
+    /**
+     * Record the given message if the current thread defers
+     * its messages.
+     *
+     * @return true if the message was deferred, or false if
+     *         the logger should log it right away
+     */
+    public static boolean defer(Logger logger, Level level, String message) {
+        DeferredLog log = current.get();
+        if (log == null) {
+            return false;
+        }
+        synchronized (log) {
+            log.entries.add(new Entry(logger, level, message));
+        }
+        return true;
+    }
+
+    /**
+     * Log the deferred messages, in the order they were
+     * logged, with the loggers they were logged with.
+     */
+    public void replay() {
+        List<Entry> replayed;
+        synchronized (this) {
+            replayed = new ArrayList<Entry>(entries);
+            entries.clear();
+        }
+        for (Entry entry : replayed) {
+            switch (entry.level) {
+            case ERROR:
+                entry.logger.error(entry.message);
+                break;
+            case WARNING:
+                entry.logger.warning(entry.message);
+                break;
+            case INFO:
+                entry.logger.info(entry.message);
+                break;
+            case DEBUG:
+                entry.logger.debug(entry.message);
+                break;
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Logger logger;
+        final Level level;
+        final String message;
+
+        Entry(Logger logger, Level level, String message) {
+            this.logger = logger;
+            this.level = level;
+            this.message = message;
+        }
+    }
+}
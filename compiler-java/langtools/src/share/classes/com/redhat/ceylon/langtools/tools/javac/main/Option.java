@@ -509,6 +509,9 @@ public enum Option {
     CEYLONTIMEOUT("-timeout", "opt.arg.number",       "opt.ceylontimeout", OptionKind.STANDARD, OptionGroup.CEYLON),
     CEYLONCONTINUE("-continue", "opt.ceyloncontinue", OptionKind.STANDARD, OptionGroup.CEYLON),
     CEYLONPROGRESS("-progress", "opt.ceylonprogress", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONJOBS("-jobs", "opt.arg.number", "opt.ceylonjobs", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONPHASEPROFILE("-phase-profile", "opt.arg.file", "opt.ceylonphaseprofile", OptionKind.STANDARD, OptionGroup.CEYLON),
+    CEYLONPHASETRACE("-phase-trace", "opt.arg.file", "opt.ceylonphasetrace", OptionKind.STANDARD, OptionGroup.CEYLON),
     // Backwards-compat
     CEYLONMAVENOVERRIDES("-maven-overrides", "opt.arg.url",        "opt.ceylonoverrides", OptionKind.STANDARD, OptionGroup.CEYLON) {
             @Override
@@ -77,6 +77,8 @@ import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleValidator;
 import com.redhat.ceylon.compiler.typechecker.context.Context;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
+import com.redhat.ceylon.compiler.typechecker.io.VFS;
+import com.redhat.ceylon.compiler.typechecker.io.ZipIndexVFS;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.CompilationUnit;
@@ -410,7 +412,9 @@ public class CeylonDocTool extends OutputRepoUsingTool {
     @Override
     public void initialize(CeylonTool mainTool) throws Exception {
         super.initialize(mainTool);
-        TypeCheckerBuilder builder = new TypeCheckerBuilder();
+        TypeCheckerBuilder builder = new TypeCheckerBuilder(
+                ZipIndexVFS.isEnabled() ? new ZipIndexVFS() : new VFS());
+        builder.compactTrees(true);
         for(File src : sourceFolders){
             builder.addSrcDirectory(src);
         }
@@ -21,6 +21,8 @@ package com.redhat.ceylon.compiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
@@ -201,6 +203,12 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
     private List<String> modulesOrFiles = DefaultToolOptions.getCompilerModules(Backend.Java);
     private boolean continueOnErrors;
     private boolean progress = DefaultToolOptions.getCompilerProgress();
+    private int jobs = 1;
+    private File phaseProfile;
+    private File phaseTrace;
+    private boolean daemon;
+    private boolean connect;
+    private int daemonPort = CompileDaemon.DEFAULT_PORT;
     private List<String> javac = DefaultToolOptions.getCompilerJavac();
     private String encoding;
     private String includeDependencies;
@@ -358,6 +366,58 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         this.progress = progress;
     }
 
+    @OptionArgument(shortName='j', argumentName="number")
+    @Description("Sets the number of threads used to validate the trees of the " +
+            "source files and to fetch the artifacts of imported modules. " +
+            "Type analysis itself is not parallel. " +
+            "Use 0 for one job per available processor (default: 1).")
+    public void setJobs(int jobs) {
+        if (jobs < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.jobs = jobs;
+    }
+
+    @OptionArgument(longName="phase-profile", argumentName="file")
+    @Description("Writes the wall time, CPU time and allocated bytes " +
+            "of each typechecking phase of each source file to the given " +
+            "JSON file.")
+    public void setPhaseProfile(File phaseProfile) {
+        this.phaseProfile = phaseProfile;
+    }
+
+    @OptionArgument(longName="phase-trace", argumentName="file")
+    @Description("Writes the typechecking phases of each source file to " +
+            "the given file, in the Chrome trace-event format.")
+    public void setPhaseTrace(File phaseTrace) {
+        this.phaseTrace = phaseTrace;
+    }
+
+    @Option
+    @Description("Starts a compile daemon instead of compiling, which " +
+            "compiles the requests sent by `ceylon compile --connect` on " +
+            "a local socket, and returns the previous result when neither " +
+            "the arguments nor the files they name changed. Only the clients " +
+            "which can read the daemon's token file, in the Ceylon user " +
+            "directory, are served.")
+    public void setDaemon(boolean daemon) {
+        this.daemon = daemon;
+    }
+
+    @Option
+    @Description("Sends the compilation to a running compile daemon, " +
+            "instead of compiling in this process.")
+    public void setConnect(boolean connect) {
+        this.connect = connect;
+    }
+
+    @OptionArgument(longName="daemon-port", argumentName="port")
+    @Description("The local port of the compile daemon (default: " + 
+            CompileDaemon.DEFAULT_PORT + ").")
+    public void setDaemonPort(int daemonPort) {
+        this.daemonPort = daemonPort;
+    }
+
     @OptionArgument(shortName='E', argumentName="encoding")
     @Description("Sets the encoding used for reading source files" +
             "(default: platform-specific).")
@@ -499,6 +559,11 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         
         includeDependencies = processCompileFlags(includeDependencies, DefaultToolOptions.getCompilerIncludeDependencies());
         
+        if (daemon) {
+            // the arguments are sent by each client
+            return;
+        }
+        
         if (modulesOrFiles.isEmpty() &&
                 !javac.contains("-help") &&
                 !javac.contains("-X") &&
@@ -550,6 +615,21 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
             arguments.add("-progress");
         }
 
+        if (jobs != 1) {
+            arguments.add("-jobs");
+            arguments.add(String.valueOf(jobs));
+        }
+
+        if (phaseProfile != null) {
+            arguments.add("-phase-profile");
+            arguments.add(phaseProfile.getPath());
+        }
+
+        if (phaseTrace != null) {
+            arguments.add("-phase-trace");
+            arguments.add(phaseTrace.getPath());
+        }
+
         if (offline) {
             arguments.add("-offline");
         }
@@ -911,6 +991,31 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
      */
     @Override
     public void run() throws IOException {
+        if (daemon) {
+            new CompileDaemon(daemonPort, CompileDaemon.getTokenFile(daemonPort)).run();
+            return;
+        }
+        if (connect) {
+            List<String> request = arguments;
+            if (cwd == null) {
+                // the daemon may run in another directory
+                request = new ArrayList<String>(arguments);
+                request.add(0, "-cwd");
+                request.add(1, new File(".").getAbsoluteFile().getParent());
+            }
+            Writer out = new OutputStreamWriter(System.err);
+            CompileDaemon.ExitResult result = CompileDaemon.request(daemonPort,
+                    CompileDaemon.getTokenFile(daemonPort), request, out);
+            switch (result.state) {
+            case OK:
+                break;
+            case ERROR:
+                throw new CompilerErrorException(result.errorCount);
+            default:
+                throw new SystemErrorException(new IOException("Compile daemon failed: " + result.state));
+            }
+            return;
+        }
         Result result = compiler.compile(arguments.toArray(new String[arguments.size()]));
         handleExitCode(result.exitCode, compiler.exitState);
     }
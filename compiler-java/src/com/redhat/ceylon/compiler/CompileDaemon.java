@@ -0,0 +1,612 @@
+package com.redhat.ceylon.compiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.compiler.java.launcher.Main;
+import com.redhat.ceylon.compiler.java.launcher.Main.ExitState.CeylonState;
+import com.redhat.ceylon.compiler.java.tools.CeylonLog;
+import com.redhat.ceylon.compiler.java.tools.CeyloncFileManager;
+import com.redhat.ceylon.javax.tools.JavaFileManager;
+import com.redhat.ceylon.langtools.tools.javac.file.JavacFileManager;
+import com.redhat.ceylon.langtools.tools.javac.util.Context;
+
+/**
+ * A long-running compiler which accepts compilation requests
+ * from {@code ceylon compile --connect} on a loopback socket,
+ * so that each request is compiled by a JVM which is already
+ * started and JIT-compiled.
+ *
+ * Only the clients which can read the daemon's token file
+ * are served: when it starts, the daemon writes a random
+ * secret to that file, readable by its owner only, and every
+ * request must start with that secret.
+ *
+ * Requests are read and answered concurrently, with a
+ * timeout, so that a slow or stuck client doesn't hold the
+ * others up, but they are compiled one at a time, because
+ * the compiler keeps some state in static fields.
+ *
+ * The daemon keeps the {@link RepositoryManager} built for
+ * each distinct set of repository options. Module models and
+ * typechecked units are built again for every compilation,
+ * since the model loader creates them from the symbols of
+ * the compilation's own javac context. Instead, the daemon
+ * fingerprints the inputs of each request: its arguments,
+ * and the size and modification time of every file in the
+ * sources, resources, local repositories and other files or
+ * directories it names, except its output repository. When
+ * a request has the fingerprint of the last successful
+ * compilation, and the files in the output repository still
+ * have the size and modification time they had after it, the
+ * previous result is returned without compiling again.
+ * Remote repositories are not fingerprinted.
+ *
+ * The protocol is line-based, in UTF-8. A request is the
+ * {@link #HEADER}, followed by the token, followed by one
+ * compiler argument per line, followed by an empty line;
+ * or the header and the token followed by {@link #STOP},
+ * to shut the daemon down. The response is the compiler
+ * output, each line prefixed with {@code "o "}, followed by
+ * a line {@code "x <state> <errorCount>"}, where the state
+ * is a {@link CeylonState}.
+ */
+public class CompileDaemon {
+
+    public static final int DEFAULT_PORT = 7337;
+    public static final String HEADER = "ceylon-compile-daemon 2";
+    public static final String STOP = "stop";
+    /** How long a client may take to send its request, in milliseconds */
+    public static final int REQUEST_TIMEOUT = 30000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The options which determine the repository manager */
+    private static final Set<String> REPOSITORY_OPTIONS =
+            new HashSet<String>(Arrays.asList("-cwd", "-rep", "-sysrep", "-cacherep",
+                    "-out", "-timeout", "-overrides"));
+    private static final Set<String> REPOSITORY_FLAGS =
+            new HashSet<String>(Arrays.asList("-nodefreps", "-offline", "-downgrade-dist"));
+    /** The options whose value is not an input of the compilation */
+    private static final Set<String> OUTPUT_OPTIONS =
+            new HashSet<String>(Arrays.asList("-cwd", "-out", "-d"));
+
+    private final int port;
+    private final File tokenFile;
+    private ServerSocket server;
+    private byte[] token;
+    private volatile boolean stopped;
+    private volatile int compilations;
+
+    /** Guards the compilations, and the state below */
+    private final Object compileLock = new Object();
+    private final Map<String,RepositoryManager> repositoryManagers =
+            new HashMap<String,RepositoryManager>();
+    private final ClientWriter clientWriter = new ClientWriter();
+    private final PrintWriter out = new PrintWriter(clientWriter, true);
+    private byte[] lastFingerprint;
+    private byte[] lastOutputFingerprint;
+    private String lastOutput;
+
+    /**
+     * @param port the local port to listen on, or 0 for any
+     *        free port
+     * @param tokenFile the file to write the token to
+     */
+    public CompileDaemon(int port, File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * The token file of the daemon listening on the given
+     * port, in the Ceylon user directory.
+     */
+    public static File getTokenFile(int port) {
+        return new File(FileUtil.getUserDir(), "compile-daemon-" + port + ".token");
+    }
+
+    /**
+     * Listen on the port, and write a new token to the token
+     * file, unless the daemon was already started.
+     *
+     * @return the port the daemon listens on
+     */
+    public synchronized int start() throws IOException {
+        if (server == null) {
+            ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(null));
+            try {
+                token = new byte[32];
+                new SecureRandom().nextBytes(token);
+                writeToken(tokenFile, toHex(token));
+            }
+            catch (IOException e) {
+                server.close();
+                throw e;
+            }
+            this.server = server;
+        }
+        return server.getLocalPort();
+    }
+
+    /**
+     * Start the daemon if needed, and serve requests until
+     * a stop request is received.
+     */
+    public void run() throws IOException {
+        int port = start();
+        ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ceylon-compile-daemon");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            System.err.println("Ceylon compile daemon listening on port " + port);
+            while (!stopped) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                }
+                catch (SocketException e) {
+                    if (stopped) {
+                        break;
+                    }
+                    throw e;
+                }
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        }
+                        catch (IOException e) {
+                            System.err.println("Compile daemon request failed: " + e.getMessage());
+                        }
+                        finally {
+                            try {
+                                socket.close();
+                            }
+                            catch (IOException e) {
+                                // ignore
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        finally {
+            server.close();
+            tokenFile.delete();
+            // let the requests being served finish
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The number of compilations run so far, not counting
+     * the requests answered with a previous result.
+     */
+    public int getCompilations() {
+        return compilations;
+    }
+
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), UTF8));
+        Writer response = new OutputStreamWriter(socket.getOutputStream(), UTF8);
+        if (!HEADER.equals(in.readLine())) {
+            throw new IOException("Unexpected compile daemon request");
+        }
+        String clientToken = in.readLine();
+        if (clientToken == null
+                || !MessageDigest.isEqual(toHex(token).getBytes(UTF8), clientToken.getBytes(UTF8))) {
+            response.write("o Compile daemon request rejected: invalid token\n");
+            response.write("x " + CeylonState.SYS + " 0\n");
+            response.flush();
+            return;
+        }
+        List<String> arguments = new ArrayList<String>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            arguments.add(line);
+        }
+        if (line == null) {
+            throw new IOException("Incomplete compile daemon request");
+        }
+        if (arguments.size() == 1 && arguments.get(0).equals(STOP)) {
+            response.write("x " + CeylonState.OK + " 0\n");
+            response.flush();
+            stopped = true;
+            server.close();
+            return;
+        }
+
+        StringWriter output = new StringWriter();
+        ExitResult result;
+        synchronized (compileLock) {
+            result = compileIfChanged(arguments, output);
+        }
+
+        BufferedReader lines = new BufferedReader(new StringReader(output.toString()));
+        while ((line = lines.readLine()) != null) {
+            response.write("o " + line + "\n");
+        }
+        response.write("x " + result.state + " " + result.errorCount + "\n");
+        response.flush();
+    }
+
+    private ExitResult compileIfChanged(List<String> arguments, StringWriter output)
+            throws IOException {
+        String key = getRepositoryKey(arguments);
+        RepositoryManager repositoryManager = repositoryManagers.get(key);
+        byte[] before = fingerprint(arguments, repositoryManager);
+        // the artifacts may have been deleted or overwritten since
+        if (lastFingerprint != null && Arrays.equals(before, lastFingerprint)
+                && Arrays.equals(fingerprintOutput(arguments), lastOutputFingerprint)) {
+            output.write(lastOutput);
+            return new ExitResult(CeylonState.OK, 0);
+        }
+        lastFingerprint = null;
+        lastOutputFingerprint = null;
+        lastOutput = null;
+        ExitResult result;
+        clientWriter.setTarget(output);
+        try {
+            result = compile(arguments, key);
+        }
+        finally {
+            out.flush();
+            clientWriter.setTarget(null);
+        }
+        // only keep the result if no input changed while compiling
+        if (result.state == CeylonState.OK
+                && Arrays.equals(before, fingerprint(arguments, repositoryManager))) {
+            RepositoryManager used = repositoryManagers.get(key);
+            lastFingerprint = used == repositoryManager ?
+                    before : fingerprint(arguments, used);
+            lastOutputFingerprint = fingerprintOutput(arguments);
+            lastOutput = output.toString();
+        }
+        return result;
+    }
+
+    private ExitResult compile(List<String> arguments, String key) {
+        compilations++;
+        Context context = new Context();
+        CeyloncFileManager.preRegister(context);
+        CeylonLog.preRegister(context);
+        RepositoryManager repositoryManager = repositoryManagers.get(key);
+        if (repositoryManager != null) {
+            context.put(RepositoryManager.class, repositoryManager);
+        }
+        Main compiler = new Main("ceylon compile", out);
+        try {
+            compiler.compile(arguments.toArray(new String[arguments.size()]), context);
+        }
+        finally {
+            JavaFileManager fileManager = context.get(JavaFileManager.class);
+            if (repositoryManager == null && fileManager instanceof CeyloncFileManager) {
+                repositoryManagers.put(key, ((CeyloncFileManager) fileManager).getRepositoryManager());
+            }
+            if (fileManager instanceof JavacFileManager) {
+                ((JavacFileManager) fileManager).close();
+            }
+        }
+        Main.ExitState exitState = compiler.exitState;
+        if (exitState == null) {
+            return new ExitResult(CeylonState.SYS, 0);
+        }
+        return new ExitResult(exitState.ceylonState, exitState.errorCount);
+    }
+
+    private static String getRepositoryKey(List<String> arguments) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < arguments.size(); i++) {
+            String arg = arguments.get(i);
+            if (REPOSITORY_OPTIONS.contains(arg) && i < arguments.size() - 1) {
+                key.append(arg).append(' ').append(arguments.get(++i)).append('\n');
+            }
+            else if (REPOSITORY_FLAGS.contains(arg)) {
+                key.append(arg).append('\n');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Hash the arguments, and the size and modification time
+     * of every file in the files and directories named by the
+     * arguments, or by the local repositories of the given
+     * repository manager, except the output repository.
+     */
+    private static byte[] fingerprint(List<String> arguments,
+            RepositoryManager repositoryManager) throws IOException {
+        MessageDigest digest = newDigest();
+        File cwd = null;
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < arguments.size(); i++) {
+            String arg = arguments.get(i);
+            digest.update(arg.getBytes(UTF8));
+            digest.update((byte) 0);
+            if (OUTPUT_OPTIONS.contains(arg) && i < arguments.size() - 1) {
+                String value = arguments.get(++i);
+                digest.update(value.getBytes(UTF8));
+                digest.update((byte) 0);
+                if (arg.equals("-cwd")) {
+                    cwd = new File(value);
+                }
+            }
+            else if (!arg.startsWith("-")) {
+                paths.addAll(Arrays.asList(arg.split(File.pathSeparator)));
+            }
+        }
+        if (repositoryManager != null) {
+            for (String repository : repositoryManager.getRepositoriesDisplayString()) {
+                paths.add(repository);
+            }
+        }
+        Path output = getOutputRepository(arguments);
+        Set<Path> visited = new HashSet<Path>();
+        for (String path : paths) {
+            File file = FileUtil.applyCwd(cwd, new File(path));
+            if (!file.exists()) {
+                continue;
+            }
+            Path root = file.getAbsoluteFile().toPath().normalize();
+            if (root.startsWith(output) || !visited.add(root)) {
+                continue;
+            }
+            digestFiles(digest, root, output);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Hash the size and modification time of every file in
+     * the output repository named by the arguments.
+     */
+    private static byte[] fingerprintOutput(List<String> arguments) throws IOException {
+        MessageDigest digest = newDigest();
+        Path output = getOutputRepository(arguments);
+        if (Files.exists(output)) {
+            digestFiles(digest, output, null);
+        }
+        return digest.digest();
+    }
+
+    private static Path getOutputRepository(List<String> arguments) {
+        File cwd = null;
+        String out = "modules";
+        for (int i = 0; i < arguments.size() - 1; i++) {
+            String arg = arguments.get(i);
+            if (OUTPUT_OPTIONS.contains(arg)) {
+                String value = arguments.get(++i);
+                if (arg.equals("-cwd")) {
+                    cwd = new File(value);
+                }
+                else {
+                    out = value;
+                }
+            }
+        }
+        return FileUtil.applyCwd(cwd, new File(out)).getAbsoluteFile().toPath().normalize();
+    }
+
+    /**
+     * Hash the name, size and modification time of every file
+     * under the given root, except those under the given
+     * directory, if any.
+     */
+    private static void digestFiles(MessageDigest digest, Path root, final Path skip)
+            throws IOException {
+        final TreeMap<String,String> files = new TreeMap<String,String>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.equals(skip) ?
+                        FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.put(file.toString(), attrs.size() + " " + attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                files.put(file.toString(), "?");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (Map.Entry<String,String> entry : files.entrySet()) {
+            digest.update(entry.getKey().getBytes(UTF8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().getBytes(UTF8));
+            digest.update((byte) 0);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Replace the given token file with one which only its
+     * owner can read and write.
+     */
+    private static void writeToken(File tokenFile, String token) throws IOException {
+        Path path = tokenFile.toPath();
+        Files.deleteIfExists(path);
+        File parent = tokenFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        else {
+            Files.createFile(path);
+            tokenFile.setReadable(false, false);
+            tokenFile.setReadable(true, true);
+            tokenFile.setWritable(false, false);
+            tokenFile.setWritable(true, true);
+        }
+        tokenFile.deleteOnExit();
+        Files.write(path, token.getBytes(UTF8));
+    }
+
+    private static String readToken(File tokenFile) throws IOException {
+        if (!tokenFile.isFile()) {
+            throw new IOException("No compile daemon token file " + tokenFile
+                    + ", is the compile daemon running?");
+        }
+        return new String(Files.readAllBytes(tokenFile.toPath()), UTF8).trim();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Send the given compiler arguments to the daemon
+     * listening on the given port, with the token read from
+     * the given token file, copying its output to the given
+     * writer.
+     *
+     * @return the state and error count of the compilation
+     */
+    public static ExitResult request(int port, File tokenFile,
+            List<String> arguments, Writer output) throws IOException {
+        String token = readToken(tokenFile);
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            Writer request = new OutputStreamWriter(socket.getOutputStream(), UTF8);
+            request.write(HEADER + "\n");
+            request.write(token + "\n");
+            for (String arg : arguments) {
+                request.write(arg + "\n");
+            }
+            request.write("\n");
+            request.flush();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), UTF8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("o ")) {
+                    output.write(line.substring(2));
+                    output.write(System.lineSeparator());
+                }
+                else if (line.startsWith("x ")) {
+                    output.flush();
+                    String[] parts = line.split(" ");
+                    return new ExitResult(CeylonState.valueOf(parts[1]),
+                            Integer.parseInt(parts[2]));
+                }
+            }
+            throw new IOException("Compile daemon closed the connection");
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * The outcome of a compilation run by the daemon.
+     */
+    public static final class ExitResult {
+        public final CeylonState state;
+        public final int errorCount;
+
+        ExitResult(CeylonState state, int errorCount) {
+            this.state = state;
+            this.errorCount = errorCount;
+        }
+    }
+
+    /**
+     * Forwards the compiler output, including the messages
+     * logged by cached repository managers, to the request
+     * being served.
+     */
+    private static final class ClientWriter extends Writer {
+        private Writer target;
+
+        synchronized void setTarget(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+            if (target != null) {
+                target.write(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -35,6 +35,7 @@ import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.util.ModuleDescriptorScanner;
 import com.redhat.ceylon.model.typechecker.model.Annotation;
 import com.redhat.ceylon.model.typechecker.model.Module;
 import com.redhat.ceylon.model.typechecker.model.ModuleImport;
@@ -67,20 +68,35 @@ class ModuleDescriptorReader {
     private final Module moduleDescriptor;
 
     public ModuleDescriptorReader(String moduleName, File srcDir) throws NoSuchModuleException {
-        RepositoryManagerBuilder builder = new RepositoryManagerBuilder(new NullLogger(), DefaultToolOptions.getDefaultOffline(), (int)DefaultToolOptions.getDefaultTimeout(), DefaultToolOptions.getDefaultProxy());
-        RepositoryManager repoManager = builder.buildRepository();
-        VFS vfs = new VFS();
-        Context context = new Context(repoManager, vfs);
-        PhasedUnits pus = new PhasedUnits(context);
         List<String> name = ModuleManager.splitModuleName(moduleName);
-        ModuleSourceMapper moduleSourceMapper = pus.getModuleSourceMapper();
-        ModuleManager moduleManager = pus.getModuleManager();
         if(Module.DEFAULT_MODULE_NAME.equals(moduleName)){
             // visit every folder and skip modules
             boolean exists = findDefaultModuleSource(srcDir);
             if(!exists)
                 throw new NoSuchModuleException("No source found for default module");
+            this.moduleDescriptor = typecheckModule(name, null);
         }else{
+            File moduleFile = findModuleFile(name, srcDir);
+            // most descriptors can be read without typechecking them
+            ModuleDescriptorScanner.Descriptor descriptor = 
+                    ModuleDescriptorScanner.scan(moduleFile, null);
+            Module module = null;
+            if(descriptor != null 
+                    && descriptor.getNameAsString().equals(moduleName))
+                module = descriptor.toModule();
+            this.moduleDescriptor = module != null ? module : typecheckModule(name, srcDir);
+        }
+    }
+
+    private Module typecheckModule(List<String> name, File srcDir) throws NoSuchModuleException {
+        RepositoryManagerBuilder builder = new RepositoryManagerBuilder(new NullLogger(), DefaultToolOptions.getDefaultOffline(), (int)DefaultToolOptions.getDefaultTimeout(), DefaultToolOptions.getDefaultProxy());
+        RepositoryManager repoManager = builder.buildRepository();
+        VFS vfs = new VFS();
+        Context context = new Context(repoManager, vfs);
+        PhasedUnits pus = new PhasedUnits(context);
+        ModuleSourceMapper moduleSourceMapper = pus.getModuleSourceMapper();
+        ModuleManager moduleManager = pus.getModuleManager();
+        if(srcDir != null){
             visitModule(vfs, pus, name, srcDir, vfs.getFromFile(srcDir), moduleSourceMapper);
         }
         for (PhasedUnit pu : pus.getPhasedUnits()) {
@@ -89,9 +105,25 @@ class ModuleDescriptorReader {
         for (PhasedUnit pu : pus.getPhasedUnits()) {
             pu.visitRemainingModulePhase();
         }
-        this.moduleDescriptor = moduleManager.getOrCreateModule(name, null);
+        return moduleManager.getOrCreateModule(name, null);
     }
-    
+
+    private File findModuleFile(List<String> name, File srcDir) throws NoSuchModuleException {
+        for(String part : name){
+            File child = new File(srcDir, part);
+            if(child.exists() && child.isDirectory()){
+                srcDir = child;
+            }else{
+                throw new NoSuchModuleException("Failed to find module name part "+part+" of "+name+" in "+srcDir);
+            }
+        }
+        File moduleFile = new File(srcDir, ModuleManager.MODULE_FILE);
+        if(!moduleFile.exists()){
+            throw new NoSuchModuleException("No module file in "+srcDir);
+        }
+        return moduleFile;
+    }
+
     private void visitModule(VFS vfs, PhasedUnits pus, List<String> name, File srcDir, VirtualFile virtualSourceDirectory, ModuleSourceMapper moduleSourceMapper) throws NoSuchModuleException {
         for(String part : name){
             File child = new File(srcDir, part);
@@ -71,6 +71,7 @@ import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
 import com.redhat.ceylon.compiler.typechecker.parser.LexError;
 import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
 import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.CompilationUnit;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.CompilerAnnotation;
@@ -428,7 +429,13 @@ public class CeylonEnter extends Enter {
                 if (taskListener != null) {
                     taskListener.started(event);
                 }
-                ceylonTree.defs = gen.transformAfterTypeChecking(ceylonTree.ceylonTree).toList();
+                // errors on nodes made up by the backend belong to this unit too
+                MessageSink previousSink = MessageSink.activate(phasedUnit.getMessageSink());
+                try {
+                    ceylonTree.defs = gen.transformAfterTypeChecking(ceylonTree.ceylonTree).toList();
+                } finally {
+                    MessageSink.activate(previousSink);
+                }
                 if (taskListener != null) {
                     taskListener.finished(event);
                 }
@@ -701,7 +708,7 @@ public class CeylonEnter extends Enter {
         final java.util.List<PhasedUnit> listOfUnits = phasedUnits.getPhasedUnits();
 
         for (PhasedUnit pu : listOfUnits) {
-            pu.getCompilationUnit().visit(new JavacAssertionVisitor((CeylonPhasedUnit) pu, runAssertions){
+            reportTreeErrors(pu, new JavacAssertionVisitor((CeylonPhasedUnit) pu, runAssertions){
                 @Override
                 protected void out(UnexpectedError err) {
                     setSource();
@@ -757,14 +764,14 @@ public class CeylonEnter extends Enter {
     }
 
     /**
-     * Visits the nodes of each unit calling 
+     * Reports the errors of each unit calling 
      * {@link #logError(int, String, String)} for each {@link CodeGenError}
      */
     private void printGeneratorErrors() {
         final java.util.List<PhasedUnit> listOfUnits = phasedUnits.getPhasedUnits();
 
         for (PhasedUnit pu : listOfUnits) {
-            pu.getCompilationUnit().visit(new JavacAssertionVisitor((CeylonPhasedUnit) pu, false){
+            reportTreeErrors(pu, new JavacAssertionVisitor((CeylonPhasedUnit) pu, false){
                 @Override
                 protected void out(UnexpectedError err) {
                     if(err instanceof CodeGenError){
@@ -802,6 +809,20 @@ public class CeylonEnter extends Enter {
         }
     }
 
+    /**
+     * Reports the errors of the given unit by visiting its tree, unless
+     * its {@link MessageSink} is complete and empty and there are no
+     * assertions to run, in which case there is nothing to report
+     */
+    private void reportTreeErrors(PhasedUnit pu, JavacAssertionVisitor visitor) {
+        MessageSink sink = pu.getMessageSink();
+        if (!sink.isComplete()
+                || sink.size() > 0
+                || (visitor.runAssertions && pu.hasCompilerAnnotations())) {
+            pu.getCompilationUnit().visit(visitor);
+        }
+    }
+
     protected void logError(int position, String key, String message) {
         logError(toDiagnosticPosition(position), key, message);
     }
@@ -93,6 +93,7 @@ import com.redhat.ceylon.model.loader.mirror.TypeMirror;
 import com.redhat.ceylon.model.loader.model.AnnotationProxyClass;
 import com.redhat.ceylon.model.loader.model.AnnotationProxyMethod;
 import com.redhat.ceylon.model.loader.model.LazyFunction;
+import com.redhat.ceylon.model.loader.model.LazyModule;
 import com.redhat.ceylon.model.typechecker.model.Module;
 import com.redhat.ceylon.model.typechecker.model.Parameter;
 import com.redhat.ceylon.model.typechecker.model.UnknownType;
@@ -158,6 +159,9 @@ public class CeylonModelLoader extends AbstractModelLoader {
     public void addModuleToClassPath(Module module, ArtifactResult artifact){
         if(artifact != null){
             ((CompilerModuleManager)phasedUnits.getModuleManager()).getCeylonEnter().addModuleToClassPath(module, true, artifact);
+            // we're not compiling this module, so its index is up to date
+            if(module instanceof LazyModule)
+                ((LazyModule) module).loadDeclarationIndex(artifact);
             // invalidate all the package not found caches since they may be visible now
             synchronized(getLock()){
                 java.util.List<String> clear = new ArrayList<String>(packageExistence.size());
@@ -1,5 +1,8 @@
 package com.redhat.ceylon.compiler.java.tools;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.redhat.ceylon.common.StatusPrinter;
 import com.redhat.ceylon.compiler.java.loader.UnknownTypeCollector;
 import com.redhat.ceylon.compiler.java.loader.model.CompilerModuleManager;
@@ -8,8 +11,11 @@ import com.redhat.ceylon.compiler.java.tools.LanguageCompiler.CompilerDelegate;
 import com.redhat.ceylon.compiler.typechecker.TypeChecker;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleValidator;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseExecutor;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseProfiler;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckingPhase;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 import com.redhat.ceylon.langtools.tools.javac.main.Option;
 import com.redhat.ceylon.langtools.tools.javac.tree.JCTree.JCCompilationUnit;
@@ -61,56 +67,59 @@ public final class CeyloncCompilerDelegate implements
     
     @Override
     public void typeCheck(java.util.List<PhasedUnit> listOfUnits) {
-        StatusPrinter sp = getStatusPrinter();
+        final StatusPrinter sp = getStatusPrinter();
 
         int size = listOfUnits.size();
-        int i=1;
-        for (PhasedUnit pu : listOfUnits) {
-            if(sp != null)
-                progress(sp, 1, i++, size, pu);
-            pu.validateTree();
-            pu.scanDeclarations();
+        PhaseExecutor executor = new PhaseExecutor(getJobs());
+        Options options = Options.instance(context);
+        String profileFile = options.get(Option.CEYLONPHASEPROFILE);
+        String traceFile = options.get(Option.CEYLONPHASETRACE);
+        if (profileFile != null || traceFile != null) {
+            executor.setProfiler(new PhaseProfiler());
         }
-        i=1;
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 2, i++, size, pu);
-            pu.scanTypeDeclarations(); 
-        } 
-        i=1;
-        for (PhasedUnit pu: listOfUnits) { 
-            if(sp != null)
-                progress(sp, 3, i++, size, pu);
-            pu.validateRefinement();
+        if (sp != null) {
+            executor.setListener(new PhaseExecutor.Listener() {
+                @Override
+                public void phaseStarted(TypecheckingPhase phase, int units) {
+                    progress(sp, phase.ordinal()+1, units);
+                }
+                @Override
+                public void unitStarted(TypecheckingPhase phase, int index, int units, PhasedUnit pu) {
+                    progress(sp, phase.ordinal()+1, index, units, pu);
+                }
+            });
         }
+        executor.executePhases(listOfUnits);
         
-        i=1;
+        int i=1;
+        UnknownTypeCollector utc = new UnknownTypeCollector();
         for (PhasedUnit pu : listOfUnits) { 
             if(sp != null)
-                progress(sp, 4, i++, size, pu);
-            pu.analyseTypes(); 
+                progress(sp, STEPS, i++, size, pu);
+            pu.getCompilationUnit().visit(utc);
         }
         
-        i=1;
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 5, i++, size, pu);
-            pu.analyseFlow();
+        PhaseProfiler profiler = executor.getProfiler();
+        if (profiler != null) {
+            writeProfile(profiler, profileFile, traceFile);
         }
+    }
 
-        i=1;
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 6, i++, size, pu);
-            pu.analyseUsage();
+    private void writeProfile(PhaseProfiler profiler, String profileFile, String traceFile) {
+        CeylonLog log = (CeylonLog) CeylonLog.instance(context);
+        if (profileFile != null) {
+            try {
+                profiler.writeJson(new File(profileFile));
+            } catch (IOException e) {
+                log.warning("ceylon", "Could not write phase profile to "+profileFile+": "+e.getMessage());
+            }
         }
-        
-        i=1;
-        UnknownTypeCollector utc = new UnknownTypeCollector();
-        for (PhasedUnit pu : listOfUnits) { 
-            if(sp != null)
-                progress(sp, 7, i++, size, pu);
-            pu.getCompilationUnit().visit(utc);
+        if (traceFile != null) {
+            try {
+                profiler.writeChromeTrace(new File(traceFile));
+            } catch (IOException e) {
+                log.warning("ceylon", "Could not write phase trace to "+traceFile+": "+e.getMessage());
+            }
         }
     }
 
@@ -124,9 +133,30 @@ public final class CeyloncCompilerDelegate implements
         }
     }
 
+    /**
+     * The typechecking phases, followed by the collection
+     * of unknown types
+     */
+    private static final int STEPS = TypecheckingPhase.values().length + 1;
+
+    private int getJobs() {
+        Options options = Options.instance(context);
+        String jobs = options.get(Option.CEYLONJOBS);
+        if (jobs == null) {
+            return 1;
+        }
+        int n = Integer.parseInt(jobs);
+        return n == 0 ? PhaseExecutor.defaultJobs() : n;
+    }
+
+    private void progress(StatusPrinter sp, int phase, int size) {
+        sp.clearLine();
+        sp.log("Typechecking "+phase+"/"+STEPS+" ["+size+" units] ");
+    }
+
     private void progress(StatusPrinter sp, int phase, int i, int size, PhasedUnit pu) {
         sp.clearLine();
-        sp.log("Typechecking "+phase+"/7 ["+i+"/"+size+"] ");
+        sp.log("Typechecking "+phase+"/"+STEPS+" ["+i+"/"+size+"] ");
         sp.log(pu.getPathRelativeToSrcDir());
     }
 
@@ -145,6 +175,7 @@ public final class CeyloncCompilerDelegate implements
         final StatusPrinter sp = getStatusPrinter();
         com.redhat.ceylon.compiler.typechecker.context.Context ceylonContext = LanguageCompiler.getCeylonContextInstance(context);
         final ModuleValidator validator = new ModuleValidator(ceylonContext, phasedUnits);
+        validator.setJobs(getJobs());
         if(sp != null){
             validator.setListener(new StatusPrinterProgressListener(validator, sp));
             sp.clearLine();
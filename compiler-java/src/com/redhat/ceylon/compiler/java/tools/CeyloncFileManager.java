@@ -225,6 +225,10 @@ public class CeyloncFileManager extends JavacFileManager implements StandardJava
     
     public RepositoryManager getRepositoryManager() {
         // caching
+        if(repoManager != null)
+            return repoManager;
+        // kept alive by a compile daemon
+        repoManager = context.get(RepositoryManager.class);
         if(repoManager != null)
             return repoManager;
         // lazy loading
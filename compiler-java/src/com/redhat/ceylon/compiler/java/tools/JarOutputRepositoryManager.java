@@ -20,6 +20,7 @@
 
 package com.redhat.ceylon.compiler.java.tools;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -61,6 +62,7 @@ import com.redhat.ceylon.langtools.tools.javac.util.Log;
 import com.redhat.ceylon.langtools.tools.javac.util.Options;
 import com.redhat.ceylon.model.loader.AbstractModelLoader;
 import com.redhat.ceylon.model.loader.ClassFileUtil;
+import com.redhat.ceylon.model.loader.DeclarationIndex;
 import com.redhat.ceylon.model.loader.JdkProvider;
 import com.redhat.ceylon.model.loader.NamingBase;
 import com.redhat.ceylon.model.loader.OsgiUtil;
@@ -253,6 +255,18 @@ public class JarOutputRepositoryManager {
             return JarUtils.getMetaInfProperties(originalJarFile, FILE_HASHES);
         }
 
+        private DeclarationIndex getPreviousDeclarationIndex() throws IOException {
+            try (JarFile jarFile = new JarFile(originalJarFile)) {
+                JarEntry entry = jarFile.getJarEntry(DeclarationIndex.FILE_DECLARATIONS);
+                if (entry == null) {
+                    return null;
+                }
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    return DeclarationIndex.read(in);
+                }
+            }
+        }
+
         private Manifest getPreviousManifest() throws IOException {
             JarFile jarFile = JarUtils.validJar(originalJarFile);
             if (jarFile != null) {
@@ -309,10 +323,15 @@ public class JarOutputRepositoryManager {
                 writeHashesJarEntry(outputJarTempFolder);
                 
                 // Now add the old jar remains
+                DeclarationIndex previousIndex = null;
                 if (originalJarFile != null && JarUtils.isValidJar(originalJarFile)) {
+                    previousIndex = getPreviousDeclarationIndex();
                     addOriginalJarFiles(outputJarTempFolder, originalJarFile, jarFilter);
                 }
 
+                // Add META-INF/declarations.idx, once we have all the class files
+                writeDeclarationIndexJarEntry(outputJarTempFolder, previousIndex);
+
                 // We only create the final .car file if we found a module descriptor.
                 // Otherwise something has gone seriously wrong during compilation and
                 // we would be generating output that does more harm than good
@@ -393,6 +412,7 @@ public class JarOutputRepositoryManager {
                             || entryFullName.equals(FILE_MAPPING)
                             || entryFullName.equals(FILE_ERRORS)
                             || entryFullName.equals(FILE_HASHES)
+                            || entryFullName.equals(DeclarationIndex.FILE_DECLARATIONS)
                             || (writeOsgiManifest && OsgiUtil.OsgiManifest.isManifestFileName(entryFullName))
                             || (writeMavenManifest && MavenPomUtil.isMavenDescriptor(entryFullName, module));
                     }
@@ -562,6 +582,66 @@ public class JarOutputRepositoryManager {
             }
         }
         
+        /** 
+         * Add a {@code META-INF/declarations.idx} entry
+         * which lists the toplevel declarations of every package
+         * and their classes, so that the model loader does not
+         * have to probe for them. Declarations of classes we did
+         * not write are taken from the previous index, if any.
+         */
+        private void writeDeclarationIndexJarEntry(File outputFolder, DeclarationIndex previousIndex) throws IOException {
+            DeclarationIndex index = new DeclarationIndex();
+            addDeclarationIndexEntries(index, previousIndex, outputFolder, "");
+            FileUtil.mkdirs(new File(outputFolder, META_INF));
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(new File(outputFolder, DeclarationIndex.FILE_DECLARATIONS)))) {
+                index.write(os);
+            } catch(IOException e) {
+                // TODO : log to the right place
+            }
+        }
+
+        private void addDeclarationIndexEntries(DeclarationIndex index, DeclarationIndex previousIndex, 
+                File folder, String path) {
+            File[] files = folder.listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isDirectory()) {
+                    if (!path.isEmpty() || !name.equals(META_INF)) {
+                        addDeclarationIndexEntries(index, previousIndex, file, 
+                                path.isEmpty() ? name : path + "/" + name);
+                    }
+                    continue;
+                }
+                // Java 9 module descriptors are not in a package
+                if (!name.endsWith(".class") || name.equals("module-info.class")) {
+                    continue;
+                }
+                String pkg = DeclarationIndex.toPackageName(path);
+                // even packages without toplevels are the module's
+                index.addPackage(pkg);
+                String className = name.substring(0, name.length() - 6);
+                if (!DeclarationIndex.isToplevelClassName(className)) {
+                    continue;
+                }
+                String entryName = path.isEmpty() ? name : path + "/" + name;
+                if (previousIndex != null && !writtenClassesMapping.containsKey(entryName)) {
+                    DeclarationIndex.Entry previous = previousIndex.findClass(pkg, className);
+                    if (previous != null) {
+                        index.add(pkg, previous);
+                        continue;
+                    }
+                }
+                try (InputStream stream = new FileInputStream(file)) {
+                    index.add(ClassFile.read(stream));
+                } catch (ConstantPoolException | IOException e) {
+                    // leave it out, the loader will probe for it
+                }
+            }
+        }
+
         public JavaFileObject getJavaFileObject(String fileName, File sourceFile) {
             String quotedFileName = JVMModuleUtil.quoteJavaKeywordsInFilename(fileName);
             String entryName = handleResourceRoot(quotedFileName);
@@ -19,12 +19,19 @@
  */
 package com.redhat.ceylon.compiler.java.tools;
 
+import com.redhat.ceylon.common.log.DeferredLog;
+import com.redhat.ceylon.common.log.DeferredLog.Level;
 import com.redhat.ceylon.common.log.Logger;
 import com.redhat.ceylon.langtools.tools.javac.main.Option;
 import com.redhat.ceylon.langtools.tools.javac.util.Log;
 import com.redhat.ceylon.langtools.tools.javac.util.Log.WriterKind;
 import com.redhat.ceylon.langtools.tools.javac.util.Options;
 
+/**
+ * Logs to the javac {@link Log}, which is not thread-safe, 
+ * so the messages of threads which {@link DeferredLog defer}
+ * them are logged later, by the thread which uses the log.
+ */
 public class JavacLogger implements Logger {
 
     private boolean debugEnabled;
@@ -37,21 +44,29 @@ public class JavacLogger implements Logger {
 
     @Override
     public void error(String str) {
+        if(DeferredLog.defer(this, Level.ERROR, str))
+            return;
         log.error("ceylon", str);
     }
 
     @Override
     public void warning(String str) {
+        if(DeferredLog.defer(this, Level.WARNING, str))
+            return;
         log.warning("ceylon", str);
     }
 
     @Override
     public void info(String str) {
+        if(DeferredLog.defer(this, Level.INFO, str))
+            return;
         log.note("ceylon", str);
     }
 
     @Override
     public void debug(String str) {
+        if(DeferredLog.defer(this, Level.DEBUG, str))
+            return;
         if(debugEnabled)
             log.printRawLines(WriterKind.ERROR, "["+str+"]");
     }
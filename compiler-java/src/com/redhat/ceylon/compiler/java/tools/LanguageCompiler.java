@@ -73,6 +73,7 @@ import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
 import com.redhat.ceylon.compiler.typechecker.parser.LexError;
 import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
 import com.redhat.ceylon.compiler.typechecker.parser.RecognitionError;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.CompilationUnit;
 import com.redhat.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 import com.redhat.ceylon.compiler.typechecker.util.NewlineFixingStringStream;
@@ -468,7 +469,14 @@ public class LanguageCompiler extends JavaCompiler {
                 CommonTokenStream tokens = new CommonTokenStream(lexer);
 
                 CeylonParser parser = new CeylonParser(tokens);
-                CompilationUnit cu = parser.compilationUnit();
+                MessageSink messages = new MessageSink();
+                MessageSink previousSink = MessageSink.activate(messages);
+                CompilationUnit cu;
+                try {
+                    cu = parser.compilationUnit();
+                } finally {
+                    MessageSink.activate(previousSink);
+                }
 
                 java.util.List<LexError> lexerErrors = lexer.getErrors();
                 for (LexError le : lexerErrors) {
@@ -495,6 +503,7 @@ public class LanguageCompiler extends JavaCompiler {
                      */
                     com.redhat.ceylon.model.typechecker.model.Package p = modelLoader.findOrCreateModulelessPackage(pkgName == null ? "" : pkgName);
                     phasedUnit = new CeylonPhasedUnit(file, srcDir, cu, p, moduleManager, moduleSourceMapper, ceylonContext, filename, map);
+                    phasedUnit.getMessageSink().merge(messages);
                     phasedUnit.setSuppressedWarnings(suppressedWarnings);
                     phasedUnits.addPhasedUnit(file, phasedUnit);
                     gen.setMap(map);
@@ -0,0 +1,56 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ * 
+ * This particular file is subject to the "Classpath" exception as provided in the 
+ * LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.redhat.ceylon.compiler.java.test.model;
+
+public class JavaLazyMembers {
+    private int count;
+    private long size;
+    public boolean enabled;
+    public String Name;
+    public static final int MAX = 10;
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public void setSize(int size) { this.size = size; }
+    public boolean isEnabled() { return enabled; }
+    public String getName() { return Name; }
+    public String getURL() { return null; }
+    public void setOnly(int only) {}
+    public int getAt(int index) { return index; }
+    public String get() { return null; }
+
+    public void run() {}
+    public void run(int times) {}
+    public void run(String what) {}
+    public static JavaLazyMembers create() { return new JavaLazyMembers(); }
+    public static JavaLazyMembers create(int count) { return new JavaLazyMembers(); }
+    public void reset() {}
+
+    public int hash() { return 0; }
+    public String string() { return null; }
+    @Override
+    public int hashCode() { return count; }
+    @Override
+    public String toString() { return "JavaLazyMembers"; }
+    @Override
+    public boolean equals(Object other) { return other == this; }
+}
@@ -85,6 +85,8 @@ import com.redhat.ceylon.model.loader.ModelLoader;
 import com.redhat.ceylon.model.loader.ModelLoader.DeclarationType;
 import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
 import com.redhat.ceylon.model.loader.model.LazyElement;
+import com.redhat.ceylon.model.loader.model.LazyMembers;
+import com.redhat.ceylon.model.loader.model.LazyMembersContainer;
 import com.redhat.ceylon.model.typechecker.model.Annotation;
 import com.redhat.ceylon.model.typechecker.model.Class;
 import com.redhat.ceylon.model.typechecker.model.ClassOrInterface;
@@ -1419,6 +1421,94 @@ public class ModelLoaderTests extends CompilerTests {
         });
     }
     
+    @Test
+    public void javaLazyMembers(){
+        compile("JavaLazyMembers.java");
+        boolean enabled = LazyMembers.isEnabled();
+        try {
+            LazyMembers.setEnabled(false);
+            List<String> eager = describeJavaLazyMembers(false);
+            LazyMembers.setEnabled(true);
+            List<String> lazy = describeJavaLazyMembers(true);
+            Assert.assertEquals(eager, lazy);
+        } finally {
+            LazyMembers.setEnabled(enabled);
+        }
+    }
+    
+    private List<String> describeJavaLazyMembers(final boolean lazy){
+        final List<String> description = new ArrayList<String>();
+        verifyCompilerClassLoading("JavaLazyMembers.ceylon", new RunnableTest(){
+            @Override
+            public void test(ModelLoader loader) {
+                // only the first time, while members are still left to complete
+                if (!description.isEmpty()) {
+                    return;
+                }
+                Module mod = loader.getLoadedModule(moduleForJavaModelLoading(), moduleVersionForJavaModelLoading());
+                Assert.assertNotNull(mod);
+                Package p = mod.getDirectPackage(packageForJavaModelLoading());
+                Assert.assertNotNull(p);
+                ClassOrInterface c = (ClassOrInterface) p.getDirectMember("JavaLazyMembers", null, false);
+                Assert.assertNotNull(c);
+                // look members up by name before they are all completed
+                for (String name : Arrays.asList("hash", "string", "run", "create", "count", "size", 
+                        "enabled", "name", "Name", "url", "only", "getAt", "get", "MAX", "equals", "missing")) {
+                    description.add(name + ": " + describe(c.getDirectMember(name, null, false)));
+                }
+                if (lazy) {
+                    Assert.assertNotNull("members were not completed lazily", 
+                            ((LazyMembersContainer) c).getLazyMembers());
+                }
+                List<String> members = new ArrayList<String>();
+                for (Declaration member : c.getMembers()) {
+                    members.add(describe(member));
+                }
+                Collections.sort(members);
+                description.addAll(members);
+            }
+            
+            private String describe(Declaration d) {
+                if (d == null) {
+                    return "null";
+                }
+                StringBuilder b = new StringBuilder(d.getClass().getSimpleName())
+                    .append(" ").append(d.getName());
+                if (d instanceof TypedDeclaration) {
+                    Type type = ((TypedDeclaration) d).getType();
+                    b.append(" : ").append(type == null ? null : type.asString());
+                }
+                b.append(d.isShared() ? " shared" : "")
+                    .append(d.isActual() ? " actual" : "")
+                    .append(d.isFormal() ? " formal" : "")
+                    .append(d.isDefault() ? " default" : "")
+                    .append(d.isStatic() ? " static" : "");
+                if (d instanceof Value && ((Value) d).isVariable()) {
+                    b.append(" variable");
+                }
+                if (d instanceof Function) {
+                    Function f = (Function) d;
+                    b.append(f.isOverloaded() ? " overloaded" : "")
+                        .append(f.isAbstraction() ? " abstraction" : "");
+                    for (ParameterList parameterList : f.getParameterLists()) {
+                        b.append(" (");
+                        for (Parameter parameter : parameterList.getParameters()) {
+                            Type type = parameter.getType();
+                            b.append(type == null ? null : type.asString()).append(",");
+                        }
+                        b.append(")");
+                    }
+                }
+                Declaration refined = d.getRefinedDeclaration();
+                if (refined != null && refined != d) {
+                    b.append(" refines ").append(refined.getQualifiedNameString());
+                }
+                return b.toString();
+            }
+        });
+        return description;
+    }
+    
     @Test
     public void ceylonDeprecated(){
         System.out.println(System.getProperty("java.version"));
@@ -948,6 +948,46 @@ public class TypeParserTests {
         new TypeParser(MockLoader.instance).decodeType("t2<a,b", null, mockDefaultModule, mockPkgUnit);
     }
     
+    @Test
+    public void testParsedTypeCache(){
+        TypeParser parser = new TypeParser(MockLoader.instance);
+        Type first = parser.decodeType("a|t2<b,c>", null, mockDefaultModule, mockPkgUnit);
+        Type second = parser.decodeType("a|t2<b,c>", null, mockDefaultModule, mockPkgUnit);
+        Assert.assertEquals(printType(first), printType(second));
+        Assert.assertEquals(1, parser.getParsedTypeMisses());
+        Assert.assertEquals(1, parser.getParsedTypeHits());
+        // no scope, so we can't share the resolved type
+        Assert.assertEquals(0, parser.getResolvedTypeMisses());
+        Assert.assertEquals(0, parser.getResolvedTypeHits());
+    }
+
+    @Test
+    public void testResolvedTypeCache(){
+        TypeParser parser = new TypeParser(MockLoader.instance);
+        Type first = parser.decodeType("ceylon.language::Boolean?", mockLangPackage, mockLang, mockLangUnit);
+        Type second = parser.decodeType("ceylon.language::Boolean?", mockLangPackage, mockLang, mockLangUnit);
+        Assert.assertSame(first, second);
+        Assert.assertTrue(first.isCached());
+        Assert.assertEquals(1, parser.getResolvedTypeMisses());
+        Assert.assertEquals(1, parser.getResolvedTypeHits());
+        parser.clearResolvedTypes();
+        Type third = parser.decodeType("ceylon.language::Boolean?", mockLangPackage, mockLang, mockLangUnit);
+        Assert.assertNotSame(first, third);
+        Assert.assertEquals(printType(first), printType(third));
+    }
+
+    @Test
+    public void testScopeDependentTypeNotCached(){
+        TypeParser parser = new TypeParser(MockLoader.instance);
+        // a could be a type parameter of the scope
+        Type first = parser.decodeType("ceylon.language::Iterable<a,ceylon.language::Null>", mockLangPackage, mockLang, mockLangUnit);
+        Type second = parser.decodeType("ceylon.language::Iterable<a,ceylon.language::Null>", mockLangPackage, mockLang, mockLangUnit);
+        Assert.assertNotSame(first, second);
+        Assert.assertFalse(first.isCached());
+        Assert.assertEquals(1, parser.getParsedTypeHits());
+        Assert.assertEquals(0, parser.getResolvedTypeMisses());
+    }
+
     TypePrinter typePrinter = new TypePrinter(
             false, 
             true, 
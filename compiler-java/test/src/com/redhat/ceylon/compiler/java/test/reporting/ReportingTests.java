@@ -1,12 +1,18 @@
 package com.redhat.ceylon.compiler.java.test.reporting;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.redhat.ceylon.compiler.java.test.CompilerError;
 import com.redhat.ceylon.compiler.java.test.CompilerTests;
+import com.redhat.ceylon.javax.tools.Diagnostic;
 import com.redhat.ceylon.javax.tools.Diagnostic.Kind;
+import com.redhat.ceylon.javax.tools.DiagnosticListener;
+import com.redhat.ceylon.javax.tools.FileObject;
 
 public class ReportingTests extends CompilerTests {
     
@@ -67,6 +73,25 @@ public class ReportingTests extends CompilerTests {
                 null,
                 new CompilerError(Kind.WARNING, "", 1, "unknown warning: blahblah"));
     }
+
+    @Test
+    public void testDiagnosticOrder() {
+        // the errors of a statement are reported after those of the
+        // statements it contains, in the order the tree is visited,
+        // and not in the order of their positions
+        final List<String> diagnostics = new ArrayList<String>();
+        getCompilerTask(defaultOptions, new DiagnosticListener<FileObject>() {
+            @Override
+            public void report(Diagnostic<? extends FileObject> diagnostic) {
+                if (diagnostic.getKind() == Kind.ERROR
+                        || diagnostic.getKind() == Kind.WARNING) {
+                    diagnostics.add(diagnostic.getKind() + ":" + diagnostic.getLineNumber());
+                }
+            }
+        }, "DiagnosticOrder.ceylon").call2();
+        Assert.assertEquals(Arrays.asList("ERROR:3", "ERROR:2", "WARNING:5", "ERROR:5"), 
+                diagnostics);
+    }
     
 
 }
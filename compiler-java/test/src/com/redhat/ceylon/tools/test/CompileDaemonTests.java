@@ -0,0 +1,208 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.redhat.ceylon.tools.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.ceylon.common.FileUtil;
+import com.redhat.ceylon.compiler.CompileDaemon;
+import com.redhat.ceylon.compiler.java.launcher.Main.ExitState.CeylonState;
+
+public class CompileDaemonTests extends AbstractToolTests {
+
+    private File workDir;
+    private File srcDir;
+    private File tokenFile;
+    private CompileDaemon daemon;
+    private int port;
+    private Thread thread;
+
+    @Before
+    public void startDaemon() throws IOException {
+        workDir = new File(destDir, "daemon");
+        FileUtil.delete(workDir);
+        srcDir = new File(workDir, "source");
+        tokenFile = new File(workDir, "daemon.token");
+        write("daemontest/module.ceylon", "module daemontest \"1\" {}");
+        write("daemontest/run.ceylon", "shared void run() { print(\"hello\"); }");
+        daemon = new CompileDaemon(0, tokenFile);
+        port = daemon.start();
+        thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    daemon.run();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        if (thread.isAlive()) {
+            CompileDaemon.request(port, tokenFile,
+                    Collections.singletonList(CompileDaemon.STOP), new StringWriter());
+            thread.join();
+        }
+    }
+
+    private void write(String path, String source) throws IOException {
+        File file = new File(srcDir, path);
+        file.getParentFile().mkdirs();
+        boolean existed = file.exists();
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(), source.getBytes(Charset.forName("UTF-8")));
+        if (existed && file.lastModified() <= lastModified) {
+            // the file system may not see the change
+            file.setLastModified(lastModified + 2000);
+        }
+    }
+
+    private List<String> arguments() {
+        return Arrays.asList(
+                "-sysrep", getSysRepPath(),
+                "-cacherep", cacheDir,
+                "-out", new File(workDir, "modules").getPath(),
+                "-cp", getClassPathAsPath(),
+                "-src", srcDir.getPath(),
+                "daemontest");
+    }
+
+    private CompileDaemon.ExitResult compile(StringWriter output) throws IOException {
+        return CompileDaemon.request(port, tokenFile, arguments(), output);
+    }
+
+    @Test
+    public void testRejectsWrongToken() throws Exception {
+        File wrongToken = new File(workDir, "wrong.token");
+        Files.write(wrongToken.toPath(), "0123456789abcdef".getBytes("UTF-8"));
+        StringWriter output = new StringWriter();
+        CompileDaemon.ExitResult result =
+                CompileDaemon.request(port, wrongToken, arguments(), output);
+        assertEquals(CeylonState.SYS, result.state);
+        assertTrue(output.toString(), output.toString().contains("invalid token"));
+        assertEquals(0, daemon.getCompilations());
+        // nor can it stop the daemon
+        CompileDaemon.request(port, wrongToken,
+                Collections.singletonList(CompileDaemon.STOP), new StringWriter());
+        assertTrue(thread.isAlive());
+    }
+
+    @Test
+    public void testTokenFileIsPrivate() throws Exception {
+        assertTrue(tokenFile.isFile());
+        if (Files.getFileStore(tokenFile.toPath()).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(tokenFile.toPath())));
+        }
+    }
+
+    @Test
+    public void testUnchangedInputsAreNotRecompiled() throws Exception {
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(1, daemon.getCompilations());
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(1, daemon.getCompilations());
+
+        // other arguments
+        List<String> verbose = new ArrayList<String>(arguments());
+        verbose.add(0, "-verbose:cmr");
+        assertEquals(CeylonState.OK,
+                CompileDaemon.request(port, tokenFile, verbose, new StringWriter()).state);
+        assertEquals(2, daemon.getCompilations());
+    }
+
+    @Test
+    public void testChangedSourceIsRecompiled() throws Exception {
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(1, daemon.getCompilations());
+        write("daemontest/run.ceylon", "shared void run() { print(\"bye\"); }");
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(2, daemon.getCompilations());
+
+        // a new file
+        write("daemontest/other.ceylon", "shared void other() {}");
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(3, daemon.getCompilations());
+    }
+
+    @Test
+    public void testChangedOutputIsRebuilt() throws Exception {
+        File modules = new File(workDir, "modules");
+        File car = new File(modules, "daemontest/1/daemontest-1.car");
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(1, daemon.getCompilations());
+        assertTrue(car.isFile());
+        FileUtil.delete(modules);
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(2, daemon.getCompilations());
+        assertTrue(car.isFile());
+
+        // an overwritten artifact
+        assertTrue(car.setLastModified(car.lastModified() - 10000));
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(3, daemon.getCompilations());
+        assertEquals(CeylonState.OK, compile(new StringWriter()).state);
+        assertEquals(3, daemon.getCompilations());
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws Exception {
+        write("daemontest/run.ceylon", "shared void run() { print(missing); }");
+        StringWriter output = new StringWriter();
+        CompileDaemon.ExitResult result = compile(output);
+        assertEquals(CeylonState.ERROR, result.state);
+        assertEquals(1, result.errorCount);
+        assertTrue(output.toString(), output.toString().contains("missing"));
+        assertEquals(CeylonState.ERROR, compile(new StringWriter()).state);
+        assertEquals(2, daemon.getCompilations());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        CompileDaemon.ExitResult result = CompileDaemon.request(port, tokenFile,
+                Collections.singletonList(CompileDaemon.STOP), new StringWriter());
+        assertEquals(CeylonState.OK, result.state);
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertFalse(tokenFile.exists());
+    }
+}
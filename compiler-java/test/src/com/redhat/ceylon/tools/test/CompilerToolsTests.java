@@ -36,6 +36,7 @@ import com.redhat.ceylon.tools.version.VersionToolTests;
 @SuiteClasses({
     BashCompletionToolTests.class,
     ClasspathToolTests.class,
+    CompileDaemonTests.class,
     CompilerToolTests.class,
     CopyToolTests.class,
     DocToolTests.class,
@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.common.ModuleUtil;
 import com.redhat.ceylon.common.NonNull;
@@ -66,8 +67,9 @@ import com.redhat.ceylon.model.cmr.RuntimeResolver;
 import com.redhat.ceylon.model.loader.JvmBackendUtil;
 import com.redhat.ceylon.model.loader.ModelLoader.DeclarationType;
 import com.redhat.ceylon.model.loader.NamingBase;
-import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
-import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionMethod;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
 import com.redhat.ceylon.model.loader.model.AnnotationProxyClass;
 import com.redhat.ceylon.model.loader.model.AnnotationProxyMethod;
 import com.redhat.ceylon.model.loader.model.FunctionOrValueInterface;
@@ -135,19 +137,23 @@ public class Metamodel {
     private static RuntimeModuleManager moduleManager;
     
     // FIXME: this will need better thinking in terms of memory usage
+    // These caches are read without the model loader lock, which is only
+    // taken to fill them, so that metamodel queries on types which are
+    // already loaded don't contend with each other
     private static Map<java.lang.Class, ceylon.language.meta.declaration.NestableDeclaration> classToDeclaration
-    = new HashMap<java.lang.Class, ceylon.language.meta.declaration.NestableDeclaration>();
+    = new ConcurrentHashMap<java.lang.Class, ceylon.language.meta.declaration.NestableDeclaration>();
     
     private static Map<com.redhat.ceylon.model.typechecker.model.Declaration, Object> typeCheckModelToRuntimeModel
-        = new HashMap<com.redhat.ceylon.model.typechecker.model.Declaration, Object>();
+        = new ConcurrentHashMap<com.redhat.ceylon.model.typechecker.model.Declaration, Object>();
 
     private static Map<com.redhat.ceylon.model.typechecker.model.Package, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl> typeCheckPackagesToRuntimeModel
-        = new HashMap<com.redhat.ceylon.model.typechecker.model.Package, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl>();
+        = new ConcurrentHashMap<com.redhat.ceylon.model.typechecker.model.Package, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl>();
 
     private static Map<com.redhat.ceylon.model.typechecker.model.Module, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl> typeCheckModulesToRuntimeModel
-        = new HashMap<com.redhat.ceylon.model.typechecker.model.Module, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl>();
+        = new ConcurrentHashMap<com.redhat.ceylon.model.typechecker.model.Module, com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl>();
 
-    private static Map<TypeDescriptor,Type> typeDescriptorToProducedType = new WeakHashMap<TypeDescriptor,Type>();
+    private static Map<TypeDescriptor,Type> typeDescriptorToProducedType 
+        = Collections.synchronizedMap(new WeakHashMap<TypeDescriptor,Type>());
 
     private static final TypeDescriptor TD_ClosedTypeOfAnything
         = TypeDescriptor.klass(ceylon.language.meta.model.Type.class, ceylon.language.Anything.$TypeDescriptor$);
@@ -354,7 +360,9 @@ public class Metamodel {
     }
 
     public static Type getProducedType(TypeDescriptor reifiedType) {
-        Type producedType;
+        Type producedType = typeDescriptorToProducedType.get(reifiedType);
+        if(producedType != null)
+            return producedType;
         synchronized(getLock()){
             producedType = typeDescriptorToProducedType.get(reifiedType);
             if(producedType == null){
@@ -374,6 +382,9 @@ public class Metamodel {
     }
     
     public static <R> R getOrCreateMetamodel(com.redhat.ceylon.model.typechecker.model.Declaration declaration){
+        Object cached = typeCheckModelToRuntimeModel.get(declaration);
+        if(cached != null)
+            return (R)cached;
         synchronized(getLock()){
             Object ret = typeCheckModelToRuntimeModel.get(declaration);
             if(ret == null){
@@ -450,6 +461,9 @@ public class Metamodel {
     }
 
     public static com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl getOrCreateMetamodel(com.redhat.ceylon.model.typechecker.model.Package declaration){
+        com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl cached = typeCheckPackagesToRuntimeModel.get(declaration);
+        if(cached != null)
+            return cached;
         synchronized(getLock()){
             com.redhat.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl ret = typeCheckPackagesToRuntimeModel.get(declaration);
             if(ret == null){
@@ -473,6 +487,9 @@ public class Metamodel {
             String namespace,
             com.redhat.ceylon.model.typechecker.model.Module declaration,
             Set<com.redhat.ceylon.model.typechecker.model.Module> visitedModules, boolean optional){
+        com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl cached = typeCheckModulesToRuntimeModel.get(declaration);
+        if(cached != null)
+            return cached;
         synchronized(getLock()){
             com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl ret = typeCheckModulesToRuntimeModel.get(declaration);
             if(ret == null){
@@ -715,9 +732,9 @@ public class Metamodel {
                 for (Declaration d: p.getMembers()) {
                     if (d instanceof com.redhat.ceylon.model.typechecker.model.ClassOrInterface) {
                         String className = p.getNameAsString() + "." + d.getName();
-                        ReflectionClass classMirror = classMirror(module, className);
+                        ClassMirror classMirror = classMirror(module, className);
                         if (classMirror!=null) {
-                            return classMirror.klass.getClassLoader();
+                            return ReflectionUtils.getJavaClass(classMirror).getClassLoader();
                         }
                     }
                 }
@@ -735,45 +752,45 @@ public class Metamodel {
             return null;
         }
         String className = module.getNameAsString() + "." + NamingBase.MODULE_DESCRIPTOR_CLASS_NAME;
-        ReflectionClass classMirror = classMirror(module, className);
-        return classMirror.klass;
+        ClassMirror classMirror = classMirror(module, className);
+        return ReflectionUtils.getJavaClass(classMirror);
     }
 
-    private static ReflectionClass classMirror(com.redhat.ceylon.model.typechecker.model.Module module,
+    private static ClassMirror classMirror(com.redhat.ceylon.model.typechecker.model.Module module,
             String className) {
-        return (ReflectionClass)moduleManager.getModelLoader().lookupClassMirror(module, className);
+        return moduleManager.getModelLoader().lookupClassMirror(module, className);
     }
     
     public static java.lang.Class<?> getJavaClass(com.redhat.ceylon.model.typechecker.model.Package pkg) {
         String className = ((LazyPackage) pkg).getNameAsString()+ "." + NamingBase.PACKAGE_DESCRIPTOR_CLASS_NAME;
-        ReflectionClass classMirror = (ReflectionClass)moduleManager.getModelLoader().lookupClassMirror(pkg.getModule(), className);
-        return classMirror != null ? classMirror.klass : null;
+        ClassMirror classMirror = moduleManager.getModelLoader().lookupClassMirror(pkg.getModule(), className);
+        return classMirror != null ? ReflectionUtils.getJavaClass(classMirror) : null;
     }
     
     public static java.lang.Class<?> getJavaClass(com.redhat.ceylon.model.typechecker.model.Declaration declaration) {
         if(declaration instanceof LazyClass){
-            ReflectionClass classMirror = (ReflectionClass) ((LazyClass) declaration).classMirror;
-            return classMirror.klass;
+            ClassMirror classMirror = ((LazyClass) declaration).classMirror;
+            return ReflectionUtils.getJavaClass(classMirror);
         }
         if(declaration instanceof LazyInterface){
-            ReflectionClass classMirror = (ReflectionClass) ((LazyInterface) declaration).classMirror;
-            return classMirror.klass;
+            ClassMirror classMirror = ((LazyInterface) declaration).classMirror;
+            return ReflectionUtils.getJavaClass(classMirror);
         }
         if(declaration instanceof LazyFunction){
-            ReflectionClass classMirror = (ReflectionClass) ((LazyFunction) declaration).classMirror;
-            return classMirror.klass;
+            ClassMirror classMirror = ((LazyFunction) declaration).classMirror;
+            return ReflectionUtils.getJavaClass(classMirror);
         }
         if(declaration instanceof LazyValue){
-            ReflectionClass classMirror = (ReflectionClass) ((LazyValue) declaration).classMirror;
-            return classMirror.klass;
+            ClassMirror classMirror = ((LazyValue) declaration).classMirror;
+            return ReflectionUtils.getJavaClass(classMirror);
         }
         if (declaration instanceof LazyClassAlias) {
-            ReflectionClass classMirror = (ReflectionClass) ((LazyClassAlias) declaration).classMirror;
-            return classMirror.klass;
+            ClassMirror classMirror = ((LazyClassAlias) declaration).classMirror;
+            return ReflectionUtils.getJavaClass(classMirror);
         }
         if (declaration instanceof LazyTypeAlias) {
-            ReflectionClass classMirror = (ReflectionClass) ((LazyTypeAlias) declaration).classMirror;
-            return classMirror.klass;
+            ClassMirror classMirror = ((LazyTypeAlias) declaration).classMirror;
+            return ReflectionUtils.getJavaClass(classMirror);
         }
         if(declaration instanceof AnnotationProxyClass){
             return getJavaClass(((AnnotationProxyClass) declaration).iface);
@@ -924,12 +941,12 @@ public class Metamodel {
     
     public static java.lang.reflect.Method getJavaMethod(com.redhat.ceylon.model.typechecker.model.Function declaration) {
         if(declaration instanceof JavaMethod){
-            ReflectionMethod methodMirror = (ReflectionMethod) ((JavaMethod) declaration).mirror;
-            return (java.lang.reflect.Method) methodMirror.method;
+            MethodMirror methodMirror = ((JavaMethod) declaration).mirror;
+            return (java.lang.reflect.Method) ReflectionUtils.getJavaMember(methodMirror);
         }
         if(declaration instanceof LazyFunction){
-            ReflectionMethod methodMirror = (ReflectionMethod) ((LazyFunction) declaration).getMethodMirror();
-            return (java.lang.reflect.Method) methodMirror.method;
+            MethodMirror methodMirror = ((LazyFunction) declaration).getMethodMirror();
+            return (java.lang.reflect.Method) ReflectionUtils.getJavaMember(methodMirror);
         }
         throw Metamodel.newModelError("Unsupported declaration type: " + declaration);
     }
@@ -948,17 +965,17 @@ public class Metamodel {
             return TypeDescriptor.intersection(tdArgs);
         }
         if(declaration instanceof LazyClass){
-            ReflectionClass classMirror = (ReflectionClass) ((LazyClass) declaration).classMirror;
+            ClassMirror classMirror = ((LazyClass) declaration).classMirror;
             TypeDescriptor[] tdArgs = getTypeDescriptorsForProducedTypes(type.getTypeArgumentList());
-            TypeDescriptor ret = TypeDescriptor.klass(classMirror.klass, tdArgs);
+            TypeDescriptor ret = TypeDescriptor.klass(ReflectionUtils.getJavaClass(classMirror), tdArgs);
             if(type.getQualifyingType() != null)
                 return TypeDescriptor.member(getTypeDescriptorForProducedType(type.getQualifyingType()), ret);
             return ret;
         }
         if(declaration instanceof LazyInterface){
-            ReflectionClass classMirror = (ReflectionClass) ((LazyInterface) declaration).classMirror;
+            ClassMirror classMirror = ((LazyInterface) declaration).classMirror;
             TypeDescriptor[] tdArgs = getTypeDescriptorsForProducedTypes(type.getTypeArgumentList());
-            TypeDescriptor ret = TypeDescriptor.klass(classMirror.klass, tdArgs);
+            TypeDescriptor ret = TypeDescriptor.klass(ReflectionUtils.getJavaClass(classMirror), tdArgs);
             if(type.getQualifyingType() != null)
                 return TypeDescriptor.member(getTypeDescriptorForProducedType(type.getQualifyingType()), ret);
             return ret;
@@ -968,19 +985,19 @@ public class Metamodel {
             TypeDescriptor[] tdArgs = getTypeDescriptorsForProducedTypes(type.getTypeArgumentList());
             TypeDescriptor ret;
             if(underlyingDeclaration.isToplevel()){
-                ReflectionClass classMirror;
+                ClassMirror classMirror;
                 // FIXME: this is not really true, but reflects what's in TypeDescriptor.functionOrValue where we do not
                 // make any different, but this should not matter since we only care about container functions and their
                 // type arguments
                 if(underlyingDeclaration instanceof Setter)
                     underlyingDeclaration = ((Setter) underlyingDeclaration).getGetter();
                 if(underlyingDeclaration instanceof LazyValue)
-                    classMirror = (ReflectionClass) ((LazyValue) underlyingDeclaration).classMirror;
+                    classMirror = ((LazyValue) underlyingDeclaration).classMirror;
                 else if(underlyingDeclaration instanceof LazyFunction)
-                    classMirror = (ReflectionClass) ((LazyFunction) underlyingDeclaration).classMirror;
+                    classMirror = ((LazyFunction) underlyingDeclaration).classMirror;
                 else
                     throw Metamodel.newModelError("Unsupported underlying declaration type: " + underlyingDeclaration);
-                ret = TypeDescriptor.functionOrValue(classMirror.klass, tdArgs);
+                ret = TypeDescriptor.functionOrValue(ReflectionUtils.getJavaClass(classMirror), tdArgs);
             }else
                 ret = TypeDescriptor.functionOrValue(underlyingDeclaration.getPrefixedName(), tdArgs);
             if(type.getQualifyingType() != null)
@@ -1360,6 +1377,9 @@ public class Metamodel {
      * In theory this can only be used for ClassOrInterface or TypeAlias.
      */
     public static ceylon.language.meta.declaration.NestableDeclaration getOrCreateMetamodel(java.lang.Class<?> klass){
+        ceylon.language.meta.declaration.NestableDeclaration cached = classToDeclaration.get(klass);
+        if(cached != null)
+            return cached;
         synchronized(getLock()){
             ceylon.language.meta.declaration.NestableDeclaration result = classToDeclaration.get(klass);
             if (result == null) {
@@ -20,7 +20,7 @@ public class AliasDeclarationImpl extends NestableDeclarationImpl
 
     private OpenType openType;
 
-    private boolean initialised = false;
+    private volatile boolean initialised = false;
 
     private Sequential<? extends ceylon.language.meta.declaration.TypeParameter> typeParameters;
 
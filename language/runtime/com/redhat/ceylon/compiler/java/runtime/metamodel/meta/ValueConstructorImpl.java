@@ -22,7 +22,7 @@ import com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ValueConstructorDe
 import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
 import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
 import com.redhat.ceylon.model.loader.NamingBase;
-import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
 import com.redhat.ceylon.model.loader.model.JavaBeanValue;
 import com.redhat.ceylon.model.loader.model.LazyValue;
 import com.redhat.ceylon.model.typechecker.model.Class;
@@ -113,7 +113,7 @@ public class ValueConstructorImpl<Get>
                 return m;
             }else if(decl instanceof LazyValue){
                 LazyValue lazyDecl = (LazyValue) decl;
-                java.lang.Class<?> javaClass = ((ReflectionClass)lazyDecl.classMirror).klass;
+                java.lang.Class<?> javaClass = ReflectionUtils.getJavaClass(lazyDecl.classMirror);
                 // FIXME: we should really save the getter name in the LazyDecl
                 getterName = NamingBase.getGetterName(lazyDecl);
                 // toplevels don't have inheritance
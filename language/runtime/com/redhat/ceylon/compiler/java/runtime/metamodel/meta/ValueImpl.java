@@ -24,7 +24,7 @@ import com.redhat.ceylon.compiler.java.runtime.metamodel.decl.ValueDeclarationIm
 import com.redhat.ceylon.compiler.java.runtime.model.ReifiedType;
 import com.redhat.ceylon.compiler.java.runtime.model.TypeDescriptor;
 import com.redhat.ceylon.model.loader.NamingBase;
-import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
 import com.redhat.ceylon.model.loader.model.FieldValue;
 import com.redhat.ceylon.model.loader.model.JavaBeanValue;
 import com.redhat.ceylon.model.loader.model.LazyValue;
@@ -140,7 +140,7 @@ public class ValueImpl<Get, Set>
             }
         }else if(decl instanceof LazyValue){
             LazyValue lazyDecl = (LazyValue) decl;
-            java.lang.Class<?> javaClass = ((ReflectionClass)lazyDecl.classMirror).klass;
+            java.lang.Class<?> javaClass = ReflectionUtils.getJavaClass(lazyDecl.classMirror);
             // FIXME: we should really save the getter name in the LazyDecl
             String getterName = NamingBase.getGetterName(lazyDecl);
             try {
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.redhat.ceylon.model.cmr.ArtifactResult;
 import com.redhat.ceylon.model.cmr.JDKUtils;
@@ -14,7 +15,7 @@ import com.redhat.ceylon.model.loader.LoaderJULLogger;
 import com.redhat.ceylon.model.loader.ModelResolutionException;
 import com.redhat.ceylon.model.loader.impl.reflect.CachedTOCJars;
 import com.redhat.ceylon.model.loader.impl.reflect.ReflectionModelLoader;
-import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMirrors;
 import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
 import com.redhat.ceylon.model.loader.mirror.ClassMirror;
 import com.redhat.ceylon.model.loader.mirror.MethodMirror;
@@ -38,6 +39,7 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
     public static final int JBOSS_MODULES_TIMEOUT = 5000;
     
     private Map<Module,ClassLoader> classLoaders = new HashMap<Module,ClassLoader>();
+    private ConcurrentHashMap<ClassLoader,ClassFileMirrors> classFileMirrors = new ConcurrentHashMap<ClassLoader,ClassFileMirrors>();
     private Map<String, Module> moduleCache = new HashMap<String, Module>();
     private CachedTOCJars jars = new CachedTOCJars();
     private ClassLoader defaultClassLoader;
@@ -95,32 +97,35 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
         this.defaultClassLoader = cl;
     }
 
-    @Override
-    protected Class<?> loadClass(Module module, String name) {
+    /**
+     * Returns the class loader to load the classes of the given module
+     * with, or null if we have none.
+     */
+    private ClassLoader getClassLoader(Module module) {
         ClassLoader classLoader = classLoaders.get(module);
         if(classLoader == null){
             if(JDKUtils.isJDKModule(module.getNameAsString())
                     || JDKUtils.isOracleJDKModule(module.getNameAsString())){
                 // the JDK does not have class loaders so load it from the root class loader
-                try {
-                    return ClassLoader.getSystemClassLoader().loadClass(name);
-                } catch (ClassNotFoundException e) {
-                    return null;
-                }
-            }
-            try{
-                // see if we have an explicit default CL
-                if(defaultClassLoader != null)
-                    return defaultClassLoader.loadClass(name);
-                // for a dynamic CL we can try our own class loader too
-                if(isDynamicMetamodel())
-                    return getClass().getClassLoader().loadClass(name);
-            }catch(ClassNotFoundException|NoClassDefFoundError x){
-                return null;
+                return ClassLoader.getSystemClassLoader();
             }
+            // see if we have an explicit default CL
+            if(defaultClassLoader != null)
+                return defaultClassLoader;
+            // for a dynamic CL we can try our own class loader too
+            if(isDynamicMetamodel())
+                return getClass().getClassLoader();
             // no luck
             return null;
         }
+        return classLoader;
+    }
+
+    @Override
+    protected Class<?> loadClass(Module module, String name) {
+        ClassLoader classLoader = getClassLoader(module);
+        if(classLoader == null)
+            return null;
         try{
             return classLoader.loadClass(name);
         }catch(ClassNotFoundException|NoClassDefFoundError x){
@@ -128,6 +133,22 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
         }
     }
 
+    @Override
+    protected ClassFileMirrors getClassFileMirrors(Module module) {
+        ClassLoader classLoader = getClassLoader(module);
+        if(classLoader == null)
+            return null;
+        // share them between the modules which share a class loader, such as the JDK modules
+        ClassFileMirrors ret = classFileMirrors.get(classLoader);
+        if(ret == null){
+            ret = new ClassFileMirrors(classLoader);
+            ClassFileMirrors previous = classFileMirrors.putIfAbsent(classLoader, ret);
+            if(previous != null)
+                ret = previous;
+        }
+        return ret;
+    }
+
     @Override
     public void addModuleToClassPath(final Module module, ArtifactResult artifact) {
         String cacheKey = cacheKeyByModule(module.getNameAsString(), module.getVersion());
@@ -136,6 +157,7 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
             return;
         jars.addJar(artifact, module);
         if(module instanceof LazyModule){
+            ((LazyModule) module).loadDeclarationIndex(artifact);
             ((LazyModule) module).setPackagePathsProvider(new LazyModule.PackagePathsProvider() {
 				@Override
 				public Set<String> getPackagePaths() {
@@ -151,7 +173,7 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
 
     @Override
     public Module findModuleForClassMirror(ClassMirror classMirror) {
-        Class<?> klass = ((ReflectionClass)classMirror).klass;
+        Class<?> klass = ReflectionUtils.getJavaClass(classMirror);
         Module ret = findModuleForClass(klass);
         if(ret == null)
             throw new ModelResolutionException("Could not find module for class "+klass);
@@ -288,7 +310,7 @@ public class RuntimeModelLoader extends ReflectionModelLoader {
             if(loadCompiledModule(module)){
                 String pkgName = module.getNameAsString();
                 ClassMirror moduleClass = findModuleClass(module, pkgName);
-                Class<?> klass = ((ReflectionClass)moduleClass).klass;
+                Class<?> klass = ReflectionUtils.getJavaClass(moduleClass);
                 String path = klass.getProtectionDomain().getCodeSource().getLocation().getPath();
                 Unit u = new Unit();
                 // FIXME: find path name?
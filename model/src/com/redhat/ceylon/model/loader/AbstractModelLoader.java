@@ -56,6 +56,8 @@ import com.redhat.ceylon.model.loader.model.LazyElement;
 import com.redhat.ceylon.model.loader.model.LazyFunction;
 import com.redhat.ceylon.model.loader.model.LazyInterface;
 import com.redhat.ceylon.model.loader.model.LazyInterfaceAlias;
+import com.redhat.ceylon.model.loader.model.LazyMembers;
+import com.redhat.ceylon.model.loader.model.LazyMembersContainer;
 import com.redhat.ceylon.model.loader.model.LazyModule;
 import com.redhat.ceylon.model.loader.model.LazyPackage;
 import com.redhat.ceylon.model.loader.model.LazyTypeAlias;
@@ -385,6 +387,11 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
      */
     public abstract boolean loadPackage(Module module, String packageName, boolean loadDeclarations);
 
+    /**
+     * The lock held while completing lazy declarations and packages. Lazy
+     * declarations only take it until they are completed, and then read
+     * their volatile completion flags without it.
+     */
     public final Object getLock(){
         return this;
     }
@@ -507,6 +514,23 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                             return cachedMirror;
                         }
                     }
+                    DeclarationIndex index = getDeclarationIndex(module);
+                    if(index != null){
+                        int lastDot = name.lastIndexOf('.');
+                        String pkgName = lastDot == -1 ? "" : name.substring(0, lastDot);
+                        String simpleName = name.substring(lastDot+1);
+                        // the index only knows the toplevels of the module's own packages, so
+                        // let the others be probed for
+                        if(DeclarationIndex.isToplevelClassName(simpleName)
+                                && index.containsPackage(pkgName)){
+                            DeclarationIndex.Entry entry = index.find(pkgName, simpleName);
+                            if(entry == null){
+                                classMirrorCache.put(cacheKey, null);
+                                return null;
+                            }
+                            name = lastDot == -1 ? entry.getClassName() : pkgName + "." + entry.getClassName();
+                        }
+                    }
                     ClassMirror mirror = lookupNewClassMirror(module, name);
                     // we even cache null results
                     classMirrorCache.put(cacheKey, mirror);
@@ -518,6 +542,17 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         });
     }
 
+    /**
+     * Returns the declaration index of the archive of the given
+     * module, if indexes are enabled and it has one, to look up
+     * its toplevel classes without probing for their names.
+     */
+    protected DeclarationIndex getDeclarationIndex(Module module) {
+        if(!DeclarationIndex.isEnabled() || !(module instanceof LazyModule))
+            return null;
+        return ((LazyModule) module).getDeclarationIndex();
+    }
+
     protected String cacheKeyByModule(Module module, String name) {
         return getCacheKeyByModule(module, name);
     }
@@ -2619,6 +2654,30 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         });
     }
 
+    @Override
+    public void completeMembers(final LazyInterface iface, final String name)  {
+        synchronizedRun(new Runnable() {
+            @Override
+            public void run() {
+                timer.startIgnore(TIMER_MODEL_LOADER_CATEGORY);
+                completeMembers(iface, iface.classMirror, name);
+                timer.stopIgnore(TIMER_MODEL_LOADER_CATEGORY);
+            }
+        });
+    }
+
+    @Override
+    public void completeMembers(final LazyClass klass, final String name)  {
+        synchronizedRun(new Runnable() {
+            @Override
+            public void run() {
+                timer.startIgnore(TIMER_MODEL_LOADER_CATEGORY);
+                completeMembers(klass, klass.classMirror, name);
+                timer.stopIgnore(TIMER_MODEL_LOADER_CATEGORY);
+            }
+        });
+    }
+
     @Override
     public void completeTypeParameters(final LazyClass klass)  {
         synchronizedRun(new Runnable() {
@@ -2923,6 +2982,90 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 logWarning("CompanionClass missing for "+klass);
         }
 
+        // Collect the fields we keep
+        List<FieldMirror> fields = new ArrayList<FieldMirror>();
+        for(FieldMirror fieldMirror : classMirror.getDirectFields()){
+            if(keepField(fieldMirror, isCeylon, isFromJDK))
+                fields.add(fieldMirror);
+        }
+
+        // Java members can be completed on demand, by name, once the class is complete
+        LazyMembers lazyMembers = null;
+        if(LazyMembers.isEnabled()
+                && !isCeylon
+                && !isNativeHeaderMember
+                && klass instanceof LazyMembersContainer){
+            lazyMembers = new LazyMembers();
+            for(List<MethodMirror> methodMirrors : methods.values()){
+                for (MethodMirror methodMirror : methodMirrors) {
+                    lazyMembers.addMethod(methodMirror, getLazyMemberNames(methodMirror));
+                }
+            }
+            for(FieldMirror fieldMirror : fields){
+                lazyMembers.addField(fieldMirror, getLazyMemberNames(fieldMirror));
+            }
+        }else{
+            addMembers(klass, classMirror, methods, fields, isCeylon, isFromJDK, isNativeHeaderMember);
+        }
+
+        // Having loaded methods and values, we can now set the constructor parameters
+        if(constructor != null
+                && !isDefaultNamedCtor(classMirror, constructor)
+                && (!(klass instanceof LazyClass) || !((LazyClass)klass).isAnonymous()))
+            setParameters((Class)klass, classMirror, constructor, isCeylon, klass, klass.isCoercionPoint());
+
+        // Now marry-up attributes and parameters)
+        if (klass instanceof Class) {
+            for (Declaration m : klass.getMembers()) {
+                if (JvmBackendUtil.isValue(m)) {
+                    Value v = (Value)m;
+                    Parameter p = ((Class)klass).getParameter(v.getName());
+                    if (p != null) {
+                        p.setHidden(true);
+                    }
+                }
+            }
+        }
+        
+        setExtendedType(klass, classMirror);
+        setSatisfiedTypes(klass, classMirror);
+        setCaseTypes(klass, classMirror);
+        setAnnotations(klass, classMirror, isNativeHeaderMember);
+        if(klass instanceof Interface)
+            klass.setSamName(isFunctionalInterfaceWithExceptions(classMirror));
+        
+        // local declarations come last, because they need all members to be completed first
+        if(!klass.isAlias()){
+            ClassMirror containerMirror = classMirror;
+            if(klass instanceof LazyInterface){
+                ClassMirror companionClass = ((LazyInterface) klass).companionClass;
+                if(companionClass != null)
+                    containerMirror = companionClass;
+            }
+            addLocalDeclarations((LazyContainer) klass, containerMirror, classMirror);
+        }
+        
+        if (!isCeylon) {
+            // In java, a class can inherit a public member from a non-public supertype
+            for (Declaration d : klass.getMembers()) {
+                if (d.isShared()) {
+                    d.setVisibleScope(null);
+                }
+            }
+        }
+        
+        // only now, so that looking up members while completing the class does not complete them
+        if(lazyMembers != null && !lazyMembers.isEmpty())
+            ((LazyMembersContainer)klass).setLazyMembers(lazyMembers);
+    }
+
+    /**
+     * Adds the given methods and fields of a class as its members: getters and setters
+     * become attributes, and the remaining methods become methods.
+     */
+    private void addMembers(ClassOrInterface klass, ClassMirror classMirror, 
+            Map<String, List<MethodMirror>> methods, List<FieldMirror> fields,
+            boolean isCeylon, boolean isFromJDK, boolean isNativeHeaderMember) {
         boolean seenStringAttribute = false;
         boolean seenHashAttribute = false;
         boolean seenStringGetter = false;
@@ -3124,17 +3267,13 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
 
         Set<String> fieldNames = new HashSet<String>();
         // collect field names first
-        for(FieldMirror fieldMirror : classMirror.getDirectFields()){
-            if(!keepField(fieldMirror, isCeylon, isFromJDK))
-                continue;
+        for(FieldMirror fieldMirror : fields){
             // do not change the name case here otherwise it will appear taken by itself
             fieldNames.add(fieldMirror.getName());
         }
 
         // now handle fields
-        for(FieldMirror fieldMirror : classMirror.getDirectFields()){
-            if(!keepField(fieldMirror, isCeylon, isFromJDK))
-                continue;
+        for(FieldMirror fieldMirror : fields){
             String name = fieldMirror.getName();
             if(!isCeylon && !JvmBackendUtil.isInitialLowerCase(name)){
                 String newName = NamingBase.getJavaBeanName(name);
@@ -3271,52 +3410,94 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 abstractionMethod.setType(newUnknownType());
             }
         }
+    }
 
-        // Having loaded methods and values, we can now set the constructor parameters
-        if(constructor != null
-                && !isDefaultNamedCtor(classMirror, constructor)
-                && (!(klass instanceof LazyClass) || !((LazyClass)klass).isAnonymous()))
-            setParameters((Class)klass, classMirror, constructor, isCeylon, klass, klass.isCoercionPoint());
-
-        // Now marry-up attributes and parameters)
-        if (klass instanceof Class) {
-            for (Declaration m : klass.getMembers()) {
-                if (JvmBackendUtil.isValue(m)) {
-                    Value v = (Value)m;
-                    Parameter p = ((Class)klass).getParameter(v.getName());
-                    if (p != null) {
-                        p.setHidden(true);
-                    }
+    /**
+     * Completes the members of a Java class which were left to complete on demand: those
+     * which can be found under the given name, or all of them if the name is null.
+     */
+    private void completeMembers(ClassOrInterface klass, ClassMirror classMirror, String name) {
+        LazyMembersContainer container = (LazyMembersContainer)klass;
+        LazyMembers lazyMembers = container.getLazyMembers();
+        if(lazyMembers == null)
+            return;
+        boolean isFromJDK = isFromJDK(classMirror);
+        List<Declaration> members = container.getCompletedMembers();
+        int completed = members.size();
+        if(name != null){
+            LazyMembers.Group group = lazyMembers.remove(name);
+            if(group != null)
+                addMembers(klass, classMirror, group.getMethods(), group.getFields(), false, isFromJDK, false);
+        }else{
+            LazyMembers.Group group;
+            while((group = lazyMembers.removeFirst()) != null)
+                addMembers(klass, classMirror, group.getMethods(), group.getFields(), false, isFromJDK, false);
+        }
+        for(int i = completed; i < members.size(); i++){
+            Declaration m = members.get(i);
+            // marry-up attributes and parameters, as in complete(), but without Class.getParameter(),
+            // which would complete every member
+            if (klass instanceof Class && JvmBackendUtil.isValue(m)) {
+                Parameter p = getParameter(members, m.getName());
+                if (p != null) {
+                    p.setHidden(true);
                 }
             }
-        }
-        
-        setExtendedType(klass, classMirror);
-        setSatisfiedTypes(klass, classMirror);
-        setCaseTypes(klass, classMirror);
-        setAnnotations(klass, classMirror, isNativeHeaderMember);
-        if(klass instanceof Interface)
-            klass.setSamName(isFunctionalInterfaceWithExceptions(classMirror));
-        
-        // local declarations come last, because they need all members to be completed first
-        if(!klass.isAlias()){
-            ClassMirror containerMirror = classMirror;
-            if(klass instanceof LazyInterface){
-                ClassMirror companionClass = ((LazyInterface) klass).companionClass;
-                if(companionClass != null)
-                    containerMirror = companionClass;
-            }
-            addLocalDeclarations((LazyContainer) klass, containerMirror, classMirror);
-        }
-        
-        if (!isCeylon) {
             // In java, a class can inherit a public member from a non-public supertype
-            for (Declaration d : klass.getMembers()) {
-                if (d.isShared()) {
-                    d.setVisibleScope(null);
-                }
+            if (m.isShared()) {
+                m.setVisibleScope(null);
             }
         }
+        // last, since lookups stop taking the lock once there is nothing left to complete
+        if(lazyMembers.isEmpty())
+            container.setLazyMembers(null);
+    }
+
+    private static Parameter getParameter(List<Declaration> members, String name) {
+        for(Declaration d : members){
+            if(d.isParameter() && ModelUtil.isNamed(name, d))
+                return ((FunctionOrValue)d).getInitializerParameter();
+        }
+        return null;
+    }
+
+    /**
+     * The names under which a Java method can be looked up, or which decide what it
+     * becomes: its Ceylon name, and the name of the attribute it is a getter or setter for.
+     */
+    private String[] getLazyMemberNames(MethodMirror methodMirror) {
+        String methodName = methodMirror.getName();
+        List<String> names = new ArrayList<String>(3);
+        if(methodName.equals("hash")
+                || methodName.equals("string")){
+            names.add(methodName+"_method");
+        }else{
+            String ceylonName = NamingBase.stripLeadingDollar(methodName);
+            if(!JvmBackendUtil.isInitialLowerCase(ceylonName))
+                ceylonName = NamingBase.getJavaBeanName(ceylonName);
+            names.add(ceylonName);
+        }
+        if(isGetter(methodMirror) || isSetter(methodMirror))
+            names.add(getJavaAttributeName(methodMirror));
+        else if(isHashAttribute(methodMirror) || isHashGetter(methodMirror) || isHashSetter(methodMirror))
+            names.add("hash");
+        else if(isStringAttribute(methodMirror) || isStringGetter(methodMirror) || isStringSetter(methodMirror))
+            names.add("string");
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * The names under which a Java field can be looked up, or which decide its name.
+     */
+    private String[] getLazyMemberNames(FieldMirror fieldMirror) {
+        String name = fieldMirror.getName();
+        List<String> names = new ArrayList<String>(2);
+        if(!JvmBackendUtil.isInitialLowerCase(name))
+            names.add(NamingBase.getJavaBeanName(name));
+        String nameAnnotation = getAnnotationStringValue(fieldMirror, CEYLON_NAME_ANNOTATION);
+        if(nameAnnotation != null)
+            names.add(nameAnnotation);
+        return names.toArray(new String[names.size()]);
     }
 
     private boolean addingFieldWouldConflictWithMember(ClassOrInterface klass, String name) {
@@ -6279,6 +6460,8 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 for (String keyToRemove : keysToRemove) {
                     classMirrorCache.remove(keyToRemove);
                 }
+                // the types we resolved may refer to the removed declarations
+                typeParser.clearResolvedTypes();
             }
         });
     }
@@ -6319,6 +6502,8 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 int loaded = inspectForStats(typeDeclarationsByName, loadedByPackage)
                         + inspectForStats(valueDeclarationsByName, loadedByPackage);
                 logVerbose("[Model loader: "+loaded+"(loaded)/"+(typeDeclarationsByName.size()+valueDeclarationsByName.size())+"(total) declarations]");
+                logVerbose("[Model loader: type strings "+typeParser.getParsedTypeHits()+"(hits)/"+typeParser.getParsedTypeMisses()+"(misses) parsed, "
+                        +typeParser.getResolvedTypeHits()+"(hits)/"+typeParser.getResolvedTypeMisses()+"(misses) resolved]");
                 for(Entry<Package, Stats> packageEntry : loadedByPackage.entrySet()){
                     logVerbose("[ Package "+packageEntry.getKey().getNameAsString()+": "
                             +packageEntry.getValue().loaded+"(loaded)/"+packageEntry.getValue().total+"(total) declarations]");
@@ -0,0 +1,331 @@
+package com.redhat.ceylon.model.loader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.redhat.ceylon.langtools.classfile.AccessFlags;
+import com.redhat.ceylon.langtools.classfile.ClassFile;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+
+/**
+ * An index of the toplevel declarations of a module archive,
+ * which the compiler stores in the archive as
+ * {@link #FILE_DECLARATIONS}, so that the model loader can
+ * find the class of a toplevel declaration by its name
+ * without probing for each of the class names it could have
+ * ({@code foo}, {@code foo_}…), and knows that a declaration
+ * is missing from a package of the module without looking.
+ *
+ * The index lists the packages of the module, and for each
+ * package, the kind, name and class name of its toplevel
+ * declarations, including those of its Java classes.
+ * Archives without an index are loaded as before. The model
+ * loader only reads indexes if they are
+ * {@link #setEnabled(boolean) enabled}.
+ */
+public class DeclarationIndex {
+
+    public static final String FILE_DECLARATIONS = "META-INF/declarations.idx";
+
+    private static final int MAGIC = 0x43444958; // CDIX
+    private static final int VERSION = 1;
+
+    private static boolean enabled =
+            Boolean.getBoolean("com.redhat.ceylon.model.loader.DeclarationIndex.enabled");
+
+    public static void setEnabled(boolean enabled) {
+        DeclarationIndex.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public enum Kind {
+        CLASS, INTERFACE, OBJECT, VALUE, FUNCTION, ALIAS, JAVA_CLASS, JAVA_INTERFACE;
+    }
+
+    public static class Entry {
+        private final String name;
+        private final Kind kind;
+        private final String className;
+
+        public Entry(String name, Kind kind, String className) {
+            this.name = name;
+            this.kind = kind;
+            this.className = className;
+        }
+
+        /**
+         * The Ceylon name of the declaration.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The simple name of the class of the declaration,
+         * as it appears in the archive, with its quotes and
+         * suffixes.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + name + " (" + className + ")";
+        }
+    }
+
+    private static class PackageEntries {
+        final List<Entry> entries = new ArrayList<Entry>();
+        /** by Ceylon name and by class name, class names taking precedence */
+        final Map<String,Entry> byName = new HashMap<String,Entry>();
+        final Map<String,Entry> byClassName = new HashMap<String,Entry>();
+
+        void add(Entry entry) {
+            entries.add(entry);
+            if (!byName.containsKey(entry.getName())) {
+                byName.put(entry.getName(), entry);
+            }
+            byName.put(entry.getClassName(), entry);
+            byClassName.put(entry.getClassName(), entry);
+        }
+    }
+
+    private final Map<String,PackageEntries> packages = new LinkedHashMap<String,PackageEntries>();
+
+    /**
+     * Adds an empty package, which makes the index answer
+     * that it has no declarations for that package.
+     */
+    public void addPackage(String pkg) {
+        getOrCreatePackage(pkg);
+    }
+
+    public void add(String pkg, Entry entry) {
+        getOrCreatePackage(pkg).add(entry);
+    }
+
+    /**
+     * Adds the toplevel declaration of the given class file,
+     * if it has one.
+     *
+     * @return true if the class file is a toplevel declaration
+     */
+    public boolean add(ClassFile classFile) throws ConstantPoolException {
+        String internalName = classFile.getName();
+        int lastSlash = internalName.lastIndexOf('/');
+        String className = internalName.substring(lastSlash + 1);
+        if (!isToplevelClassName(className)) {
+            return false;
+        }
+        boolean isInterface = classFile.access_flags.is(AccessFlags.ACC_INTERFACE);
+        Kind kind;
+        if (ClassFileUtil.findAnnotation(classFile, AbstractModelLoader.CEYLON_CEYLON_ANNOTATION) == null) {
+            kind = isInterface ? Kind.JAVA_INTERFACE : Kind.JAVA_CLASS;
+        } else if (ClassFileUtil.findAnnotation(classFile, AbstractModelLoader.CEYLON_IGNORE_ANNOTATION) != null) {
+            return false;
+        } else if (ClassFileUtil.findAnnotation(classFile, AbstractModelLoader.CEYLON_OBJECT_ANNOTATION) != null) {
+            kind = Kind.OBJECT;
+        } else if (ClassFileUtil.findAnnotation(classFile, AbstractModelLoader.CEYLON_ATTRIBUTE_ANNOTATION) != null) {
+            kind = Kind.VALUE;
+        } else if (ClassFileUtil.findAnnotation(classFile, AbstractModelLoader.CEYLON_METHOD_ANNOTATION) != null) {
+            kind = Kind.FUNCTION;
+        } else if (ClassFileUtil.findAnnotation(classFile, AbstractModelLoader.CEYLON_TYPE_ALIAS_ANNOTATION) != null) {
+            kind = Kind.ALIAS;
+        } else {
+            kind = isInterface ? Kind.INTERFACE : Kind.CLASS;
+        }
+        String name = NamingBase.stripLeadingDollar(className);
+        if ((kind == Kind.OBJECT || kind == Kind.VALUE || kind == Kind.FUNCTION)
+                && name.endsWith("_")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        String pkg = lastSlash == -1 ? "" : internalName.substring(0, lastSlash);
+        add(toPackageName(pkg), new Entry(name, kind, className));
+        return true;
+    }
+
+    private PackageEntries getOrCreatePackage(String pkg) {
+        PackageEntries ret = packages.get(pkg);
+        if (ret == null) {
+            ret = new PackageEntries();
+            packages.put(pkg, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns true if the given class name, without its package,
+     * can be the class of a toplevel declaration: member, local
+     * and companion classes have a {@code $} after their first
+     * character, which can only be a quote.
+     */
+    public static boolean isToplevelClassName(String className) {
+        return className.indexOf('$', 1) == -1
+                && !className.equals(NamingBase.MODULE_DESCRIPTOR_CLASS_NAME)
+                && !className.equals(NamingBase.OLD_MODULE_DESCRIPTOR_CLASS_NAME)
+                && !className.equals(NamingBase.PACKAGE_DESCRIPTOR_CLASS_NAME)
+                && !className.equals("module-info")
+                && !className.equals("package-info");
+    }
+
+    /**
+     * Turns a package path, with slashes and quotes, into an
+     * unquoted package name.
+     */
+    public static String toPackageName(String path) {
+        return path.replace("$", "").replace('/', '.');
+    }
+
+    public boolean containsPackage(String pkg) {
+        return packages.containsKey(pkg);
+    }
+
+    public Collection<String> getPackages() {
+        return Collections.unmodifiableSet(packages.keySet());
+    }
+
+    public List<Entry> getDeclarations(String pkg) {
+        PackageEntries entries = packages.get(pkg);
+        return entries != null
+                ? Collections.unmodifiableList(entries.entries)
+                : Collections.<Entry>emptyList();
+    }
+
+    /**
+     * Finds the declaration of the given package with the
+     * given class name, or Ceylon name, with or without its
+     * leading quote.
+     *
+     * @param pkg the unquoted package name
+     * @return the entry, or null if there is none
+     */
+    public Entry find(String pkg, String name) {
+        PackageEntries entries = packages.get(pkg);
+        if (entries == null) {
+            return null;
+        }
+        Entry ret = entries.byName.get(name);
+        if (ret == null && name.startsWith("$")) {
+            ret = entries.byName.get(name.substring(1));
+        }
+        return ret;
+    }
+
+    /**
+     * Finds the declaration of the given package with exactly
+     * the given class name.
+     */
+    public Entry findClass(String pkg, String className) {
+        PackageEntries entries = packages.get(pkg);
+        return entries != null ? entries.byClassName.get(className) : null;
+    }
+
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(packages.size());
+        for (Map.Entry<String,PackageEntries> pkg : packages.entrySet()) {
+            out.writeUTF(pkg.getKey());
+            List<Entry> entries = pkg.getValue().entries;
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.getName());
+                out.writeByte(entry.getKind().ordinal());
+                out.writeUTF(entry.getClassName());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads an index, or returns null if the given stream
+     * is not an index we understand.
+     */
+    public static DeclarationIndex read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        if (in.readInt() != MAGIC
+                || in.readInt() != VERSION) {
+            return null;
+        }
+        Kind[] kinds = Kind.values();
+        DeclarationIndex ret = new DeclarationIndex();
+        int packageCount = in.readInt();
+        for (int i=0; i<packageCount; i++) {
+            PackageEntries pkg = ret.getOrCreatePackage(in.readUTF());
+            int count = in.readInt();
+            for (int j=0; j<count; j++) {
+                String name = in.readUTF();
+                int kind = in.readUnsignedByte();
+                if (kind >= kinds.length) {
+                    return null;
+                }
+                pkg.add(new Entry(name, kinds[kind], in.readUTF()));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads the index of the given module archive, or returns
+     * null if it has none, in which case its declarations have
+     * to be looked up by probing.
+     */
+    public static DeclarationIndex read(ArtifactResult artifact) {
+        try {
+            if (artifact instanceof ContentAwareArtifactResult) {
+                byte[] contents;
+                try {
+                    contents = ((ContentAwareArtifactResult) artifact).getContents(FILE_DECLARATIONS);
+                } catch (RuntimeException e) {
+                    // some of them throw for missing entries
+                    return null;
+                }
+                return contents != null
+                        ? read(new ByteArrayInputStream(contents))
+                        : null;
+            }
+            File file = artifact.artifact();
+            if (file == null
+                    || !file.getName().toLowerCase().endsWith(".car")) {
+                return null;
+            }
+            try (ZipFile zip = new ZipFile(file)) {
+                ZipEntry entry = zip.getEntry(FILE_DECLARATIONS);
+                if (entry == null) {
+                    return null;
+                }
+                try (InputStream is = new BufferedInputStream(zip.getInputStream(entry))) {
+                    return read(is);
+                }
+            }
+        } catch (IOException e) {
+            // a corrupt index is as good as none
+            return null;
+        }
+    }
+}
@@ -40,6 +40,18 @@ public interface ModelCompleter {
      */
     void completeTypeParameters(LazyInterface lazyInterface);
 
+    /**
+     * Completes loading of the members of a Java class which were left to complete on
+     * demand: those which can be found under the given name, or all of them if it is null
+     */
+    void completeMembers(LazyClass lazyClass, String name);
+
+    /**
+     * Completes loading of the members of a Java interface which were left to complete on
+     * demand: those which can be found under the given name, or all of them if it is null
+     */
+    void completeMembers(LazyInterface lazyInterface, String name);
+
     /**
      * Completes loading of a toplevel attribute
      */
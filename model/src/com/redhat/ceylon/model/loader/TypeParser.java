@@ -6,8 +6,9 @@ import static com.redhat.ceylon.model.typechecker.model.ModelUtil.union;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.redhat.ceylon.model.loader.model.FunctionOrValueInterface;
 import com.redhat.ceylon.model.typechecker.model.Declaration;
@@ -106,41 +107,340 @@ public class TypeParser {
     private TypeLexer lexer = new TypeLexer();
     private Scope scope;
     private Module moduleScope;
+    /**
+     * Set while parsing if the type has a base type without a package
+     * qualifier, which can be a type parameter, or a type relative
+     * to the scope we decode it for.
+     */
+    private boolean scopeDependent;
+
+    /**
+     * Type strings parsed into trees, which only depend on the string
+     */
+    private final Map<String, ParsedType> parsedTypes = new HashMap<String, ParsedType>();
+    /**
+     * Types resolved for each module, for the type strings which do not
+     * depend on the scope we decode them for
+     */
+    private final Map<Module, Map<String, Type>> resolvedTypes = new HashMap<Module, Map<String, Type>>();
+    private int parsedTypeHits, parsedTypeMisses;
+    private int resolvedTypeHits, resolvedTypeMisses;
 
     public TypeParser(ModelLoader loader){
         this.loader = loader;
     }
     
+    /**
+     * Decodes the given type string in the given scope. The unit must be the
+     * unit of the given module, as we cache the types we resolve per module.
+     */
     public Type decodeType(String type, Scope scope, Module moduleScope, Unit unit){
+        ParsedType parsedType = parse(type);
+        Map<String, Type> moduleTypes = null;
+        if(isCacheable(parsedType, scope, moduleScope)){
+            moduleTypes = resolvedTypes.get(moduleScope);
+            if(moduleTypes == null){
+                moduleTypes = new HashMap<String, Type>();
+                resolvedTypes.put(moduleScope, moduleTypes);
+            }else{
+                Type ret = moduleTypes.get(type);
+                if(ret != null){
+                    resolvedTypeHits++;
+                    return ret;
+                }
+            }
+            resolvedTypeMisses++;
+        }
         // save the previous state (this method is reentrant)
-        char[] oldType = lexer.type;
-        int oldIndex = lexer.index;
-        int oldMark = lexer.mark;
         Scope oldScope = this.scope;
         Module oldModuleScope = this.moduleScope;
         Unit oldUnit = this.unit;
         try{
             // setup the new state
-            lexer.setup(type);
             this.scope = scope;
             this.moduleScope = moduleScope;
             this.unit = unit;
-            // do the parsing
-            Type ret = parseType();
-            if(!lexer.lookingAt(TypeLexer.EOT))
-                throw new TypeParserException("Junk lexemes remaining: "+lexer.eatTokenString());
+            // do the resolving
+            Type ret = parsedType.type.resolve(this);
+            if(moduleTypes != null){
+                // callers must clone it before they modify it
+                ret.setCached();
+                moduleTypes.put(type, ret);
+            }
             return ret;
         }finally{
             // restore the previous state
-            lexer.type = oldType;
-            lexer.index = oldIndex;
-            lexer.mark = oldMark;
             this.scope = oldScope;
             this.moduleScope = oldModuleScope;
             this.unit = oldUnit;
         }
     }
 
+    /**
+     * Resolving a type which only has package-qualified base types only
+     * depends on the module of its scope, so we can share it with every
+     * scope of that module.
+     */
+    private static boolean isCacheable(ParsedType parsedType, Scope scope, Module moduleScope) {
+        if(parsedType.scopeDependent
+                || scope == null
+                || moduleScope == null)
+            return false;
+        // the model loader looks up the package members in the module of the scope
+        Package pkg = ModelUtil.getPackageContainer(scope);
+        return pkg != null && pkg.getModule() == moduleScope;
+    }
+
+    private ParsedType parse(String type){
+        ParsedType ret = parsedTypes.get(type);
+        if(ret != null){
+            parsedTypeHits++;
+            return ret;
+        }
+        parsedTypeMisses++;
+        // parsing never calls the model loader, so it is not reentrant
+        lexer.setup(type);
+        scopeDependent = false;
+        TypeNode node = parseType();
+        if(!lexer.lookingAt(TypeLexer.EOT))
+            throw new TypeParserException("Junk lexemes remaining: "+lexer.eatTokenString());
+        ret = new ParsedType(node, scopeDependent);
+        parsedTypes.put(type, ret);
+        return ret;
+    }
+
+    /**
+     * Forgets the types we resolved, for when declarations are removed
+     * from the model.
+     */
+    public void clearResolvedTypes(){
+        resolvedTypes.clear();
+    }
+
+    public int getParsedTypeHits() {
+        return parsedTypeHits;
+    }
+
+    public int getParsedTypeMisses() {
+        return parsedTypeMisses;
+    }
+
+    public int getResolvedTypeHits() {
+        return resolvedTypeHits;
+    }
+
+    public int getResolvedTypeMisses() {
+        return resolvedTypeMisses;
+    }
+
+    /**
+     * A type string parsed into a tree of {@link TypeNode}.
+     */
+    static final class ParsedType {
+        final TypeNode type;
+        final boolean scopeDependent;
+        ParsedType(TypeNode type, boolean scopeDependent) {
+            this.type = type;
+            this.scopeDependent = scopeDependent;
+        }
+    }
+
+    /**
+     * An immutable node of a parsed type string, which we resolve to a
+     * {@link Type} in the current scope of the parser.
+     */
+    static abstract class TypeNode {
+        abstract Type resolve(TypeParser parser);
+    }
+
+    static List<Type> resolveAll(TypeParser parser, List<TypeNode> nodes) {
+        List<Type> ret = new ArrayList<Type>(nodes.size());
+        for(TypeNode node : nodes)
+            ret.add(node.resolve(parser));
+        return ret;
+    }
+
+    static final class EntryNode extends TypeNode {
+        final TypeNode key, item;
+        EntryNode(TypeNode key, TypeNode item) {
+            this.key = key;
+            this.item = item;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            Type keyType = key.resolve(parser);
+            return parser.unit.getEntryType(keyType, item.resolve(parser));
+        }
+    }
+
+    static final class UnionNode extends TypeNode {
+        final List<TypeNode> caseTypes;
+        UnionNode(List<TypeNode> caseTypes) {
+            this.caseTypes = caseTypes;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            return union(resolveAll(parser, caseTypes), parser.unit);
+        }
+    }
+
+    static final class IntersectionNode extends TypeNode {
+        final List<TypeNode> satisfiedTypes;
+        IntersectionNode(List<TypeNode> satisfiedTypes) {
+            this.satisfiedTypes = satisfiedTypes;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            return intersection(resolveAll(parser, satisfiedTypes), parser.unit);
+        }
+    }
+
+    static final class CallableNode extends TypeNode {
+        final TypeNode returnType, arguments;
+        CallableNode(TypeNode returnType, TypeNode arguments) {
+            this.returnType = returnType;
+            this.arguments = arguments;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            Type primaryType = returnType.resolve(parser);
+            return parser.unit.getCallableDeclaration().appliedType(null, Arrays.asList(primaryType, arguments.resolve(parser)));
+        }
+    }
+
+    static final class SequenceNode extends TypeNode {
+        final TypeNode elementType;
+        /** The length of a {@code X[123]} tuple, or -1 for a {@code X[]} sequential */
+        final int length;
+        SequenceNode(TypeNode elementType, int length) {
+            this.elementType = elementType;
+            this.length = length;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            Type element = elementType.resolve(parser);
+            Unit unit = parser.unit;
+            if(length < 0)
+                return unit.getSequentialType(element);
+            Type result = unit.getEmptyType();
+            for(int i=0;i<length;i++)
+                result = unit.getTupleDeclaration().appliedType(null, Arrays.asList(element, element, result));
+            return result;
+        }
+    }
+
+    static final class OptionalNode extends TypeNode {
+        final TypeNode type;
+        OptionalNode(TypeNode type) {
+            this.type = type;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            return parser.unit.getOptionalType(type.resolve(parser));
+        }
+    }
+
+    static final class IterableNode extends TypeNode {
+        final TypeNode iterated;
+        final boolean nonempty;
+        IterableNode(TypeNode iterated, boolean nonempty) {
+            this.iterated = iterated;
+            this.nonempty = nonempty;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            Type iteratedType = iterated.resolve(parser);
+            return nonempty ? parser.unit.getNonemptyIterableType(iteratedType) : parser.unit.getIterableType(iteratedType);
+        }
+    }
+
+    static final class EmptyNode extends TypeNode {
+        static final EmptyNode instance = new EmptyNode();
+        @Override
+        Type resolve(TypeParser parser) {
+            return parser.unit.getEmptyType();
+        }
+    }
+
+    static final class TupleNode extends TypeNode {
+        final List<TypeNode> types;
+        final boolean variadic;
+        final boolean atLeastOne;
+        final int defaulted;
+        TupleNode(List<TypeNode> types, boolean variadic, boolean atLeastOne, int defaulted) {
+            this.types = types;
+            this.variadic = variadic;
+            this.atLeastOne = atLeastOne;
+            this.defaulted = defaulted;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            return parser.new TypeList(resolveAll(parser, types), variadic, atLeastOne, defaulted).asTuple();
+        }
+    }
+
+    /**
+     * A type name with its type arguments, which we resolve to a {@link Part}
+     */
+    static final class PartNode {
+        final String name;
+        final List<TypeNode> parameters;
+        final List<SiteVariance> variance;
+        PartNode(String name, List<TypeNode> parameters, List<SiteVariance> variance) {
+            this.name = name;
+            this.parameters = parameters;
+            this.variance = variance;
+        }
+        Part resolve(TypeParser parser) {
+            Part part = parser.new Part(name);
+            if(parameters != null)
+                part.parameters = resolveAll(parser, parameters);
+            part.variance = variance;
+            return part;
+        }
+    }
+
+    static final class QualifiedNode extends TypeNode {
+        /** The package qualifier, or null if we have a grouped base type */
+        final String pkg;
+        final TypeNode groupedType;
+        final List<PartNode> parts;
+        QualifiedNode(String pkg, TypeNode groupedType, List<PartNode> parts) {
+            this.pkg = pkg;
+            this.groupedType = groupedType;
+            this.parts = parts;
+        }
+        @Override
+        Type resolve(TypeParser parser) {
+            String pkg;
+            String fullName;
+            Type qualifyingType;
+            int i = 0;
+            if(groupedType != null){
+                pkg = "";
+                fullName = "";
+                qualifyingType = groupedType.resolve(parser);
+            }else{
+                pkg = this.pkg;
+                Part part = parts.get(i++).resolve(parser);
+                fullName = (pkg.isEmpty()) ? part.name : pkg + "." + part.name;
+                qualifyingType = parser.loadType(pkg, fullName, part, null);
+                if(qualifyingType == null){
+                    throw new ModelResolutionException("Could not find type '"+fullName+"'");
+                }
+            }
+            for(;i<parts.size();i++){
+                Part part = parts.get(i).resolve(parser);
+                fullName = fullName + '.' + part.name;
+                qualifyingType = parser.loadType(pkg, fullName, part, qualifyingType);
+            }
+            if(qualifyingType == null){
+                throw new ModelResolutionException("Could not find type '"+fullName+"'");
+            }
+            return qualifyingType;
+        }
+    }
+
     /**
      * <blockquote><pre>
      * Type: UnionType | EntryType
@@ -151,11 +451,11 @@ public class TypeParser {
      * type: unionType | entryType EOT
      * entryType: unionType -> unionType
      */
-    private Type parseType(){
-        Type type = parseUnionType();
+    private TypeNode parseType(){
+        TypeNode type = parseUnionType();
         if (lexer.lookingAt(TypeLexer.THIN_ARROW)) {
             lexer.eat(TypeLexer.THIN_ARROW);
-            type = unit.getEntryType(type, parseUnionType()); 
+            type = new EntryNode(type, parseUnionType());
         }
         return type;
     }
@@ -168,16 +468,16 @@ public class TypeParser {
     /*
      * unionType: intersectionType (| intersectionType)*
      */
-    private Type parseUnionType() {
-        Type firstType = parseIntersectionType();
+    private TypeNode parseUnionType() {
+        TypeNode firstType = parseIntersectionType();
         if(lexer.lookingAt(TypeLexer.OR)){
-            List<Type> caseTypes = new LinkedList<Type>();
+            List<TypeNode> caseTypes = new ArrayList<TypeNode>();
             caseTypes.add(firstType);
             while(lexer.lookingAt(TypeLexer.OR)){
                 lexer.eat();
                 caseTypes.add(parseIntersectionType());
             }
-            return union(caseTypes, unit);
+            return new UnionNode(caseTypes);
         }else{
             return firstType;
         }
@@ -191,16 +491,16 @@ public class TypeParser {
     /*
      *  intersectionType: qualifiedType (& qualifiedType)*
      */
-    private Type parseIntersectionType() {
-        Type firstType = parsePrimaryType();
+    private TypeNode parseIntersectionType() {
+        TypeNode firstType = parsePrimaryType();
         if(lexer.lookingAt(TypeLexer.AND)){
-            List<Type> satisfiedTypes = new LinkedList<Type>();
+            List<TypeNode> satisfiedTypes = new ArrayList<TypeNode>();
             satisfiedTypes.add(firstType);
             while(lexer.lookingAt(TypeLexer.AND)){
                 lexer.eat();
                 satisfiedTypes.add(parsePrimaryType());
             }
-            return intersection(satisfiedTypes, unit);
+            return new IntersectionNode(satisfiedTypes);
         }else{
             return firstType;
         }
@@ -218,8 +518,8 @@ public class TypeParser {
      */
     /* primaryType: compoundQualifiedType | simpleQualifiedType
      */
-    private Type parsePrimaryType() {
-        Type type = parseAtomicType();
+    private TypeNode parsePrimaryType() {
+        TypeNode type = parseAtomicType();
         // PrimaryType
         type = parsePrimaryType(type);
         return type;
@@ -233,8 +533,8 @@ public class TypeParser {
      * We implement this, but we've merged {@code EmptyType} and {@code TupleType}
      * in {@link #parseEmptyOrTupleType()}
      */
-    protected Type parseAtomicType() {
-        Type type;
+    protected TypeNode parseAtomicType() {
+        TypeNode type;
         if (lexer.lookingAt(TypeLexer.OPEN_SQ)) {
             type = parseEmptyOrTupleType();
         } else if (lexer.lookingAt(TypeLexer.OPEN_BR)) {
@@ -253,7 +553,7 @@ public class TypeParser {
      * We rely on our caller to have parsed the "primary type" and just handle
      * the postfix {@code ?}, {@code [...]} or {@code (...)}
      */
-    protected Type parsePrimaryType(Type type) {
+    protected TypeNode parsePrimaryType(TypeNode type) {
         while (lexer.lookingAt(TypeLexer.QN)
                 || lexer.lookingAt(TypeLexer.OPEN_SQ)
                 || lexer.lookingAt(TypeLexer.OPEN_PAR)) {
@@ -277,22 +577,21 @@ public class TypeParser {
      * We rely on our caller to have parsed the primary type, and just handle 
      * the parenthesized argument list type.
      */
-    private Type parseCallableType(Type primaryType) {
+    private TypeNode parseCallableType(TypeNode primaryType) {
         lexer.eat(TypeLexer.OPEN_PAR);
-        Type arguments;
+        TypeNode arguments;
         if (lexer.lookingAt(TypeLexer.STAR)) {
             lexer.eat(TypeLexer.STAR);
             arguments = parseUnionType();
         } else {
             if (!lexer.lookingAt(TypeLexer.CLOSE_PAR)) {
-                TypeList typeList = parseTypeList();
-                arguments = typeList.asTuple();
+                arguments = parseTypeList();
             } else {
-                arguments = unit.getEmptyType();
+                arguments = EmptyNode.instance;
             }
         }
         lexer.eat(TypeLexer.CLOSE_PAR);
-        return unit.getCallableDeclaration().appliedType(null, Arrays.asList(primaryType, arguments));
+        return new CallableNode(primaryType, arguments);
     }
 
     /**
@@ -306,18 +605,14 @@ public class TypeParser {
      * </blockquote></pre>
      * because it's more easily done here.
      */
-    private Type parseSequenceType(Type elementType) {
+    private TypeNode parseSequenceType(TypeNode elementType) {
         lexer.eat(TypeLexer.OPEN_SQ);
-        Type result;
+        TypeNode result;
         if (lexer.lookingAt(TypeLexer.WORD)) {
             int length = lexer.eatDigits();
-            result = unit.getEmptyType();
-            while (length > 0) {
-                result = unit.getTupleDeclaration().appliedType(null, Arrays.asList(elementType, elementType, result));
-                length--;
-            }
+            result = new SequenceNode(elementType, Math.max(length, 0));
         } else {
-            result = unit.getSequentialType(elementType);
+            result = new SequenceNode(elementType, -1);
         }
         lexer.eat(TypeLexer.CLOSE_SQ);
         return result;
@@ -330,9 +625,9 @@ public class TypeParser {
      * </pre></blockquote>
      * We rely on our caller to have parsed the primary type
      */
-    private Type parseOptionalType(Type type) {
+    private TypeNode parseOptionalType(TypeNode type) {
         lexer.eat(TypeLexer.QN);
-        return unit.getOptionalType(type);
+        return new OptionalNode(type);
     }
 
     /**
@@ -341,16 +636,16 @@ public class TypeParser {
      * IterableType: "{" UnionType ("*"|"+") "}"
      * </blockquote></pre>
      */
-    private Type parseIterableAbbreviatedType() {
+    private TypeNode parseIterableAbbreviatedType() {
         lexer.eat(TypeLexer.OPEN_BR);
-        Type iterated = parseUnionType();
-        Type result = null;
+        TypeNode iterated = parseUnionType();
+        TypeNode result = null;
         if (lexer.lookingAt(TypeLexer.PLUS)) {
             lexer.eat(TypeLexer.PLUS);
-            result = unit.getNonemptyIterableType(iterated);
+            result = new IterableNode(iterated, true);
         } else if (lexer.lookingAt(TypeLexer.STAR)) {
             lexer.eat(TypeLexer.STAR);
-            result = unit.getIterableType(iterated);
+            result = new IterableNode(iterated, false);
         } else {
             throw new TypeParserException("Expected multiplicity in abbreviated Iterable type: "+lexer.index);
         }
@@ -365,15 +660,14 @@ public class TypeParser {
      * TupleType: "[" TypeList "]" | PrimaryType "[" DecimalLiteral "]"
      * </blockquote></pre>
      * This method doesn't handle the {@code X[123]} alternative of 
-     * TupleType, that's done in {@link #parseSequenceType(Type)} instead.
+     * TupleType, that's done in {@link #parseSequenceType(TypeNode)} instead.
      */
-    private Type parseEmptyOrTupleType() {
+    private TypeNode parseEmptyOrTupleType() {
         lexer.eat(TypeLexer.OPEN_SQ);
         if (lexer.lookingAt(TypeLexer.CLOSE_SQ)) {
             return parseEmptyType();
         }
-        TypeList typeList = parseTypeList();
-        final Type result = typeList.asTuple();
+        final TypeNode result = parseTypeList();
         lexer.eat(TypeLexer.CLOSE_SQ);
         return result;
     }
@@ -384,9 +678,9 @@ public class TypeParser {
      * EmptyType: "[" "]"
      * </blockquote></pre>
      */
-    protected Type parseEmptyType() {
+    protected TypeNode parseEmptyType() {
         lexer.eat(TypeLexer.CLOSE_SQ);
-        return unit.getEmptyType();
+        return EmptyNode.instance;
     }
     
     /**
@@ -503,9 +797,10 @@ public class TypeParser {
      * DefaultedType: Type "="?
      * VariadicType: UnionType ("*" | "+")
      * </blockquote></pre>
+     * We return it as the tuple type it stands for.
      */
-    private TypeList parseTypeList() {
-        ArrayList<Type> types= new ArrayList<>();
+    private TupleNode parseTypeList() {
+        ArrayList<TypeNode> types= new ArrayList<>();
         int defaulted = 0;
         types.add(parseType());
         if (lexer.lookingAt(TypeLexer.EQ)){
@@ -541,7 +836,7 @@ public class TypeParser {
             variadic = false;
             atLeastOne = false;
         }
-        return new TypeList(types, variadic, atLeastOne, defaulted);
+        return new TupleNode(types, variadic, atLeastOne, defaulted);
     }
 
     /**
@@ -550,9 +845,9 @@ public class TypeParser {
      * GroupedType: "<" Type ">"
      * </pre></blockquote>
      */
-    private Type parseGroupedType() {
+    private TypeNode parseGroupedType() {
         lexer.eat(TypeLexer.LT);
-        Type unionType = parseType();
+        TypeNode unionType = parseType();
         lexer.eat(TypeLexer.GT);
         return unionType;
     }
@@ -570,64 +865,27 @@ public class TypeParser {
      * {@code package.qualification::}, which the spec doesn't 
      * have to cover at all.
      */
-    private Type parseQualifiedType() {
-        Type baseType;
+    private TypeNode parseQualifiedType() {
+        String pkg = null;
+        TypeNode groupedType = null;
+        List<PartNode> parts = new ArrayList<PartNode>();
         if (lexer.lookingAt(TypeLexer.LT)){
-            baseType = parseGroupedType();
+            groupedType = parseGroupedType();
         } else {
-            BaseType bt = parseBaseType();
-            
-            String fullName = bt.fullName;
-            Type qualifyingType = bt.qualifyingType;
-            while(lexer.lookingAt(TypeLexer.DOT)){
-                lexer.eat();
-                Part part = parseTypeNameWithArguments();
-                fullName = fullName + '.' + part.name;
-                qualifyingType = loadType(bt.pkg, fullName, part, qualifyingType);
-            }
-            if(qualifyingType == null){
-                throw new ModelResolutionException("Could not find type '"+fullName+"'");
-            }
-            if(qualifyingType instanceof Type == false){
-                throw new ModelResolutionException("Type is a declaration (should be a Type): '"+fullName+"'");
-            }
-            baseType = (Type) qualifyingType;
+            pkg = parseBaseType(parts);
         }
-        
-        Part part;
-        String fullName = "";
-        Type qualifyingType = baseType;
         while(lexer.lookingAt(TypeLexer.DOT)){
             lexer.eat();
-            part = parseTypeNameWithArguments();
-            fullName = fullName + '.' + part.name;
-            qualifyingType = loadType("", fullName, part, qualifyingType);
-        }
-        if(qualifyingType == null){
-            throw new ModelResolutionException("Could not find type '"+fullName+"'");
+            parts.add(parseTypeNameWithArguments());
         }
-        if(qualifyingType instanceof Type == false){
-            throw new ModelResolutionException("Type is a declaration (should be a Type): '"+fullName+"'");
-        }
-        return (Type) qualifyingType;
+        return new QualifiedNode(pkg, groupedType, parts);
     }
     
     /**
-     * Helper for parsing base types.
+     * Parses the package qualifier and the type name, and returns the
+     * package name.
      */
-    static class BaseType {
-        String pkg;
-        String fullName;
-        Type qualifyingType;
-        public BaseType(String pkg, Type qualifyingType, String fullName) {
-            super();
-            this.pkg = pkg;
-            this.qualifyingType = qualifyingType;
-            this.fullName = fullName;
-        }
-    }
-    
-    private BaseType parseBaseType() {
+    private String parseBaseType(List<PartNode> parts) {
         
         String pkg;
         
@@ -641,18 +899,14 @@ public class TypeParser {
             lexer.eat(TypeLexer.DBLCOLON);
             pkg = pkgstr.toString();
         } else {
-            // type is in default package
+            // type is in default package, or is a type parameter
             pkg = "";
+            scopeDependent = true;
         }
         
         // then the type itself
-        Part part = parseTypeNameWithArguments();
-        String fullName = (pkg.isEmpty()) ? part.name : pkg + "." + part.name;
-        Type qualifyingType = loadType(pkg, fullName, part, null);
-        if(qualifyingType == null){
-            throw new ModelResolutionException("Could not find type '"+fullName+"'");
-        }
-        return new BaseType(pkg, qualifyingType, fullName);
+        parts.add(parseTypeNameWithArguments());
+        return pkg;
     }
 
     private boolean hasPackage() {
@@ -739,22 +993,23 @@ public class TypeParser {
      * Variance: ("out" | "in")?
      * </pre></blockquote>
      */
-    private Part parseTypeNameWithArguments() {
-        Part type = new Part();
-        type.name = lexer.eatWord();
+    private PartNode parseTypeNameWithArguments() {
+        String name = lexer.eatWord();
+        List<TypeNode> parameters = null;
+        List<SiteVariance> variance = null;
         if(lexer.lookingAt(TypeLexer.LT)){
             lexer.eat();
-            parseTypeArgumentVariance(type);
-            type.parameters = new LinkedList<Type>();
-            type.parameters.add(parseType());
+            parameters = new ArrayList<TypeNode>();
+            variance = parseTypeArgumentVariance(variance, parameters.size());
+            parameters.add(parseType());
             while(lexer.lookingAt(TypeLexer.COMMA)){
                 lexer.eat();
-                parseTypeArgumentVariance(type);
-                type.parameters.add(parseType());
+                variance = parseTypeArgumentVariance(variance, parameters.size());
+                parameters.add(parseType());
             }
             lexer.eat(TypeLexer.GT);
         }
-        return type;
+        return new PartNode(name, parameters, variance);
     }
 
     /**
@@ -762,9 +1017,10 @@ public class TypeParser {
      * <blockquote><pre>
      * Variance: ("out" | "in")?
      * </blockquote></pre>
-     * Which is what we do, but by updating the given part.
+     * Which is what we do, but by returning the variance list of the
+     * type arguments, or null if none of them have variance so far.
      */
-    private void parseTypeArgumentVariance(Part type) {
+    private List<SiteVariance> parseTypeArgumentVariance(List<SiteVariance> varianceList, int previousParameters) {
         SiteVariance variance = null;
         if(lexer.lookingAt(TypeLexer.OUT)){
             variance = SiteVariance.OUT;
@@ -774,17 +1030,18 @@ public class TypeParser {
             lexer.eat();
         }
         // lazy allocation
-        if(variance != null && type.variance == null){
-            type.variance = new LinkedList<SiteVariance>();
-            for(int i=0,l=type.getParameters().size();i<l;i++){
+        if(variance != null && varianceList == null){
+            varianceList = new ArrayList<SiteVariance>();
+            for(int i=0;i<previousParameters;i++){
                 // patch it up for the previous type params which did not have variance
-                type.variance.add(null);
+                varianceList.add(null);
             }
         }
         // only add the variance if we have to
-        if(type.variance != null){
+        if(varianceList != null){
             // we add it even if it's null, as long as we're recording variance
-            type.variance.add(variance);
+            varianceList.add(variance);
         }
+        return varianceList;
     }
 }
@@ -12,8 +12,11 @@ import com.redhat.ceylon.common.log.Logger;
 import com.redhat.ceylon.model.cmr.JDKUtils;
 import com.redhat.ceylon.model.cmr.JDKUtils.JDK;
 import com.redhat.ceylon.model.loader.AbstractModelLoader;
+import com.redhat.ceylon.model.loader.DeclarationIndex;
 import com.redhat.ceylon.model.loader.Timer;
 import com.redhat.ceylon.model.loader.TypeParser;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMethod;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMirrors;
 import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
 import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionMethod;
 import com.redhat.ceylon.model.loader.mirror.ClassMirror;
@@ -67,6 +70,16 @@ public abstract class ReflectionModelLoader extends AbstractModelLoader {
     protected abstract boolean packageExists(Module module, String packageName);
     protected abstract Class<?> loadClass(Module module, String name);
 
+    /**
+     * Returns the mirrors read from the class files visible to
+     * the given module, or null if we can only use reflection
+     * for that module. Only used if {@link ClassFileMirrors} are
+     * enabled.
+     */
+    protected ClassFileMirrors getClassFileMirrors(Module module) {
+        return null;
+    }
+
     @Override
     public void loadStandardModules() {
         super.loadStandardModules();
@@ -83,6 +96,7 @@ public abstract class ReflectionModelLoader extends AbstractModelLoader {
         // abort if we already loaded it, but only record that we loaded it if we want
         // to load the declarations, because merely calling complete() on the package
         // is OK
+        String unquotedPackageName = packageName;
         packageName = JVMModuleUtil.quoteJavaKeywords(packageName);
         if(loadDeclarations && !loadedPackages.add(cacheKeyByModule(module, packageName))){
             return true;
@@ -90,9 +104,21 @@ public abstract class ReflectionModelLoader extends AbstractModelLoader {
         if(!packageExists(module, packageName))
             return false;
         if(loadDeclarations){
-            // HUGE HACK because JBoss modules hides this package at runtime
-            if(!packageName.startsWith("org.jboss.modules._private.")
+            DeclarationIndex index = getDeclarationIndex(module);
+            if(index != null && index.containsPackage(unquotedPackageName)){
+                // the index already skipped everything which is not a toplevel
+                for(DeclarationIndex.Entry entry : index.getDeclarations(unquotedPackageName)){
+                    String className = packageName.isEmpty() 
+                            ? entry.getClassName() 
+                            : packageName + "." + entry.getClassName();
+                    if(!isLoadedFromSource(className) 
+                            && (!className.endsWith("_") || !isLoadedFromSource(className.substring(0, className.length()-1)))
+                            && !isTypeHidden(module, className))
+                        convertToDeclaration(module, className, DeclarationType.TYPE);
+                }
+            }else if(!packageName.startsWith("org.jboss.modules._private.")
                     && !packageName.equals("org.jboss.modules._private")){
+                // HUGE HACK because JBoss modules hides this package at runtime
                 for(String file : getPackageList(module, packageName)){
                     // ignore non-class stuff
                     if(!file.toLowerCase().endsWith(".class"))
@@ -132,6 +158,18 @@ public abstract class ReflectionModelLoader extends AbstractModelLoader {
 
     @Override
     public ClassMirror lookupNewClassMirror(Module module, String name) {
+        if(ClassFileMirrors.isEnabled()){
+            ClassFileMirrors classFileMirrors = getClassFileMirrors(module);
+            if(classFileMirrors != null){
+                ClassMirror ret = classFileMirrors.getClassMirror(JVMModuleUtil.quoteJavaKeywords(name));
+                if (ret == null && lastPartHasLowerInitial(name) && !name.endsWith("_")) {
+                    ret = classFileMirrors.getClassMirror(JVMModuleUtil.quoteJavaKeywords(name+"_"));
+                }
+                // fall back to reflection for classes we have no class file for
+                if(ret != null)
+                    return ret;
+            }
+        }
         Class<?> klass = null;
         // first try with the same name, for Java interop with classes with lowercase name
         klass = loadClass(module, JVMModuleUtil.quoteJavaKeywords(name));
@@ -156,6 +194,8 @@ public abstract class ReflectionModelLoader extends AbstractModelLoader {
     
     @Override
     protected boolean isOverridingMethod(MethodMirror methodSymbol) {
+        if(methodSymbol instanceof ClassFileMethod)
+            return isOverridingMethod((ClassFileMethod)methodSymbol);
         final Member method = ((ReflectionMethod)methodSymbol).method;
         if (method.getDeclaringClass().getName().contentEquals("ceylon.language.Identifiable")) {
             if (method.getName().contentEquals("equals") || method.getName().contentEquals("hashCode")) {
@@ -170,8 +210,25 @@ public abstract class ReflectionModelLoader extends AbstractModelLoader {
         return ((ReflectionMethod)methodSymbol).isOverridingMethod();
     }
     
+    private boolean isOverridingMethod(ClassFileMethod method) {
+        String declaringClass = method.getEnclosingClass().getQualifiedName();
+        if (declaringClass.equals("ceylon.language.Identifiable")) {
+            if (method.getName().equals("equals") || method.getName().equals("hashCode")) {
+                return true;
+            }
+        }
+        if (declaringClass.equals("ceylon.language.Object")) {
+            if (method.getName().equals("equals") || method.getName().equals("hashCode") || method.getName().equals("toString")) {
+                return false;
+            }
+        }
+        return method.isOverridingMethod();
+    }
+    
     @Override
     protected boolean isOverloadingMethod(MethodMirror methodSymbol) {
+        if(methodSymbol instanceof ClassFileMethod)
+            return ((ClassFileMethod)methodSymbol).isOverloadingMethod();
         return ((ReflectionMethod)methodSymbol).isOverloadingMethod();
     }
 
@@ -0,0 +1,68 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import com.redhat.ceylon.langtools.classfile.Annotation;
+import com.redhat.ceylon.langtools.classfile.Annotation.element_value_pair;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+
+/**
+ * An annotation mirror read from a class file. Like
+ * {@link com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionAnnotation},
+ * it answers the default value of a member which is not
+ * specified, which is read from the class file of the
+ * annotation type.
+ */
+public class ClassFileAnnotation implements AnnotationMirror {
+
+    private final ClassFileClass context;
+    private final Annotation annotation;
+    private final String type;
+
+    ClassFileAnnotation(ClassFileClass context, Annotation annotation) {
+        this.context = context;
+        this.annotation = annotation;
+        try{
+            this.type = ClassFileUtils.toClassName(context.getConstantPool().getUTF8Value(annotation.type_index));
+        }catch(ConstantPoolException x){
+            throw context.brokenClassFile(x);
+        }
+    }
+
+    /**
+     * Returns the name of the annotation type.
+     */
+    String getType() {
+        return type;
+    }
+
+    @Override
+    public Object getValue(String fieldName) {
+        try{
+            for(element_value_pair pair : annotation.element_value_pairs){
+                if(context.getConstantPool().getUTF8Value(pair.element_name_index).equals(fieldName))
+                    return ClassFileUtils.getAnnotationValue(context, pair.value);
+            }
+        }catch(ConstantPoolException x){
+            throw context.brokenClassFile(x);
+        }
+        ClassMirror annotationType = context.mirrors.getReferencedClassMirror(type, context);
+        if(annotationType instanceof ClassFileClass){
+            for(ClassFileMethod method : ((ClassFileClass) annotationType).getAllMethods()){
+                if(method.getRawName().equals(fieldName))
+                    return method.getDefaultValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object getValue() {
+        return getValue("value");
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileAnnotation: "+type+"]";
+    }
+}
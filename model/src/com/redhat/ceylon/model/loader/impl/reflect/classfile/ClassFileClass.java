@@ -0,0 +1,533 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.langtools.classfile.AccessFlags;
+import com.redhat.ceylon.langtools.classfile.Attribute;
+import com.redhat.ceylon.langtools.classfile.ClassFile;
+import com.redhat.ceylon.langtools.classfile.ConstantPool;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.langtools.classfile.EnclosingMethod_attribute;
+import com.redhat.ceylon.langtools.classfile.Field;
+import com.redhat.ceylon.langtools.classfile.InnerClasses_attribute;
+import com.redhat.ceylon.langtools.classfile.Method;
+import com.redhat.ceylon.langtools.classfile.Signature_attribute;
+import com.redhat.ceylon.langtools.classfile.Type;
+import com.redhat.ceylon.langtools.classfile.Type.ClassSigType;
+import com.redhat.ceylon.langtools.classfile.Type.ClassType;
+import com.redhat.ceylon.langtools.classfile.Type.TypeParamType;
+import com.redhat.ceylon.model.loader.AbstractModelLoader;
+import com.redhat.ceylon.model.loader.ModelResolutionException;
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.FieldMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
+import com.redhat.ceylon.model.loader.mirror.PackageMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
+import com.redhat.ceylon.model.typechecker.model.Module;
+
+/**
+ * A class mirror read from a class file. It answers like
+ * {@link com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass}
+ * would for the same class, but the class is only loaded
+ * when its {@link #getJavaClass() Java class} is required.
+ */
+public class ClassFileClass implements ClassMirror {
+
+    final ClassFileMirrors mirrors;
+    final ClassFile classFile;
+    private final String name;
+    private final AccessFlags flags;
+    // the entry of this class in its own InnerClasses attribute, if it is nested
+    private final InnerClasses_attribute.Info nesting;
+    private final EnclosingMethod_attribute enclosingMethodAttribute;
+    private ClassSigType signature;
+    private List<ClassFileMethod> allMethods;
+    private ArrayList<MethodMirror> methods;
+    private ArrayList<FieldMirror> fields;
+    private ArrayList<TypeMirror> interfaces;
+    private List<TypeParameterMirror> typeParameters;
+    private ClassFilePackage pkg;
+    private boolean superClassSet;
+    private ClassFileType superClass;
+    private boolean enclosingClassSet;
+    private ClassMirror enclosingClass;
+    private boolean enclosingMethodSet;
+    private MethodMirror enclosingMethod;
+    private LinkedList<ClassMirror> innerClasses;
+    private String cacheKey;
+    private Map<String, AnnotationMirror> annotations;
+    private volatile Class<?> javaClass;
+
+    ClassFileClass(ClassFileMirrors mirrors, ClassFile classFile, String name) {
+        this.mirrors = mirrors;
+        this.classFile = classFile;
+        this.name = name;
+        this.nesting = findNesting();
+        // like Class.getModifiers(), prefer the flags of the InnerClasses attribute,
+        // which are the only ones to say if a nested class is static, private or protected
+        this.flags = nesting != null ? nesting.inner_class_access_flags : classFile.access_flags;
+        this.enclosingMethodAttribute = (EnclosingMethod_attribute) classFile.getAttribute(Attribute.EnclosingMethod);
+    }
+
+    private InnerClasses_attribute.Info findNesting() {
+        InnerClasses_attribute innerClassesAttribute = getInnerClassesAttribute();
+        if(innerClassesAttribute == null)
+            return null;
+        try{
+            for(InnerClasses_attribute.Info info : innerClassesAttribute.classes){
+                if(info.inner_class_info_index == classFile.this_class
+                        || info.getInnerClassInfo(classFile.constant_pool).getName().equals(classFile.getName()))
+                    return info;
+            }
+        }catch(ConstantPoolException x){
+            throw brokenClassFile(x);
+        }
+        return null;
+    }
+
+    private InnerClasses_attribute getInnerClassesAttribute() {
+        return (InnerClasses_attribute) classFile.getAttribute(Attribute.InnerClasses);
+    }
+
+    ModelResolutionException brokenClassFile(Exception x) {
+        return new ModelResolutionException("Failed to read the class file of "+name, x);
+    }
+
+    /**
+     * Returns the Java class of this mirror, which is loaded,
+     * but not initialised, the first time it is required.
+     */
+    public Class<?> getJavaClass() {
+        Class<?> ret = findJavaClass();
+        if(ret == null)
+            throw new ModelResolutionException("Failed to load class "+name);
+        return ret;
+    }
+
+    /**
+     * Returns the Java class of this mirror, or null if it
+     * can't be loaded.
+     */
+    Class<?> findJavaClass() {
+        Class<?> ret = javaClass;
+        if(ret == null){
+            ret = mirrors.loadClass(name);
+            javaClass = ret;
+        }
+        return ret;
+    }
+
+    ConstantPool getConstantPool() {
+        return classFile.constant_pool;
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(String type) {
+        return getAnnotations().get(type);
+    }
+
+    private boolean isAnnotationPresent(String type) {
+        return getAnnotations().containsKey(type);
+    }
+
+    private Map<String, AnnotationMirror> getAnnotations() {
+        if(annotations == null){
+            annotations = ClassFileUtils.getAnnotations(this, classFile.attributes);
+        }
+        return annotations;
+    }
+
+    @Override
+    public Set<String> getAnnotationNames() {
+        return getAnnotations().keySet();
+    }
+
+    @Override
+    public boolean isPublic() {
+        return flags.is(AccessFlags.ACC_PUBLIC);
+    }
+
+    @Override
+    public boolean isProtected() {
+        return flags.is(AccessFlags.ACC_PROTECTED);
+    }
+
+    @Override
+    public boolean isDefaultAccess() {
+        return !flags.is(AccessFlags.ACC_PRIVATE)
+                && !flags.is(AccessFlags.ACC_PUBLIC)
+                && !flags.is(AccessFlags.ACC_PROTECTED);
+    }
+
+    @Override
+    public String getQualifiedName() {
+        return name;
+    }
+
+    @Override
+    public String getFlatName() {
+        return name;
+    }
+
+    @Override
+    public String getName() {
+        if(nesting != null){
+            if(nesting.inner_name_index == 0)
+                return "";
+            try{
+                return nesting.getInnerName(classFile.constant_pool);
+            }catch(ConstantPoolException x){
+                throw brokenClassFile(x);
+            }
+        }
+        return name.substring(name.lastIndexOf('.')+1);
+    }
+
+    @Override
+    public PackageMirror getPackage() {
+        if(pkg != null)
+            return pkg;
+        int lastDot = name.lastIndexOf('.');
+        pkg = new ClassFilePackage(lastDot == -1 ? "" : name.substring(0, lastDot));
+        return pkg;
+    }
+
+    @Override
+    public boolean isInterface() {
+        return flags.is(AccessFlags.ACC_INTERFACE);
+    }
+
+    @Override
+    public boolean isAnnotationType() {
+        return flags.is(AccessFlags.ACC_ANNOTATION);
+    }
+
+    @Override
+    public boolean isAbstract() {
+        return flags.is(AccessFlags.ACC_ABSTRACT);
+    }
+
+    @Override
+    public boolean isStatic() {
+        return flags.is(AccessFlags.ACC_STATIC);
+    }
+
+    @Override
+    public boolean isFinal() {
+        return flags.is(AccessFlags.ACC_FINAL);
+    }
+
+    /**
+     * Returns every method and constructor of this class,
+     * including the synthetic ones and the static
+     * initialiser.
+     */
+    List<ClassFileMethod> getAllMethods() {
+        if(allMethods != null)
+            return allMethods;
+        List<ClassFileMethod> ret = new ArrayList<ClassFileMethod>(classFile.methods.length);
+        for(Method method : classFile.methods)
+            ret.add(new ClassFileMethod(this, method));
+        allMethods = ret;
+        return ret;
+    }
+
+    ClassFileMethod findMethod(String name, String descriptor) {
+        for(ClassFileMethod method : getAllMethods()){
+            if(method.getRawName().equals(name)
+                    && method.getDescriptor().equals(descriptor))
+                return method;
+        }
+        return null;
+    }
+
+    @Override
+    public List<MethodMirror> getDirectMethods() {
+        if(methods != null)
+            return methods;
+        List<ClassFileMethod> allMethods = getAllMethods();
+        ArrayList<MethodMirror> ret = new ArrayList<MethodMirror>(allMethods.size());
+        // Note: like ReflectionClass we return private members, because the runtime manager
+        // depends on them, and we list methods before constructors
+        for(ClassFileMethod method : allMethods){
+            if(!method.isConstructor()
+                    && !method.isClassInitialiser()
+                    && !method.isSynthetic()
+                    && !method.isBridge())
+                ret.add(method);
+        }
+        for(ClassFileMethod method : allMethods){
+            if(method.isConstructor()
+                    && !method.isSynthetic())
+                ret.add(method);
+        }
+        methods = ret;
+        return methods;
+    }
+
+    @Override
+    public List<FieldMirror> getDirectFields() {
+        if(fields != null)
+            return fields;
+        ArrayList<FieldMirror> ret = new ArrayList<FieldMirror>(classFile.fields.length);
+        for(Field field : classFile.fields)
+            if(!field.access_flags.is(AccessFlags.ACC_SYNTHETIC))
+                ret.add(new ClassFileField(this, field));
+        fields = ret;
+        return fields;
+    }
+
+    ClassSigType getSignature() {
+        if(signature != null)
+            return signature;
+        try{
+            Signature_attribute signatureAttribute = (Signature_attribute) classFile.getAttribute(Attribute.Signature);
+            if(signatureAttribute != null){
+                Type type = signatureAttribute.getParsedSignature().getType(classFile.constant_pool);
+                // a class signature without type parameters nor interfaces is only its superclass
+                if(type instanceof ClassSigType)
+                    signature = (ClassSigType) type;
+                else
+                    signature = new ClassSigType(null, type, null);
+            }else{
+                Type superclassType = null;
+                if(classFile.super_class != 0)
+                    superclassType = new ClassType(null, classFile.getSuperclassName(), null);
+                List<Type> interfaceTypes = new ArrayList<Type>(classFile.interfaces.length);
+                for(int i=0;i<classFile.interfaces.length;i++)
+                    interfaceTypes.add(new ClassType(null, classFile.getInterfaceName(i), null));
+                signature = new ClassSigType(null, superclassType, interfaceTypes);
+            }
+        }catch(ConstantPoolException x){
+            throw brokenClassFile(x);
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the generic superclass of this class, or null
+     * for interfaces and {@code java.lang.Object}, like
+     * {@link Class#getGenericSuperclass()}.
+     */
+    Type getSuperclassType() {
+        if(isInterface())
+            return null;
+        return getSignature().superclassType;
+    }
+
+    List<Type> getInterfaceTypes() {
+        List<Type> ret = getSignature().superinterfaceTypes;
+        return ret != null ? ret : Collections.<Type>emptyList();
+    }
+
+    @Override
+    public TypeMirror getSuperclass() {
+        if(superClassSet)
+            return superClass;
+        Type sup = getSuperclassType();
+        if(sup != null)
+            superClass = new ClassFileType(this, null, sup);
+        superClassSet = true;
+        return superClass;
+    }
+
+    @Override
+    public List<TypeMirror> getInterfaces() {
+        if(interfaces != null)
+            return interfaces;
+        List<Type> interfaceTypes = getInterfaceTypes();
+        ArrayList<TypeMirror> ret = new ArrayList<TypeMirror>(interfaceTypes.size());
+        for(Type interfaceType : interfaceTypes)
+            ret.add(new ClassFileType(this, null, interfaceType));
+        interfaces = ret;
+        return interfaces;
+    }
+
+    @Override
+    public List<TypeParameterMirror> getTypeParameters() {
+        if(typeParameters != null)
+            return typeParameters;
+        typeParameters = ClassFileUtils.getTypeParameters(this, null, getSignature().typeParamTypes);
+        return typeParameters;
+    }
+
+    /**
+     * Returns the type parameter of the given name which is
+     * in scope in this class, or null.
+     */
+    ClassFileTypeParameter findTypeParameter(String name) {
+        for(TypeParameterMirror typeParameter : getTypeParameters()){
+            if(typeParameter.getName().equals(name))
+                return (ClassFileTypeParameter) typeParameter;
+        }
+        MethodMirror enclosingMethod = getEnclosingMethod();
+        if(enclosingMethod instanceof ClassFileMethod)
+            return ((ClassFileMethod) enclosingMethod).findTypeParameter(name);
+        ClassMirror enclosingClass = getEnclosingClass();
+        if(enclosingClass instanceof ClassFileClass)
+            return ((ClassFileClass) enclosingClass).findTypeParameter(name);
+        return null;
+    }
+
+    boolean hasTypeParameters() {
+        List<TypeParamType> typeParamTypes = getSignature().typeParamTypes;
+        return typeParamTypes != null && !typeParamTypes.isEmpty();
+    }
+
+    @Override
+    public boolean isCeylonToplevelAttribute() {
+        return !isInnerClass() && isAnnotationPresent(AbstractModelLoader.CEYLON_ATTRIBUTE_ANNOTATION);
+    }
+
+    @Override
+    public boolean isCeylonToplevelObject() {
+        return !isInnerClass() && isAnnotationPresent(AbstractModelLoader.CEYLON_OBJECT_ANNOTATION);
+    }
+
+    @Override
+    public boolean isCeylonToplevelMethod() {
+        return !isInnerClass() && isAnnotationPresent(AbstractModelLoader.CEYLON_METHOD_ANNOTATION);
+    }
+
+    @Override
+    public boolean isLoadedFromSource() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileClass: "+(isInterface() ? "interface " : "class ")+name+"]";
+    }
+
+    /**
+     * Returns true if this class is a member of another
+     * class, like {@link Class#isMemberClass()}.
+     */
+    boolean isMemberClass() {
+        return nesting != null
+                && nesting.outer_class_info_index != 0
+                && enclosingMethodAttribute == null;
+    }
+
+    @Override
+    public boolean isInnerClass() {
+        return isMemberClass() || isAnnotationPresent(AbstractModelLoader.CEYLON_CONTAINER_ANNOTATION);
+    }
+
+    @Override
+    public boolean isLocalClass() {
+        return (enclosingMethodAttribute != null && !isAnonymous())
+                || isAnnotationPresent(AbstractModelLoader.CEYLON_LOCAL_DECLARATION_ANNOTATION);
+    }
+
+    /**
+     * Returns true if this local class is declared in a
+     * static method.
+     */
+    boolean isStaticLocalContainer() {
+        MethodMirror enclosingMethod = getEnclosingMethod();
+        return enclosingMethod != null && enclosingMethod.isStatic();
+    }
+
+    @Override
+    public List<ClassMirror> getDirectInnerClasses() {
+        if(innerClasses == null){
+            LinkedList<ClassMirror> ret = new LinkedList<ClassMirror>();
+            InnerClasses_attribute innerClassesAttribute = getInnerClassesAttribute();
+            if(innerClassesAttribute != null){
+                try{
+                    for(InnerClasses_attribute.Info info : innerClassesAttribute.classes){
+                        if(info.outer_class_info_index == 0
+                                || info.inner_name_index == 0
+                                || !info.getOuterClassInfo(classFile.constant_pool).getName().equals(classFile.getName()))
+                            continue;
+                        String innerName = ClassFileUtils.toClassName(info.getInnerClassInfo(classFile.constant_pool).getName());
+                        ClassMirror innerClass = mirrors.getReferencedClassMirror(innerName, this);
+                        if(innerClass != null)
+                            ret.add(innerClass);
+                    }
+                }catch(ConstantPoolException x){
+                    throw brokenClassFile(x);
+                }
+            }
+            innerClasses = ret;
+        }
+        return innerClasses;
+    }
+
+    @Override
+    public boolean isAnonymous() {
+        return nesting != null && nesting.inner_name_index == 0;
+    }
+
+    @Override
+    public boolean isJavaSource() {
+        return false;
+    }
+
+    @Override
+    public ClassMirror getEnclosingClass() {
+        if(enclosingClassSet)
+            return enclosingClass;
+        try{
+            String enclosingClassName = null;
+            if(enclosingMethodAttribute != null)
+                enclosingClassName = enclosingMethodAttribute.getClassName(classFile.constant_pool);
+            else if(nesting != null && nesting.outer_class_info_index != 0)
+                enclosingClassName = nesting.getOuterClassInfo(classFile.constant_pool).getName();
+            if(enclosingClassName != null)
+                enclosingClass = mirrors.getReferencedClassMirror(ClassFileUtils.toClassName(enclosingClassName), this);
+        }catch(ConstantPoolException x){
+            throw brokenClassFile(x);
+        }
+        enclosingClassSet = true;
+        return enclosingClass;
+    }
+
+    @Override
+    public MethodMirror getEnclosingMethod() {
+        if(enclosingMethodSet)
+            return enclosingMethod;
+        if(enclosingMethodAttribute != null
+                && enclosingMethodAttribute.method_index != 0){
+            ClassMirror declaringClass = getEnclosingClass();
+            if(declaringClass instanceof ClassFileClass){
+                try{
+                    ConstantPool.CONSTANT_NameAndType_info nameAndType =
+                            classFile.constant_pool.getNameAndTypeInfo(enclosingMethodAttribute.method_index);
+                    enclosingMethod = ((ClassFileClass) declaringClass).findMethod(nameAndType.getName(), nameAndType.getType());
+                }catch(ConstantPoolException x){
+                    throw brokenClassFile(x);
+                }
+            }
+        }
+        enclosingMethodSet = true;
+        return enclosingMethod;
+    }
+
+    @Override
+    public boolean isEnum() {
+        if(!flags.is(AccessFlags.ACC_ENUM))
+            return false;
+        // like Class.isEnum(), the bodies of enum constants are not enums
+        Type superclassType = getSuperclassType();
+        return superclassType instanceof ClassType
+                && ((ClassType) superclassType).getBinaryName().equals("java/lang/Enum");
+    }
+
+    @Override
+    public String getCacheKey(Module module) {
+        if(cacheKey == null){
+            String className = getQualifiedName();
+            cacheKey = AbstractModelLoader.getCacheKeyByModule(module, className);
+        }
+        return cacheKey;
+    }
+}
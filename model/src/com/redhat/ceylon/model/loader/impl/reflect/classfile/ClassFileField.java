@@ -0,0 +1,104 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.langtools.classfile.AccessFlags;
+import com.redhat.ceylon.langtools.classfile.Attribute;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.langtools.classfile.Field;
+import com.redhat.ceylon.langtools.classfile.Signature;
+import com.redhat.ceylon.langtools.classfile.Signature_attribute;
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.FieldMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+
+public class ClassFileField implements FieldMirror {
+
+    private final ClassFileClass enclosingClass;
+    private final Field field;
+    private final String name;
+    private ClassFileType type;
+    private Map<String, AnnotationMirror> annotations;
+
+    ClassFileField(ClassFileClass enclosingClass, Field field) {
+        this.enclosingClass = enclosingClass;
+        this.field = field;
+        try{
+            this.name = field.getName(enclosingClass.getConstantPool());
+        }catch(ConstantPoolException x){
+            throw enclosingClass.brokenClassFile(x);
+        }
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(String type) {
+        return getAnnotations().get(type);
+    }
+
+    private Map<String, AnnotationMirror> getAnnotations() {
+        if(annotations == null){
+            annotations = ClassFileUtils.getAnnotations(enclosingClass, field.attributes);
+        }
+        return annotations;
+    }
+
+    @Override
+    public Set<String> getAnnotationNames() {
+        return getAnnotations().keySet();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isStatic() {
+        return field.access_flags.is(AccessFlags.ACC_STATIC);
+    }
+
+    @Override
+    public boolean isPublic() {
+        return field.access_flags.is(AccessFlags.ACC_PUBLIC);
+    }
+
+    @Override
+    public boolean isProtected() {
+        return field.access_flags.is(AccessFlags.ACC_PROTECTED);
+    }
+
+    @Override
+    public boolean isDefaultAccess() {
+        return !field.access_flags.is(AccessFlags.ACC_PRIVATE)
+                && !field.access_flags.is(AccessFlags.ACC_PUBLIC)
+                && !field.access_flags.is(AccessFlags.ACC_PROTECTED);
+    }
+
+    @Override
+    public boolean isFinal() {
+        return field.access_flags.is(AccessFlags.ACC_FINAL);
+    }
+
+    @Override
+    public TypeMirror getType() {
+        if(type != null)
+            return type;
+        Signature_attribute signatureAttribute = (Signature_attribute) field.attributes.get(Attribute.Signature);
+        // the descriptor of a field is also a valid signature
+        Signature signature = signatureAttribute != null
+                ? signatureAttribute.getParsedSignature()
+                : new Signature(field.descriptor.index);
+        try{
+            type = new ClassFileType(enclosingClass, null, signature.getType(enclosingClass.getConstantPool()));
+        }catch(ConstantPoolException x){
+            throw enclosingClass.brokenClassFile(x);
+        }
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileField: "+enclosingClass.getQualifiedName()+"."+name+"]";
+    }
+}
@@ -0,0 +1,400 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.langtools.classfile.AccessFlags;
+import com.redhat.ceylon.langtools.classfile.Annotation;
+import com.redhat.ceylon.langtools.classfile.AnnotationDefault_attribute;
+import com.redhat.ceylon.langtools.classfile.Attribute;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.langtools.classfile.Method;
+import com.redhat.ceylon.langtools.classfile.RuntimeParameterAnnotations_attribute;
+import com.redhat.ceylon.langtools.classfile.Signature;
+import com.redhat.ceylon.langtools.classfile.Signature_attribute;
+import com.redhat.ceylon.langtools.classfile.Type;
+import com.redhat.ceylon.langtools.classfile.Type.ClassType;
+import com.redhat.ceylon.langtools.classfile.Type.MethodType;
+import com.redhat.ceylon.langtools.classfile.Type.SimpleType;
+import com.redhat.ceylon.model.loader.ModelResolutionException;
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
+import com.redhat.ceylon.model.loader.mirror.VariableMirror;
+
+/**
+ * A method or constructor mirror read from a class file,
+ * which answers like
+ * {@link com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionMethod}
+ * would for the same member.
+ */
+public class ClassFileMethod implements MethodMirror {
+
+    private final ClassFileClass enclosingClass;
+    private final Method method;
+    private final String name;
+    private final String descriptor;
+    private MethodType descriptorType;
+    private MethodType signature;
+    private ArrayList<VariableMirror> parameters;
+    private List<TypeParameterMirror> typeParameters;
+    private Boolean overridingMethod;
+    private Boolean overloadingMethod;
+    private ClassFileType returnType;
+    private Map<String, AnnotationMirror> annotations;
+    private volatile Member javaMember;
+
+    ClassFileMethod(ClassFileClass enclosingClass, Method method) {
+        this.enclosingClass = enclosingClass;
+        this.method = method;
+        try{
+            this.name = method.getName(enclosingClass.getConstantPool());
+            this.descriptor = method.descriptor.getValue(enclosingClass.getConstantPool());
+        }catch(ConstantPoolException x){
+            throw enclosingClass.brokenClassFile(x);
+        }
+    }
+
+    /**
+     * Returns the Java method or constructor of this
+     * mirror, whose class is loaded, but not initialised,
+     * the first time it is required.
+     */
+    public Member getJavaMember() {
+        Member ret = javaMember;
+        if(ret != null)
+            return ret;
+        Class<?> klass = enclosingClass.getJavaClass();
+        try{
+            if(isConstructor()){
+                for(Constructor<?> constructor : klass.getDeclaredConstructors()){
+                    if(ClassFileUtils.getDescriptor(constructor.getParameterTypes(), void.class).equals(descriptor)){
+                        ret = constructor;
+                        break;
+                    }
+                }
+            }else{
+                for(java.lang.reflect.Method method : klass.getDeclaredMethods()){
+                    if(method.getName().equals(name)
+                            && ClassFileUtils.getDescriptor(method.getParameterTypes(), method.getReturnType()).equals(descriptor)){
+                        ret = method;
+                        break;
+                    }
+                }
+            }
+        }catch(NoClassDefFoundError x){
+            throw new ModelResolutionException("Failed to load methods in "+klass.getName(), x);
+        }
+        if(ret == null)
+            throw new ModelResolutionException("Failed to find method "+name+descriptor+" in "+klass.getName());
+        javaMember = ret;
+        return ret;
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(String type) {
+        return getAnnotations().get(type);
+    }
+
+    private Map<String, AnnotationMirror> getAnnotations() {
+        if(annotations == null){
+            annotations = ClassFileUtils.getAnnotations(enclosingClass, method.attributes);
+        }
+        return annotations;
+    }
+
+    @Override
+    public Set<String> getAnnotationNames() {
+        return getAnnotations().keySet();
+    }
+
+    /**
+     * Returns the name of this method in its class file,
+     * which is {@code <init>} for constructors.
+     */
+    String getRawName() {
+        return name;
+    }
+
+    String getDescriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public String getName() {
+        // like Constructor.getName()
+        if(isConstructor())
+            return enclosingClass.getQualifiedName();
+        return name;
+    }
+
+    @Override
+    public boolean isStatic() {
+        return method.access_flags.is(AccessFlags.ACC_STATIC);
+    }
+
+    @Override
+    public boolean isPublic() {
+        return method.access_flags.is(AccessFlags.ACC_PUBLIC);
+    }
+
+    @Override
+    public boolean isProtected() {
+        return method.access_flags.is(AccessFlags.ACC_PROTECTED);
+    }
+
+    @Override
+    public boolean isDefaultAccess() {
+        return !method.access_flags.is(AccessFlags.ACC_PRIVATE)
+                && !method.access_flags.is(AccessFlags.ACC_PUBLIC)
+                && !method.access_flags.is(AccessFlags.ACC_PROTECTED);
+    }
+
+    boolean isPrivate() {
+        return method.access_flags.is(AccessFlags.ACC_PRIVATE);
+    }
+
+    boolean isSynthetic() {
+        return method.access_flags.is(AccessFlags.ACC_SYNTHETIC);
+    }
+
+    boolean isBridge() {
+        return method.access_flags.is(AccessFlags.ACC_BRIDGE);
+    }
+
+    boolean isClassInitialiser() {
+        return name.equals("<clinit>");
+    }
+
+    @Override
+    public boolean isConstructor() {
+        return name.equals("<init>");
+    }
+
+    @Override
+    public boolean isStaticInit() {
+        return false;
+    }
+
+    @Override
+    public boolean isVariadic() {
+        return method.access_flags.is(AccessFlags.ACC_VARARGS);
+    }
+
+    /**
+     * Returns the erased type of this method, from its
+     * descriptor, which includes every synthetic parameter.
+     */
+    MethodType getDescriptorType() {
+        if(descriptorType != null)
+            return descriptorType;
+        try{
+            descriptorType = (MethodType) new Signature(method.descriptor.index).getType(enclosingClass.getConstantPool());
+        }catch(ConstantPoolException x){
+            throw enclosingClass.brokenClassFile(x);
+        }
+        return descriptorType;
+    }
+
+    /**
+     * Returns the generic type of this method, from its
+     * signature, or else from its descriptor, like
+     * {@link java.lang.reflect.Method#getGenericParameterTypes()}.
+     * Signatures may leave out synthetic parameters.
+     */
+    MethodType getSignature() {
+        if(signature != null)
+            return signature;
+        Signature_attribute signatureAttribute = (Signature_attribute) method.attributes.get(Attribute.Signature);
+        if(signatureAttribute != null){
+            try{
+                signature = (MethodType) signatureAttribute.getParsedSignature().getType(enclosingClass.getConstantPool());
+            }catch(ConstantPoolException x){
+                throw enclosingClass.brokenClassFile(x);
+            }
+        }else{
+            signature = getDescriptorType();
+        }
+        return signature;
+    }
+
+    @Override
+    public List<VariableMirror> getParameters() {
+        if(parameters != null)
+            return parameters;
+        List<? extends Type> javaParameters = getSignature().paramTypes;
+        int parameterCount = getDescriptorType().paramTypes.size();
+        RuntimeParameterAnnotations_attribute annotationsAttribute =
+                (RuntimeParameterAnnotations_attribute) method.attributes.get(Attribute.RuntimeVisibleParameterAnnotations);
+        Annotation[][] annotations = annotationsAttribute != null ? annotationsAttribute.parameter_annotations : null;
+        // like java reflection, we have an empty list of annotations per parameter if none is annotated
+        int annotationsLength = annotations != null ? annotations.length : parameterCount;
+        ArrayList<VariableMirror> ret = new ArrayList<VariableMirror>(parameterCount);
+        int start = 0;
+        if(isConstructor()){
+            // enums will always add two synthetic parameters (string and int) and always be static so none more
+            if(enclosingClass.isEnum())
+                start = 2;
+            // inner classes will always add a synthetic parameter to the constructor, unless they are static
+            // FIXME: local and anonymous classes may add more but we don't know how to find out
+            else if((enclosingClass.isMemberClass()
+                        || enclosingClass.isAnonymous()
+                        // if it's a local class its container method must not be static
+                        || (enclosingClass.isLocalClass() && !enclosingClass.isStaticLocalContainer()))
+                    && !enclosingClass.isStatic())
+                start = 1;
+        }
+
+        // see ReflectionMethod.getParameters() for the handling of synthetic parameters, which is the same
+        // since we read the same attributes as java reflection does
+        int parametersOffset = javaParameters.size() != parameterCount ? -start : 0;
+        int annotationsOffset = annotationsLength != parameterCount ? -start : 0;
+        if(javaParameters.size() != parameterCount)
+            parameterCount = javaParameters.size() + start;
+        else if(annotationsLength != parameterCount)
+            parameterCount = annotationsLength + start;
+
+        // skip synthetic parameters
+        for(int i=start;i<parameterCount;i++){
+            Map<String, AnnotationMirror> parameterAnnotations = annotations != null
+                    ? ClassFileUtils.getAnnotations(enclosingClass, annotations[i+annotationsOffset])
+                    : Collections.<String, AnnotationMirror>emptyMap();
+            ret.add(new ClassFileVariable(new ClassFileType(enclosingClass, this, javaParameters.get(i+parametersOffset)),
+                    parameterAnnotations));
+        }
+        parameters = ret;
+        return parameters;
+    }
+
+    /**
+     * Returns the erased parameter types of this method, as
+     * descriptors.
+     */
+    List<String> getParameterDescriptors() {
+        List<? extends Type> parameterTypes = getDescriptorType().paramTypes;
+        List<String> ret = new ArrayList<String>(parameterTypes.size());
+        for(Type parameterType : parameterTypes)
+            ret.add(ClassFileUtils.getErasure(Collections.<String,String>emptyMap(), parameterType));
+        return ret;
+    }
+
+    @Override
+    public boolean isAbstract() {
+        return method.access_flags.is(AccessFlags.ACC_ABSTRACT);
+    }
+
+    @Override
+    public boolean isDefaultMethod() {
+        // like java.lang.reflect.Method.isDefault()
+        return !method.access_flags.is(AccessFlags.ACC_ABSTRACT)
+                && !method.access_flags.is(AccessFlags.ACC_STATIC)
+                && method.access_flags.is(AccessFlags.ACC_PUBLIC)
+                && enclosingClass.isInterface();
+    }
+
+    @Override
+    public boolean isFinal() {
+        return method.access_flags.is(AccessFlags.ACC_FINAL);
+    }
+
+    @Override
+    public TypeMirror getReturnType() {
+        if(returnType != null)
+            return returnType;
+        if(isConstructor()){
+            returnType = new ClassFileType(enclosingClass, this,
+                    new ClassType(null, enclosingClass.getQualifiedName().replace('.', '/'), null));
+        }else{
+            returnType = new ClassFileType(enclosingClass, this, getSignature().returnType);
+        }
+        return returnType;
+    }
+
+    @Override
+    public boolean isDeclaredVoid() {
+        Type type = getDescriptorType().returnType;
+        return !isConstructor()
+                && type instanceof SimpleType
+                && ((SimpleType) type).name.equals("void");
+    }
+
+    @Override
+    public List<TypeParameterMirror> getTypeParameters() {
+        if(typeParameters != null)
+            return typeParameters;
+        typeParameters = ClassFileUtils.getTypeParameters(enclosingClass, this, getSignature().typeParamTypes);
+        return typeParameters;
+    }
+
+    /**
+     * Returns the type parameter of the given name which is
+     * in scope in this method, or null.
+     */
+    ClassFileTypeParameter findTypeParameter(String name) {
+        for(TypeParameterMirror typeParameter : getTypeParameters()){
+            if(typeParameter.getName().equals(name))
+                return (ClassFileTypeParameter) typeParameter;
+        }
+        return enclosingClass.findTypeParameter(name);
+    }
+
+    public boolean isOverridingMethod() {
+        if(overridingMethod != null)
+            return overridingMethod.booleanValue();
+
+        if(!isConstructor())
+            overridingMethod = ClassFileUtils.isOverridingMethod(this);
+        else
+            overridingMethod = false;
+        return overridingMethod;
+    }
+
+    public boolean isOverloadingMethod() {
+        if(overloadingMethod != null)
+            return overloadingMethod.booleanValue();
+
+        if(!isConstructor())
+            overloadingMethod = ClassFileUtils.isOverloadingMethod(this);
+        else
+            overloadingMethod = false;
+        return overloadingMethod;
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileMethod: "+enclosingClass.getQualifiedName()+"."+name+descriptor+"]";
+    }
+
+    @Override
+    public boolean isDefault() {
+        return method.attributes.get(Attribute.AnnotationDefault) != null;
+    }
+
+    @Override
+    public ClassMirror getEnclosingClass() {
+        return enclosingClass;
+    }
+
+    ClassFileClass getDeclaringClass() {
+        return enclosingClass;
+    }
+
+    /**
+     * Returns the value of this annotation method when it
+     * is not specified, or null if it has none.
+     */
+    Object getDefaultValue() {
+        AnnotationDefault_attribute defaultAttribute =
+                (AnnotationDefault_attribute) method.attributes.get(Attribute.AnnotationDefault);
+        if(defaultAttribute == null)
+            return null;
+        return ClassFileUtils.getAnnotationValue(enclosingClass, defaultAttribute.default_value);
+    }
+}
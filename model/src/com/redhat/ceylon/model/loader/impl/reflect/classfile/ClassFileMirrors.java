@@ -0,0 +1,133 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.redhat.ceylon.langtools.classfile.ClassFile;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+
+/**
+ * Builds the mirrors of the classes visible to a class
+ * loader from their class files, which are read with
+ * the class file parser rather than loaded, so that
+ * building a model does not load, link or reflect on
+ * every class it touches.
+ *
+ * A class is only loaded, without being initialised, if
+ * its {@link ClassFileClass#getJavaClass() Java class} is
+ * required, for example to invoke it at runtime.
+ *
+ * Mirrors are cached by class name, and are only used by
+ * the reflection model loader if they are
+ * {@link #setEnabled(boolean) enabled}.
+ */
+public class ClassFileMirrors {
+
+    private static boolean enabled =
+            Boolean.getBoolean("com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMirrors.enabled");
+
+    public static void setEnabled(boolean enabled) {
+        ClassFileMirrors.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    private static final Object MISSING = new Object();
+
+    private final ClassLoader classLoader;
+    private final ConcurrentHashMap<String, Object> classes = new ConcurrentHashMap<String, Object>();
+
+    public ClassFileMirrors(ClassLoader classLoader) {
+        if(classLoader == null)
+            throw new NullPointerException("No class loader");
+        this.classLoader = classLoader;
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Returns the mirror of the given class, read from its
+     * class file, or null if the class loader has no class
+     * file for that class.
+     *
+     * @param name the binary name of the class, with dots
+     * to separate package parts, and dollars to separate
+     * inner members
+     */
+    public ClassFileClass getClassMirror(String name) {
+        Object ret = classes.get(name);
+        if(ret == null){
+            ClassFile classFile = readClassFile(name);
+            ret = classFile != null ? new ClassFileClass(this, classFile, name) : MISSING;
+            Object previous = classes.putIfAbsent(name, ret);
+            if(previous != null)
+                ret = previous;
+        }
+        return ret != MISSING ? (ClassFileClass) ret : null;
+    }
+
+    /**
+     * Returns the mirror of the given class, referenced by
+     * the given class, read from its class file if we have
+     * one, or else obtained from the class loader of the
+     * referencing class with reflection, or null if that
+     * class does not exist.
+     */
+    ClassMirror getReferencedClassMirror(String name, ClassFileClass from) {
+        ClassMirror ret = getClassMirror(name);
+        if(ret != null)
+            return ret;
+        // it may be invisible to our class loader, but not to the
+        // class loader which defined the referencing class
+        Class<?> fromClass = from.findJavaClass();
+        if(fromClass == null || fromClass.getClassLoader() == null)
+            return null;
+        Class<?> klass = loadClass(name, fromClass.getClassLoader());
+        return klass != null ? new ReflectionClass(klass) : null;
+    }
+
+    /**
+     * Loads the given class, without initialising it, or
+     * returns null if it can't be loaded.
+     */
+    Class<?> loadClass(String name) {
+        return loadClass(name, classLoader);
+    }
+
+    private static Class<?> loadClass(String name, ClassLoader classLoader) {
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException|LinkageError x) {
+            return null;
+        }
+    }
+
+    private ClassFile readClassFile(String name) {
+        String path = name.replace('.', '/') + ".class";
+        InputStream stream = classLoader.getResourceAsStream(path);
+        if(stream == null)
+            return null;
+        try{
+            try{
+                ClassFile classFile = ClassFile.read(stream);
+                // on case-insensitive file systems we can find the class file of
+                // another class whose name only differs in case
+                if(!classFile.getName().replace('/', '.').equals(name))
+                    return null;
+                return classFile;
+            }finally{
+                stream.close();
+            }
+        }catch(IOException|ConstantPoolException x){
+            // let the model loader fall back to reflection
+            return null;
+        }
+    }
+}
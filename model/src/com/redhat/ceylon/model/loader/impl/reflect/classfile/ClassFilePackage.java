@@ -0,0 +1,18 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import com.redhat.ceylon.model.loader.mirror.PackageMirror;
+
+public class ClassFilePackage implements PackageMirror {
+
+    private String pkg;
+
+    public ClassFilePackage(String pkg) {
+        this.pkg = pkg;
+    }
+
+    @Override
+    public String getQualifiedName() {
+        return pkg;
+    }
+
+}
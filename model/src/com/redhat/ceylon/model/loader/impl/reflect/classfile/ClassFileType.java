@@ -0,0 +1,299 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.redhat.ceylon.langtools.classfile.Type;
+import com.redhat.ceylon.langtools.classfile.Type.ArrayType;
+import com.redhat.ceylon.langtools.classfile.Type.ClassType;
+import com.redhat.ceylon.langtools.classfile.Type.SimpleType;
+import com.redhat.ceylon.langtools.classfile.Type.TypeParamType;
+import com.redhat.ceylon.langtools.classfile.Type.WildcardType;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeKind;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
+
+/**
+ * A type mirror read from a signature or a descriptor in a
+ * class file, which answers like
+ * {@link com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionType}
+ * would for the same type.
+ */
+public class ClassFileType implements TypeMirror {
+
+    private final ClassFileClass context;
+    private final ClassFileMethod method;
+    private final Type type;
+    private List<TypeMirror> typeArguments;
+    private ClassFileType componentType;
+    private ClassFileType upperBound;
+    private boolean upperBoundSet;
+    private ClassFileType lowerBound;
+    private boolean lowerBoundSet;
+    private ClassMirror declaredClass;
+    private boolean declaredClassSet;
+    private TypeParameterMirror typeParameter;
+    private boolean typeParameterSet;
+    private ClassFileType qualifyingType;
+    private boolean qualifyingTypeSet;
+
+    /**
+     * @param context the class whose class file references
+     * this type, and whose class loader resolves it
+     * @param method the method whose signature references
+     * this type, or null, to resolve its type variables
+     */
+    ClassFileType(ClassFileClass context, ClassFileMethod method, Type type) {
+        this.context = context;
+        this.method = method;
+        this.type = type;
+    }
+
+    private static final Map<String, TypeKind> primitives = new HashMap<String, TypeKind>();
+    private static final Map<String, Class<?>> primitiveClasses = new HashMap<String, Class<?>>();
+    static{
+        primitives.put("boolean", TypeKind.BOOLEAN);
+        primitives.put("byte", TypeKind.BYTE);
+        primitives.put("char", TypeKind.CHAR);
+        primitives.put("short", TypeKind.SHORT);
+        primitives.put("int", TypeKind.INT);
+        primitives.put("long", TypeKind.LONG);
+        primitives.put("float", TypeKind.FLOAT);
+        primitives.put("double", TypeKind.DOUBLE);
+        primitives.put("void", TypeKind.VOID);
+        primitiveClasses.put("boolean", Boolean.TYPE);
+        primitiveClasses.put("byte", Byte.TYPE);
+        primitiveClasses.put("char", Character.TYPE);
+        primitiveClasses.put("short", Short.TYPE);
+        primitiveClasses.put("int", Integer.TYPE);
+        primitiveClasses.put("long", Long.TYPE);
+        primitiveClasses.put("float", Float.TYPE);
+        primitiveClasses.put("double", Double.TYPE);
+        primitiveClasses.put("void", Void.TYPE);
+    }
+
+    @Override
+    public String getQualifiedName() {
+        if(type instanceof ClassType)
+            return ClassFileUtils.toClassName(((ClassType) type).getBinaryName());
+        if(type instanceof SimpleType)
+            return ((SimpleType) type).name;
+        if(type instanceof ArrayType){
+            // generic arrays are named like GenericArrayType.toString(), and the others like Class.getName()
+            if(isGeneric(type))
+                return getTypeName(type);
+            return ClassFileUtils.toClassName(ClassFileUtils.getErasure(Collections.<String,String>emptyMap(), type));
+        }
+        return getTypeName(type);
+    }
+
+    private static boolean isGeneric(Type type) {
+        if(type instanceof ArrayType)
+            return isGeneric(((ArrayType) type).elemType);
+        if(type instanceof SimpleType)
+            return !((SimpleType) type).isPrimitiveType();
+        if(type instanceof ClassType)
+            return isParameterised((ClassType) type);
+        return true;
+    }
+
+    /**
+     * Returns true if this type would be a ParameterizedType
+     * in java reflection.
+     */
+    private static boolean isParameterised(ClassType type) {
+        return type.typeArgs != null || type.outerType != null;
+    }
+
+    private static String getTypeName(Type type) {
+        if(type instanceof ArrayType)
+            return getTypeName(((ArrayType) type).elemType) + "[]";
+        if(type instanceof ClassType){
+            ClassType classType = (ClassType) type;
+            StringBuilder ret = new StringBuilder(ClassFileUtils.toClassName(classType.getBinaryName()));
+            if(classType.typeArgs != null){
+                ret.append('<');
+                boolean first = true;
+                for(Type typeArg : classType.typeArgs){
+                    if(!first)
+                        ret.append(", ");
+                    ret.append(getTypeName(typeArg));
+                    first = false;
+                }
+                ret.append('>');
+            }
+            return ret.toString();
+        }
+        if(type instanceof WildcardType){
+            WildcardType wildcardType = (WildcardType) type;
+            switch(wildcardType.kind){
+            case EXTENDS: return "? extends " + getTypeName(wildcardType.boundType);
+            case SUPER: return "? super " + getTypeName(wildcardType.boundType);
+            default: return "?";
+            }
+        }
+        return type.toString();
+    }
+
+    @Override
+    public List<TypeMirror> getTypeArguments() {
+        if(typeArguments != null)
+            return typeArguments;
+        if(type instanceof ClassType && ((ClassType) type).typeArgs != null){
+            List<Type> javaTypeArguments = ((ClassType) type).typeArgs;
+            List<TypeMirror> ret = new ArrayList<TypeMirror>(javaTypeArguments.size());
+            for(Type typeArgument : javaTypeArguments)
+                ret.add(new ClassFileType(context, method, typeArgument));
+            typeArguments = ret;
+        }else
+            typeArguments = Collections.<TypeMirror>emptyList();
+        return typeArguments;
+    }
+
+    @Override
+    public TypeKind getKind() {
+        if(type instanceof ClassType)
+            return TypeKind.DECLARED;
+        if(type instanceof ArrayType)
+            return TypeKind.ARRAY;
+        if(type instanceof WildcardType)
+            return TypeKind.WILDCARD;
+        if(type instanceof SimpleType){
+            TypeKind kind = primitives.get(((SimpleType) type).name);
+            if(kind != null)
+                return kind;
+            return TypeKind.TYPEVAR;
+        }
+        throw new RuntimeException("Unknown type: "+type);
+    }
+
+    @Override
+    public TypeMirror getComponentType() {
+        if(componentType != null)
+            return componentType;
+        if(type instanceof ArrayType)
+            componentType = new ClassFileType(context, method, ((ArrayType) type).elemType);
+        return componentType;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return type instanceof SimpleType
+                && ((SimpleType) type).isPrimitiveType();
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileType: "+getTypeName(type)+"]";
+    }
+
+    @Override
+    public TypeMirror getUpperBound() {
+        if(upperBoundSet)
+            return upperBound;
+        if(type instanceof WildcardType){
+            // like WildcardType.getUpperBounds(), the upper bound of an unbounded wildcard
+            // is Object, and we have none if we have a lower bound
+            WildcardType wildcardType = (WildcardType) type;
+            switch(wildcardType.kind){
+            case EXTENDS:
+                upperBound = new ClassFileType(context, method, wildcardType.boundType);
+                break;
+            case UNBOUNDED:
+                upperBound = new ClassFileType(context, method, new ClassType(null, "java/lang/Object", null));
+                break;
+            default:
+                upperBound = null;
+            }
+        }
+        upperBoundSet = true;
+        return upperBound;
+    }
+
+    @Override
+    public TypeMirror getLowerBound() {
+        if(lowerBoundSet)
+            return lowerBound;
+        if(type instanceof WildcardType
+                && ((WildcardType) type).kind == WildcardType.Kind.SUPER)
+            lowerBound = new ClassFileType(context, method, ((WildcardType) type).boundType);
+        lowerBoundSet = true;
+        return lowerBound;
+    }
+
+    @Override
+    public boolean isRaw() {
+        if(type instanceof ClassType){
+            // we're raw if our type is a parameterised type that should have type params
+            ClassMirror klass = getDeclaredClass();
+            if(klass == null)
+                return false;
+            List<Type> typeArgs = ((ClassType) type).typeArgs;
+            return klass.getTypeParameters().size() != (typeArgs != null ? typeArgs.size() : 0);
+        }
+        if(type instanceof ArrayType)
+            return getComponentType().isRaw();
+        return false;
+    }
+
+    @Override
+    public ClassMirror getDeclaredClass() {
+        if(!declaredClassSet){
+            if(type instanceof ClassType){
+                String name = ClassFileUtils.toClassName(((ClassType) type).getBinaryName());
+                declaredClass = context.mirrors.getReferencedClassMirror(name, context);
+            }else if(isPrimitive()){
+                declaredClass = new ReflectionClass(primitiveClasses.get(((SimpleType) type).name));
+            }
+            declaredClassSet = true;
+        }
+        return declaredClass;
+    }
+
+    @Override
+    public TypeParameterMirror getTypeParameter() {
+        if(getKind() != TypeKind.TYPEVAR)
+            return null;
+        if(!typeParameterSet){
+            String name = ((SimpleType) type).name;
+            typeParameter = method != null ? method.findTypeParameter(name) : context.findTypeParameter(name);
+            if(typeParameter == null){
+                // not in scope, so we can't find its bounds
+                typeParameter = new ClassFileTypeParameter(context, method, new TypeParamType(name, null, null));
+            }
+            typeParameterSet = true;
+        }
+        return typeParameter;
+    }
+
+    @Override
+    public TypeMirror getQualifyingType() {
+        if(!qualifyingTypeSet){
+            if(type instanceof ClassType){
+                ClassType classType = (ClassType) type;
+                if(classType.outerType != null){
+                    qualifyingType = new ClassFileType(context, method, classType.outerType);
+                }else{
+                    // like Class.getEnclosingClass(), or ParameterizedType.getOwnerType() which
+                    // only has a declaring class
+                    ClassMirror klass = getDeclaredClass();
+                    if(klass != null
+                            && (!isParameterised(classType)
+                                    || (!klass.isLocalClass() && !klass.isAnonymous()))){
+                        ClassMirror enclosingClass = klass.getEnclosingClass();
+                        if(enclosingClass != null)
+                            qualifyingType = new ClassFileType(context, method,
+                                    new ClassType(null, enclosingClass.getQualifiedName().replace('.', '/'), null));
+                    }
+                }
+            }
+            qualifyingTypeSet = true;
+        }
+        return qualifyingType;
+    }
+}
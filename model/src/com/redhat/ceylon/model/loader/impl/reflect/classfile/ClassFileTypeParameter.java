@@ -0,0 +1,59 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.ceylon.langtools.classfile.Type;
+import com.redhat.ceylon.langtools.classfile.Type.ClassType;
+import com.redhat.ceylon.langtools.classfile.Type.TypeParamType;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
+
+public class ClassFileTypeParameter implements TypeParameterMirror {
+
+    private final ClassFileClass context;
+    private final ClassFileMethod method;
+    private final TypeParamType type;
+    private ArrayList<TypeMirror> bounds;
+
+    /**
+     * @param context the class whose class file declares
+     * this type parameter, or the class of the method that
+     * declares it
+     * @param method the method that declares this type
+     * parameter, or null for class type parameters
+     */
+    ClassFileTypeParameter(ClassFileClass context, ClassFileMethod method, TypeParamType type) {
+        this.context = context;
+        this.method = method;
+        this.type = type;
+    }
+
+    @Override
+    public String getName() {
+        return type.name;
+    }
+
+    @Override
+    public List<TypeMirror> getBounds() {
+        if(bounds != null)
+            return bounds;
+        ArrayList<TypeMirror> ret = new ArrayList<TypeMirror>();
+        if(type.classBound != null)
+            ret.add(new ClassFileType(context, method, type.classBound));
+        if(type.interfaceBounds != null){
+            for(Type bound : type.interfaceBounds)
+                ret.add(new ClassFileType(context, method, bound));
+        }
+        // like TypeVariable.getBounds()
+        if(ret.isEmpty())
+            ret.add(new ClassFileType(context, method, new ClassType(null, "java/lang/Object", null)));
+        bounds = ret;
+        return bounds;
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileTypeParameter: "+type.name+"]";
+    }
+}
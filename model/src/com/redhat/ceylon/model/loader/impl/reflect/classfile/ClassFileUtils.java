@@ -0,0 +1,496 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.langtools.classfile.Annotation;
+import com.redhat.ceylon.langtools.classfile.Annotation.Annotation_element_value;
+import com.redhat.ceylon.langtools.classfile.Annotation.Array_element_value;
+import com.redhat.ceylon.langtools.classfile.Annotation.Class_element_value;
+import com.redhat.ceylon.langtools.classfile.Annotation.Enum_element_value;
+import com.redhat.ceylon.langtools.classfile.Annotation.Primitive_element_value;
+import com.redhat.ceylon.langtools.classfile.Annotation.element_value;
+import com.redhat.ceylon.langtools.classfile.Attribute;
+import com.redhat.ceylon.langtools.classfile.Attributes;
+import com.redhat.ceylon.langtools.classfile.ConstantPool;
+import com.redhat.ceylon.langtools.classfile.ConstantPool.CONSTANT_Double_info;
+import com.redhat.ceylon.langtools.classfile.ConstantPool.CONSTANT_Float_info;
+import com.redhat.ceylon.langtools.classfile.ConstantPool.CONSTANT_Integer_info;
+import com.redhat.ceylon.langtools.classfile.ConstantPool.CONSTANT_Long_info;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.langtools.classfile.RuntimeAnnotations_attribute;
+import com.redhat.ceylon.langtools.classfile.Signature;
+import com.redhat.ceylon.langtools.classfile.Type;
+import com.redhat.ceylon.langtools.classfile.Type.ArrayType;
+import com.redhat.ceylon.langtools.classfile.Type.ClassType;
+import com.redhat.ceylon.langtools.classfile.Type.SimpleType;
+import com.redhat.ceylon.langtools.classfile.Type.TypeParamType;
+import com.redhat.ceylon.model.loader.AbstractModelLoader;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
+
+public class ClassFileUtils {
+
+    private static final String OBJECT_DESCRIPTOR = "Ljava/lang/Object;";
+
+    /**
+     * Turns an internal class name, or a class descriptor,
+     * into a binary class name.
+     */
+    static String toClassName(String name) {
+        if(name.startsWith("L") && name.endsWith(";"))
+            name = name.substring(1, name.length()-1);
+        return name.replace('/', '.');
+    }
+
+    static Map<String, AnnotationMirror> getAnnotations(ClassFileClass context, Attributes attributes) {
+        RuntimeAnnotations_attribute attribute = (RuntimeAnnotations_attribute) attributes.get(Attribute.RuntimeVisibleAnnotations);
+        if(attribute == null)
+            return Collections.<String,AnnotationMirror>emptyMap();
+        return getAnnotations(context, attribute.annotations);
+    }
+
+    static Map<String, AnnotationMirror> getAnnotations(ClassFileClass context, Annotation[] annotations) {
+        if(annotations.length == 0)
+            return Collections.<String,AnnotationMirror>emptyMap();
+        Map<String, AnnotationMirror> map = new HashMap<String,AnnotationMirror>();
+        for(int i=annotations.length-1;i>=0;i--){
+            ClassFileAnnotation annotation = new ClassFileAnnotation(context, annotations[i]);
+            map.put(annotation.getType(), annotation);
+        }
+        return map;
+    }
+
+    /**
+     * Converts an annotation value like
+     * {@link com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionAnnotation}
+     * does: arrays are lists, enum constants are their
+     * names, and classes are type mirrors.
+     */
+    static Object getAnnotationValue(final ClassFileClass context, element_value value) {
+        final ConstantPool constantPool = context.getConstantPool();
+        try{
+            return value.accept(new element_value.Visitor<Object, Void>(){
+                @Override
+                public Object visitPrimitive(Primitive_element_value ev, Void p) {
+                    try{
+                        switch(ev.tag){
+                        case 'B':
+                            return (byte) ((CONSTANT_Integer_info) constantPool.get(ev.const_value_index)).value;
+                        case 'C':
+                            return (char) ((CONSTANT_Integer_info) constantPool.get(ev.const_value_index)).value;
+                        case 'S':
+                            return (short) ((CONSTANT_Integer_info) constantPool.get(ev.const_value_index)).value;
+                        case 'Z':
+                            return ((CONSTANT_Integer_info) constantPool.get(ev.const_value_index)).value != 0;
+                        case 'I':
+                            return ((CONSTANT_Integer_info) constantPool.get(ev.const_value_index)).value;
+                        case 'J':
+                            return ((CONSTANT_Long_info) constantPool.get(ev.const_value_index)).value;
+                        case 'F':
+                            return ((CONSTANT_Float_info) constantPool.get(ev.const_value_index)).value;
+                        case 'D':
+                            return ((CONSTANT_Double_info) constantPool.get(ev.const_value_index)).value;
+                        case 's':
+                            return constantPool.getUTF8Value(ev.const_value_index);
+                        default:
+                            throw new RuntimeException("Unknown annotation value tag: "+(char)ev.tag);
+                        }
+                    }catch(ConstantPoolException x){
+                        throw context.brokenClassFile(x);
+                    }
+                }
+
+                @Override
+                public Object visitEnum(Enum_element_value ev, Void p) {
+                    try{
+                        return constantPool.getUTF8Value(ev.const_name_index);
+                    }catch(ConstantPoolException x){
+                        throw context.brokenClassFile(x);
+                    }
+                }
+
+                @Override
+                public Object visitClass(Class_element_value ev, Void p) {
+                    try{
+                        return new ClassFileType(context, null, new Signature(ev.class_info_index).getType(constantPool));
+                    }catch(ConstantPoolException x){
+                        throw context.brokenClassFile(x);
+                    }
+                }
+
+                @Override
+                public Object visitAnnotation(Annotation_element_value ev, Void p) {
+                    return new ClassFileAnnotation(context, ev.annotation_value);
+                }
+
+                @Override
+                public Object visitArray(Array_element_value ev, Void p) {
+                    List<Object> values = new ArrayList<Object>(ev.num_values);
+                    for(element_value val : ev.values)
+                        values.add(val.accept(this, p));
+                    return values;
+                }
+            }, null);
+        }catch(ClassCastException x){
+            throw context.brokenClassFile(x);
+        }
+    }
+
+    static List<TypeParameterMirror> getTypeParameters(ClassFileClass context, ClassFileMethod method, List<? extends TypeParamType> typeParamTypes) {
+        if(typeParamTypes == null || typeParamTypes.isEmpty())
+            return Collections.<TypeParameterMirror>emptyList();
+        List<TypeParameterMirror> typeParameters = new ArrayList<TypeParameterMirror>(typeParamTypes.size());
+        for(TypeParamType typeParamType : typeParamTypes)
+            typeParameters.add(new ClassFileTypeParameter(context, method, typeParamType));
+        return typeParameters;
+    }
+
+    /**
+     * Returns the descriptor of a method with the given
+     * parameter and return types.
+     */
+    static String getDescriptor(Class<?>[] parameterTypes, Class<?> returnType) {
+        StringBuilder ret = new StringBuilder("(");
+        for(Class<?> parameterType : parameterTypes)
+            appendDescriptor(ret, parameterType);
+        ret.append(')');
+        appendDescriptor(ret, returnType);
+        return ret.toString();
+    }
+
+    private static void appendDescriptor(StringBuilder ret, Class<?> type) {
+        if(type.isArray()){
+            ret.append(type.getName().replace('.', '/'));
+        }else if(type.isPrimitive()){
+            if(type == boolean.class)
+                ret.append('Z');
+            else if(type == byte.class)
+                ret.append('B');
+            else if(type == char.class)
+                ret.append('C');
+            else if(type == short.class)
+                ret.append('S');
+            else if(type == int.class)
+                ret.append('I');
+            else if(type == long.class)
+                ret.append('J');
+            else if(type == float.class)
+                ret.append('F');
+            else if(type == double.class)
+                ret.append('D');
+            else
+                ret.append('V');
+        }else{
+            ret.append('L').append(type.getName().replace('.', '/')).append(';');
+        }
+    }
+
+    /**
+     * Returns the erasure of the given type as a descriptor,
+     * where type variables are replaced with the given type
+     * arguments, or with Object. See the "Erasure bounds
+     * Note" in {@link ReflectionUtils} for why we never use
+     * their bounds.
+     */
+    static String getErasure(Map<String, String> typeArguments, Type t) {
+        if(t instanceof SimpleType){
+            SimpleType simpleType = (SimpleType) t;
+            if(simpleType.isPrimitiveType()){
+                switch(simpleType.name){
+                case "boolean": return "Z";
+                case "byte": return "B";
+                case "char": return "C";
+                case "short": return "S";
+                case "int": return "I";
+                case "long": return "J";
+                case "float": return "F";
+                case "double": return "D";
+                default: return "V";
+                }
+            }
+            String erasure = typeArguments.get(simpleType.name);
+            return erasure != null ? erasure : OBJECT_DESCRIPTOR;
+        }else if(t instanceof ClassType){
+            return "L"+((ClassType) t).getBinaryName()+";";
+        }else if(t instanceof ArrayType){
+            return "["+getErasure(typeArguments, ((ArrayType) t).elemType);
+        }else
+            throw new RuntimeException("Unknown parameter type: "+t);
+    }
+
+    /**
+     * Thrown when a supertype has no class file, in which
+     * case we have to use reflection to find out if a method
+     * overrides or overloads another.
+     */
+    @SuppressWarnings("serial")
+    private static class MissingClassFile extends Exception {}
+
+    private enum OverXing {
+        Overloading, Overriding
+    }
+
+    static boolean isOverridingMethod(ClassFileMethod method) {
+        try{
+            return isOverXingMethod(OverXing.Overriding, method);
+        }catch(MissingClassFile x){
+            return ReflectionUtils.isOverridingMethod((Method) method.getJavaMember());
+        }
+    }
+
+    static boolean isOverloadingMethod(ClassFileMethod method) {
+        try{
+            return isOverXingMethod(OverXing.Overloading, method);
+        }catch(MissingClassFile x){
+            return ReflectionUtils.isOverloadingMethod((Method) method.getJavaMember());
+        }
+    }
+
+    // this follows ReflectionUtils.isOverXingMethod() exactly, but with class files
+
+    private static boolean isOverXingMethod(OverXing searchType, ClassFileMethod method) throws MissingClassFile {
+        // fast exit
+        if(method.isPrivate())
+            return false;
+        String name = method.getRawName();
+        List<String> parameterTypes = method.getParameterDescriptors();
+        ClassFileClass declaringClass = method.getDeclaringClass();
+        // make sure we don't visit interfaces more than once
+        Set<String> visited = new HashSet<String>();
+        // try the superclass first
+        Type superclass = getRawSuperclass(declaringClass);
+        if(superclass != null){
+            if(isOverXingMethodInClassRecursive(searchType, name, parameterTypes, declaringClass, getClass(declaringClass, superclass), visited))
+                return true;
+        }
+        // now try the interfaces
+        for(Type interfce : declaringClass.getInterfaceTypes()){
+            if(isOverXingMethodInClassRecursive(searchType, name, parameterTypes, declaringClass, getClass(declaringClass, interfce), visited))
+                return true;
+        }
+        // not overriding anything
+        return false;
+    }
+
+    /**
+     * Like Class.getSuperclass(), which is null for
+     * interfaces.
+     */
+    private static Type getRawSuperclass(ClassFileClass klass) {
+        return klass.getSuperclassType();
+    }
+
+    private static ClassFileClass getClass(ClassFileClass context, Type type) throws MissingClassFile {
+        if(!(type instanceof ClassType))
+            throw new MissingClassFile();
+        ClassMirror klass = context.mirrors.getReferencedClassMirror(toClassName(((ClassType) type).getBinaryName()), context);
+        if(klass instanceof ClassFileClass)
+            return (ClassFileClass) klass;
+        throw new MissingClassFile();
+    }
+
+    private static boolean isOverXingMethodInClassRecursive(OverXing searchType, String name, List<String> parameterTypes, ClassFileClass declaringClass, ClassFileClass klass,
+            Set<String> visited) throws MissingClassFile {
+        if(!visited.add(klass.getQualifiedName()))
+            return false;
+        if(isOverXingMethodInClass(searchType, name, parameterTypes, declaringClass, klass))
+            return true;
+        // try the superclass first
+        Type superclass = getRawSuperclass(klass);
+        if(superclass != null){
+            if(isOverXingMethodInClassRecursive(searchType, name, parameterTypes, declaringClass, getClass(klass, superclass), visited))
+                return true;
+        }
+        // now try the interfaces
+        for(Type interfce : klass.getInterfaceTypes()){
+            if(isOverXingMethodInClassRecursive(searchType, name, parameterTypes, declaringClass, getClass(klass, interfce), visited))
+                return true;
+        }
+        // not overriding anything here
+        return false;
+    }
+
+    private static boolean isOverXingMethodInClass(OverXing searchType, String name, List<String> parameterTypes, ClassFileClass declaringClass, ClassFileClass klass) throws MissingClassFile {
+        switch(searchType){
+        case Overloading:
+            return isOverloadingMethodInClass(name, parameterTypes, declaringClass, klass);
+        case Overriding:
+            return isOverridingMethodInClass(name, parameterTypes, declaringClass, klass);
+        default:
+            throw new RuntimeException("Non-exhaustive switch");
+        }
+    }
+
+    /**
+     * Like Class.getDeclaredMethod(), which prefers the
+     * method with the most specific return type, so never
+     * the bridge methods.
+     */
+    private static ClassFileMethod getDeclaredMethod(ClassFileClass lookupClass, String name, List<String> parameterTypes) {
+        ClassFileMethod ret = null;
+        for(ClassFileMethod m : lookupClass.getAllMethods()){
+            if(m.getRawName().equals(name)
+                    && m.getParameterDescriptors().equals(parameterTypes)){
+                if(!m.isBridge())
+                    return m;
+                if(ret == null)
+                    ret = m;
+            }
+        }
+        return ret;
+    }
+
+    private static boolean isOverridingMethodInClass(String name, List<String> parameterTypes, ClassFileClass declaringClass, ClassFileClass lookupClass) throws MissingClassFile {
+        ClassFileMethod found = getDeclaredMethod(lookupClass, name, parameterTypes);
+        if(found != null){
+            // present
+            return !found.isBridge() && !found.isSynthetic() && !found.isPrivate()
+                    && !isIgnored(found)
+                    && !isHiddenMethod(found);
+        }
+        NEXT_METHOD:
+        for(ClassFileMethod m : lookupClass.getAllMethods()){
+            if(!m.getRawName().equals(name)
+                    || m.isBridge()
+                    || m.isSynthetic()
+                    || isIgnored(m)
+                    || m.isFinal()
+                    || m.isPrivate()
+                    || isHiddenMethod(m))
+                continue;
+            if(m.getDescriptorType().paramTypes.size() != parameterTypes.size())
+                continue;
+            int i=0;
+            // get the type argument mappings for that method's container
+            Map<String, String> typeArguments = getTypeArguments(declaringClass, lookupClass, Collections.<String, String>emptyMap());
+            for(Type t : m.getSignature().paramTypes){
+                String parameterErasure = getErasure(typeArguments, t);
+                if(!parameterErasure.equals(parameterTypes.get(i++)))
+                    continue NEXT_METHOD;
+            }
+            // must be the same?
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isOverloadingMethodInClass(String name, List<String> parameterTypes, ClassFileClass declaringClass, ClassFileClass lookupClass) throws MissingClassFile {
+        for(ClassFileMethod m : lookupClass.getAllMethods()){
+            if(!m.getRawName().equals(name)
+                    || m.isBridge()
+                    || m.isSynthetic()
+                    || isIgnored(m)
+                    || m.isPrivate()
+                    || isHiddenMethod(m))
+                continue;
+            if(m.getDescriptorType().paramTypes.size() != parameterTypes.size())
+                return true;
+            int i=0;
+            // get the type argument mappings for that method's container
+            Map<String, String> typeArguments = getTypeArguments(declaringClass, lookupClass, Collections.<String, String>emptyMap());
+            for(Type t : m.getSignature().paramTypes){
+                String parameterErasure = getErasure(typeArguments, t);
+                if(!parameterErasure.equals(parameterTypes.get(i++)))
+                    return true;
+            }
+            // must be the overriding, check the next one
+        }
+        // no overload here
+        return false;
+    }
+
+    private static boolean isIgnored(ClassFileMethod m) {
+        return m.getAnnotation(AbstractModelLoader.CEYLON_IGNORE_ANNOTATION) != null;
+    }
+
+    private static boolean isHiddenMethod(ClassFileMethod m) {
+        return m.getDeclaringClass().getQualifiedName().equals("java.lang.Object")
+                && (m.getRawName().equals("finalize")
+                        || m.getRawName().equals("clone"));
+    }
+
+    /**
+     * Returns the erasures of the type arguments of the given
+     * supertype, as seen from the given base type, keyed by
+     * type parameter name, or an empty map if it has no type
+     * parameters, or if it is not a supertype.
+     */
+    private static Map<String, String> getTypeArguments(ClassFileClass base, ClassFileClass searchedSuperType, Map<String, String> baseTypeArguments) throws MissingClassFile {
+        Map<String, String> ret = findTypeArguments(base, searchedSuperType, baseTypeArguments);
+        return ret != null ? ret : Collections.<String, String>emptyMap();
+    }
+
+    private static Map<String, String> findTypeArguments(ClassFileClass base, ClassFileClass searchedSuperType, Map<String, String> baseTypeArguments) throws MissingClassFile {
+        // fast exit for non-generics
+        if(!searchedSuperType.hasTypeParameters())
+            return Collections.<String, String>emptyMap();
+
+        if(base.getQualifiedName().equals(searchedSuperType.getQualifiedName())){
+            return baseTypeArguments;
+        }
+        Map<String, String> ret = null;
+        // look for it in our super class
+        Type superclass = base.getSuperclassType();
+        if(superclass != null){
+            ret = getTypeArgumentsForSuperType(base, superclass, searchedSuperType, baseTypeArguments);
+        }
+        if(ret != null)
+            return ret;
+        // if not, look for interfaces, but only if the super type in question is an interface, otherwise there's no point
+        if(searchedSuperType.isInterface()){
+            for(Type superinterface : base.getInterfaceTypes()){
+                ret = getTypeArgumentsForSuperType(base, superinterface, searchedSuperType, baseTypeArguments);
+                if(ret != null)
+                    return ret;
+            }
+        }
+        // no match
+        return null;
+    }
+
+    private static Map<String, String> getTypeArgumentsForSuperType(ClassFileClass base, Type superclass, ClassFileClass searchedSuperType, Map<String, String> baseTypeArguments) throws MissingClassFile {
+        if(!(superclass instanceof ClassType))
+            throw new RuntimeException("Unknown superclass type: "+superclass);
+        ClassType superclassType = (ClassType) superclass;
+        ClassFileClass sc = getClass(base, superclassType);
+        if(superclassType.typeArgs == null && superclassType.outerType == null){
+            // not generic, or raw
+            return findTypeArguments(sc, searchedSuperType, Collections.<String, String>emptyMap());
+        }else{
+            Map<String, String> newTypeArgs = new HashMap<String, String>();
+            ClassType pt = superclassType;
+            ClassFileClass ptClass = sc;
+            while(pt != null){
+                addTypeArguments(pt, ptClass, newTypeArgs, baseTypeArguments);
+                pt = pt.outerType;
+                if(pt != null)
+                    ptClass = getClass(base, pt);
+            }
+            return findTypeArguments(sc, searchedSuperType, newTypeArgs);
+        }
+    }
+
+    private static void addTypeArguments(ClassType pt, ClassFileClass sc, Map<String, String> typeArgsMap, Map<String, String> baseTypeArguments) {
+        if(pt.typeArgs == null)
+            return;
+        List<TypeParamType> typeParameters = sc.getSignature().typeParamTypes;
+        if(typeParameters == null)
+            return;
+        int i=0;
+        for(TypeParamType tv : typeParameters){
+            if(i == pt.typeArgs.size())
+                break;
+            Type ta = pt.typeArgs.get(i++);
+            typeArgsMap.put(tv.name, getErasure(baseTypeArguments, ta));
+        }
+    }
+}
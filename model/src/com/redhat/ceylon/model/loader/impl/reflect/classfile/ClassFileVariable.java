@@ -0,0 +1,47 @@
+package com.redhat.ceylon.model.loader.impl.reflect.classfile;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+import com.redhat.ceylon.model.loader.mirror.VariableMirror;
+
+public class ClassFileVariable implements VariableMirror {
+
+    private ClassFileType type;
+    private Map<String, AnnotationMirror> annotations;
+
+    public ClassFileVariable(ClassFileType type, Map<String, AnnotationMirror> annotations) {
+        this.type = type;
+        this.annotations = annotations;
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(String type) {
+        return annotations.get(type);
+    }
+
+    @Override
+    public Set<String> getAnnotationNames() {
+        return annotations.keySet();
+    }
+
+    @Override
+    public TypeMirror getType() {
+        return type;
+    }
+
+    @Override
+    public String getName() {
+        AnnotationMirror name = getAnnotation("com.redhat.ceylon.compiler.java.metadata.Name");
+        if(name == null)
+            return "unknown";
+        return (String) name.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "[ClassFileVariable: "+type.toString()+"]";
+    }
+}
@@ -4,6 +4,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -18,7 +19,11 @@ import java.util.Map;
 import java.util.Set;
 
 import com.redhat.ceylon.model.loader.AbstractModelLoader;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileClass;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMethod;
 import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
 import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
 
 public class ReflectionUtils {
@@ -87,6 +92,32 @@ public class ReflectionUtils {
         }
     }
 
+    /**
+     * Returns the Java class of a class mirror obtained from
+     * a reflection model loader, loading it if it was read
+     * from its class file, or null if it is not such a mirror.
+     */
+    public static Class<?> getJavaClass(ClassMirror classMirror) {
+        if(classMirror instanceof ReflectionClass)
+            return ((ReflectionClass) classMirror).klass;
+        if(classMirror instanceof ClassFileClass)
+            return ((ClassFileClass) classMirror).getJavaClass();
+        return null;
+    }
+
+    /**
+     * Returns the Java method or constructor of a method mirror
+     * obtained from a reflection model loader, or null if it is
+     * not such a mirror.
+     */
+    public static Member getJavaMember(MethodMirror methodMirror) {
+        if(methodMirror instanceof ReflectionMethod)
+            return ((ReflectionMethod) methodMirror).method;
+        if(methodMirror instanceof ClassFileMethod)
+            return ((ClassFileMethod) methodMirror).getJavaMember();
+        return null;
+    }
+
     private enum OverXing {
         Overloading, Overriding
     }
@@ -1,5 +1,6 @@
 package com.redhat.ceylon.model.loader.model;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +28,7 @@ import com.redhat.ceylon.model.typechecker.model.Unit;
  *
  * @author Stéphane Épardaud <stef@epardaud.fr>
  */
-public class LazyClass extends Class implements LazyContainer {
+public class LazyClass extends Class implements LazyContainer, LazyMembersContainer {
 
     public final ClassMirror classMirror;
     private ModelCompleter completer;
@@ -39,9 +40,10 @@ public class LazyClass extends Class implements LazyContainer {
     private Map<String,Declaration> localDeclarations;
     
     private boolean isLoaded = false;
-    private boolean isLoaded2 = false;
+    private volatile boolean isLoaded2 = false;
+    private volatile LazyMembers lazyMembers;
     private boolean isTypeParamsLoaded = false;
-    private boolean isTypeParamsLoaded2 = false;
+    private volatile boolean isTypeParamsLoaded2 = false;
     private boolean local = false;
     private boolean hasJpaConstructor;
 
@@ -146,6 +148,42 @@ public class LazyClass extends Class implements LazyContainer {
     @Override
     public List<Declaration> getMembers() {
         load();
+        if(lazyMembers != null)
+            completer.completeMembers(this, null);
+        return super.getMembers();
+    }
+
+    @Override
+    protected List<Declaration> getMembersNamed(String name) {
+        load();
+        if(lazyMembers != null){
+            completer.completeMembers(this, name);
+            if(lazyMembers != null){
+                // other members may be getting completed, so look them up while they can't be,
+                // in the list itself so that its index stays current
+                synchronized(completer.getLock()){
+                    List<Declaration> members = super.getMembers();
+                    List<Declaration> named = getMembersNamed(members, name);
+                    // a list too short to be indexed may still grow
+                    return named == members ? new ArrayList<Declaration>(members) : named;
+                }
+            }
+        }
+        return super.getMembersNamed(name);
+    }
+
+    @Override
+    public LazyMembers getLazyMembers() {
+        return lazyMembers;
+    }
+
+    @Override
+    public void setLazyMembers(LazyMembers lazyMembers) {
+        this.lazyMembers = lazyMembers;
+    }
+
+    @Override
+    public List<Declaration> getCompletedMembers() {
         return super.getMembers();
     }
 
@@ -40,7 +40,7 @@ public class LazyFunction extends Function implements LazyElement, LocalDeclarat
     private String realMethodName;
     
     private boolean isLoaded = false;
-    private boolean isLoaded2 = false;
+    private volatile boolean isLoaded2 = false;
     
     private Map<String,Declaration> localDeclarations;
     
@@ -0,0 +1,181 @@
+package com.redhat.ceylon.model.loader.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.redhat.ceylon.model.loader.mirror.FieldMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
+
+/**
+ * The members of a Java class or interface which have not been
+ * completed yet, because the model loader completes them on
+ * demand, by name, the first time they are looked up, rather
+ * than all at once with their class.
+ *
+ * Whether a method becomes a method, or a getter or a setter of
+ * an attribute, and which name a field gets, depends on the
+ * other members with related names, so members are grouped by
+ * every name they can have or depend on (their Java name, their
+ * Ceylon name, the name of their attribute), and a group is
+ * completed as a whole, as if the class only had those members.
+ *
+ * Members are only completed on demand if it is
+ * {@link #setEnabled(boolean) enabled}.
+ */
+public class LazyMembers {
+
+    private static boolean enabled =
+            Boolean.getBoolean("com.redhat.ceylon.model.loader.model.LazyMembers.enabled");
+
+    public static void setEnabled(boolean enabled) {
+        LazyMembers.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Members which have to be completed together.
+     */
+    public static class Group {
+        /** Methods by Java name, in declaration order */
+        private final Map<String,List<MethodMirror>> methods = new LinkedHashMap<String,List<MethodMirror>>();
+        private final List<FieldMirror> fields = new ArrayList<FieldMirror>();
+        private final Set<String> names = new LinkedHashSet<String>();
+
+        public Map<String,List<MethodMirror>> getMethods() {
+            return methods;
+        }
+
+        public List<FieldMirror> getFields() {
+            return fields;
+        }
+
+        /**
+         * The names under which this group can be found
+         */
+        public Set<String> getNames() {
+            return names;
+        }
+
+        @Override
+        public String toString() {
+            return "Group" + names;
+        }
+    }
+
+    private final Map<String,Group> groupsByName = new HashMap<String,Group>();
+    /** In the order of their first member, to complete them in declaration order */
+    private final Set<Group> groups = new LinkedHashSet<Group>();
+
+    /**
+     * Adds a method, which can be found under the given names.
+     */
+    public void addMethod(MethodMirror method, String... names) {
+        Group group = getGroup(method.getName(), names);
+        List<MethodMirror> homonyms = group.methods.get(method.getName());
+        if (homonyms == null) {
+            homonyms = new LinkedList<MethodMirror>();
+            group.methods.put(method.getName(), homonyms);
+        }
+        homonyms.add(method);
+    }
+
+    /**
+     * Adds a field, which can be found under the given names.
+     */
+    public void addField(FieldMirror field, String... names) {
+        getGroup(field.getName(), names).fields.add(field);
+    }
+
+    /**
+     * Returns the group of the given names, merging the groups
+     * which already had some of them.
+     */
+    private Group getGroup(String name, String... names) {
+        // keep the existing group, so that it keeps its place
+        Group ret = groupsByName.get(name);
+        for (int i=0; ret == null && i<names.length; i++) {
+            ret = groupsByName.get(names[i]);
+        }
+        if (ret == null) {
+            ret = new Group();
+            groups.add(ret);
+        }
+        if (!groupsByName.containsKey(name)) {
+            link(ret, name);
+        }
+        for (String other : names) {
+            Group group = groupsByName.get(other);
+            if (group == null) {
+                link(ret, other);
+            }
+            else if (group != ret) {
+                merge(ret, group);
+            }
+        }
+        return ret;
+    }
+
+    private void link(Group group, String name) {
+        group.names.add(name);
+        groupsByName.put(name, group);
+    }
+
+    private void merge(Group into, Group from) {
+        for (Map.Entry<String,List<MethodMirror>> entry : from.methods.entrySet()) {
+            // methods are grouped by their name, so they can't be in both groups
+            into.methods.put(entry.getKey(), entry.getValue());
+        }
+        into.fields.addAll(from.fields);
+        for (String name : from.names) {
+            link(into, name);
+        }
+        groups.remove(from);
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    /**
+     * Removes and returns the group of members which can be found
+     * under the given name, or null if there is none left.
+     */
+    public Group remove(String name) {
+        Group ret = groupsByName.get(name);
+        if (ret != null) {
+            remove(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Removes and returns the first group left, or null if there
+     * is none left.
+     */
+    public Group removeFirst() {
+        Iterator<Group> iterator = groups.iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Group ret = iterator.next();
+        remove(ret);
+        return ret;
+    }
+
+    private void remove(Group group) {
+        groups.remove(group);
+        for (String name : group.names) {
+            groupsByName.remove(name);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.redhat.ceylon.model.loader.model;
+
+import java.util.List;
+
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+
+/**
+ * A lazy class or interface whose members can be completed on
+ * demand, by name.
+ */
+public interface LazyMembersContainer {
+
+    /**
+     * The members left to complete, or null if they are all
+     * completed.
+     */
+    public LazyMembers getLazyMembers();
+
+    public void setLazyMembers(LazyMembers lazyMembers);
+
+    /**
+     * The members completed so far, without completing the
+     * others.
+     */
+    public List<Declaration> getCompletedMembers();
+}
@@ -10,6 +10,7 @@ import java.util.concurrent.Callable;
 import com.redhat.ceylon.model.cmr.ArtifactResult;
 import com.redhat.ceylon.model.loader.AbstractModelLoader;
 import com.redhat.ceylon.model.loader.ContentAwareArtifactResult;
+import com.redhat.ceylon.model.loader.DeclarationIndex;
 import com.redhat.ceylon.model.loader.JdkProvider;
 import com.redhat.ceylon.model.loader.JvmBackendUtil;
 import com.redhat.ceylon.model.typechecker.model.Module;
@@ -30,6 +31,9 @@ public abstract class LazyModule extends Module {
     private boolean isJava = false;
     protected Set<String> jarPackages = new HashSet<String>();
     private PackagePathsProvider packagePathsProvider;
+    /** The archive to read the declaration index from, until it's read */
+    private ArtifactResult declarationIndexArtifact;
+    private DeclarationIndex declarationIndex;
     
     /**
      * Set of exported Java9 Module packages, or null if not a Java9 module. Only
@@ -186,6 +190,30 @@ public abstract class LazyModule extends Module {
         }
     }
 
+    /**
+     * Sets the archive from which this module's declarations are
+     * loaded, to read its declaration index from when we first
+     * need it. Only call this for archives which are not being
+     * compiled, since the index would not list the declarations
+     * we are compiling.
+     */
+    public void loadDeclarationIndex(ArtifactResult artifact) {
+        declarationIndexArtifact = artifact;
+        declarationIndex = null;
+    }
+
+    /**
+     * Returns the declaration index of this module's archive, or
+     * null if it does not have one.
+     */
+    public DeclarationIndex getDeclarationIndex() {
+        if(declarationIndexArtifact != null){
+            declarationIndex = DeclarationIndex.read(declarationIndexArtifact);
+            declarationIndexArtifact = null;
+        }
+        return declarationIndex;
+    }
+
     public boolean containsPackage(String pkgName){
         if(!isJava){
             List<Package> superPackages = super.getPackages();
@@ -1,25 +1,103 @@
 package com.redhat.ceylon.model.typechecker.context;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.redhat.ceylon.model.typechecker.model.Type;
 import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
 import com.redhat.ceylon.model.typechecker.model.UnknownType;
 
+/**
+ * Memoises the supertypes of types, keyed on the type and
+ * the supertype declaration.
+ * 
+ * The cache is bounded: it holds at most 
+ * {@link #getCapacity() capacity} supertypes, and when it
+ * is full the least recently used types are evicted along 
+ * with all their cached supertypes. The entries are split
+ * across independently locked stripes, according to the 
+ * hash of the type.
+ * 
+ * Optionally, the cache also memoises the subtype 
+ * relation, keyed on pairs of types. Since the subtype 
+ * relation between two types may depend on any 
+ * declaration they mention, in any module, every memoised
+ * relation, in every cache, is invalidated whenever any 
+ * cache is cleared, or any part of it is cleared for a
+ * declaration: the memos belong to a global 
+ * {@link #getSubtypeEpoch() epoch}, which is then 
+ * advanced. The memo is bounded by the capacity of the 
+ * cache too, and evicts the least recently used 
+ * relations.
+ */
 public class TypeCache {
     
     private static boolean cachingEnabledByDefault = true;
     
+    private static int defaultCapacity = 
+            Integer.getInteger("com.redhat.ceylon.model.typechecker.context.TypeCache.capacity", 
+                    200000);
+    
+    private static boolean subtypeCachingEnabled = 
+            Boolean.getBoolean("com.redhat.ceylon.model.typechecker.context.TypeCache.subtypes");
+    
+    private static final int STRIPES = 16;
+    
     public static void setEnabledByDefault(boolean enabled) {
         cachingEnabledByDefault = enabled;
     }
     
+    /**
+     * Sets the capacity of the caches created from now on.
+     * A capacity of zero or less means unbounded.
+     */
+    public static void setDefaultCapacity(int capacity) {
+        defaultCapacity = capacity;
+    }
+    
+    public static int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+    
+    /**
+     * Enables or disables memoisation of 
+     * {@link Type#isSubtypeOf(Type)}, for every cache.
+     */
+    public static void setSubtypeCachingEnabled(boolean enabled) {
+        subtypeCachingEnabled = enabled;
+    }
+    
+    public static boolean isSubtypeCachingEnabled() {
+        return subtypeCachingEnabled;
+    }
+    
+    private static final AtomicLong subtypeEpoch = new AtomicLong();
+    
+    /**
+     * The current epoch of the memoised subtype relations.
+     * A relation computed during an earlier epoch may no 
+     * longer hold.
+     */
+    public static long getSubtypeEpoch() {
+        return subtypeEpoch.get();
+    }
+    
+    /**
+     * Invalidates the memoised subtype relations of every
+     * cache.
+     */
+    public static void invalidateSubtypes() {
+        subtypeEpoch.incrementAndGet();
+    }
+    
     private static final ThreadLocal<Boolean> cachingEnabled = 
             new ThreadLocal<Boolean>();
     
@@ -80,19 +158,191 @@ public class TypeCache {
         return cie == null ? cachingEnabledByDefault : cie;
     }
     
-    // need a special value for null because ConcurrentHashMap does not support null
+    // need a special value for null because the cache can't tell 
+    // a missing entry from a non-supertype otherwise
     public final static Type NULL_VALUE = new UnknownType(null).getType();
-    // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
-    // on concurrent operations
-    private final Map<Type, Map<TypeDeclaration, Type>> superTypes = 
-            new ConcurrentHashMap<Type, Map<TypeDeclaration, Type>>();
     
-    public boolean containsKey(Type producedType, TypeDeclaration dec) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            return false;
+    private final int capacity;
+    private final Stripe[] stripes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Map<TypePair, Boolean> subtypes;
+    //the epoch of the memoised subtype relations
+    private long subtypesEpoch = getSubtypeEpoch();
+    private final AtomicLong subtypeHits = new AtomicLong();
+    private final AtomicLong subtypeMisses = new AtomicLong();
+    
+    public TypeCache() {
+        this(defaultCapacity);
+    }
+    
+    /**
+     * @param capacity the maximum number of cached 
+     *        supertypes, or zero or less for an unbounded
+     *        cache
+     */
+    public TypeCache(int capacity) {
+        this.capacity = capacity;
+        int stripeCapacity = capacity > 0 ? 
+                Math.max(1, capacity / STRIPES) : 0;
+        stripes = new Stripe[STRIPES];
+        for (int i=0; i<STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        subtypes = new LinkedHashMap<TypePair, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Entry<TypePair, Boolean> eldest) {
+                if (TypeCache.this.capacity > 0 
+                        && size() > TypeCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * The cached supertypes of the types hashing to this
+     * stripe, in least recently used order.
+     */
+    private final class Stripe {
+        private final int capacity;
+        private final LinkedHashMap<Type, Map<TypeDeclaration, Type>> superTypes = 
+                new LinkedHashMap<Type, Map<TypeDeclaration, Type>>(16, 0.75f, true);
+        private int size;
+        
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+        
+        synchronized boolean containsKey(Type producedType, TypeDeclaration dec) {
+            Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
+            return cache != null && cache.containsKey(dec);
+        }
+        
+        synchronized Type get(Type producedType, TypeDeclaration dec) {
+            Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
+            return cache == null ? null : cache.get(dec);
+        }
+        
+        synchronized void put(Type producedType, TypeDeclaration dec, Type superType) {
+            Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
+            if (cache == null) {
+                cache = new HashMap<TypeDeclaration, Type>();
+                superTypes.put(producedType, cache);
+            }
+            if (cache.put(dec, superType) == null) {
+                size++;
+            }
+            if (capacity > 0) {
+                evict(producedType);
+            }
+        }
+        
+        private void evict(Type keep) {
+            Iterator<Entry<Type, Map<TypeDeclaration, Type>>> iterator = 
+                    superTypes.entrySet().iterator();
+            while (size > capacity && iterator.hasNext()) {
+                Entry<Type, Map<TypeDeclaration, Type>> eldest = iterator.next();
+                if (eldest.getKey() == keep) {
+                    //never evict the type we just cached
+                    continue;
+                }
+                int count = eldest.getValue().size();
+                size -= count;
+                evictions.addAndGet(count);
+                iterator.remove();
+            }
+        }
+        
+        synchronized void clear() {
+            superTypes.clear();
+            size = 0;
+        }
+        
+        synchronized void removeRoot(Type producedType) {
+            Map<TypeDeclaration, Type> cache = superTypes.remove(producedType);
+            if (cache != null) {
+                size -= cache.size();
+            }
+        }
+        
+        synchronized void removeValue(Type producedType, int hashCode) {
+            for (Map<TypeDeclaration, Type> cacheValues : superTypes.values()) {
+                Iterator<Entry<TypeDeclaration, Type>> iterator = cacheValues.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Entry<TypeDeclaration, Type> entry = iterator.next();
+                    if(entry.getValue() != NULL_VALUE
+                            && !entry.getValue().isUnknown()
+                            && entry.getValue().hashCode() == hashCode
+                            && entry.getValue().equals(producedType)) {
+                        iterator.remove();
+                        size--;
+                    }
+                }
+            }
+        }
+        
+        void removeDependents(TypeDeclaration decl, 
+                Map<TypeDeclaration, Boolean> dependents) {
+            //walk the hierarchy without holding the lock,
+            //since it may need to complete lazy declarations
+            List<Type> roots;
+            synchronized (this) {
+                roots = new ArrayList<Type>(superTypes.keySet());
+            }
+            List<Type> dependentRoots = new ArrayList<Type>();
+            for (Type root : roots) {
+                if (dependsOn(root.getDeclaration(), decl, dependents)) {
+                    dependentRoots.add(root);
+                }
+            }
+            synchronized (this) {
+                for (Type root : dependentRoots) {
+                    removeRoot(root);
+                }
+                for (Map<TypeDeclaration, Type> cache : superTypes.values()) {
+                    if (cache.remove(decl) != null) {
+                        size--;
+                    }
+                }
+            }
+        }
+        
+        synchronized void removeNullValues() {
+            Iterator<Map<TypeDeclaration, Type>> roots = 
+                    superTypes.values().iterator();
+            while (roots.hasNext()) {
+                Map<TypeDeclaration, Type> cache = roots.next();
+                Iterator<Type> values = cache.values().iterator();
+                while (values.hasNext()) {
+                    if (values.next() == NULL_VALUE) {
+                        values.remove();
+                        size--;
+                    }
+                }
+                if (cache.isEmpty()) {
+                    roots.remove();
+                }
+            }
+        }
+        
+        synchronized int size() {
+            return size;
         }
-        return cache.containsKey(dec);
+    }
+    
+    private Stripe stripe(Type producedType) {
+        int h = producedType.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (STRIPES-1)];
+    }
+    
+    public boolean containsKey(Type producedType, TypeDeclaration dec) {
+        return stripe(producedType).containsKey(producedType, dec);
     }
 
     /**
@@ -102,11 +352,14 @@ public class TypeCache {
      * @return
      */
     public Type get(Type producedType, TypeDeclaration dec) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            return null;
+        Type result = stripe(producedType).get(producedType, dec);
+        if (result == null) {
+            misses.incrementAndGet();
         }
-        return cache.get(dec);
+        else {
+            hits.incrementAndGet();
+        }
+        return result;
     }
 
     /**
@@ -116,18 +369,100 @@ public class TypeCache {
      * @param superType
      */
     public void put(Type producedType, TypeDeclaration dec, Type superType) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
-            // on concurrent operations
-            cache = new ConcurrentHashMap<TypeDeclaration, Type>();
-            superTypes.put(producedType, cache);
-        }
-        cache.put(dec, superType);
+        stripe(producedType).put(producedType, dec, superType);
     }
 
     public void clear(){
-        superTypes.clear();
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+        invalidateSubtypes();
+    }
+    
+    /**
+     * Returns the memoised result of 
+     * {@link Type#isSubtypeOf(Type)}, or null if it is not
+     * known.
+     */
+    public Boolean getSubtype(Type type, Type supertype) {
+        TypePair key = new TypePair(type, supertype);
+        Boolean result;
+        synchronized (subtypes) {
+            result = 
+                    checkSubtypesEpoch(getSubtypeEpoch()) ? 
+                            subtypes.get(key) : null;
+        }
+        if (result == null) {
+            subtypeMisses.incrementAndGet();
+        }
+        else {
+            subtypeHits.incrementAndGet();
+        }
+        return result;
+    }
+    
+    /**
+     * Memoises the result of {@link Type#isSubtypeOf(Type)}.
+     * 
+     * @param epoch the {@link #getSubtypeEpoch() epoch} 
+     *        when the computation of the result started, so
+     *        that a result which may have been invalidated 
+     *        in the meantime is not memoised
+     */
+    public void putSubtype(Type type, Type supertype, 
+            boolean result, long epoch) {
+        TypePair key = new TypePair(type, supertype);
+        synchronized (subtypes) {
+            if (checkSubtypesEpoch(epoch)) {
+                subtypes.put(key, result);
+            }
+        }
+    }
+    
+    /**
+     * Forgets the memoised subtype relations of an earlier
+     * epoch, and determines if the given epoch is the 
+     * current one.
+     */
+    private boolean checkSubtypesEpoch(long epoch) {
+        long current = getSubtypeEpoch();
+        if (subtypesEpoch != current) {
+            subtypes.clear();
+            subtypesEpoch = current;
+        }
+        return epoch == current;
+    }
+    
+    private static final class TypePair {
+        private final Type type;
+        private final Type supertype;
+        private final int hashCode;
+        
+        TypePair(Type type, Type supertype) {
+            this.type = type;
+            this.supertype = supertype;
+            this.hashCode = 
+                    37 * type.hashCode() + supertype.hashCode();
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TypePair)) {
+                return false;
+            }
+            TypePair other = (TypePair) obj;
+            return hashCode == other.hashCode
+                    && type.equals(other.type)
+                    && supertype.equals(other.supertype);
+        }
     }
 
     /**
@@ -135,57 +470,175 @@ public class TypeCache {
      * @param producedType
      */
     public void remove(Type producedType) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache != null) {
-            // help GC a bit
-            cache.clear();
-            superTypes.remove(producedType);
-        }
+        stripe(producedType).removeRoot(producedType);
         int hashCode = producedType.hashCode();
         // also clear cached values
-        for(Map<TypeDeclaration, Type> cacheValues : superTypes.values()){
-            Iterator<Entry<TypeDeclaration, Type>> iterator = cacheValues.entrySet().iterator();
-            while(iterator.hasNext()){
-                Entry<TypeDeclaration, Type> entry = iterator.next();
-                if(entry.getValue() != NULL_VALUE
-                        && !entry.getValue().isUnknown()
-                        && entry.getValue().hashCode() == hashCode
-                        && entry.getValue().equals(producedType))
-                    iterator.remove();
-            }
+        for (Stripe stripe : stripes) {
+            stripe.removeValue(producedType, hashCode);
         }
     }
 
+    /**
+     * Clears every cached supertype which might change 
+     * when the given declaration changes: the supertypes 
+     * of types whose declaration is, or inherits, the
+     * given declaration, and every cached supertype of
+     * the given declaration.
+     */
     public void clearForDeclaration(TypeDeclaration decl) {
-        // clear the whole cache for now, unless I can figure out exactly what to
-        // clear
-        clear();
+        if (decl == null) {
+            clear();
+            return;
+        }
+        invalidateSubtypes();
+        Map<TypeDeclaration, Boolean> dependents = 
+                new IdentityHashMap<TypeDeclaration, Boolean>();
+        for (Stripe stripe : stripes) {
+            stripe.removeDependents(decl, dependents);
+        }
     }
     
-    public void clearNullValues() {
-        List<Type> cachesToremove = new LinkedList<Type>();
-        for (Map.Entry<Type, Map<TypeDeclaration, Type>> entry: 
-                superTypes.entrySet()) {
-            Map<TypeDeclaration, Type> cache = entry.getValue();
-            if (cache == null) {
-                cachesToremove.add(entry.getKey());
-            }
-            else {
-                List<TypeDeclaration> valuesToremove = 
-                        new LinkedList<TypeDeclaration>();
-                for (Map.Entry<TypeDeclaration, Type> cacheEntry: 
-                        cache.entrySet()) {
-                    if (cacheEntry.getValue() == NULL_VALUE) {
-                        valuesToremove.add(cacheEntry.getKey());
-                    }
-                }
-                for (TypeDeclaration toRemove: valuesToremove) {
-                    cache.remove(toRemove);
+    /**
+     * Determines if the given declaration is the changed
+     * declaration or has it somewhere in its supertypes. 
+     * The hierarchy is not trusted to be free of cycles, 
+     * since the model may be in the middle of being 
+     * changed.
+     */
+    private static boolean dependsOn(TypeDeclaration td, 
+            TypeDeclaration changed, 
+            Map<TypeDeclaration, Boolean> dependents) {
+        Map<TypeDeclaration, Boolean> visiting = 
+                new IdentityHashMap<TypeDeclaration, Boolean>();
+        boolean result = 
+                dependsOn(td, changed, dependents, visiting);
+        if (!result) {
+            //the search was exhaustive, so none of the 
+            //visited declarations depend on it either
+            for (TypeDeclaration visited : visiting.keySet()) {
+                dependents.put(visited, false);
+            }
+        }
+        return result;
+    }
+
+    private static boolean dependsOn(TypeDeclaration td, 
+            TypeDeclaration changed, 
+            Map<TypeDeclaration, Boolean> dependents,
+            Map<TypeDeclaration, Boolean> visiting) {
+        if (td == null 
+                || visiting.containsKey(td)) {
+            return false;
+        }
+        if (td.equals(changed)) {
+            return true;
+        }
+        Boolean known = dependents.get(td);
+        if (known != null) {
+            return known;
+        }
+        visiting.put(td, true);
+        boolean result = 
+                dependsOn(td.getExtendedType(), changed, dependents, visiting)
+                || dependsOn(td.getSatisfiedTypes(), changed, dependents, visiting)
+                || dependsOn(td.getCaseTypes(), changed, dependents, visiting);
+        if (result) {
+            dependents.put(td, true);
+        }
+        return result;
+    }
+
+    private static boolean dependsOn(Type type, 
+            TypeDeclaration changed, 
+            Map<TypeDeclaration, Boolean> dependents,
+            Map<TypeDeclaration, Boolean> visiting) {
+        return type != null 
+                && dependsOn(type.getDeclaration(), changed, 
+                        dependents, visiting);
+    }
+
+    private static boolean dependsOn(List<Type> types, 
+            TypeDeclaration changed, 
+            Map<TypeDeclaration, Boolean> dependents,
+            Map<TypeDeclaration, Boolean> visiting) {
+        if (types != null) {
+            for (int i=0, s=types.size(); i<s; i++) {
+                if (dependsOn(types.get(i), changed, 
+                        dependents, visiting)) {
+                    return true;
                 }
             }
         }
-        for (Type toRemove: cachesToremove) {
-            superTypes.remove(toRemove);
+        return false;
+    }
+    
+    public void clearNullValues() {
+        for (Stripe stripe : stripes) {
+            stripe.removeNullValues();
         }
+        //a type might now be a subtype of another
+        invalidateSubtypes();
+    }
+    
+    /**
+     * The maximum number of cached supertypes, or zero or
+     * less if this cache is unbounded.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * The number of cached supertypes.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getEvictions() {
+        return evictions.get();
+    }
+    
+    /**
+     * The number of memoised subtype relations of the 
+     * current epoch.
+     */
+    public int getSubtypeCount() {
+        synchronized (subtypes) {
+            checkSubtypesEpoch(getSubtypeEpoch());
+            return subtypes.size();
+        }
+    }
+    
+    public long getSubtypeHits() {
+        return subtypeHits.get();
+    }
+    
+    public long getSubtypeMisses() {
+        return subtypeMisses.get();
+    }
+    
+    @Override
+    public String toString() {
+        return "TypeCache[size=" + size() + 
+                ", capacity=" + capacity + 
+                ", hits=" + getHits() + 
+                ", misses=" + getMisses() + 
+                ", evictions=" + getEvictions() + 
+                ", subtypes=" + getSubtypeCount() + 
+                ", subtypeHits=" + getSubtypeHits() + 
+                ", subtypeMisses=" + getSubtypeMisses() + "]";
     }
 }
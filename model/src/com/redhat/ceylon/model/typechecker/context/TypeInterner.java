@@ -0,0 +1,152 @@
+package com.redhat.ceylon.model.typechecker.context;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.redhat.ceylon.model.typechecker.model.IntersectionType;
+import com.redhat.ceylon.model.typechecker.model.Type;
+import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
+import com.redhat.ceylon.model.typechecker.model.UnionType;
+
+/**
+ * Hash-conses union and intersection types, so that
+ * structurally identical unions and intersections formed
+ * by the factory methods of
+ * {@link com.redhat.ceylon.model.typechecker.model.ModelUtil}
+ * share a single {@link Type} instance.
+ *
+ * Interning is opt-in: a {@link
+ * com.redhat.ceylon.model.typechecker.model.Module} only
+ * has an interner if interning was
+ * {@link #setEnabledByDefault(boolean) enabled} when the
+ * module was created, or if one was assigned explicitly.
+ * Interned types are marked as {@link Type#isCached()
+ * cached}, and so must be cloned before being modified.
+ *
+ * The interner is bounded: when it holds more than
+ * {@link #getCapacity() capacity} types, it is emptied.
+ */
+public class TypeInterner {
+
+    private static boolean internByDefault =
+            Boolean.getBoolean("com.redhat.ceylon.model.typechecker.context.TypeInterner.enabled");
+
+    private static int defaultCapacity =
+            Integer.getInteger("com.redhat.ceylon.model.typechecker.context.TypeInterner.capacity",
+                    100000);
+
+    public static void setEnabledByDefault(boolean enabled) {
+        internByDefault = enabled;
+    }
+
+    public static boolean isEnabledByDefault() {
+        return internByDefault;
+    }
+
+    /**
+     * Sets the capacity of the interners created from now
+     * on. A capacity of zero or less means unbounded.
+     */
+    public static void setDefaultCapacity(int capacity) {
+        defaultCapacity = capacity;
+    }
+
+    public static int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    private final ConcurrentMap<Type,Type> types =
+            new ConcurrentHashMap<Type,Type>();
+    private final int capacity;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    public TypeInterner() {
+        this(defaultCapacity);
+    }
+
+    public TypeInterner(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the canonical instance of the given type if
+     * it is a union or intersection type, or the type
+     * itself otherwise.
+     */
+    public Type intern(Type type) {
+        if (type==null
+                || !TypeCache.isEnabled()
+                || !isInternable(type)) {
+            return type;
+        }
+        requests.incrementAndGet();
+        Type interned = types.get(type);
+        if (interned!=null) {
+            hits.incrementAndGet();
+            return interned;
+        }
+        if (capacity>0 && types.size()>=capacity) {
+            types.clear();
+        }
+        type.setCached();
+        interned = types.putIfAbsent(type, type);
+        if (interned!=null) {
+            hits.incrementAndGet();
+            return interned;
+        }
+        return type;
+    }
+
+    private static boolean isInternable(Type type) {
+        TypeDeclaration dec = type.getDeclaration();
+        return (dec instanceof UnionType
+                || dec instanceof IntersectionType)
+            && !type.isCached()
+            && type.getUnderlyingType()==null
+            && !type.isRaw();
+    }
+
+    public void clear() {
+        types.clear();
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of union and intersection types passed
+     * to {@link #intern(Type)}.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * The number of union and intersection types that
+     * were replaced by an existing instance, that is, the
+     * number of type instances that did not need to be
+     * retained.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public String toString() {
+        long requests = getRequests();
+        long hits = getHits();
+        return "TypeInterner[size=" + size()
+                + ", requests=" + requests
+                + ", hits=" + hits
+                + ", saved=" + (requests==0 ? 0 : 100*hits/requests)
+                + "%]";
+    }
+
+}
@@ -1,7 +1,7 @@
 package com.redhat.ceylon.model.typechecker.model;
 
 public class Canceler implements Cancellable {
-    private boolean cancelled = false;
+    private volatile boolean cancelled = false;
     public void cancel() {
         cancelled = true;
     }
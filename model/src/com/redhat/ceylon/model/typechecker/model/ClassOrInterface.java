@@ -27,6 +27,7 @@ public abstract class ClassOrInterface extends TypeDeclaration {
     @Override
     public void addMember(Declaration declaration) {
         members.add(declaration);
+        memberAdded(members, declaration);
     }
     
     @Override
@@ -196,6 +196,7 @@ public class Constructor extends TypeDeclaration implements Functional {
     @Override
     public void addMember(Declaration declaration) {
         members.add(declaration);
+        memberAdded(declaration);
     }
     
     @Override
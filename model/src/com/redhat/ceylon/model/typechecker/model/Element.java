@@ -30,6 +30,7 @@ public abstract class Element implements Scoped, ImportScope {
     protected Unit unit;
     
     private List<Import> imports = null;
+    private volatile MemberIndex memberIndex;
     
     @Override
     public List<Import> getImports() {
@@ -133,7 +134,7 @@ public abstract class Element implements Scoped, ImportScope {
     public Declaration getDirectMember(String name, 
             List<Type> signature, boolean variadic, 
             boolean onlyExactMatches) {
-        return lookupMember(getMembers(), 
+        return lookupMember(getMembersNamed(name), 
                 name, signature, variadic, 
                 onlyExactMatches);
     }
@@ -145,9 +146,63 @@ public abstract class Element implements Scoped, ImportScope {
     @Override
     public Declaration getDirectMemberForBackend(String name, 
             Backends backends) {
-        return lookupMemberForBackend(getMembers(), 
+        return lookupMemberForBackend(getMembersNamed(name), 
                 name, backends);
     }
+    
+    /**
+     * The direct members of this scope which might have
+     * the given name, in declaration order. For scopes
+     * with many members, the candidates are obtained from
+     * a {@link MemberIndex}. Scopes which complete their
+     * members on demand only need to complete those with
+     * the given name.
+     */
+    protected List<Declaration> getMembersNamed(String name) {
+        return getMembersNamed(getMembers(), name);
+    }
+    
+    /**
+     * The members of the given list, which holds the 
+     * direct members of this scope, which might have the 
+     * given name, for scopes which complete their members 
+     * on demand. The list itself is returned if it is too
+     * short to be indexed.
+     */
+    protected final List<Declaration> getMembersNamed(
+            List<Declaration> members, String name) {
+        if (members.size()<MemberIndex.THRESHOLD) {
+            return members;
+        }
+        MemberIndex index = memberIndex;
+        if (index==null) {
+            index = new MemberIndex();
+            memberIndex = index;
+        }
+        return index.get(members, name);
+    }
+    
+    /**
+     * Notify the {@link MemberIndex}, if any, that the
+     * given member was just added to {@link #getMembers()}.
+     */
+    void memberAdded(Declaration member) {
+        memberAdded(getMembers(), member);
+    }
+
+    /**
+     * Notify the {@link MemberIndex}, if any, that the
+     * given member was just added to the given list of
+     * members, for scopes whose {@link #getMembers()}
+     * does more than return them.
+     */
+    void memberAdded(List<Declaration> members, 
+            Declaration member) {
+        MemberIndex index = memberIndex;
+        if (index!=null) {
+            index.added(members, member);
+        }
+    }
 
     /**
      * Search only this scope, including members inherited 
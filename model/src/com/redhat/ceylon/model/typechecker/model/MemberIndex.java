@@ -0,0 +1,120 @@
+package com.redhat.ceylon.model.typechecker.model;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the members of a scope by name, used to
+ * avoid a linear scan of every member in
+ * {@link Element#getDirectMember(String, List, boolean, boolean)}.
+ *
+ * The index records the list of members it was built
+ * from, together with its size and last element, and is
+ * rebuilt whenever that list no longer looks the same,
+ * since some clients of the model add and remove members
+ * directly via {@link Scope#getMembers()}. Members added
+ * through {@link Scope#addMember(Declaration)} are
+ * appended without a rebuild.
+ *
+ * The lists returned by {@link #get(List, String)} are
+ * never modified after they have been published, and
+ * preserve the order of the members, so that overload
+ * resolution gives the same result as a linear scan.
+ */
+final class MemberIndex {
+
+    /**
+     * Scopes with fewer members than this are just
+     * scanned linearly.
+     */
+    static final int THRESHOLD = 16;
+
+    private final Map<String,List<Declaration>> index =
+            new HashMap<String,List<Declaration>>();
+    private List<Declaration> members;
+    private int size;
+    private Declaration last;
+
+    /**
+     * The members of the given list with the given name,
+     * in declaration order.
+     */
+    synchronized List<Declaration> get(
+            List<Declaration> members, String name) {
+        if (!isCurrent(members)) {
+            rebuild(members);
+        }
+        List<Declaration> named = index.get(name);
+        if (named==null) {
+            return emptyList();
+        }
+        else {
+            return named;
+        }
+    }
+
+    /**
+     * Notify the index that the given member was just
+     * appended to the given list of members.
+     */
+    synchronized void added(List<Declaration> members,
+            Declaration member) {
+        int newSize = members.size();
+        if (this.members==members
+                && newSize==size+1
+                && members.get(size)==member
+                && (size==0 || members.get(size-1)==last)) {
+            put(member);
+            size = newSize;
+            last = member;
+        }
+        else {
+            //force a rebuild on the next lookup
+            this.members = null;
+        }
+    }
+
+    private boolean isCurrent(List<Declaration> members) {
+        int size = members.size();
+        return this.members==members
+                && this.size==size
+                && (size==0 || members.get(size-1)==last);
+    }
+
+    private void rebuild(List<Declaration> members) {
+        index.clear();
+        int size = members.size();
+        for (int i=0; i<size; i++) {
+            put(members.get(i));
+        }
+        this.members = members;
+        this.size = size;
+        this.last = size==0 ? null : members.get(size-1);
+    }
+
+    private void put(Declaration member) {
+        String name = member.getName();
+        if (name!=null) {
+            List<Declaration> named = index.get(name);
+            if (named==null) {
+                index.put(name, singletonList(member));
+            }
+            else {
+                //copy on write, since the previous list
+                //may be in use by a lookup
+                List<Declaration> list =
+                        new ArrayList<Declaration>
+                            (named.size()+1);
+                list.addAll(named);
+                list.add(member);
+                index.put(name, list);
+            }
+        }
+    }
+
+}
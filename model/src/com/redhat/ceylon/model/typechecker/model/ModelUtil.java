@@ -21,6 +21,7 @@ import com.redhat.ceylon.common.Backend;
 import com.redhat.ceylon.common.Backends;
 import com.redhat.ceylon.common.NonNull;
 import com.redhat.ceylon.model.loader.model.LazyElement;
+import com.redhat.ceylon.model.typechecker.context.TypeInterner;
 
 
 
@@ -1925,7 +1926,7 @@ public class ModelUtil {
         addToUnion(list, lhst);
         UnionType ut = new UnionType(unit);
         ut.setCaseTypes(list);
-        return ut.getType();
+        return intern(ut.getType(), unit);
     }
 
     /**
@@ -1944,7 +1945,7 @@ public class ModelUtil {
         addToIntersection(list, lhst, unit);
         IntersectionType it = new IntersectionType(unit);
         it.setSatisfiedTypes(list);
-        return it.canonicalize().getType();
+        return intern(it.canonicalize().getType(), unit);
     }
     
     /**
@@ -1958,7 +1959,7 @@ public class ModelUtil {
         }
         UnionType ut = new UnionType(unit);
         ut.setCaseTypes(types);
-        return ut.getType();
+        return intern(ut.getType(), unit);
     }
     
     /**
@@ -1972,7 +1973,7 @@ public class ModelUtil {
         }
         IntersectionType it = new IntersectionType(unit);
         it.setSatisfiedTypes(types);
-        return it.getType();
+        return intern(it.getType(), unit);
     }
 
     /**
@@ -1986,7 +1987,17 @@ public class ModelUtil {
         }
         IntersectionType it = new IntersectionType(unit);
         it.setSatisfiedTypes(types);
-        return it.canonicalize().getType();
+        return intern(it.canonicalize().getType(), unit);
+    }
+    
+    /**
+     * Replace the given union or intersection type with
+     * its canonical instance, if the unit has a 
+     * {@link TypeInterner}.
+     */
+    private static Type intern(Type type, Unit unit) {
+        TypeInterner interner = unit.getTypeInterner();
+        return interner==null ? type : interner.intern(type);
     }
 
     private static Type getSimpleIntersection(
@@ -17,6 +17,7 @@ import java.util.TreeMap;
 
 import com.redhat.ceylon.common.Backends;
 import com.redhat.ceylon.model.typechecker.context.TypeCache;
+import com.redhat.ceylon.model.typechecker.context.TypeInterner;
 
 public class Module 
         implements Referenceable, Annotated, 
@@ -42,6 +43,9 @@ public class Module
     private Unit unit;
     private String nameAsString;
     private TypeCache cache = new TypeCache();
+    private TypeInterner typeInterner = 
+            TypeInterner.isEnabledByDefault() ? 
+                    new TypeInterner() : null;
     private String signature;
     private List<ModuleImport> overridenImports = null;
     private Backends nativeBackends = Backends.ANY;
@@ -429,11 +433,28 @@ public class Module
         return cache;
     }
 
+    /**
+     * The interner for the union and intersection types
+     * formed in this module, or null if they are not
+     * interned.
+     */
+    public TypeInterner getTypeInterner() {
+        return typeInterner;
+    }
+
+    public void setTypeInterner(TypeInterner typeInterner) {
+        this.typeInterner = typeInterner;
+    }
+
     public void clearCache(TypeDeclaration declaration) {
         TypeCache cache = getCache();
         if (cache != null){
             cache.clearForDeclaration(declaration);
         }
+        TypeInterner interner = getTypeInterner();
+        if (interner != null) {
+            interner.clear();
+        }
         // FIXME: propagate to modules that import this 
         // module transitively 
         // Done in the IDE JDTModule
@@ -107,6 +107,7 @@ public class Package
     }
 
     private List<Declaration> members;
+    private volatile MemberIndex memberIndex;
     
     @Override
     public List<Declaration> getMembers() {
@@ -194,16 +195,35 @@ public class Package
     @Override
     public Declaration getDirectMember(String name, 
             List<Type> signature, boolean variadic) {
-        return lookupMember(getMembers(), 
+        return lookupMember(getMembersNamed(name), 
                 name, signature, variadic);
     }
 
     @Override
     public Declaration getDirectMemberForBackend(String name, 
             Backends backends) {
-        return lookupMemberForBackend(getMembers(), 
+        return lookupMemberForBackend(getMembersNamed(name), 
                 name, backends);
     }
+    
+    /**
+     * The toplevel members of this package which might
+     * have the given name. Since the list of members is
+     * rebuilt whenever a unit or member is added, the
+     * {@link MemberIndex} is rebuilt along with it.
+     */
+    private List<Declaration> getMembersNamed(String name) {
+        List<Declaration> members = getMembers();
+        if (members.size()<MemberIndex.THRESHOLD) {
+            return members;
+        }
+        MemberIndex index = memberIndex;
+        if (index==null) {
+            index = new MemberIndex();
+            memberIndex = index;
+        }
+        return index.get(members, name);
+    }
 
     @Override
     public Type getDeclaringType(Declaration d) {
@@ -31,6 +31,7 @@ import java.util.Set;
 
 import com.redhat.ceylon.model.loader.model.FunctionOrValueInterface;
 import com.redhat.ceylon.model.typechecker.context.TypeCache;
+import com.redhat.ceylon.model.typechecker.context.TypeInterner;
 import com.redhat.ceylon.model.typechecker.model.UnknownType.ErrorReporter;
 import com.redhat.ceylon.model.typechecker.util.TypePrinter;
 
@@ -222,6 +223,16 @@ public class Type extends Reference {
             return false;
         }
         
+        //identical instances, for example two
+        //interned union or intersection types,
+        //but only when interning was opted into,
+        //so that by default every comparison
+        //still goes through the full algorithm
+        if (type==this 
+                && TypeInterner.isEnabledByDefault()) {
+            return true;
+        }
+        
         TypeDeclaration dec = 
                 eliminateAlias(getDeclaration());
         TypeDeclaration otherDec = 
@@ -837,10 +848,49 @@ public class Type extends Reference {
         
         //otherwise we need to resolve aliases
         //and canonicalize the types
-        return type!=null && 
+        TypeCache cache = getSubtypeCache(type);
+        long epoch = 0;
+        if (cache!=null) {
+            epoch = TypeCache.getSubtypeEpoch();
+            Boolean cached = cache.getSubtype(this, type);
+            if (cached!=null) {
+                return cached;
+            }
+        }
+        boolean result = 
                 resolveAliases()
                     .isSubtypeOfInternal(
                             type.resolveAliases());
+        //types with unknowns are never memoised, and 
+        //since an unknown type is only equal to itself,
+        //only the memoised types need the check
+        if (cache!=null &&
+                !containsUnknowns() && 
+                !type.containsUnknowns()) {
+            cache.putSubtype(this, type, result, epoch);
+        }
+        return result;
+    }
+    
+    /**
+     * The cache in which to memoise whether this type is 
+     * a subtype of the given type, or null if subtyping
+     * is not memoised for these types.
+     */
+    private TypeCache getSubtypeCache(Type type) {
+        if (!TypeCache.isSubtypeCachingEnabled() ||
+                !TypeCache.isEnabled() ||
+                isTypeConstructor() || 
+                type.isTypeConstructor() ||
+                hasUnderlyingType() || 
+                type.hasUnderlyingType()) {
+            return null;
+        }
+        Unit unit = getDeclaration().getUnit();
+        if (unit==null || unit.getPackage()==null) {
+            return null;
+        }
+        return unit.getCache();
     }
 
     private static TypeDeclaration eliminateAlias(
@@ -28,11 +28,15 @@ import java.util.TreeMap;
 
 import com.redhat.ceylon.common.Backends;
 import com.redhat.ceylon.model.typechecker.context.TypeCache;
+import com.redhat.ceylon.model.typechecker.context.TypeInterner;
 
 public class Unit implements LanguageModuleProvider, ImportScope {
 
     private Package pkg;
     private List<Import> imports = new ArrayList<Import>();
+    private final Map<String,List<Import>> importsByAlias = 
+            new HashMap<String,List<Import>>();
+    private int unaliasedImports;
     private List<Declaration> declarations = new ArrayList<Declaration>();
     private String filename;
     private List<ImportList> importLists = new ArrayList<ImportList>();
@@ -42,6 +46,7 @@ public class Unit implements LanguageModuleProvider, ImportScope {
     private String relativePath;
     private Backends supportedBackends = Backends.ANY;
     private boolean unresolvedReferences;
+    private TypeInterner typeInterner;
     
     @Override
     public List<Import> getImports() {
@@ -54,13 +59,69 @@ public class Unit implements LanguageModuleProvider, ImportScope {
     public void addImport(Import imp) {
         synchronized (imports) {
             imports.add(imp);
+            String alias = imp.getAlias();
+            if (alias==null) {
+                unaliasedImports++;
+            }
+            else {
+                List<Import> named = 
+                        importsByAlias.get(alias);
+                List<Import> list = named==null ?
+                        new ArrayList<Import>(1) :
+                        new ArrayList<Import>(named);
+                list.add(imp);
+                importsByAlias.put(alias, list);
+            }
         }
     }
 
     @Override
     public void removeImport(Import imp) {
         synchronized (imports) {
-            imports.remove(imp);
+            if (imports.remove(imp)) {
+                String alias = imp.getAlias();
+                if (alias==null) {
+                    unaliasedImports--;
+                }
+                else {
+                    List<Import> named = 
+                            importsByAlias.get(alias);
+                    if (named!=null) {
+                        List<Import> list = 
+                                new ArrayList<Import>(named);
+                        list.remove(imp);
+                        if (list.isEmpty()) {
+                            importsByAlias.remove(alias);
+                        }
+                        else {
+                            importsByAlias.put(alias, list);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The imports which might import the given name or
+     * alias, in the order they were added. The lists held
+     * by the index are replaced, never modified, so the 
+     * result may be iterated without holding the lock.
+     */
+    private List<Import> getImportsNamed(String name) {
+        synchronized (imports) {
+            if (unaliasedImports>0) {
+                //some import was added before its alias
+                //was assigned, fall back to a linear scan
+                return new ArrayList<Import>(imports);
+            }
+            List<Import> named = importsByAlias.get(name);
+            if (named==null) {
+                return Collections.emptyList();
+            }
+            else {
+                return named;
+            }
         }
     }
 
@@ -83,6 +144,28 @@ public class Unit implements LanguageModuleProvider, ImportScope {
     public void setPackage(Package p) {
         pkg = p;
     }
+    
+    /**
+     * The interner for union and intersection types 
+     * formed in this unit: the interner assigned to the
+     * unit itself, if any, or otherwise the interner of
+     * its module.
+     */
+    public TypeInterner getTypeInterner() {
+        if (typeInterner!=null) {
+            return typeInterner;
+        }
+        Package p = getPackage();
+        if (p==null) {
+            return null;
+        }
+        Module m = p.getModule();
+        return m==null ? null : m.getTypeInterner();
+    }
+    
+    public void setTypeInterner(TypeInterner typeInterner) {
+        this.typeInterner = typeInterner;
+    }
 
     public List<Declaration> getDeclarations() {
         synchronized (declarations) {
@@ -140,7 +223,7 @@ public class Unit implements LanguageModuleProvider, ImportScope {
     }
 
     public Import getImport(String name) {
-        for (Import i: getImports()) {
+        for (Import i: getImportsNamed(name)) {
             if (!i.isAmbiguous() &&
                     i.getTypeDeclaration()==null &&
                     i.getAlias().equals(name)) {
@@ -182,7 +265,7 @@ public class Unit implements LanguageModuleProvider, ImportScope {
      */
     public Declaration getImportedDeclaration(String name, 
             List<Type> signature, boolean ellipsis) {
-        for (Import i: getImports()) {
+        for (Import i: getImportsNamed(name)) {
             if (!i.isAmbiguous() && 
                     i.getAlias().equals(name)) {
                 //in case of an overloaded member, this will
@@ -220,7 +303,7 @@ public class Unit implements LanguageModuleProvider, ImportScope {
     public Declaration getImportedDeclaration(TypeDeclaration td, 
             String name, List<Type> signature, 
             boolean ellipsis) {
-        for (Import i: getImports()) {
+        for (Import i: getImportsNamed(name)) {
             TypeDeclaration itd = i.getTypeDeclaration();
             if (itd!=null && td.inherits(itd) && 
                     !i.isAmbiguous() &&
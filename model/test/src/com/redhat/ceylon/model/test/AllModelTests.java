@@ -5,12 +5,19 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.redhat.ceylon.model.test.loader.impl.reflect.CachedTOCJarsTest;
+import com.redhat.ceylon.model.test.loader.impl.reflect.ClassFileMirrorsTest;
 
 @RunWith(Suite.class) 
 @SuiteClasses({
     CachedTOCJarsTest.class,
+    ClassFileMirrorsTest.class,
     ClassFileUtilTest.class,
-    OsgiVersionTests.class
+    DeclarationIndexTests.class,
+    LazyMembersTests.class,
+    MemberIndexTests.class,
+    OsgiVersionTests.class,
+    TypeCacheTests.class,
+    TypeInternerTests.class
 })
 public class AllModelTests {
 }
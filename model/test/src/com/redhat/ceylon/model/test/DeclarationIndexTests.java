@@ -0,0 +1,135 @@
+package com.redhat.ceylon.model.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.compiler.java.metadata.Attribute;
+import com.redhat.ceylon.compiler.java.metadata.Ceylon;
+import com.redhat.ceylon.compiler.java.metadata.Ignore;
+import com.redhat.ceylon.compiler.java.metadata.Method;
+import com.redhat.ceylon.langtools.classfile.ClassFile;
+import com.redhat.ceylon.langtools.classfile.ConstantPoolException;
+import com.redhat.ceylon.model.loader.DeclarationIndex;
+import com.redhat.ceylon.model.loader.DeclarationIndex.Entry;
+import com.redhat.ceylon.model.loader.DeclarationIndex.Kind;
+
+@Ceylon
+@Method
+class indexedFunction_ {
+}
+
+@Ceylon
+@Attribute
+class indexedValue_ {
+}
+
+@Ceylon
+@com.redhat.ceylon.compiler.java.metadata.Object
+class indexedObject_ {
+}
+
+@Ceylon
+interface IndexedInterface {
+}
+
+@Ceylon
+@Ignore
+class IndexedIgnored {
+}
+
+interface IndexedJavaInterface {
+}
+
+public class DeclarationIndexTests {
+
+    private static final String PKG = DeclarationIndexTests.class.getPackage().getName();
+
+    private ClassFile read(Class<?> klass) throws IOException, ConstantPoolException {
+        try (InputStream is = klass.getResourceAsStream("/" + klass.getName().replace('.', '/') + ".class")) {
+            return ClassFile.read(is);
+        }
+    }
+
+    private DeclarationIndex makeIndex() throws IOException, ConstantPoolException {
+        DeclarationIndex index = new DeclarationIndex();
+        for (Class<?> klass : Arrays.<Class<?>>asList(indexedFunction_.class, indexedValue_.class, indexedObject_.class,
+                IndexedInterface.class, IndexedJavaInterface.class, DeclarationIndexTests.class)) {
+            Assert.assertTrue(klass.getName(), index.add(read(klass)));
+        }
+        Assert.assertFalse(index.add(read(IndexedIgnored.class)));
+        Assert.assertFalse(index.add(read(Inner.class)));
+        index.addPackage("empty");
+        return index;
+    }
+
+    class Inner {
+    }
+
+    private void assertEntry(DeclarationIndex index, String name, Kind kind, String className) {
+        Entry entry = index.find(PKG, name);
+        Assert.assertNotNull(name, entry);
+        Assert.assertEquals(kind, entry.getKind());
+        Assert.assertEquals(className, entry.getClassName());
+    }
+
+    private void assertIndex(DeclarationIndex index) {
+        Assert.assertEquals(Arrays.asList(PKG, "empty"), Arrays.asList(index.getPackages().toArray()));
+        Assert.assertEquals(6, index.getDeclarations(PKG).size());
+        Assert.assertTrue(index.getDeclarations("empty").isEmpty());
+        Assert.assertTrue(index.getDeclarations("missing").isEmpty());
+
+        // by Ceylon name
+        assertEntry(index, "indexedFunction", Kind.FUNCTION, "indexedFunction_");
+        assertEntry(index, "indexedValue", Kind.VALUE, "indexedValue_");
+        assertEntry(index, "indexedObject", Kind.OBJECT, "indexedObject_");
+        assertEntry(index, "IndexedInterface", Kind.INTERFACE, "IndexedInterface");
+        assertEntry(index, "IndexedJavaInterface", Kind.JAVA_INTERFACE, "IndexedJavaInterface");
+        assertEntry(index, "DeclarationIndexTests", Kind.JAVA_CLASS, "DeclarationIndexTests");
+        // by class name, with or without quote
+        assertEntry(index, "indexedFunction_", Kind.FUNCTION, "indexedFunction_");
+        assertEntry(index, "$indexedFunction_", Kind.FUNCTION, "indexedFunction_");
+        Assert.assertEquals("indexedFunction", index.findClass(PKG, "indexedFunction_").getName());
+        Assert.assertNull(index.findClass(PKG, "indexedFunction"));
+
+        Assert.assertNull(index.find(PKG, "IndexedIgnored"));
+        Assert.assertNull(index.find(PKG, "missing"));
+        Assert.assertNull(index.find("missing", "IndexedInterface"));
+    }
+
+    @Test
+    public void testIndexClassFiles() throws IOException, ConstantPoolException {
+        assertIndex(makeIndex());
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException, ConstantPoolException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        makeIndex().write(os);
+        DeclarationIndex index = DeclarationIndex.read(new ByteArrayInputStream(os.toByteArray()));
+        Assert.assertNotNull(index);
+        assertIndex(index);
+    }
+
+    @Test
+    public void testReadInvalid() throws IOException {
+        Assert.assertNull(DeclarationIndex.read(new ByteArrayInputStream(new byte[]{ 1, 2, 3, 4, 0, 0, 0, 1 })));
+    }
+
+    @Test
+    public void testToplevelClassNames() {
+        Assert.assertTrue(DeclarationIndex.isToplevelClassName("Foo"));
+        Assert.assertTrue(DeclarationIndex.isToplevelClassName("foo_"));
+        Assert.assertTrue(DeclarationIndex.isToplevelClassName("$true"));
+        Assert.assertFalse(DeclarationIndex.isToplevelClassName("Foo$impl"));
+        Assert.assertFalse(DeclarationIndex.isToplevelClassName("Foo$1"));
+        Assert.assertFalse(DeclarationIndex.isToplevelClassName("$module_"));
+        Assert.assertFalse(DeclarationIndex.isToplevelClassName("$package_"));
+        Assert.assertEquals("a.b.c", DeclarationIndex.toPackageName("a/$b/c"));
+    }
+}
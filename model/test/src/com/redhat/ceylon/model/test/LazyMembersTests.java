@@ -0,0 +1,113 @@
+package com.redhat.ceylon.model.test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.FieldMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
+import com.redhat.ceylon.model.loader.model.LazyMembers;
+import com.redhat.ceylon.model.loader.model.LazyMembers.Group;
+
+public class LazyMembersTests {
+
+    static class Members {
+        public int Count;
+        public int getCount() { return 0; }
+        public void setCount(int count) {}
+        public void run() {}
+        public void run(int times) {}
+        public void stop() {}
+    }
+
+    private final ClassMirror mirror = new ReflectionClass(Members.class);
+
+    private MethodMirror method(String name, int params) {
+        for (MethodMirror method : mirror.getDirectMethods()) {
+            if (method.getName().equals(name)
+                    && method.getParameters().size() == params) {
+                return method;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private FieldMirror field(String name) {
+        for (FieldMirror field : mirror.getDirectFields()) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private LazyMembers makeMembers() {
+        LazyMembers members = new LazyMembers();
+        members.addMethod(method("run", 0));
+        members.addMethod(method("getCount", 0), "count");
+        members.addMethod(method("stop", 0));
+        members.addMethod(method("run", 1));
+        members.addMethod(method("setCount", 1), "count");
+        members.addField(field("Count"), "count");
+        return members;
+    }
+
+    @Test
+    public void testGroupsByName() {
+        LazyMembers members = makeMembers();
+        Assert.assertFalse(members.isEmpty());
+
+        Group count = members.remove("count");
+        Assert.assertNotNull(count);
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("getCount", "count", "setCount", "Count")),
+                count.getNames());
+        Assert.assertEquals(Arrays.asList("getCount", "setCount"),
+                Arrays.asList(count.getMethods().keySet().toArray()));
+        Assert.assertEquals(1, count.getFields().size());
+        // every name of a group goes with it
+        Assert.assertNull(members.remove("setCount"));
+        Assert.assertNull(members.remove("Count"));
+
+        Group run = members.remove("run");
+        Assert.assertEquals(2, run.getMethods().get("run").size());
+        Assert.assertTrue(run.getFields().isEmpty());
+
+        Assert.assertNull(members.remove("missing"));
+        Assert.assertFalse(members.isEmpty());
+        Assert.assertNotNull(members.remove("stop"));
+        Assert.assertTrue(members.isEmpty());
+    }
+
+    @Test
+    public void testMergesGroups() {
+        LazyMembers members = new LazyMembers();
+        members.addMethod(method("getCount", 0));
+        members.addField(field("Count"));
+        Assert.assertNotNull(members.remove("getCount"));
+        Assert.assertFalse(members.isEmpty());
+
+        members = new LazyMembers();
+        members.addMethod(method("getCount", 0));
+        members.addField(field("Count"));
+        // a member with both names merges their groups
+        members.addMethod(method("setCount", 1), "getCount", "Count");
+        Group group = members.remove("Count");
+        Assert.assertEquals(2, group.getMethods().size());
+        Assert.assertEquals(1, group.getFields().size());
+        Assert.assertTrue(members.isEmpty());
+    }
+
+    @Test
+    public void testRemoveFirstInOrder() {
+        LazyMembers members = makeMembers();
+        Assert.assertTrue(members.removeFirst().getMethods().containsKey("run"));
+        Assert.assertTrue(members.removeFirst().getMethods().containsKey("getCount"));
+        Assert.assertTrue(members.removeFirst().getMethods().containsKey("stop"));
+        Assert.assertNull(members.removeFirst());
+        Assert.assertTrue(members.isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.redhat.ceylon.model.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.model.typechecker.model.Class;
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+import com.redhat.ceylon.model.typechecker.model.Value;
+
+public class MemberIndexTests {
+
+    private final Unit unit = new Unit();
+    {
+        Package pkg = new Package();
+        pkg.setName(java.util.Arrays.asList("test"));
+        unit.setPackage(pkg);
+    }
+
+    private Class declareClass(String name) {
+        Class c = new Class();
+        c.setName(name);
+        c.setUnit(unit);
+        c.setContainer(unit.getPackage());
+        return c;
+    }
+
+    private Value declareValue(Class container, String name) {
+        Value v = new Value();
+        v.setName(name);
+        v.setUnit(unit);
+        v.setContainer(container);
+        return v;
+    }
+
+    private Class declareClassWithMembers(int count) {
+        Class c = declareClass("C");
+        for (int i=0; i<count; i++) {
+            c.addMember(declareValue(c, "v" + i));
+        }
+        return c;
+    }
+
+    @Test
+    public void testLookup() {
+        Class c = declareClassWithMembers(100);
+        for (int i=0; i<100; i++) {
+            Declaration d = c.getDirectMember("v" + i, null, false);
+            Assert.assertNotNull(d);
+            Assert.assertEquals("v" + i, d.getName());
+        }
+        Assert.assertNull(c.getDirectMember("v100", null, false));
+    }
+
+    @Test
+    public void testAddMemberAfterLookup() {
+        Class c = declareClassWithMembers(100);
+        Assert.assertNull(c.getDirectMember("w", null, false));
+        Value w = declareValue(c, "w");
+        c.addMember(w);
+        Assert.assertSame(w, c.getDirectMember("w", null, false));
+    }
+
+    @Test
+    public void testDirectModificationOfMembers() {
+        Class c = declareClassWithMembers(100);
+        Declaration v50 = c.getDirectMember("v50", null, false);
+        Assert.assertNotNull(v50);
+        c.getMembers().remove(v50);
+        Assert.assertNull(c.getDirectMember("v50", null, false));
+        Value w = declareValue(c, "w");
+        c.getMembers().add(w);
+        Assert.assertSame(w, c.getDirectMember("w", null, false));
+    }
+
+    @Test
+    public void testFirstMemberWins() {
+        Class c = declareClassWithMembers(100);
+        Value first = declareValue(c, "v0");
+        c.getMembers().add(0, first);
+        Assert.assertSame(first, c.getDirectMember("v0", null, false));
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.redhat.ceylon.model.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.model.typechecker.context.TypeCache;
+import com.redhat.ceylon.model.typechecker.model.Class;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Type;
+import com.redhat.ceylon.model.typechecker.model.TypeDeclaration;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+
+public class TypeCacheTests {
+
+    private final Unit unit = new Unit();
+    {
+        Package pkg = new Package();
+        pkg.setName(java.util.Arrays.asList("test"));
+        unit.setPackage(pkg);
+    }
+
+    private Class declare(String name, TypeDeclaration extended) {
+        Class c = new Class();
+        c.setName(name);
+        c.setUnit(unit);
+        c.setContainer(unit.getPackage());
+        if (extended != null) {
+            c.setExtendedType(extended.getType());
+        }
+        return c;
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        TypeCache cache = new TypeCache(0);
+        Class a = declare("A", null);
+        Class b = declare("B", a);
+        Assert.assertNull(cache.get(b.getType(), a));
+        cache.put(b.getType(), a, a.getType());
+        Assert.assertEquals(a.getType(), cache.get(b.getType(), a));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        TypeCache cache = new TypeCache(16);
+        Class top = declare("Top", null);
+        for (int i=0; i<100; i++) {
+            Class c = declare("C" + i, top);
+            cache.put(c.getType(), top, top.getType());
+        }
+        Assert.assertTrue(cache.size() <= 100);
+        Assert.assertEquals(100, cache.size() + cache.getEvictions());
+    }
+
+    @Test
+    public void testClearForDeclaration() {
+        TypeCache cache = new TypeCache(0);
+        Class a = declare("A", null);
+        Class b = declare("B", a);
+        Class c = declare("C", b);
+        Class d = declare("D", null);
+        cache.put(c.getType(), a, a.getType());
+        cache.put(d.getType(), d, d.getType());
+        cache.put(d.getType(), b, TypeCache.NULL_VALUE);
+        cache.clearForDeclaration(b);
+        //C inherits B, and D was asked about B
+        Assert.assertFalse(cache.containsKey(c.getType(), a));
+        Assert.assertFalse(cache.containsKey(d.getType(), b));
+        Assert.assertTrue(cache.containsKey(d.getType(), d));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testClearForDeclarationWithCycle() {
+        TypeCache cache = new TypeCache(0);
+        Class a = declare("A", null);
+        Class b = declare("B", a);
+        a.setExtendedType(b.getType());
+        Class c = declare("C", null);
+        cache.put(a.getType(), c, TypeCache.NULL_VALUE);
+        cache.clearForDeclaration(c);
+        Assert.assertEquals(0, cache.size());
+        cache.put(a.getType(), b, b.getType());
+        cache.clearForDeclaration(c);
+        Assert.assertEquals(1, cache.size());
+        cache.clearForDeclaration(b);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSubtypes() {
+        TypeCache cache = new TypeCache(0);
+        Class a = declare("A", null);
+        Class b = declare("B", a);
+        Class c = declare("C", null);
+        long epoch = TypeCache.getSubtypeEpoch();
+        Assert.assertNull(cache.getSubtype(b.getType(), a.getType()));
+        cache.putSubtype(b.getType(), a.getType(), true, epoch);
+        cache.putSubtype(c.getType(), a.getType(), false, epoch);
+        Assert.assertEquals(Boolean.TRUE, cache.getSubtype(b.getType(), a.getType()));
+        Assert.assertEquals(Boolean.FALSE, cache.getSubtype(c.getType(), a.getType()));
+        Assert.assertNull(cache.getSubtype(a.getType(), b.getType()));
+        Assert.assertEquals(2, cache.getSubtypeHits());
+        Assert.assertEquals(2, cache.getSubtypeMisses());
+        cache.clearForDeclaration(c);
+        Assert.assertEquals(0, cache.getSubtypeCount());
+        // a result computed before the invalidation is stale
+        cache.putSubtype(b.getType(), a.getType(), true, epoch);
+        Assert.assertEquals(0, cache.getSubtypeCount());
+    }
+
+    @Test
+    public void testSubtypesInvalidatedAcrossCaches() {
+        TypeCache cache = new TypeCache(0);
+        TypeCache other = new TypeCache(0);
+        Class a = declare("A", null);
+        Class b = declare("B", a);
+        cache.putSubtype(b.getType(), a.getType(), true, 
+                TypeCache.getSubtypeEpoch());
+        Assert.assertEquals(Boolean.TRUE, cache.getSubtype(b.getType(), a.getType()));
+        // a change to a declaration of another module
+        other.clearForDeclaration(declare("D", null));
+        Assert.assertNull(cache.getSubtype(b.getType(), a.getType()));
+        Assert.assertEquals(0, cache.getSubtypeCount());
+    }
+
+    @Test
+    public void testSubtypesEvictLeastRecentlyUsed() {
+        TypeCache cache = new TypeCache(2);
+        Class a = declare("A", null);
+        Class b = declare("B", a);
+        Class c = declare("C", a);
+        Class d = declare("D", a);
+        long epoch = TypeCache.getSubtypeEpoch();
+        cache.putSubtype(b.getType(), a.getType(), true, epoch);
+        cache.putSubtype(c.getType(), a.getType(), true, epoch);
+        Assert.assertNotNull(cache.getSubtype(b.getType(), a.getType()));
+        cache.putSubtype(d.getType(), a.getType(), true, epoch);
+        Assert.assertEquals(2, cache.getSubtypeCount());
+        Assert.assertNotNull(cache.getSubtype(b.getType(), a.getType()));
+        Assert.assertNotNull(cache.getSubtype(d.getType(), a.getType()));
+        Assert.assertNull(cache.getSubtype(c.getType(), a.getType()));
+    }
+}
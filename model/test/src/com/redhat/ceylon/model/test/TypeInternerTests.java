@@ -0,0 +1,109 @@
+package com.redhat.ceylon.model.test;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.model.typechecker.context.TypeInterner;
+import com.redhat.ceylon.model.typechecker.model.Class;
+import com.redhat.ceylon.model.typechecker.model.ModelUtil;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Type;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+import com.redhat.ceylon.model.typechecker.model.UnknownType;
+
+public class TypeInternerTests {
+
+    private final Unit unit = new Unit();
+    {
+        Package pkg = new Package();
+        pkg.setName(Arrays.asList("test"));
+        unit.setPackage(pkg);
+    }
+
+    private Class declare(String name) {
+        Class c = new Class();
+        c.setName(name);
+        c.setUnit(unit);
+        c.setContainer(unit.getPackage());
+        return c;
+    }
+
+    @Test
+    public void testNotInternedByDefault() {
+        Type a = declare("A").getType();
+        Type b = declare("B").getType();
+        Type u1 = ModelUtil.union(Arrays.asList(a, b), unit);
+        Type u2 = ModelUtil.union(Arrays.asList(a, b), unit);
+        Assert.assertNotSame(u1, u2);
+        Assert.assertEquals(u1, u2);
+        Assert.assertFalse(u1.isCached());
+    }
+
+    @Test
+    public void testUnionsAndIntersections() {
+        TypeInterner interner = new TypeInterner(0);
+        unit.setTypeInterner(interner);
+        Type a = declare("A").getType();
+        Type b = declare("B").getType();
+        Type u1 = ModelUtil.union(Arrays.asList(a, b), unit);
+        Type u2 = ModelUtil.union(Arrays.asList(a, b), unit);
+        Assert.assertSame(u1, u2);
+        Assert.assertTrue(u1.isCached());
+        Type i1 = ModelUtil.intersection(Arrays.asList(a, b), unit);
+        Type i2 = ModelUtil.intersection(Arrays.asList(a, b), unit);
+        Assert.assertSame(i1, i2);
+        Assert.assertNotSame(u1, i1);
+        Type u3 = ModelUtil.union(Arrays.asList(b, a), unit);
+        Assert.assertNotSame(u1, u3);
+        Assert.assertEquals(5, interner.getRequests());
+        Assert.assertEquals(2, interner.getHits());
+        Assert.assertEquals(3, interner.size());
+    }
+
+    @Test
+    public void testOtherTypesNotInterned() {
+        TypeInterner interner = new TypeInterner(0);
+        unit.setTypeInterner(interner);
+        Type a = declare("A").getType();
+        Assert.assertSame(a, ModelUtil.union(Arrays.asList(a), unit));
+        Assert.assertEquals(0, interner.getRequests());
+    }
+
+    @Test
+    public void testCapacity() {
+        TypeInterner interner = new TypeInterner(4);
+        unit.setTypeInterner(interner);
+        Type top = declare("Top").getType();
+        for (int i=0; i<20; i++) {
+            Type t = declare("C" + i).getType();
+            ModelUtil.union(Arrays.asList(top, t), unit);
+        }
+        Assert.assertTrue(interner.size() <= 4);
+    }
+
+    @Test
+    public void testIdentityShortcutOnlyWhenInterning() {
+        Type a = declare("A").getType();
+        Type b = declare("B").getType();
+        Type unknown = new UnknownType(unit).getType();
+        boolean wasEnabled = TypeInterner.isEnabledByDefault();
+        try {
+            TypeInterner.setEnabledByDefault(false);
+            // the full comparison agrees with the shortcut
+            Assert.assertTrue(unknown.isExactly(unknown));
+            TypeInterner.setEnabledByDefault(true);
+            unit.setTypeInterner(new TypeInterner(0));
+            Type u1 = ModelUtil.union(Arrays.asList(a, b), unit);
+            Type u2 = ModelUtil.union(Arrays.asList(a, b), unit);
+            Assert.assertSame(u1, u2);
+            Assert.assertTrue(u1.isExactly(u2));
+            Assert.assertTrue(unknown.isExactly(unknown));
+        }
+        finally {
+            TypeInterner.setEnabledByDefault(wasEnabled);
+        }
+    }
+
+}
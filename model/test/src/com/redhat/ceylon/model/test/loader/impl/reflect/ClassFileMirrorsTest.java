@@ -0,0 +1,233 @@
+package com.redhat.ceylon.model.test.loader.impl.reflect;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileClass;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMethod;
+import com.redhat.ceylon.model.loader.impl.reflect.classfile.ClassFileMirrors;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionClass;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionMethod;
+import com.redhat.ceylon.model.loader.impl.reflect.mirror.ReflectionUtils;
+import com.redhat.ceylon.model.loader.mirror.AnnotationMirror;
+import com.redhat.ceylon.model.loader.mirror.ClassMirror;
+import com.redhat.ceylon.model.loader.mirror.MethodMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeKind;
+import com.redhat.ceylon.model.loader.mirror.TypeMirror;
+import com.redhat.ceylon.model.loader.mirror.TypeParameterMirror;
+import com.redhat.ceylon.model.loader.mirror.VariableMirror;
+
+/**
+ * Checks that the mirrors read from class files answer like
+ * the mirrors obtained with reflection.
+ */
+public class ClassFileMirrorsTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Sample {
+        String name();
+        int count() default 3;
+        String[] tags() default {};
+        Class<?> type() default Object.class;
+        RetentionPolicy policy() default RetentionPolicy.CLASS;
+    }
+
+    public interface Container<T> {
+        T get();
+        void put(T t);
+    }
+
+    @Sample(name = "base", tags = {"a", "b"}, type = String.class, policy = RetentionPolicy.RUNTIME)
+    public static abstract class Base<T extends CharSequence> implements Container<T> {
+        protected T value;
+        @Override
+        public T get() {
+            return value;
+        }
+        public abstract <X extends Number> X convert(T t, List<? super X> sink);
+        public void overloaded(int i) {}
+    }
+
+    public static class Derived extends Base<String> {
+        @Override
+        public void put(String t) {
+            value = t;
+        }
+        @Override
+        public <X extends Number> X convert(String t, List<? super X> sink) {
+            return null;
+        }
+        public void overloaded(String s) {}
+        public String[] array(long[] primitives, Map<String, ? extends Number>... maps) {
+            return null;
+        }
+        public class Inner {
+            public Inner(int i) {}
+        }
+    }
+
+    private ClassFileMirrors mirrors() {
+        return new ClassFileMirrors(getClass().getClassLoader());
+    }
+
+    @Test
+    public void testMissingClass() {
+        Assert.assertNull(mirrors().getClassMirror("com.redhat.ceylon.model.test.DoesNotExist"));
+    }
+
+    @Test
+    public void testClassesLikeReflection() {
+        ClassFileMirrors mirrors = mirrors();
+        for(Class<?> klass : new Class<?>[]{ Sample.class, Container.class, Base.class, Derived.class, Derived.Inner.class }){
+            ClassFileClass classFileClass = mirrors.getClassMirror(klass.getName());
+            Assert.assertNotNull(klass.getName(), classFileClass);
+            assertSameClass(new ReflectionClass(klass), classFileClass);
+            Assert.assertSame(klass, ReflectionUtils.getJavaClass(classFileClass));
+        }
+    }
+
+    @Test
+    public void testMirrorsAreCached() {
+        ClassFileMirrors mirrors = mirrors();
+        Assert.assertSame(mirrors.getClassMirror(Derived.class.getName()), mirrors.getClassMirror(Derived.class.getName()));
+    }
+
+    @Test
+    public void testAnnotationValues() {
+        ClassFileClass base = mirrors().getClassMirror(Base.class.getName());
+        AnnotationMirror annotation = base.getAnnotation(Sample.class.getName());
+        Assert.assertNotNull(annotation);
+        Assert.assertEquals("base", annotation.getValue("name"));
+        // from the annotation default
+        Assert.assertEquals(3, annotation.getValue("count"));
+        Assert.assertEquals(java.util.Arrays.asList("a", "b"), annotation.getValue("tags"));
+        Assert.assertEquals("java.lang.String", ((TypeMirror)annotation.getValue("type")).getQualifiedName());
+        Assert.assertEquals("RUNTIME", annotation.getValue("policy"));
+    }
+
+    private void assertSameClass(ClassMirror expected, ClassMirror actual) {
+        String name = expected.getQualifiedName();
+        Assert.assertEquals(expected.getQualifiedName(), actual.getQualifiedName());
+        Assert.assertEquals(name, expected.getName(), actual.getName());
+        Assert.assertEquals(name, expected.getFlatName(), actual.getFlatName());
+        Assert.assertEquals(name, expected.getPackage().getQualifiedName(), actual.getPackage().getQualifiedName());
+        Assert.assertEquals(name, expected.isPublic(), actual.isPublic());
+        Assert.assertEquals(name, expected.isProtected(), actual.isProtected());
+        Assert.assertEquals(name, expected.isDefaultAccess(), actual.isDefaultAccess());
+        Assert.assertEquals(name, expected.isInterface(), actual.isInterface());
+        Assert.assertEquals(name, expected.isAnnotationType(), actual.isAnnotationType());
+        Assert.assertEquals(name, expected.isAbstract(), actual.isAbstract());
+        Assert.assertEquals(name, expected.isStatic(), actual.isStatic());
+        Assert.assertEquals(name, expected.isFinal(), actual.isFinal());
+        Assert.assertEquals(name, expected.isEnum(), actual.isEnum());
+        Assert.assertEquals(name, expected.isInnerClass(), actual.isInnerClass());
+        Assert.assertEquals(name, expected.isLocalClass(), actual.isLocalClass());
+        Assert.assertEquals(name, expected.isAnonymous(), actual.isAnonymous());
+        Assert.assertEquals(name, expected.getAnnotationNames(), actual.getAnnotationNames());
+        Assert.assertEquals(name, describe(expected.getSuperclass()), describe(actual.getSuperclass()));
+        Assert.assertEquals(name, describeTypes(expected.getInterfaces()), describeTypes(actual.getInterfaces()));
+        Assert.assertEquals(name, describeTypeParameters(expected.getTypeParameters()), describeTypeParameters(actual.getTypeParameters()));
+        Assert.assertEquals(name, describeClass(expected.getEnclosingClass()), describeClass(actual.getEnclosingClass()));
+        List<String> expectedInners = new ArrayList<String>();
+        for(ClassMirror inner : expected.getDirectInnerClasses())
+            expectedInners.add(inner.getQualifiedName());
+        List<String> actualInners = new ArrayList<String>();
+        for(ClassMirror inner : actual.getDirectInnerClasses())
+            actualInners.add(inner.getQualifiedName());
+        Collections.sort(expectedInners);
+        Collections.sort(actualInners);
+        Assert.assertEquals(name, expectedInners, actualInners);
+        Assert.assertEquals(name, describeMethods(expected.getDirectMethods()), describeMethods(actual.getDirectMethods()));
+    }
+
+    private List<String> describeMethods(List<MethodMirror> methods) {
+        List<String> ret = new ArrayList<String>(methods.size());
+        for(MethodMirror method : methods){
+            StringBuilder sb = new StringBuilder();
+            sb.append(describeTypeParameters(method.getTypeParameters()))
+                .append(describe(method.getReturnType())).append(' ')
+                .append(method.getName()).append('(');
+            for(VariableMirror parameter : method.getParameters())
+                sb.append(describe(parameter.getType())).append(',');
+            sb.append(')');
+            if(method.isStatic())
+                sb.append(" static");
+            if(method.isAbstract())
+                sb.append(" abstract");
+            if(method.isFinal())
+                sb.append(" final");
+            if(method.isConstructor())
+                sb.append(" constructor");
+            if(method.isVariadic())
+                sb.append(" variadic");
+            if(method.isDeclaredVoid())
+                sb.append(" void");
+            if(!method.isConstructor()){
+                if(method.isDefault())
+                    sb.append(" default");
+                if(method instanceof ReflectionMethod ? ((ReflectionMethod) method).isOverridingMethod() : ((ClassFileMethod) method).isOverridingMethod())
+                    sb.append(" overriding");
+                if(method instanceof ReflectionMethod ? ((ReflectionMethod) method).isOverloadingMethod() : ((ClassFileMethod) method).isOverloadingMethod())
+                    sb.append(" overloading");
+            }
+            ret.add(sb.toString());
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private String describeClass(ClassMirror klass) {
+        return klass != null ? klass.getQualifiedName() : null;
+    }
+
+    private List<String> describeTypes(List<TypeMirror> types) {
+        List<String> ret = new ArrayList<String>(types.size());
+        for(TypeMirror type : types)
+            ret.add(describe(type));
+        return ret;
+    }
+
+    private List<String> describeTypeParameters(List<TypeParameterMirror> typeParameters) {
+        List<String> ret = new ArrayList<String>(typeParameters.size());
+        for(TypeParameterMirror typeParameter : typeParameters)
+            ret.add(typeParameter.getName()+" extends "+describeTypes(typeParameter.getBounds()));
+        return ret;
+    }
+
+    private String describe(TypeMirror type) {
+        if(type == null)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        sb.append(type.getKind());
+        if(type.getKind() != TypeKind.WILDCARD)
+            sb.append(' ').append(type.getQualifiedName());
+        if(!type.getTypeArguments().isEmpty())
+            sb.append(describeTypes(type.getTypeArguments()));
+        // only valid for arrays
+        if(type.getKind() == TypeKind.ARRAY)
+            sb.append(" of ").append(describe(type.getComponentType()));
+        // only valid for wildcards
+        if(type.getKind() == TypeKind.WILDCARD){
+            if(type.getLowerBound() != null)
+                sb.append(" super ").append(describe(type.getLowerBound()));
+            if(type.getUpperBound() != null)
+                sb.append(" extends ").append(describe(type.getUpperBound()));
+        }
+        if(type.isRaw())
+            sb.append(" raw");
+        if(type.getKind() == TypeKind.DECLARED)
+            sb.append(" declared ").append(type.getDeclaredClass().getQualifiedName());
+        if(type.getTypeParameter() != null)
+            sb.append(" param ").append(type.getTypeParameter().getName());
+        if(type.getQualifyingType() != null)
+            sb.append(" in ").append(type.getQualifyingType().getQualifiedName());
+        return sb.toString();
+    }
+}
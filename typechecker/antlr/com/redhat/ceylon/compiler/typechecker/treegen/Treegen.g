@@ -45,6 +45,7 @@ node : '^' '('
        (memberDescription? subnode)*
        (memberDescription? field)*
        ')' 
+       { printTrimToSize(); }
        { println("    }\n"); }
      ;
 
@@ -72,12 +73,14 @@ subnode :
           { println("        public void set" + className($n.text) + "(" + className($n.text) + " node) { " + fieldName($n.text) + " = node; connect(node); }\n"); }
         | mn=NODE_NAME '*'
           { println("        private List<" + className($mn.text) + "> " + fieldName($mn.text) + 
-                               "s = new ArrayList<" + className($mn.text) + ">(3);"); }
+                               "s = new ArrayList<" + className($mn.text) + ">(" + initialListCapacity() + ");"); }
+          { trimList(fieldName($mn.text) + "s", className($mn.text)); }
           { println("        public List<" + className($mn.text) + "> get" + className($mn.text) + "s() { return " + fieldName($mn.text) + "s; }"); }
           { println("        public void add" + className($mn.text) + "(" + className($mn.text) + " node) { " + fieldName($mn.text) + "s.add(node); connect(node); }\n"); }
         | mn=NODE_NAME '*' f=FIELD_NAME
           { println("        private List<" + className($mn.text) + "> " + $f.text + 
-                               "s = new ArrayList<" + className($mn.text) + ">(3);"); }
+                               "s = new ArrayList<" + className($mn.text) + ">(" + initialListCapacity() + ");"); }
+          { trimList($f.text + "s", className($mn.text)); }
           { println("        public List<" + className($mn.text) + "> get" + initialUpper($f.text) + "s() { return " + $f.text + "s; }"); }
           { println("        public void add" + initialUpper($f.text) + "(" + className($mn.text) + " node) { " + $f.text + "s.add(node); connect(node); }\n"); }
         ;
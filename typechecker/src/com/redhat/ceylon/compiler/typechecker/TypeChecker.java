@@ -1,11 +1,18 @@
 package com.redhat.ceylon.compiler.typechecker;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.common.Versions;
+import com.redhat.ceylon.compiler.typechecker.analyzer.InferredTypeArgumentCache;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleValidator;
 import com.redhat.ceylon.compiler.typechecker.context.Context;
+import com.redhat.ceylon.compiler.typechecker.context.DependencyGraph;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseExecutor;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseProfiler;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
@@ -14,6 +21,7 @@ import com.redhat.ceylon.compiler.typechecker.tree.Message;
 import com.redhat.ceylon.compiler.typechecker.util.AssertionVisitor;
 import com.redhat.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 import com.redhat.ceylon.compiler.typechecker.util.StatisticsVisitor;
+import com.redhat.ceylon.model.typechecker.context.TypeInterner;
 import com.redhat.ceylon.model.typechecker.model.Module;
 
 /**
@@ -35,6 +43,9 @@ public class TypeChecker {
     private final boolean verifyDependencies;
     private final AssertionVisitor assertionVisitor;
     private final StatisticsVisitor statsVisitor;
+    private final int jobs;
+    private final DependencyGraph dependencyGraph;
+    private final PhaseProfiler profiler;
 
     TypeChecker(VFS vfs, 
             List<VirtualFile> srcDirectories, 
@@ -45,11 +56,21 @@ public class TypeChecker {
             boolean verbose, boolean statistics,
             List<String> moduleFilters, 
             List<VirtualFile> srcFiles, 
-            String encoding) {
+            String encoding,
+            int jobs,
+            DependencyGraph dependencyGraph,
+            PhaseProfiler profiler,
+            boolean compactTrees) {
         long start = System.nanoTime();
         this.verbose = verbose;
+        this.jobs = jobs;
+        this.dependencyGraph = dependencyGraph;
+        this.profiler = profiler;
         this.statistics = statistics;
         this.context = new Context(repositoryManager, vfs);
+        //the dependency graph needs the token streams
+        context.setCompactTrees(compactTrees && 
+                dependencyGraph==null);
         this.phasedUnits = 
                 new PhasedUnits(context, 
                         moduleManagerFactory);
@@ -59,6 +80,7 @@ public class TypeChecker {
         phasedUnits.setSourceFiles(srcFiles);
         phasedUnits.setModuleFilters(moduleFilters);
         phasedUnits.setEncoding(encoding);
+        phasedUnits.setJobs(jobs);
         phasedUnits.parseUnits(srcDirectories);
         long time = System.nanoTime()-start;
         if(statistics)
@@ -139,9 +161,62 @@ public class TypeChecker {
         long start = System.nanoTime();
         executePhases(phasedUnits, forceSilence);
         long time = System.nanoTime()-start;
-        if(statistics)
+        if(statistics) {
             System.out.println("Type checked in " + 
                     time/1000000 + " ms");
+            if (profiler!=null) {
+                profiler.print(System.out);
+            }
+            printInferenceStatistics();
+            printInterningStatistics();
+        }
+    }
+    
+    private void printInferenceStatistics() {
+        long hits = 0;
+        long misses = 0;
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            if (pu.getUnit()!=null) {
+                InferredTypeArgumentCache cache = 
+                        pu.getUnit()
+                            .getInferredTypeArgumentCache();
+                hits += cache.getHits();
+                misses += cache.getMisses();
+            }
+        }
+        long lookups = hits + misses;
+        System.out.println("Inferred type argument cache: " + 
+                hits + " hits, " + misses + " misses" +
+                (lookups==0 ? "" : 
+                    " (" + hits*100/lookups + "% hit rate)"));
+    }
+    
+    private void printInterningStatistics() {
+        //modules may share an interner
+        Set<TypeInterner> interners = 
+                Collections.newSetFromMap(
+                        new IdentityHashMap<TypeInterner,Boolean>());
+        for (Module module: 
+                context.getModules().getListOfModules()) {
+            TypeInterner interner = module.getTypeInterner();
+            if (interner!=null) {
+                interners.add(interner);
+            }
+        }
+        if (interners.isEmpty()) {
+            return;
+        }
+        long requests = 0;
+        long hits = 0;
+        for (TypeInterner interner: interners) {
+            requests += interner.getRequests();
+            hits += interner.getHits();
+        }
+        System.out.println("Type interner: " + 
+                requests + " unions and intersections, " + 
+                hits + " shared instances" +
+                (requests==0 ? "" : 
+                    " (" + hits*100/requests + "% not retained)"));
     }
 
     private void executePhases(PhasedUnits phasedUnits, 
@@ -166,6 +241,7 @@ public class TypeChecker {
 
         ModuleValidator moduleValidator = 
                 new ModuleValidator(context, phasedUnits);
+        moduleValidator.setJobs(jobs);
         if (verifyDependencies) {
             moduleValidator.verifyModuleDependencyTree();
         }
@@ -192,27 +268,42 @@ public class TypeChecker {
 
     protected void executePhases(
             List<PhasedUnit> listOfUnits) {
-        for (PhasedUnit pu : listOfUnits) {
-            pu.validateTree();
-            pu.scanDeclarations();
-        }
-        for (PhasedUnit pu : listOfUnits) {
-            pu.scanTypeDeclarations();
-        }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.validateRefinement();
+        PhaseExecutor executor = new PhaseExecutor(jobs);
+        executor.setProfiler(profiler);
+        if (dependencyGraph==null) {
+            executor.executePhases(listOfUnits);
         }
-        for (PhasedUnit pu : listOfUnits) {
-            pu.analyseTypes();
-        }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.analyseFlow();
-        }
-        for (PhasedUnit pu: listOfUnits) {
-            pu.analyseUsage();
+        else {
+            executor.executePhases(listOfUnits, 
+                    dependencyGraph);
         }
     }
     
+    /**
+     * The graph used to determine which units need to be
+     * fully analysed, or null if every unit is analysed.
+     */
+    public DependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+    
+    /**
+     * The profiler measuring the typechecking phases, or
+     * null if they are not measured.
+     */
+    public PhaseProfiler getProfiler() {
+        return profiler;
+    }
+    
+    /**
+     * The number of threads which parse the units,
+     * validate their trees and fetch module artifacts,
+     * 1 meaning that everything runs sequentially.
+     */
+    public int getJobs() {
+        return jobs;
+    }
+    
     public int getErrors(){
         return assertionVisitor.getErrors();
     }
@@ -7,6 +7,8 @@ import java.util.List;
 import com.redhat.ceylon.cmr.api.RepositoryManager;
 import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
 import com.redhat.ceylon.compiler.typechecker.analyzer.UnsupportedError;
+import com.redhat.ceylon.compiler.typechecker.context.DependencyGraph;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseProfiler;
 import com.redhat.ceylon.compiler.typechecker.io.VFS;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
@@ -43,6 +45,10 @@ public class TypeCheckerBuilder {
     private ModuleManagerFactory moduleManagerFactory;
     private RepositoryManager repositoryManager;
     private List<String> moduleFilters = new ArrayList<String>();
+    private int jobs = 1;
+    private DependencyGraph dependencyGraph;
+    private PhaseProfiler profiler;
+    private boolean compactTrees;
 
     public TypeCheckerBuilder(VFS vfs) {
         this.vfs = vfs != null ? vfs : new VFS();
@@ -136,6 +142,72 @@ public class TypeCheckerBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of threads which parse the units,
+     * validate their trees and fetch the artifacts of
+     * imported modules. The analysis phases always run
+     * sequentially. The default, 1, runs everything on
+     * the calling thread. 
+     * Diagnostics are reported in the same order whatever
+     * the number of jobs.
+     *
+     * @param jobs the size of the worker pool
+     * @return this builder
+     */
+    public TypeCheckerBuilder jobs(int jobs) {
+        this.jobs = jobs;
+        return this;
+    }
+
+    /**
+     * Sets the graph of dependencies between the units
+     * recorded by a previous run. Units whose source, and
+     * the source of every declaration they depend on, is
+     * unchanged, and which had no errors or warnings,
+     * are not analysed again: only the declarations they
+     * contain are added to the model. The graph is updated
+     * by {@link TypeChecker#process()}.
+     *
+     * @param dependencyGraph the graph of the previous run
+     * @return this builder
+     */
+    public TypeCheckerBuilder dependencyGraph(DependencyGraph dependencyGraph) {
+        this.dependencyGraph = dependencyGraph;
+        return this;
+    }
+
+    /**
+     * Sets a profiler which measures every typechecking
+     * phase run on every unit by
+     * {@link TypeChecker#process()}. If statistics are
+     * enabled, the totals of each phase are printed.
+     *
+     * @param profiler the profiler to record to
+     * @return this builder
+     */
+    public TypeCheckerBuilder profiler(PhaseProfiler profiler) {
+        this.profiler = profiler;
+        return this;
+    }
+
+    /**
+     * Enables or disables compaction of the parsed trees.
+     * When enabled, the child lists of every node are
+     * trimmed after parsing, and the token stream of each
+     * unit is discarded, so that
+     * {@link com.redhat.ceylon.compiler.typechecker.context.PhasedUnit#getTokens()}
+     * returns null. Ignored when a
+     * {@link #dependencyGraph(DependencyGraph) dependency graph}
+     * is set, since it needs the token streams.
+     *
+     * @param compactTrees true to compact the parsed trees
+     * @return this builder
+     */
+    public TypeCheckerBuilder compactTrees(boolean compactTrees) {
+        this.compactTrees = compactTrees;
+        return this;
+    }
+
     public TypeCheckerBuilder moduleManagerFactory(ModuleManagerFactory moduleManagerFactory){
         this.moduleManagerFactory = moduleManagerFactory;
         return this;
@@ -157,7 +229,8 @@ public class TypeCheckerBuilder {
                     .buildManager();
         }
         return new TypeChecker(vfs, srcDirectories, repositoryManager, verifyDependencies, assertionVisitor,
-                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding);
+                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding, jobs, 
+                dependencyGraph, profiler, compactTrees);
     }
 
 }
@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import com.redhat.ceylon.common.Backend;
 import com.redhat.ceylon.common.Backends;
@@ -387,6 +388,20 @@ public class AnalyzerUtil {
                         scope, "", 0, canceller));
     }
     
+    /**
+     * Abandon the current analysis if it has been 
+     * cancelled.
+     * 
+     * @throws CancellationException if the given
+     *         cancellable has been cancelled
+     */
+    static void checkCancelled(Cancellable cancellable) {
+        if (cancellable != null 
+                && cancellable.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+    
     static List<SiteVariance> getVariances(
             Tree.TypeArguments tas,
             List<TypeParameter> typeParameters) {
@@ -0,0 +1,203 @@
+package com.redhat.ceylon.compiler.typechecker.analyzer;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.impl.DefaultRepository;
+import com.redhat.ceylon.common.log.DeferredLog;
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+import com.redhat.ceylon.model.cmr.JDKUtils;
+
+/**
+ * Retrieves module artifacts on a worker pool, ahead of the
+ * {@link ModuleValidator}, which still resolves them one by
+ * one, in the order of the dependency tree. Once an artifact
+ * has been retrieved, the artifacts of its dependencies are
+ * retrieved too, so that the whole transitive set of imports
+ * is retrieved concurrently.
+ *
+ * The messages logged while an artifact is retrieved are
+ * {@link DeferredLog deferred}, and logged by the thread
+ * which {@link #getArtifactResult(ArtifactContext) gets} it.
+ * The repository manager must support concurrent calls to
+ * {@link RepositoryManager#getArtifactResult(ArtifactContext)}.
+ */
+public class ArtifactPrefetcher {
+
+    private final RepositoryManager repositoryManager;
+    private final String[] suffixes;
+    private final ExecutorService pool;
+    private final ConcurrentMap<String, Prefetched> prefetched =
+            new ConcurrentHashMap<String, Prefetched>();
+
+    public ArtifactPrefetcher(RepositoryManager repositoryManager,
+            String[] suffixes, int jobs) {
+        this.repositoryManager = repositoryManager;
+        this.suffixes = suffixes;
+        this.pool = Executors.newFixedThreadPool(jobs);
+    }
+
+    /**
+     * Never prefetch the given module, for example because
+     * it is already available.
+     */
+    public void skip(String name, String version) {
+        prefetched.putIfAbsent(key(name, version), Prefetched.SKIPPED);
+    }
+
+    /**
+     * Start retrieving the artifact of the given module, and
+     * then those of its dependencies, unless it is already
+     * being retrieved.
+     */
+    public void prefetch(final String namespace,
+            final String name, final String version) {
+        if (JDKUtils.isJDKModule(name)
+                || JDKUtils.isOracleJDKModule(name)
+                || !repositoryManager.isValidNamespace(namespace)) {
+            return;
+        }
+        final DeferredLog log = new DeferredLog();
+        FutureTask<ArtifactResult> task =
+                new FutureTask<ArtifactResult>(new Callable<ArtifactResult>() {
+            @Override
+            public ArtifactResult call() throws Exception {
+                log.begin();
+                try {
+                    ArtifactResult result =
+                            repositoryManager.getArtifactResult(
+                                    new ArtifactContext(namespace, name, version, suffixes));
+                    if (result != null) {
+                        prefetchDependencies(result);
+                    }
+                    return result;
+                }
+                finally {
+                    log.end();
+                }
+            }
+        });
+        Prefetched artifact = new Prefetched(namespace, task, log);
+        if (prefetched.putIfAbsent(key(name, version), artifact) == null) {
+            try {
+                pool.execute(task);
+            }
+            catch (RejectedExecutionException e) {
+                //shut down: get it on the calling thread
+                task.cancel(false);
+            }
+        }
+    }
+
+    private void prefetchDependencies(ArtifactResult result) {
+        List<ArtifactResult> dependencies;
+        //the validator reads them again, and reports their
+        //problems, when it resolves the module
+        DeferredLog ignored = new DeferredLog();
+        ignored.begin();
+        try {
+            dependencies = result.dependencies();
+        }
+        catch (RuntimeException e) {
+            return;
+        }
+        finally {
+            ignored.end();
+        }
+        if (dependencies != null) {
+            for (ArtifactResult dependency : dependencies) {
+                prefetch(dependency.namespace(),
+                        dependency.name(), dependency.version());
+            }
+        }
+    }
+
+    /**
+     * Get the artifact of the given context, waiting for it
+     * and logging its messages if it was prefetched with the
+     * same namespace, or retrieving it now otherwise.
+     */
+    public ArtifactResult getArtifactResult(ArtifactContext artifactContext)
+            throws Exception {
+        String key = key(artifactContext.getName(), artifactContext.getVersion());
+        Prefetched artifact = prefetched.get(key);
+        if (artifact != null && artifact != Prefetched.SKIPPED
+                && prefetched.remove(key, artifact)
+                && sameNamespace(artifact.namespace, artifactContext.getNamespace())) {
+            try {
+                return artifact.task.get();
+            }
+            catch (CancellationException e) {
+                //never started
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while retrieving module artifact", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException("Error while retrieving module artifact", cause);
+            }
+            finally {
+                artifact.log.replay();
+            }
+        }
+        return repositoryManager.getArtifactResult(artifactContext);
+    }
+
+    /**
+     * Stop retrieving artifacts, discarding those which were
+     * not used.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+        prefetched.clear();
+    }
+
+    private static String key(String name, String version) {
+        return name + "/" + version;
+    }
+
+    private static boolean sameNamespace(String x, String y) {
+        return normalize(x).equals(normalize(y));
+    }
+
+    private static String normalize(String namespace) {
+        return namespace == null ?
+                DefaultRepository.NAMESPACE : namespace;
+    }
+
+    /**
+     * An artifact being retrieved on the pool.
+     */
+    private static class Prefetched {
+        static final Prefetched SKIPPED = new Prefetched(null, null, null);
+
+        final String namespace;
+        final FutureTask<ArtifactResult> task;
+        final DeferredLog log;
+
+        Prefetched(String namespace, FutureTask<ArtifactResult> task,
+                DeferredLog log) {
+            this.namespace = namespace;
+            this.task = task;
+            this.log = log;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.NO_TY
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkAssignable;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkAssignableToOneOf;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkCallable;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkCancelled;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkCasesDisjoint;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkIsExactlyForInterop;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkSupertype;
@@ -75,10 +76,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import com.redhat.ceylon.common.Backend;
 import com.redhat.ceylon.common.Backends;
 import com.redhat.ceylon.compiler.typechecker.tree.CustomTree;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.Expression;
@@ -132,6 +135,7 @@ import com.redhat.ceylon.model.typechecker.model.Value;
 public class ExpressionVisitor extends Visitor {
     
     Cancellable cancellable;
+    private Set<Node> analysedNodes;
     
     private Tree.Type returnType;
     private Declaration returnDeclaration;
@@ -208,9 +212,82 @@ public class ExpressionVisitor extends Visitor {
         this.cancellable = cancellable;
     }
     
+    /**
+     * Resume an analysis of a compilation unit which was
+     * cancelled, skipping the toplevel nodes in the given
+     * set, and adding each toplevel node to the set once
+     * its analysis is complete.
+     * 
+     * Checkpoints are only recorded when the visitor has
+     * a {@link Cancellable}, and the messages of the unit
+     * are recorded by a {@link MessageSink}. If the 
+     * analysis is cancelled, the errors added to the
+     * toplevel node which was being analysed are rolled
+     * back, so that it may be analysed again from scratch.
+     */
+    public ExpressionVisitor setAnalysedNodes(
+            Set<Node> analysedNodes) {
+        this.analysedNodes = analysedNodes;
+        return this;
+    }
+    
     @Override public void visit(Tree.CompilationUnit that) {
         unit = that.getUnit();
-        super.visit(that);
+        MessageSink sink = MessageSink.of(that);
+        if (cancellable==null || analysedNodes==null 
+                || sink==null) {
+            super.visit(that);
+        }
+        else {
+            //same order as Walker.walkCompilationUnit()
+            for (Tree.CompilerAnnotation ca: 
+                    that.getCompilerAnnotations()) {
+                visitCheckpoint(ca, sink);
+            }
+            visitCheckpoint(that.getImportList(), sink);
+            for (Tree.ModuleDescriptor md: 
+                    that.getModuleDescriptors()) {
+                visitCheckpoint(md, sink);
+            }
+            for (Tree.PackageDescriptor pd: 
+                    that.getPackageDescriptors()) {
+                visitCheckpoint(pd, sink);
+            }
+            for (Tree.Declaration d: 
+                    that.getDeclarations()) {
+                visitCheckpoint(d, sink);
+            }
+        }
+    }
+    
+    private void visitCheckpoint(Node node, MessageSink sink) {
+        if (node!=null && !analysedNodes.contains(node)) {
+            checkCancelled(cancellable);
+            int mark = sink.mark();
+            try {
+                node.visit(this);
+            }
+            catch (CancellationException ce) {
+                sink.rollback(mark);
+                throw ce;
+            }
+            analysedNodes.add(node);
+        }
+    }
+    
+    @Override public void visitAny(Node that) {
+        checkCancelled(cancellable);
+        super.visitAny(that);
+    }
+    
+    @Override public void handleException(Exception e, 
+            Node that) {
+        if (e instanceof CancellationException) {
+            //abandon the analysis, instead of
+            //reporting an error at every node
+            throw (CancellationException) e;
+        }
+        super.handleException(e, that);
     }
         
     private Declaration beginReturnDeclaration(Declaration d) {
@@ -4116,7 +4193,7 @@ public class ExpressionVisitor extends Visitor {
             Type qualifyingType = 
                     scope.getDeclaringType(dec);
             List<Type> inferredArgs = 
-                    new TypeArgumentInference(unit)
+                    new TypeArgumentInference(unit, cancellable)
                         .getInferredTypeArgsForReference(
                                 that, dec, ci,
                                 qualifyingType);
@@ -4274,7 +4351,7 @@ public class ExpressionVisitor extends Visitor {
                     typeParameters);
         }
         else {
-            return new TypeArgumentInference(unit)
+            return new TypeArgumentInference(unit, cancellable)
                     .getInferredTypeArgsForTypeConstructor(
                             that, receiverType, type, 
                             typeParameters);
@@ -4319,7 +4396,7 @@ public class ExpressionVisitor extends Visitor {
                 else {
                     TypeDeclaration type = 
                             (TypeDeclaration) generic;
-                    return new TypeArgumentInference(unit)
+                    return new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForStaticReference(
                                     that, type, receiverType);
                 }
@@ -4327,7 +4404,7 @@ public class ExpressionVisitor extends Visitor {
             else {
                 Declaration declaration = 
                         pmte.getDeclaration();
-                return new TypeArgumentInference(unit)
+                return new TypeArgumentInference(unit, cancellable)
                         .getInferredTypeArgsForReference(
                                 that, declaration, generic,
                                 receiverType);
@@ -6977,7 +7054,7 @@ public class ExpressionVisitor extends Visitor {
             List<Type> typeArgs;
             if (typeConstructorArgumentsInferrable(member, that)) {
                 typeArgs = 
-                        new TypeArgumentInference(unit)
+                        new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForFunctionRef(
                                     that, null);
             }
@@ -6988,7 +7065,7 @@ public class ExpressionVisitor extends Visitor {
             }
             else {
                 typeArgs = 
-                        new TypeArgumentInference(unit)
+                        new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForFunctionRef(
                                     that, null);
             }
@@ -7106,7 +7183,7 @@ public class ExpressionVisitor extends Visitor {
             List<Type> typeArgs;
             if (typeConstructorArgumentsInferrable(member, that)) {
                 typeArgs = 
-                        new TypeArgumentInference(unit)
+                        new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForFunctionRef(
                                     that, receiverType);
             }
@@ -7117,7 +7194,7 @@ public class ExpressionVisitor extends Visitor {
             }
             else {
                 typeArgs = 
-                        new TypeArgumentInference(unit)
+                        new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForFunctionRef(
                                     that, receiverType);
             }
@@ -7675,7 +7752,7 @@ public class ExpressionVisitor extends Visitor {
             }
             else {
                 typeArgs = 
-                        new TypeArgumentInference(unit)
+                        new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForFunctionRef(
                                     that, null);
             }
@@ -8015,7 +8092,7 @@ public class ExpressionVisitor extends Visitor {
             }
             else {
                 typeArgs = 
-                        new TypeArgumentInference(unit)
+                        new TypeArgumentInference(unit, cancellable)
                             .getInferredTypeArgsForFunctionRef(
                                     that, receiverType);
             }
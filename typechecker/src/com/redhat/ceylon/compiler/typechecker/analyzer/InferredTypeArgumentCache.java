@@ -0,0 +1,111 @@
+package com.redhat.ceylon.compiler.typechecker.analyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.Type;
+
+/**
+ * Memoises the type arguments inferred by
+ * {@link TypeArgumentInference} for invocations of a
+ * generic declaration with positional arguments, keyed by
+ * the invoked declaration, the receiver type, and the
+ * types of the arguments.
+ *
+ * There is one cache for each unit, and a unit is only
+ * ever analysed by one thread at a time, so the cache is
+ * not synchronized. Only inferences which succeeded
+ * without any error are memoised, so that a hit never
+ * needs to report anything.
+ */
+public final class InferredTypeArgumentCache {
+
+    private final Map<Key,List<Type>> results =
+            new HashMap<Key,List<Type>>();
+    private long hits;
+    private long misses;
+
+    List<Type> get(Declaration invoked,
+            Declaration generic, Type receiverType,
+            List<Type> argumentTypes) {
+        List<Type> result =
+                results.get(new Key(invoked, generic,
+                        receiverType, argumentTypes));
+        if (result==null) {
+            misses++;
+            return null;
+        }
+        else {
+            hits++;
+            return new ArrayList<Type>(result);
+        }
+    }
+
+    void put(Declaration invoked,
+            Declaration generic, Type receiverType,
+            List<Type> argumentTypes,
+            List<Type> inferredTypeArgs) {
+        results.put(new Key(invoked, generic,
+                    receiverType, argumentTypes),
+                new ArrayList<Type>(inferredTypeArgs));
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final Declaration invoked;
+        private final Declaration generic;
+        private final Type receiverType;
+        private final List<Type> argumentTypes;
+        private final int hashCode;
+
+        Key(Declaration invoked, Declaration generic,
+                Type receiverType,
+                List<Type> argumentTypes) {
+            this.invoked = invoked;
+            this.generic = generic;
+            this.receiverType = receiverType;
+            this.argumentTypes = argumentTypes;
+            int h = System.identityHashCode(invoked);
+            h = 37 * h + System.identityHashCode(generic);
+            h = 37 * h + (receiverType==null ? 0 :
+                    receiverType.hashCode());
+            hashCode = 37 * h + argumentTypes.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            //declarations are compared by identity, since
+            //overloaded Java methods are equal by name
+            return hashCode == other.hashCode
+                    && invoked == other.invoked
+                    && generic == other.generic
+                    && (receiverType==null ?
+                            other.receiverType==null :
+                            receiverType.equals(other.receiverType))
+                    && argumentTypes.equals(other.argumentTypes);
+        }
+    }
+
+}
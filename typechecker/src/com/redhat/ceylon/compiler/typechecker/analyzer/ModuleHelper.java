@@ -1,10 +1,18 @@
 package com.redhat.ceylon.compiler.typechecker.analyzer;
 
+import static com.redhat.ceylon.common.ModuleUtil.isMavenModule;
+import static com.redhat.ceylon.model.typechecker.model.Module.DEFAULT_MODULE_NAME;
+
 import java.util.LinkedList;
+import java.util.List;
 
 import com.redhat.ceylon.cmr.api.ArtifactContext;
 import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
+import com.redhat.ceylon.cmr.impl.DefaultRepository;
+import com.redhat.ceylon.common.Backend;
+import com.redhat.ceylon.common.Backends;
 import com.redhat.ceylon.compiler.typechecker.exceptions.LanguageModuleNotFoundException;
+import com.redhat.ceylon.model.typechecker.model.Annotation;
 import com.redhat.ceylon.model.typechecker.model.Module;
 import com.redhat.ceylon.model.typechecker.model.ModuleImport;
 
@@ -79,4 +87,90 @@ public class ModuleHelper {
                 .append("'");
         }
     }
+
+    /**
+     * The error for a module descriptor which declares the
+     * given module name, if the name is reserved, or null.
+     */
+    public static String getReservedModuleNameError(List<String> name) {
+        if (name.get(0).equals(DEFAULT_MODULE_NAME)) {
+            return "reserved module name: 'default'";
+        }
+        else if (name.size()==1 && 
+                 name.get(0).equals("ceylon")) {
+            return "reserved module name: 'ceylon'";
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * The error for an import of the given module from the
+     * Ceylon repositories, if the module can't be imported,
+     * or null.
+     */
+    public static String getReservedImportError(List<String> name) {
+        String error = getReservedModuleNameError(name);
+        if (error==null && name.size()>1 && 
+                name.get(0).equals("ceylon") && 
+                name.get(1).equals("language")) {
+            error = "the language module is imported implicitly";
+        }
+        return error;
+    }
+
+    /**
+     * Is an import of the given module, with the given
+     * namespace, if any, an import of a Ceylon module, whose
+     * name may not be reserved? Without a namespace, a module
+     * named by an import path is a Ceylon module, even if it
+     * has a Maven artifact, and one named by a quoted name is
+     * a Ceylon module unless it has a Maven name.
+     * 
+     * @param importPath true if the module is named by an 
+     *        import path, false if by a quoted name
+     */
+    public static boolean isCeylonImport(String namespace, 
+            String path, boolean importPath) {
+        return namespace==null && 
+                (importPath || !isMavenModule(path))
+            || DefaultRepository.NAMESPACE.equals(namespace);
+    }
+
+    /**
+     * Is the given import a Maven import without the 
+     * {@code maven:} prefix?
+     */
+    public static boolean isOldStyleMavenImport(String namespace, 
+            String path) {
+        return namespace==null && isMavenModule(path);
+    }
+
+    /**
+     * The backends of the given {@code native} annotation
+     * arguments, the same as {@link 
+     * com.redhat.ceylon.compiler.typechecker.tree.TreeUtil#getNativeBackend 
+     * TreeUtil.getNativeBackend()} for the annotations they
+     * were built from.
+     */
+    public static Backends getNativeBackends(
+            List<Annotation> annotations) {
+        Backends backends = Backends.ANY;
+        for (Annotation annotation: annotations) {
+            if (annotation.getName().equals("native")) {
+                List<String> args = 
+                        annotation.getPositionalArguments();
+                if (args.isEmpty()) {
+                    return Backends.HEADER;
+                }
+                for (String backend: args) {
+                    backends = backends.merged(
+                            Backend.fromAnnotation(backend));
+                }
+                break;
+            }
+        }
+        return backends;
+    }
 }
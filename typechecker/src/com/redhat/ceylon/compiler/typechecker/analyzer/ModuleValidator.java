@@ -20,6 +20,7 @@ import com.redhat.ceylon.common.ModuleUtil;
 import com.redhat.ceylon.compiler.typechecker.context.Context;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
 import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckingPhase;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.ImportModule;
 import com.redhat.ceylon.model.cmr.ArtifactResult;
@@ -44,6 +45,8 @@ public class ModuleValidator {
     private final ModuleSourceMapper moduleManagerUtil;
     private Map<Module, ArtifactResult> searchedArtifacts = new HashMap<Module, ArtifactResult>();
     private Map<Module, List<Module>> moduleToImportPath = new HashMap<>();
+    private int jobs = 1;
+    private ArtifactPrefetcher prefetcher;
 
     public static interface ProgressListener {
         void retrievingModuleArtifact(Module module, ArtifactContext artifactContext);
@@ -82,6 +85,20 @@ public class ModuleValidator {
         this.listener = listener;
     }
 
+    /**
+     * Sets the number of module artifacts retrieved concurrently
+     * by {@link #verifyModuleDependencyTree()}. With more than one
+     * job, the imports of each module, and their own imports, are
+     * retrieved by an {@link ArtifactPrefetcher} as soon as they
+     * are known, but the artifacts are still resolved sequentially,
+     * in the order of the dependency tree.
+     * The repository manager must support concurrent calls to
+     * {@link RepositoryManager#getArtifactResult(ArtifactContext)}.
+     */
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
     public List<PhasedUnits> getPhasedUnitsOfDependencies() {
         return phasedUnitsOfDependencies;
     }
@@ -114,11 +131,31 @@ public class ModuleValidator {
                 modules.add(context.getModules().getLanguageModule());
                 modules.add(context.getModules().getDefaultModule());
                 modules.addAll(compiledModules);
-                for (Module module : modules) {
-                    dependencyTree.addLast(module);
-                    //we don't care about propagated dependency here as top modules are independent from one another
-                    verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
-                    dependencyTree.pollLast();
+                if (jobs > 1) {
+                    prefetcher = new ArtifactPrefetcher(context.getRepositoryManager(), 
+                            getArtifactSuffixes(moduleManager.getSearchedArtifactExtensions()), jobs);
+                    for (Module module : context.getModules().getListOfModules()) {
+                        if (module.isAvailable()) {
+                            prefetcher.skip(module.getNameAsString(), module.getVersion());
+                        }
+                    }
+                }
+                try {
+                    for (Module module : modules) {
+                        prefetchArtifacts(module.getImports(), searchedArtifacts);
+                    }
+                    for (Module module : modules) {
+                        dependencyTree.addLast(module);
+                        //we don't care about propagated dependency here as top modules are independent from one another
+                        verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
+                        dependencyTree.pollLast();
+                    }
+                }
+                finally {
+                    if (prefetcher != null) {
+                        prefetcher.shutdown();
+                        prefetcher = null;
+                    }
                 }
                 for (Module module : compiledModules) {
                     verifyNative(module);
@@ -209,6 +246,7 @@ public class ModuleValidator {
             List<Module> propagatedDependencies, 
             ImportDepth importDepth,
             Map<Module, ArtifactResult> alreadySearchedArtifacts) {
+        prefetchArtifacts(moduleImports, alreadySearchedArtifacts);
         List<Module> visibleDependencies = new ArrayList<Module>();
         visibleDependencies.add(dependencyTree.getLast()); //first addition => no possible conflict
         for (ModuleImport moduleImport : moduleImports) {
@@ -264,7 +302,7 @@ public class ModuleValidator {
                     ArtifactContext artifactContext = new ArtifactContext(moduleImport.getNamespace(), module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
                     listener.retrievingModuleArtifact(module, artifactContext);
                     try {
-                        artifact = repositoryManager.getArtifactResult(artifactContext);
+                        artifact = retrieveArtifact(artifactContext);
                     } catch (Exception e) {
                         exceptionOnGetArtifact = catchIfPossible(e);
                     }
@@ -319,6 +357,41 @@ public class ModuleValidator {
         }
     }
 
+    /**
+     * Start retrieving the artifacts of the given imports, and
+     * of their own imports, if there is a prefetcher, skipping
+     * modules which are available or already searched.
+     */
+    private void prefetchArtifacts(Collection<ModuleImport> moduleImports, 
+            Map<Module, ArtifactResult> alreadySearchedArtifacts) {
+        if (prefetcher == null) {
+            return;
+        }
+        for (ModuleImport moduleImport : moduleImports) {
+            if (moduleImport.isNative() &&
+                    !isForBackend(moduleImport.getNativeBackends(), moduleManager.getSupportedBackends())) {
+                continue;
+            }
+            Module module = moduleImport.getModule();
+            if (module.isAvailable() 
+                    || alreadySearchedArtifacts.containsKey(module)) {
+                continue;
+            }
+            prefetcher.prefetch(moduleImport.getNamespace(), module.getNameAsString(), module.getVersion());
+        }
+    }
+
+    /**
+     * Get the artifact of the given context, from the prefetcher
+     * if there is one.
+     */
+    private ArtifactResult retrieveArtifact(ArtifactContext artifactContext) throws Exception {
+        if (prefetcher != null) {
+            return prefetcher.getArtifactResult(artifactContext);
+        }
+        return context.getRepositoryManager().getArtifactResult(artifactContext);
+    }
+
     protected Exception catchIfPossible(Exception e) {
         return e;
     }
@@ -446,17 +519,17 @@ public class ModuleValidator {
         //Already called from within verifyModuleDependencyTree
         for (PhasedUnits units : phasedUnitsOfDependencies) {
             for (PhasedUnit pu : units.getPhasedUnits()) {
-                pu.scanDeclarations();
+                TypecheckingPhase.SCAN_DECLARATIONS.run(pu);
             }
         }
         for (PhasedUnits units : phasedUnitsOfDependencies) {
             for (PhasedUnit pu : units.getPhasedUnits()) {
-                pu.scanTypeDeclarations();
+                TypecheckingPhase.SCAN_TYPE_DECLARATIONS.run(pu);
             }
         }
         for (PhasedUnits units : phasedUnitsOfDependencies) {
             for (PhasedUnit pu : units.getPhasedUnits()) {
-                pu.validateRefinement();
+                TypecheckingPhase.VALIDATE_REFINEMENT.run(pu);
             }
         }
     }
@@ -1,6 +1,9 @@
 package com.redhat.ceylon.compiler.typechecker.analyzer;
 
-import static com.redhat.ceylon.common.ModuleUtil.isMavenModule;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.getReservedImportError;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.getReservedModuleNameError;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.isCeylonImport;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.isOldStyleMavenImport;
 import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.STRING_LITERAL;
 import static com.redhat.ceylon.compiler.typechecker.tree.TreeUtil.buildAnnotations;
 import static com.redhat.ceylon.compiler.typechecker.tree.TreeUtil.formatPath;
@@ -25,7 +28,6 @@ import java.util.Map;
 
 import org.antlr.runtime.CommonToken;
 
-import com.redhat.ceylon.cmr.impl.DefaultRepository;
 import com.redhat.ceylon.cmr.impl.MavenRepository;
 import com.redhat.ceylon.common.Backend;
 import com.redhat.ceylon.common.Backends;
@@ -246,12 +248,10 @@ public class ModuleVisitor extends Visitor {
                 Backends unitBackends = 
                         unit.getUnit()
                             .getSupportedBackends();
-                if (initialName.equals(DEFAULT_MODULE_NAME)) {
-                    importPath.addError("reserved module name: 'default'");
-                }
-                else if (name.size()==1 && 
-                         initialName.equals("ceylon")) {
-                    importPath.addError("reserved module name: 'ceylon'");
+                String reservedNameError = 
+                        getReservedModuleNameError(name);
+                if (reservedNameError!=null) {
+                    importPath.addError(reservedNameError);
                 }
                 else if (!moduleBackends.none()
                         && moduleBackends.header()) {
@@ -498,35 +498,21 @@ public class ModuleVisitor extends Visitor {
 
             Tree.Identifier ns = that.getNamespace();
             String namespace = ns!=null ? ns.getText() : null;
-            boolean hasMavenName = 
-                    isMavenModule(path);
-            boolean forCeylon 
-                     = (importPath != null && namespace == null)
-                    || (importPath == null && namespace == null && !hasMavenName)
-                    || DefaultRepository.NAMESPACE.equals(namespace);
+            boolean forCeylon = 
+                    isCeylonImport(namespace, path, 
+                            importPath!=null);
+            String reservedError = name.isEmpty() ? 
+                    null : getReservedImportError(name);
             if (name.isEmpty()) {
                 that.addError("missing module name");
             }
-            else if (name.get(0).equals(DEFAULT_MODULE_NAME)) {
-                if (forCeylon) {
-                    node.addError("reserved module name: 'default'");
-                }
-            }
-            else if (name.size()==1 && 
-                     name.get(0).equals("ceylon")) {
-                if (forCeylon) {
-                    node.addError("reserved module name: 'ceylon'");
-                }
-            }
-            else if (name.size()>1 && 
-                     name.get(0).equals("ceylon") && 
-                     name.get(1).equals("language")) {
+            else if (reservedError!=null) {
                 if (forCeylon) {
-                    node.addError("the language module is imported implicitly");
+                    node.addError(reservedError);
                 }
             }
             else {
-                if (namespace == null && hasMavenName) {
+                if (isOldStyleMavenImport(namespace, path)) {
                     namespace = MavenRepository.NAMESPACE;
                     node.addUsageWarning(Warning.missingImportPrefix,
                             "use of old style Maven imports is deprecated, prefix with 'maven:'");
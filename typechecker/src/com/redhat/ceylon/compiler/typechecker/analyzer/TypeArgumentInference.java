@@ -1,5 +1,6 @@
 package com.redhat.ceylon.compiler.typechecker.analyzer;
 
+import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.checkCancelled;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.NO_TYPE_ARGS;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getMatchingParameter;
 import static com.redhat.ceylon.compiler.typechecker.analyzer.AnalyzerUtil.getTupleType;
@@ -23,10 +24,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckerUnit;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.NamedArgument;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.PositionalArgument;
+import com.redhat.ceylon.model.typechecker.model.Cancellable;
 import com.redhat.ceylon.model.typechecker.model.Declaration;
 import com.redhat.ceylon.model.typechecker.model.FunctionOrValue;
 import com.redhat.ceylon.model.typechecker.model.Functional;
@@ -45,9 +48,16 @@ import com.redhat.ceylon.model.typechecker.model.Value;
 public class TypeArgumentInference {
     
     private Unit unit;
+    private Cancellable cancellable;
     
     public TypeArgumentInference(Unit unit) {
+        this(unit, null);
+    }
+    
+    public TypeArgumentInference(Unit unit, 
+            Cancellable cancellable) {
         this.unit = unit;
+        this.cancellable = cancellable;
     }
 
     private Type unionOrIntersection(
@@ -118,6 +128,7 @@ public class TypeArgumentInference {
             boolean findingUpperBounds,
             List<TypeParameter> visited, 
             Node argNode) {
+        checkCancelled(cancellable);
         if (paramType!=null && argType!=null) {
             paramType = paramType.resolveAliases();
             argType = argType.resolveAliases();
@@ -1293,6 +1304,22 @@ public class TypeArgumentInference {
                 return null;
             }
             else {
+                InferredTypeArgumentCache cache = 
+                        unit instanceof TypecheckerUnit ? 
+                            ((TypecheckerUnit) unit)
+                                .getInferredTypeArgumentCache() : 
+                            null;
+                List<Type> argTypes = cache==null ? null : 
+                        cacheableArgumentTypes(that);
+                if (argTypes!=null) {
+                    List<Type> cached = 
+                            cache.get(invoked, generic, 
+                                    receiverType, argTypes);
+                    if (cached!=null) {
+                        return cached;
+                    }
+                }
+                boolean inferred = true;
                 List<Type> typeArgs = new ArrayList<Type>();
                 List<TypeParameter> typeParameters = 
                         generic.getTypeParameters();
@@ -1305,12 +1332,19 @@ public class TypeArgumentInference {
                     if (it==null || it.containsUnknowns()) {
                         that.addError("could not infer type argument from given arguments: type parameter '" + 
                                 tp.getName() + "' could not be inferred");
+                        inferred = false;
                     }
                     typeArgs.add(it);
                 }
-                return constrainInferredTypes(
-                        typeParameters, typeArgs, 
-                        receiverType, invoked);
+                List<Type> result = 
+                        constrainInferredTypes(
+                                typeParameters, typeArgs, 
+                                receiverType, invoked);
+                if (argTypes!=null && inferred) {
+                    cache.put(invoked, generic, 
+                            receiverType, argTypes, result);
+                }
+                return result;
             }
         }
         else {
@@ -1318,6 +1352,38 @@ public class TypeArgumentInference {
         }
     }
 
+    /**
+     * The types of the arguments of an invocation whose 
+     * inferred type arguments may be memoised, or null if
+     * it has named, spread, or comprehension arguments, or
+     * an argument whose type is not fully known.
+     */
+    private static List<Type> cacheableArgumentTypes(
+            Tree.InvocationExpression that) {
+        Tree.PositionalArgumentList pal = 
+                that.getPositionalArgumentList();
+        if (pal==null) {
+            return null;
+        }
+        List<Tree.PositionalArgument> args = 
+                pal.getPositionalArguments();
+        List<Type> types = 
+                new ArrayList<Type>(args.size());
+        for (Tree.PositionalArgument arg: args) {
+            if (!(arg instanceof Tree.ListedArgument)) {
+                return null;
+            }
+            Type at = arg.getTypeModel();
+            if (at==null || at.containsUnknowns() || 
+                    at.isRaw() || 
+                    at.getUnderlyingType()!=null) {
+                return null;
+            }
+            types.add(at);
+        }
+        return types;
+    }
+
     private Type inferTypeArgument(
             Tree.InvocationExpression that,
             Type receiverType, TypeParameter tp, 
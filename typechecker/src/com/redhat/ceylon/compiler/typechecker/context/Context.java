@@ -14,6 +14,7 @@ public class Context {
     private Modules modules;
     private VFS vfs;
     private RepositoryManager repositoryManager;
+    private boolean compactTrees;
 
     public Context(RepositoryManager repositoryManager, VFS vfs) {
         this.vfs = vfs;
@@ -35,4 +36,17 @@ public class Context {
     public VFS getVfs() {
         return vfs;
     }
+
+    /**
+     * Are the trees parsed in this context compacted, by
+     * trimming their child lists and discarding the token
+     * streams they were parsed from?
+     */
+    public boolean isCompactTrees() {
+        return compactTrees;
+    }
+
+    public void setCompactTrees(boolean compactTrees) {
+        this.compactTrees = compactTrees;
+    }
 }
@@ -0,0 +1,672 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+import com.redhat.ceylon.compiler.typechecker.analyzer.UsageWarning;
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+import com.redhat.ceylon.compiler.typechecker.util.ReferenceCounter;
+import com.redhat.ceylon.model.typechecker.model.Declaration;
+import com.redhat.ceylon.model.typechecker.model.Package;
+import com.redhat.ceylon.model.typechecker.model.Scope;
+
+/**
+ * Records, for every {@link PhasedUnit} of a previous
+ * typechecker run, the toplevel declarations it exports,
+ * the toplevel declarations it references, and whether
+ * it was free of errors and warnings. On the next run,
+ * this is used to determine the units which really need
+ * to be analysed again.
+ *
+ * Every exported declaration is identified by its
+ * qualified name, and fingerprinted by hashing its
+ * tokens together with the tokens of the imports of its
+ * unit. A unit needs to be analysed if:
+ *
+ * <ul>
+ * <li>it is new, or it had errors,</li>
+ * <li>the fingerprint of one of its declarations
+ *     changed,</li>
+ * <li>a toplevel declaration was added to or removed 
+ *     from its own package, or from a package it 
+ *     imports, since a name it resolved elsewhere, for
+ *     example in the language module, might now resolve
+ *     to a different declaration, or</li>
+ * <li>it references, directly or transitively through
+ *     other units which need to be analysed, a
+ *     declaration whose fingerprint changed or which
+ *     was removed.</li>
+ * </ul>
+ *
+ * Warnings do not make a unit need to be analysed again,
+ * and so the warnings of a unit which is not analysed
+ * are not reported again.
+ *
+ * A change to a module or package descriptor means that
+ * every unit needs to be analysed. Units with toplevel
+ * declarations with inferred types are always analysed,
+ * since the types of those declarations are only
+ * assigned by the {@link TypecheckingPhase#ANALYSE_TYPES
+ * type analysis}.
+ *
+ * @see TypecheckingPhase#isRequiredByDependents()
+ */
+public class DependencyGraph {
+
+    private static final String HEADER =
+            "#ceylon-dependency-graph 1";
+
+    private static final class UnitEntry {
+        final Map<String,Long> exports;
+        final Set<String> references;
+        final boolean clean;
+        final boolean descriptor;
+        UnitEntry(Map<String,Long> exports,
+                Set<String> references,
+                boolean clean, boolean descriptor) {
+            this.exports = exports;
+            this.references = references;
+            this.clean = clean;
+            this.descriptor = descriptor;
+        }
+    }
+
+    private final Map<String,UnitEntry> units =
+            new LinkedHashMap<String,UnitEntry>();
+
+    /**
+     * The number of units recorded in the graph.
+     */
+    public int size() {
+        return units.size();
+    }
+
+    public boolean isEmpty() {
+        return units.isEmpty();
+    }
+
+    /**
+     * Determine which of the given units need to be
+     * analysed, given the state recorded by the previous
+     * run. The units are returned in the given order.
+     */
+    public List<PhasedUnit> getUnitsToAnalyse(
+            List<PhasedUnit> phasedUnits) {
+        Set<PhasedUnit> dirty =
+                new HashSet<PhasedUnit>();
+        Set<String> changed = new HashSet<String>();
+        Map<String,PhasedUnit> unitsByPath =
+                new HashMap<String,PhasedUnit>();
+        Map<PhasedUnit,Map<String,Long>> exports =
+                new HashMap<PhasedUnit,Map<String,Long>>();
+        boolean all = false;
+        for (PhasedUnit pu: phasedUnits) {
+            String path = getPath(pu);
+            unitsByPath.put(path, pu);
+            Map<String,Long> current = getExports(pu);
+            exports.put(pu, current);
+            UnitEntry entry = units.get(path);
+            if (entry==null) {
+                dirty.add(pu);
+                if (current!=null) {
+                    changed.addAll(current.keySet());
+                }
+                all |= isDescriptor(pu);
+            }
+            else {
+                if (!entry.clean || current==null ||
+                        hasInferredToplevels(pu)) {
+                    dirty.add(pu);
+                }
+                if (current==null) {
+                    changed.addAll(entry.exports.keySet());
+                    all |= entry.descriptor || isDescriptor(pu);
+                }
+                else if (!current.equals(entry.exports)) {
+                    dirty.add(pu);
+                    collectChanges(entry.exports, current,
+                            changed);
+                    all |= entry.descriptor || isDescriptor(pu);
+                }
+            }
+        }
+        for (Map.Entry<String,UnitEntry> e: units.entrySet()) {
+            if (!unitsByPath.containsKey(e.getKey())) {
+                //a removed unit
+                UnitEntry entry = e.getValue();
+                changed.addAll(entry.exports.keySet());
+                all |= entry.descriptor;
+            }
+        }
+        if (all) {
+            return new ArrayList<PhasedUnit>(phasedUnits);
+        }
+
+        //the units which might resolve a name differently,
+        //because their package, or a package they import,
+        //now has a different set of toplevel names
+        Set<String> renamed = 
+                getRenamedPackages(phasedUnits, exports);
+        if (!renamed.isEmpty()) {
+            boolean language = 
+                    renamed.contains(LANGUAGE_PACKAGE);
+            for (PhasedUnit pu: phasedUnits) {
+                if (language || 
+                        renamed.contains(getPackage(pu)) ||
+                        importsAny(pu, renamed)) {
+                    dirty.add(pu);
+                    Map<String,Long> ex = exports.get(pu);
+                    if (ex!=null) {
+                        changed.addAll(ex.keySet());
+                    }
+                }
+            }
+        }
+
+        //propagate the changes through the references
+        //recorded by the previous run
+        Map<String,List<PhasedUnit>> referencers =
+                new HashMap<String,List<PhasedUnit>>();
+        for (Map.Entry<String,UnitEntry> e: units.entrySet()) {
+            PhasedUnit pu = unitsByPath.get(e.getKey());
+            if (pu!=null) {
+                for (String ref: e.getValue().references) {
+                    List<PhasedUnit> list = referencers.get(ref);
+                    if (list==null) {
+                        list = new ArrayList<PhasedUnit>(2);
+                        referencers.put(ref, list);
+                    }
+                    list.add(pu);
+                }
+            }
+        }
+        Set<PhasedUnit> reached = new HashSet<PhasedUnit>();
+        LinkedList<String> queue =
+                new LinkedList<String>(changed);
+        while (!queue.isEmpty()) {
+            List<PhasedUnit> list =
+                    referencers.get(queue.removeFirst());
+            if (list!=null) {
+                for (PhasedUnit pu: list) {
+                    dirty.add(pu);
+                    if (reached.add(pu)) {
+                        Map<String,Long> ex = exports.get(pu);
+                        if (ex!=null) {
+                            for (String key: ex.keySet()) {
+                                if (changed.add(key)) {
+                                    queue.add(key);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        List<PhasedUnit> result =
+                new ArrayList<PhasedUnit>(dirty.size());
+        for (PhasedUnit pu: phasedUnits) {
+            if (dirty.contains(pu)) {
+                result.add(pu);
+            }
+        }
+        return result;
+    }
+
+    private static final String LANGUAGE_PACKAGE = 
+            "ceylon.language";
+
+    /**
+     * The packages whose set of toplevel names differs
+     * from the previous run.
+     */
+    private Set<String> getRenamedPackages(
+            List<PhasedUnit> phasedUnits,
+            Map<PhasedUnit,Map<String,Long>> exports) {
+        Map<String,Set<String>> previous = 
+                new HashMap<String,Set<String>>();
+        for (UnitEntry entry: units.values()) {
+            addNames(entry.exports.keySet(), previous);
+        }
+        Map<String,Set<String>> current = 
+                new HashMap<String,Set<String>>();
+        Set<String> renamed = new HashSet<String>();
+        for (PhasedUnit pu: phasedUnits) {
+            Map<String,Long> ex = exports.get(pu);
+            if (ex==null) {
+                //we don't know its names
+                renamed.add(getPackage(pu));
+            }
+            else {
+                addNames(ex.keySet(), current);
+            }
+        }
+        for (Map.Entry<String,Set<String>> e: 
+                previous.entrySet()) {
+            if (!e.getValue().equals(current.get(e.getKey()))) {
+                renamed.add(e.getKey());
+            }
+        }
+        for (String pkg: current.keySet()) {
+            if (!previous.containsKey(pkg)) {
+                renamed.add(pkg);
+            }
+        }
+        return renamed;
+    }
+
+    private static void addNames(Set<String> keys,
+            Map<String,Set<String>> namesByPackage) {
+        for (String key: keys) {
+            int loc = key.lastIndexOf("::");
+            String pkg = key.substring(0, loc);
+            Set<String> names = namesByPackage.get(pkg);
+            if (names==null) {
+                names = new HashSet<String>();
+                namesByPackage.put(pkg, names);
+            }
+            names.add(key.substring(loc+2));
+        }
+    }
+
+    private static String getPackage(PhasedUnit pu) {
+        return pu.getPackage().getQualifiedNameString();
+    }
+
+    private static boolean importsAny(PhasedUnit pu,
+            Set<String> packages) {
+        Tree.ImportList importList = 
+                pu.getCompilationUnit().getImportList();
+        if (importList!=null) {
+            for (Tree.Import imp: importList.getImports()) {
+                Tree.ImportPath path = imp.getImportPath();
+                if (path!=null && 
+                        packages.contains(getName(path))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String getName(Tree.ImportPath path) {
+        StringBuilder name = new StringBuilder();
+        for (Tree.Identifier id: path.getIdentifiers()) {
+            if (name.length()>0) {
+                name.append('.');
+            }
+            name.append(id.getText());
+        }
+        return name.toString();
+    }
+
+    private static void collectChanges(
+            Map<String,Long> previous,
+            Map<String,Long> current,
+            Set<String> changed) {
+        for (Map.Entry<String,Long> e: previous.entrySet()) {
+            if (!e.getValue().equals(current.get(e.getKey()))) {
+                changed.add(e.getKey());
+            }
+        }
+        for (String key: current.keySet()) {
+            if (!previous.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+    }
+
+    /**
+     * Record the state of the given units after they have
+     * been typechecked. The references of the units which
+     * were not analysed are carried over from the previous
+     * run, since their source, and everything they depend
+     * on, is unchanged.
+     *
+     * @param phasedUnits all the units of this run
+     * @param analysed the units which were fully analysed
+     */
+    public void update(List<PhasedUnit> phasedUnits,
+            List<PhasedUnit> analysed) {
+        Set<PhasedUnit> analysedSet =
+                new HashSet<PhasedUnit>(analysed);
+        Map<String,UnitEntry> updated =
+                new LinkedHashMap<String,UnitEntry>();
+        for (PhasedUnit pu: phasedUnits) {
+            String path = getPath(pu);
+            Map<String,Long> exports = getExports(pu);
+            UnitEntry previous = units.get(path);
+            boolean clean =
+                    exports!=null && !hasErrors(pu);
+            Set<String> references;
+            if (analysedSet.contains(pu) || previous==null) {
+                references = getReferences(pu);
+            }
+            else {
+                references = previous.references;
+                clean &= previous.clean;
+            }
+            if (exports==null) {
+                exports = new HashMap<String,Long>();
+            }
+            updated.put(path,
+                    new UnitEntry(exports, references,
+                            clean, isDescriptor(pu)));
+        }
+        units.clear();
+        units.putAll(updated);
+    }
+
+    /**
+     * Forget everything recorded, so that every unit is
+     * analysed by the next run.
+     */
+    public void clear() {
+        units.clear();
+    }
+
+    private static String getPath(PhasedUnit pu) {
+        return pu.getUnitFile().getPath();
+    }
+
+    private static boolean isDescriptor(PhasedUnit pu) {
+        Tree.CompilationUnit cu = pu.getCompilationUnit();
+        return !cu.getModuleDescriptors().isEmpty() ||
+                !cu.getPackageDescriptors().isEmpty();
+    }
+
+    private static boolean hasInferredToplevels(
+            PhasedUnit pu) {
+        for (Tree.Declaration d:
+                pu.getCompilationUnit().getDeclarations()) {
+            if (d instanceof Tree.TypedDeclaration) {
+                Tree.Type type =
+                        ((Tree.TypedDeclaration) d).getType();
+                if (type instanceof Tree.LocalModifier) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The fingerprints of the toplevel declarations of
+     * the given unit, by qualified name, or null if the
+     * tokens of the unit are not available.
+     */
+    private static Map<String,Long> getExports(PhasedUnit pu) {
+        List<CommonToken> tokens = pu.getTokens();
+        if (tokens==null) {
+            return null;
+        }
+        Tree.CompilationUnit cu = pu.getCompilationUnit();
+        long imports = hash(tokens, cu.getImportList(),
+                hash(tokens, cu.getModuleDescriptors(),
+                hash(tokens, cu.getPackageDescriptors(),
+                        FNV_OFFSET)));
+        String prefix = getPackage(pu) + "::";
+        Map<String,Long> exports =
+                new HashMap<String,Long>();
+        for (Tree.Declaration d: cu.getDeclarations()) {
+            Tree.Identifier id = d.getIdentifier();
+            String key = prefix +
+                    (id==null ? "" : id.getText());
+            Long previous = exports.get(key);
+            long hash = hash(tokens, d,
+                    previous==null ? imports : previous);
+            exports.put(key, hash);
+        }
+        return imports==UNKNOWN || 
+                exports.containsValue(UNKNOWN) ? 
+                        null : exports;
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /**
+     * The hash of nodes whose tokens we can't find, which
+     * means that we can't tell what changed, so that the 
+     * unit is treated like a unit without tokens
+     */
+    private static final long UNKNOWN = 0L;
+
+    private static long hash(List<CommonToken> tokens,
+            List<? extends Node> nodes, long hash) {
+        for (Node node: nodes) {
+            if (hash==UNKNOWN) {
+                break;
+            }
+            hash = hash(tokens, node, hash);
+        }
+        return hash;
+    }
+
+    private static long hash(List<CommonToken> tokens,
+            Node node, long hash) {
+        if (node==null || hash==UNKNOWN) {
+            return hash;
+        }
+        Token start = node.getToken();
+        Token end = node.getEndToken();
+        if (start==null || end==null) {
+            //an empty node, for example an empty list
+            //of imports
+            return hash;
+        }
+        int from = start.getTokenIndex();
+        int to = end.getTokenIndex();
+        if (from<0 || to<from || to>=tokens.size()) {
+            return UNKNOWN;
+        }
+        for (int i=from; i<=to; i++) {
+            CommonToken token = tokens.get(i);
+            if (token.getChannel()!=Token.HIDDEN_CHANNEL) {
+                String text = token.getText();
+                for (int j=0, l=text.length(); j<l; j++) {
+                    hash = (hash ^ text.charAt(j)) * FNV_PRIME;
+                }
+                //separate adjacent tokens
+                hash = (hash ^ 0xffff) * FNV_PRIME;
+            }
+        }
+        //never confuse a real hash with UNKNOWN
+        return hash==UNKNOWN ? FNV_OFFSET : hash;
+    }
+
+    /**
+     * The qualified names of the toplevel declarations
+     * containing every declaration referenced by the
+     * given unit.
+     */
+    private static Set<String> getReferences(PhasedUnit pu) {
+        ReferenceCounter rc = new ReferenceCounter();
+        pu.getCompilationUnit().visit(rc);
+        Set<String> references = new LinkedHashSet<String>();
+        for (Declaration d: rc.getReferencedDeclarations()) {
+            Declaration toplevel = getToplevel(d);
+            if (toplevel!=null && toplevel.getName()!=null) {
+                Package pkg =
+                        toplevel.getUnit()==null ? null :
+                            toplevel.getUnit().getPackage();
+                if (pkg!=null) {
+                    references.add(
+                            pkg.getQualifiedNameString() +
+                            "::" + toplevel.getName());
+                }
+            }
+        }
+        return references;
+    }
+
+    private static Declaration getToplevel(Declaration d) {
+        while (d!=null && !d.isToplevel()) {
+            Scope container = d.getContainer();
+            while (container!=null &&
+                    !(container instanceof Declaration) &&
+                    !(container instanceof Package)) {
+                container = container.getContainer();
+            }
+            if (container instanceof Declaration) {
+                d = (Declaration) container;
+            }
+            else {
+                return container==null ? null : d;
+            }
+        }
+        return d;
+    }
+
+    private static boolean hasErrors(PhasedUnit pu) {
+        class ErrorFinder extends Visitor {
+            boolean found;
+            @Override
+            public void visitAny(Node that) {
+                if (found) {
+                    return;
+                }
+                for (Message error: that.getErrors()) {
+                    if (!(error instanceof UsageWarning)) {
+                        found = true;
+                        return;
+                    }
+                }
+                super.visitAny(that);
+            }
+        }
+        ErrorFinder finder = new ErrorFinder();
+        pu.getCompilationUnit().visit(finder);
+        return finder.found;
+    }
+
+    /**
+     * Read a graph saved by {@link #save(File)}. If the
+     * file does not exist, or is not in the expected
+     * format, the graph is empty.
+     */
+    public static DependencyGraph load(File file)
+            throws IOException {
+        DependencyGraph graph = new DependencyGraph();
+        if (!file.isFile()) {
+            return graph;
+        }
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file), "UTF-8"));
+        try {
+            if (!HEADER.equals(reader.readLine())) {
+                return graph;
+            }
+            String path = null;
+            boolean clean = false;
+            boolean descriptor = false;
+            Map<String,Long> exports = null;
+            Set<String> references = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields[0].equals("unit")
+                        && fields.length==4) {
+                    if (path!=null) {
+                        graph.units.put(path,
+                                new UnitEntry(exports,
+                                        references,
+                                        clean, descriptor));
+                    }
+                    path = fields[1];
+                    clean = Boolean.parseBoolean(fields[2]);
+                    descriptor = Boolean.parseBoolean(fields[3]);
+                    exports = new HashMap<String,Long>();
+                    references = new LinkedHashSet<String>();
+                }
+                else if (path!=null
+                        && fields[0].equals("export")
+                        && fields.length==3) {
+                    exports.put(fields[1],
+                            Long.parseLong(fields[2]));
+                }
+                else if (path!=null
+                        && fields[0].equals("ref")
+                        && fields.length==2) {
+                    references.add(fields[1]);
+                }
+                else {
+                    //corrupt file: start from scratch
+                    graph.units.clear();
+                    return graph;
+                }
+            }
+            if (path!=null) {
+                graph.units.put(path,
+                        new UnitEntry(exports, references,
+                                clean, descriptor));
+            }
+        }
+        catch (NumberFormatException e) {
+            graph.units.clear();
+        }
+        finally {
+            reader.close();
+        }
+        return graph;
+    }
+
+    /**
+     * Save the graph, so that it can be {@link #load(File)
+     * loaded} by the next run.
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir!=null) {
+            dir.mkdirs();
+        }
+        Writer writer =
+                new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String,UnitEntry> e:
+                    units.entrySet()) {
+                UnitEntry entry = e.getValue();
+                writer.write("unit\t" + e.getKey() +
+                        "\t" + entry.clean +
+                        "\t" + entry.descriptor + "\n");
+                for (Map.Entry<String,Long> ex:
+                        entry.exports.entrySet()) {
+                    writer.write("export\t" + ex.getKey() +
+                            "\t" + ex.getValue() + "\n");
+                }
+                for (String ref: entry.references) {
+                    writer.write("ref\t" + ref + "\n");
+                }
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.redhat.ceylon.model.typechecker.context.TypeCache;
+
+/**
+ * Runs the {@link TypecheckingPhase typechecking phases}
+ * over a list of {@link PhasedUnit}s.
+ *
+ * With a single job, every phase is a plain loop over the
+ * units. With more than one job, each
+ * {@link TypecheckingPhase#isParallelizable() parallelizable}
+ * phase is fanned out over a fork-join pool, and the
+ * executor waits for every unit to complete the phase
+ * before starting the next one.
+ *
+ * Errors and warnings are attached to the nodes of each
+ * unit's own tree, and they are collected by walking the
+ * units in list order afterwards, so the diagnostics are
+ * reported in the same order as in sequential mode.
+ *
+ * If the executor has a {@link PhaseProfiler}, every
+ * phase run on every unit is measured by the profiler.
+ * Profiling never changes which phases run in parallel.
+ *
+ * A {@link Listener} may follow the progress of the
+ * executor, for example to display it.
+ */
+public class PhaseExecutor {
+
+    private final int jobs;
+    private ForkJoinPool pool;
+    private PhaseProfiler profiler;
+    private Listener listener;
+
+    /**
+     * Notified as the executor runs the phases.
+     */
+    public interface Listener {
+        /**
+         * Called before the given phase is run on the
+         * given number of units.
+         */
+        void phaseStarted(TypecheckingPhase phase, int units);
+
+        /**
+         * Called before the given phase is run on the
+         * given unit, when the phase is run sequentially.
+         *
+         * @param index the position of the unit, starting
+         *        at 1
+         */
+        void unitStarted(TypecheckingPhase phase, 
+                int index, int units, PhasedUnit pu);
+    }
+
+    public PhaseExecutor(int jobs) {
+        this.jobs = jobs < 1 ? 1 : jobs;
+    }
+
+    /**
+     * The number of jobs to use when the user asked for
+     * "as many as possible".
+     */
+    public static int defaultJobs() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    public boolean isParallel() {
+        return jobs > 1;
+    }
+
+    public PhaseProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void setProfiler(PhaseProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Runs every phase on every unit, and releases the
+     * worker threads afterwards.
+     */
+    public void executePhases(List<PhasedUnit> listOfUnits) {
+        try {
+            for (TypecheckingPhase phase:
+                    TypecheckingPhase.values()) {
+                execute(phase, listOfUnits);
+            }
+        }
+        finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Runs every phase on the units which need to be
+     * analysed according to the given dependency graph,
+     * running the phases which are
+     * {@link TypecheckingPhase#isRequiredByDependents()
+     * required by dependents} on every unit, and then
+     * records the new state of the units in the graph.
+     */
+    public void executePhases(List<PhasedUnit> listOfUnits,
+            DependencyGraph dependencyGraph) {
+        List<PhasedUnit> unitsToAnalyse = 
+                dependencyGraph.getUnitsToAnalyse(listOfUnits);
+        try {
+            for (TypecheckingPhase phase:
+                    TypecheckingPhase.values()) {
+                execute(phase, 
+                        phase.isRequiredByDependents() ? 
+                                listOfUnits : unitsToAnalyse);
+            }
+        }
+        finally {
+            shutdown();
+        }
+        dependencyGraph.update(listOfUnits, unitsToAnalyse);
+    }
+
+    /**
+     * Runs the given phase on every unit, returning once
+     * all units have completed it.
+     */
+    public void execute(TypecheckingPhase phase,
+            List<PhasedUnit> listOfUnits) {
+        int size = listOfUnits.size();
+        if (listener != null) {
+            listener.phaseStarted(phase, size);
+        }
+        if (isParallel()
+                && phase.isParallelizable()
+                && size > 1) {
+            getPool().invoke(new PhaseTask(phase,
+                    listOfUnits, 0, size,
+                    TypeCache.isEnabled(), profiler));
+        }
+        else {
+            int i = 1;
+            for (PhasedUnit pu: listOfUnits) {
+                if (listener != null) {
+                    listener.unitStarted(phase, i++, size, pu);
+                }
+                run(phase, pu, profiler);
+            }
+        }
+    }
+
+    private static void run(TypecheckingPhase phase,
+            PhasedUnit pu, PhaseProfiler profiler) {
+        if (profiler == null) {
+            phase.run(pu);
+        }
+        else {
+            profiler.run(phase, pu);
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(jobs);
+        }
+        return pool;
+    }
+
+    @SuppressWarnings("serial")
+    private static class PhaseTask extends RecursiveAction {
+        private final TypecheckingPhase phase;
+        private final List<PhasedUnit> units;
+        private final int start;
+        private final int end;
+        private final boolean cachingEnabled;
+        private final PhaseProfiler profiler;
+
+        PhaseTask(TypecheckingPhase phase,
+                List<PhasedUnit> units,
+                int start, int end,
+                boolean cachingEnabled,
+                PhaseProfiler profiler) {
+            this.phase = phase;
+            this.units = units;
+            this.start = start;
+            this.end = end;
+            this.cachingEnabled = cachingEnabled;
+            this.profiler = profiler;
+        }
+
+        @Override
+        protected void compute() {
+            if (end-start == 1) {
+                //the TypeCache toggle is thread-local,
+                //so propagate the caller's setting
+                Boolean was =
+                        TypeCache.setEnabled(cachingEnabled);
+                try {
+                    run(phase, units.get(start), profiler);
+                }
+                finally {
+                    TypeCache.setEnabled(was);
+                }
+            }
+            else {
+                int middle = (start+end) >>> 1;
+                invokeAll(
+                    new PhaseTask(phase, units,
+                            start, middle, cachingEnabled,
+                            profiler),
+                    new PhaseTask(phase, units,
+                            middle, end, cachingEnabled,
+                            profiler));
+            }
+        }
+    }
+
+}
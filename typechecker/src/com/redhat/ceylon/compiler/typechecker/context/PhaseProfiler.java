@@ -0,0 +1,520 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of
+ * every {@link TypecheckingPhase} run on every
+ * {@link PhasedUnit} by a {@link PhaseExecutor}.
+ *
+ * CPU time and allocation are measured for the thread
+ * running the phase, using the platform
+ * {@link ThreadMXBean}. When the JVM does not support one
+ * of these measurements, it is recorded as -1.
+ *
+ * The recorded samples may be exported as a JSON summary,
+ * listing the totals per phase and the units sorted by
+ * decreasing wall time, or as a Chrome trace-event file,
+ * which can be loaded into {@code chrome://tracing}.
+ *
+ * Units are identified by their source directory and
+ * their path relative to it, since units of distinct
+ * source directories may have the same relative path.
+ */
+public class PhaseProfiler {
+
+    /**
+     * The measurements of a phase run on a unit.
+     */
+    public static final class Sample {
+        private final TypecheckingPhase phase;
+        private final String srcDir;
+        private final String unit;
+        private final long threadId;
+        private final long start;
+        private final long wallTime;
+        private final long cpuTime;
+        private final long allocatedBytes;
+
+        Sample(TypecheckingPhase phase, 
+                String srcDir, String unit,
+                long threadId, long start, long wallTime,
+                long cpuTime, long allocatedBytes) {
+            this.phase = phase;
+            this.srcDir = srcDir;
+            this.unit = unit;
+            this.threadId = threadId;
+            this.start = start;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public TypecheckingPhase getPhase() {
+            return phase;
+        }
+
+        /**
+         * The path of the source directory of the unit.
+         */
+        public String getSrcDir() {
+            return srcDir;
+        }
+
+        /**
+         * The path of the unit, relative to its source
+         * directory.
+         */
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * The key of the unit, which identifies it among 
+         * the units of every source directory.
+         */
+        String getKey() {
+            return srcDir==null ? unit : srcDir + '/' + unit;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        /**
+         * The start of the phase in nanoseconds, relative
+         * to the creation of the profiler.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * The wall time in nanoseconds.
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * The CPU time in nanoseconds, or -1 if it could
+         * not be measured.
+         */
+        public long getCpuTime() {
+            return cpuTime;
+        }
+
+        /**
+         * The number of bytes allocated, or -1 if it could
+         * not be measured.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private static final Method getThreadAllocatedBytes =
+            findGetThreadAllocatedBytes();
+
+    private static Method findGetThreadAllocatedBytes() {
+        //only available on HotSpot-like JVMs
+        try {
+            Class<?> bean = Class.forName(
+                    "com.sun.management.ThreadMXBean");
+            return bean.isInstance(
+                        ManagementFactory.getThreadMXBean()) ?
+                    bean.getMethod("getThreadAllocatedBytes",
+                            long.class) :
+                    null;
+        }
+        catch (Exception e) {
+            return null;
+        }
+        catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private final ThreadMXBean threads =
+            ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+    private boolean allocationSupported =
+            getThreadAllocatedBytes!=null;
+    private final long origin = System.nanoTime();
+    private final ConcurrentLinkedQueue<Sample> samples =
+            new ConcurrentLinkedQueue<Sample>();
+
+    public PhaseProfiler() {
+        boolean cpuTime =
+                threads.isCurrentThreadCpuTimeSupported();
+        if (cpuTime && !threads.isThreadCpuTimeEnabled()) {
+            try {
+                threads.setThreadCpuTimeEnabled(true);
+            }
+            catch (UnsupportedOperationException e) {
+                cpuTime = false;
+            }
+            catch (SecurityException e) {
+                cpuTime = false;
+            }
+        }
+        this.cpuTimeSupported = cpuTime;
+    }
+
+    /**
+     * Runs the given phase on the given unit, recording
+     * its measurements.
+     */
+    public void run(TypecheckingPhase phase, PhasedUnit pu) {
+        long threadId = Thread.currentThread().getId();
+        long cpuBefore = cpuTime();
+        long allocatedBefore = allocatedBytes(threadId);
+        long start = System.nanoTime();
+        try {
+            phase.run(pu);
+        }
+        finally {
+            long end = System.nanoTime();
+            long cpuAfter = cpuTime();
+            long allocatedAfter = allocatedBytes(threadId);
+            samples.add(new Sample(phase,
+                    pu.getSrcDir()==null ? 
+                            null : pu.getSrcDir().getPath(),
+                    pu.getPathRelativeToSrcDir(),
+                    threadId, start-origin, end-start,
+                    cpuBefore<0 || cpuAfter<0 ?
+                            -1 : cpuAfter-cpuBefore,
+                    allocatedBefore<0 || allocatedAfter<0 ?
+                            -1 : allocatedAfter-allocatedBefore));
+        }
+    }
+
+    private long cpuTime() {
+        return cpuTimeSupported ?
+                threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private long allocatedBytes(long threadId) {
+        if (allocationSupported) {
+            try {
+                return (Long) getThreadAllocatedBytes
+                        .invoke(threads, threadId);
+            }
+            catch (Exception e) {
+                allocationSupported = false;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isCpuTimeSupported() {
+        return cpuTimeSupported;
+    }
+
+    public boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    /**
+     * The samples recorded so far, in order of completion.
+     */
+    public List<Sample> getSamples() {
+        return new ArrayList<Sample>(samples);
+    }
+
+    public void clear() {
+        samples.clear();
+    }
+
+    /**
+     * The sum of the samples of each phase, as samples
+     * with no unit, in phase order. Since the samples of
+     * units typechecked concurrently overlap, the total
+     * wall time of a parallelized phase may exceed the
+     * time it took.
+     */
+    public List<Sample> getPhaseTotals() {
+        Map<TypecheckingPhase,long[]> totals =
+                new EnumMap<TypecheckingPhase,long[]>
+                    (TypecheckingPhase.class);
+        for (Sample sample: samples) {
+            long[] total = totals.get(sample.phase);
+            if (total==null) {
+                total = new long[3];
+                totals.put(sample.phase, total);
+            }
+            add(total, sample);
+        }
+        List<Sample> result = new ArrayList<Sample>();
+        for (Map.Entry<TypecheckingPhase,long[]> entry:
+                totals.entrySet()) {
+            long[] total = entry.getValue();
+            result.add(new Sample(entry.getKey(), null, null,
+                    -1, 0, total[0], total[1], total[2]));
+        }
+        return result;
+    }
+
+    /**
+     * The samples of each unit, by the path of its source
+     * directory and its own path, with the units sorted by
+     * decreasing total wall time.
+     */
+    public Map<String,List<Sample>> getUnitSamples() {
+        final Map<String,long[]> totals =
+                new LinkedHashMap<String,long[]>();
+        final Map<String,List<Sample>> units =
+                new LinkedHashMap<String,List<Sample>>();
+        for (Sample sample: samples) {
+            String key = sample.getKey();
+            List<Sample> list = units.get(key);
+            if (list==null) {
+                list = new ArrayList<Sample>();
+                units.put(key, list);
+                totals.put(key, new long[3]);
+            }
+            list.add(sample);
+            add(totals.get(key), sample);
+        }
+        List<String> names =
+                new ArrayList<String>(units.keySet());
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String x, String y) {
+                long xt = totals.get(x)[0];
+                long yt = totals.get(y)[0];
+                return xt>yt ? -1 : (xt<yt ? 1 : x.compareTo(y));
+            }
+        });
+        Map<String,List<Sample>> result =
+                new LinkedHashMap<String,List<Sample>>();
+        for (String name: names) {
+            result.put(name, units.get(name));
+        }
+        return result;
+    }
+
+    private static void add(long[] total, Sample sample) {
+        total[0] += sample.wallTime;
+        total[1] = total[1]<0 || sample.cpuTime<0 ?
+                -1 : total[1] + sample.cpuTime;
+        total[2] = total[2]<0 || sample.allocatedBytes<0 ?
+                -1 : total[2] + sample.allocatedBytes;
+    }
+
+    /**
+     * Prints the totals of each phase.
+     */
+    public void print(PrintStream out) {
+        for (Sample total: getPhaseTotals()) {
+            StringBuilder line = new StringBuilder()
+                .append("Phase ")
+                .append(total.phase.getDescription())
+                .append(": ")
+                .append(total.wallTime/1000000)
+                .append(" ms");
+            if (total.cpuTime>=0) {
+                line.append(", ")
+                    .append(total.cpuTime/1000000)
+                    .append(" ms CPU");
+            }
+            if (total.allocatedBytes>=0) {
+                line.append(", ")
+                    .append(total.allocatedBytes/1024)
+                    .append(" KB allocated");
+            }
+            out.println(line);
+        }
+    }
+
+    /**
+     * Writes a JSON summary of the samples, with times in
+     * nanoseconds:
+     *
+     * <pre>
+     * {"phases":[{"phase":"types","wall":...,"cpu":...,"allocated":...},...],
+     *  "units":[{"srcDir":"source","unit":"foo/bar.ceylon","wall":...,"cpu":...,"allocated":...,
+     *            "phases":[{"phase":"types",...},...]},...]}
+     * </pre>
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\"phases\":[");
+        boolean first = true;
+        for (Sample total: getPhaseTotals()) {
+            if (!first) out.write(",");
+            first = false;
+            out.write("\n{");
+            writeMeasurements(out, total.phase,
+                    total.wallTime, total.cpuTime,
+                    total.allocatedBytes);
+            out.write("}");
+        }
+        out.write("],\n\"units\":[");
+        first = true;
+        for (Map.Entry<String,List<Sample>> entry:
+                getUnitSamples().entrySet()) {
+            if (!first) out.write(",");
+            first = false;
+            long[] total = new long[3];
+            for (Sample sample: entry.getValue()) {
+                add(total, sample);
+            }
+            Sample unit = entry.getValue().get(0);
+            out.write("\n{\"srcDir\":");
+            writeString(out, unit.srcDir);
+            out.write(",\"unit\":");
+            writeString(out, unit.unit);
+            out.write(",");
+            writeMeasurements(out, null,
+                    total[0], total[1], total[2]);
+            out.write(",\"phases\":[");
+            boolean firstPhase = true;
+            for (Sample sample: entry.getValue()) {
+                if (!firstPhase) out.write(",");
+                firstPhase = false;
+                out.write("{");
+                writeMeasurements(out, sample.phase,
+                        sample.wallTime, sample.cpuTime,
+                        sample.allocatedBytes);
+                out.write("}");
+            }
+            out.write("]}");
+        }
+        out.write("]}\n");
+    }
+
+    private static void writeMeasurements(Writer out,
+            TypecheckingPhase phase,
+            long wall, long cpu, long allocated)
+                    throws IOException {
+        if (phase!=null) {
+            out.write("\"phase\":");
+            writeString(out, phase.getDescription());
+            out.write(",");
+        }
+        out.write("\"wall\":" + wall
+                + ",\"cpu\":" + cpu
+                + ",\"allocated\":" + allocated);
+    }
+
+    /**
+     * Writes the samples in the Chrome trace-event format,
+     * as one complete event per phase and unit, with one
+     * track per thread.
+     */
+    public void writeChromeTrace(Writer out) throws IOException {
+        out.write("{\"traceEvents\":[");
+        boolean first = true;
+        for (Sample sample: samples) {
+            if (!first) out.write(",");
+            first = false;
+            out.write("\n{\"name\":");
+            writeString(out, sample.unit);
+            out.write(",\"cat\":");
+            writeString(out, sample.phase.getDescription());
+            out.write(",\"ph\":\"X\",\"ts\":"
+                    + micros(sample.start)
+                    + ",\"dur\":" + micros(sample.wallTime)
+                    + ",\"pid\":1,\"tid\":" + sample.threadId
+                    + ",\"args\":{\"srcDir\":");
+            writeString(out, sample.srcDir);
+            out.write(",\"cpu\":" + micros(sample.cpuTime)
+                    + ",\"allocated\":" + sample.allocatedBytes
+                    + "}}");
+        }
+        out.write("],\n\"displayTimeUnit\":\"ms\"}\n");
+    }
+
+    private static String micros(long nanos) {
+        if (nanos<0) {
+            return "-1";
+        }
+        else {
+            long remainder = nanos%1000;
+            return nanos/1000 + "."
+                    + (remainder<10 ? "00" : remainder<100 ? "0" : "")
+                    + remainder;
+        }
+    }
+
+    private static void writeString(Writer out, String string)
+            throws IOException {
+        if (string==null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i=0; i<string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case '"': out.write("\\\""); break;
+            case '\\': out.write("\\\\"); break;
+            case '\n': out.write("\\n"); break;
+            case '\r': out.write("\\r"); break;
+            case '\t': out.write("\\t"); break;
+            default:
+                if (c<0x20) {
+                    out.write(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    out.write(c);
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Writes the {@link #writeJson(Writer) JSON summary} to
+     * the given file.
+     */
+    public void writeJson(File file) throws IOException {
+        Writer out = open(file);
+        try {
+            writeJson(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the {@link #writeChromeTrace(Writer) Chrome
+     * trace} to the given file.
+     */
+    public void writeChromeTrace(File file) throws IOException {
+        Writer out = open(file);
+        try {
+            writeChromeTrace(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent!=null) {
+            parent.mkdirs();
+        }
+        return new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8");
+    }
+
+}
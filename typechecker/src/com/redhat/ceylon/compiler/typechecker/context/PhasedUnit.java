@@ -5,8 +5,11 @@ import static com.redhat.ceylon.model.typechecker.util.ModuleManager.MODULE_FILE
 import static com.redhat.ceylon.model.typechecker.util.ModuleManager.PACKAGE_FILE;
 
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
@@ -34,6 +37,7 @@ import com.redhat.ceylon.compiler.typechecker.analyzer.VisibilityVisitor;
 import com.redhat.ceylon.compiler.typechecker.analyzer.Warning;
 import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
 import com.redhat.ceylon.compiler.typechecker.io.impl.Helper;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
 import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree.ImportPath;
@@ -84,9 +88,13 @@ public class PhasedUnit  implements Visitor.ExceptionHandler {
     private boolean refinementValidated = false;
     private boolean flowAnalyzed = false;
     private boolean fullyTyped = false;
+    //the toplevel nodes already visited by an
+    //ExpressionVisitor which was later cancelled
+    private Set<Node> typedNodes;
     private boolean usageAnalyzed = false;
     private boolean literalsProcessed = false;
     private boolean moduleVisited = false;
+    private boolean compilerAnnotations = false;
     private EnumSet<Warning> suppressedWarnings = 
             EnumSet.noneOf(Warning.class);
     
@@ -300,7 +308,13 @@ public class PhasedUnit  implements Visitor.ExceptionHandler {
                     }
                 }
             }
-            rootNode.visit(new Validator().setExceptionHandler(this));
+            rootNode.visit(new Validator() {
+                @Override
+                public void visit(Tree.CompilerAnnotation that) {
+                    compilerAnnotations = true;
+                    super.visit(that);
+                }
+            }.setExceptionHandler(this));
             rootNode.visit(new Visitor() {
                 @Override
                 public void visit(ModuleDescriptor that) {
@@ -422,11 +436,34 @@ public class PhasedUnit  implements Visitor.ExceptionHandler {
         analyseTypes(null);
     }
     
+    /**
+     * Run the type analysis phase, checking the given 
+     * cancellable as each node of the tree is visited.
+     * If the analysis is cancelled, a subsequent call
+     * resumes it from the first toplevel declaration 
+     * whose analysis was not complete.
+     * 
+     * @throws java.util.concurrent.CancellationException 
+     *         if the analysis was cancelled
+     */
     public synchronized void analyseTypes(Cancellable cancellable) {
         if (!fullyTyped) {
             Type.resetDepth(-100);
             //System.out.println("Run analysis phase for " + fileName);
-            rootNode.visit(new ExpressionVisitor(cancellable).setExceptionHandler(this));
+            if (cancellable==null) {
+                rootNode.visit(new ExpressionVisitor(cancellable).setExceptionHandler(this));
+            }
+            else {
+                if (typedNodes==null) {
+                    typedNodes = 
+                            Collections.newSetFromMap(
+                                    new IdentityHashMap<Node,Boolean>());
+                }
+                rootNode.visit(new ExpressionVisitor(cancellable)
+                        .setAnalysedNodes(typedNodes)
+                        .setExceptionHandler(this));
+                typedNodes = null;
+            }
             rootNode.visit(new VisibilityVisitor().setExceptionHandler(this));
             rootNode.visit(new AnnotationVisitor().setExceptionHandler(this));
             rootNode.visit(new TypeArgumentVisitor().setExceptionHandler(this));
@@ -517,6 +554,27 @@ public class PhasedUnit  implements Visitor.ExceptionHandler {
         return rootNode;
     }
 
+    /**
+     * The errors and warnings added to the nodes of the
+     * tree of this unit. If the sink {@link 
+     * MessageSink#isComplete() is complete} and empty, the
+     * tree has no messages to report.
+     */
+    public MessageSink getMessageSink() {
+        return unit.getMessageSink();
+    }
+
+    /**
+     * Might the tree of this unit contain compiler
+     * annotations such as {@code @error}, which an
+     * {@link AssertionVisitor} needs to visit the tree to
+     * check? Conservatively true until the tree has been
+     * validated.
+     */
+    public boolean hasCompilerAnnotations() {
+        return compilerAnnotations || !treeValidated;
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
 	public List<CommonToken> getTokens() {
         return (List) tokens;
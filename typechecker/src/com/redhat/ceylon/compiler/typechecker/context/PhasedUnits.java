@@ -4,6 +4,11 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.antlr.runtime.ANTLRInputStream;
@@ -16,7 +21,10 @@ import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
 import com.redhat.ceylon.compiler.typechecker.parser.CeylonParser;
 import com.redhat.ceylon.compiler.typechecker.parser.LexError;
 import com.redhat.ceylon.compiler.typechecker.parser.ParseError;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
 import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
 import com.redhat.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 import com.redhat.ceylon.model.typechecker.model.Module;
 import com.redhat.ceylon.model.typechecker.model.Modules;
@@ -36,6 +44,9 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     private Set<VirtualFile> sourceFiles  = new HashSet<VirtualFile>();
     private String encoding;
     private List<VirtualFile> srcDirectories;
+    private int jobs = 1;
+    private ExecutorService parserPool;
+    private List<Future<ParsedFile>> parsedFiles;
 
     public PhasedUnits(Context context) {
         this.context = context;
@@ -80,12 +91,40 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         return moduleSourceMapper;
     }
 
+    /**
+     * Sets the number of source files lexed and parsed
+     * concurrently by {@link #parseUnits(List)}. With more
+     * than one job, the source directories are still walked
+     * sequentially, so that module descriptors are mapped
+     * first, but the files are parsed on a worker pool and
+     * their units are registered afterwards, in walk order.
+     */
+    public void setJobs(int jobs) {
+        this.jobs = jobs;
+    }
+
     public void parseUnits(List<VirtualFile> srcDirectories) {
         this.srcDirectories = srcDirectories;
-        for (VirtualFile file : srcDirectories) {
-            parseUnit(file, file);
+        if (jobs > 1) {
+            parserPool = Executors.newFixedThreadPool(jobs);
+            parsedFiles = new ArrayList<Future<ParsedFile>>();
+        }
+        try {
+            for (VirtualFile file : srcDirectories) {
+                parseUnit(file, file);
+            }
+            if (parsedFiles != null) {
+                addParsedFiles();
+            }
+        }
+        finally {
+            if (parserPool != null) {
+                parserPool.shutdownNow();
+                parserPool = null;
+                parsedFiles = null;
+            }
+            this.srcDirectories = null;
         }
-        this.srcDirectories = null;
     }
 
     public void parseUnit(VirtualFile srcDir) {
@@ -118,31 +157,124 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
 
     protected void parseFile(VirtualFile file, VirtualFile srcDir) throws Exception {
         if (file.getName().endsWith(".ceylon") && (sourceFiles.isEmpty() || sourceFiles.contains(file))) {
+            final ParsedFile parsedFile = 
+                    new ParsedFile(file, srcDir, context.isCompactTrees(), 
+                            moduleSourceMapper.getCurrentPackage());
+            if (parserPool != null) {
+                parsedFiles.add(parserPool.submit(
+                        new Callable<ParsedFile>() {
+                    @Override
+                    public ParsedFile call() throws Exception {
+                        return parsedFile.parse(getEncoding());
+                    }
+                }));
+            }
+            else {
+                addParsedFile(parsedFile.parse(getEncoding()));
+            }
+        }
+    }
+
+    private void addParsedFiles() throws RuntimeException {
+        for (Future<ParsedFile> future : parsedFiles) {
+            try {
+                addParsedFile(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while parsing source files", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException("Error while parsing a source file", cause);
+            }
+        }
+    }
+
+    private void addParsedFile(ParsedFile parsedFile) {
+        //must be done sequentially, since it adds the
+        //unit to its package
+        Tree.CompilationUnit cu = parsedFile.compilationUnit;
+        PhasedUnit phasedUnit = new PhasedUnit(parsedFile.file, parsedFile.srcDir, cu, 
+                parsedFile.pkg, moduleManager, moduleSourceMapper,
+                context, parsedFile.tokens);
+        addPhasedUnit(parsedFile.file, phasedUnit);
+        phasedUnit.getMessageSink().merge(parsedFile.messages);
+
+        for (LexError le : parsedFile.lexErrors) {
+            //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
+            cu.addLexError(le);
+        }
+
+        for (ParseError pe : parsedFile.parseErrors) {
+            //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
+            cu.addParseError(pe);
+        }
+    }
+
+    /**
+     * The result of lexing and parsing a source file, which
+     * does not depend on any state shared with other files.
+     */
+    private static class ParsedFile {
+        final VirtualFile file;
+        final VirtualFile srcDir;
+        final Package pkg;
+        final boolean compact;
+        Tree.CompilationUnit compilationUnit;
+        List<Token> tokens;
+        List<LexError> lexErrors;
+        List<ParseError> parseErrors;
+        final MessageSink messages = new MessageSink();
 
+        ParsedFile(VirtualFile file, VirtualFile srcDir, 
+                boolean compact, Package pkg) {
+            this.file = file;
+            this.srcDir = srcDir;
+            this.compact = compact;
+            this.pkg = pkg;
+        }
+
+        ParsedFile parse(String encoding) throws Exception {
             //System.out.println("Parsing " + file.getName());
-            CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), getEncoding()));
+            CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), encoding));
             CommonTokenStream tokenStream = new CommonTokenStream(lexer);
             CeylonParser parser = new CeylonParser(tokenStream);
-            Tree.CompilationUnit cu = parser.compilationUnit();
-            PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
-                    moduleSourceMapper.getCurrentPackage(), moduleManager, moduleSourceMapper,
-                    context, new ArrayList<Token>(tokenStream.getTokens()));
-            addPhasedUnit(file, phasedUnit);
-
-            List<LexError> lexerErrors = lexer.getErrors();
-            for (LexError le : lexerErrors) {
-                //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
-                cu.addLexError(le);
+            //the parser itself adds a few warnings, before
+            //the tree belongs to any unit
+            MessageSink previousSink = 
+                    MessageSink.activate(messages);
+            try {
+                compilationUnit = parser.compilationUnit();
             }
-            lexerErrors.clear();
-
-            List<ParseError> parserErrors = parser.getErrors();
-            for (ParseError pe : parserErrors) {
-                //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
-                cu.addParseError(pe);
+            finally {
+                MessageSink.activate(previousSink);
             }
-            parserErrors.clear();
-
+            if (compact) {
+                //the nodes keep their own tokens, but not
+                //the hidden tokens between them
+                compilationUnit.visit(new Visitor() {
+                    @Override
+                    public void visitAny(Node that) {
+                        that.trimToSize();
+                        super.visitAny(that);
+                    }
+                });
+            }
+            else {
+                tokens = new ArrayList<Token>(tokenStream.getTokens());
+            }
+            lexErrors = new ArrayList<LexError>(lexer.getErrors());
+            lexer.getErrors().clear();
+            parseErrors = new ArrayList<ParseError>(parser.getErrors());
+            parser.getErrors().clear();
+            return this;
         }
     }
 
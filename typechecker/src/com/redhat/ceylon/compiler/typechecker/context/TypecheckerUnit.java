@@ -1,6 +1,8 @@
 package com.redhat.ceylon.compiler.typechecker.context;
 
+import com.redhat.ceylon.compiler.typechecker.analyzer.InferredTypeArgumentCache;
 import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
 import com.redhat.ceylon.model.loader.JdkProvider;
 import com.redhat.ceylon.model.typechecker.model.Package;
 import com.redhat.ceylon.model.typechecker.model.Unit;
@@ -9,6 +11,8 @@ public class TypecheckerUnit extends Unit {
 
     private Package javaLangPackage;
     private JdkProvider jdkProvider;
+    private InferredTypeArgumentCache inferredTypeArgumentCache;
+    private final MessageSink messageSink = new MessageSink(false);
 
     public TypecheckerUnit(ModuleSourceMapper moduleSourceMapper) {
         this.jdkProvider = moduleSourceMapper!=null ?
@@ -26,6 +30,26 @@ public class TypecheckerUnit extends Unit {
         setPackage(thePackage);
     }
 
+    /**
+     * The type arguments inferred for invocations of 
+     * generic declarations in this unit.
+     */
+    public InferredTypeArgumentCache getInferredTypeArgumentCache() {
+        if (inferredTypeArgumentCache == null) {
+            inferredTypeArgumentCache = 
+                    new InferredTypeArgumentCache();
+        }
+        return inferredTypeArgumentCache;
+    }
+    
+    /**
+     * The errors and warnings added to the nodes of the
+     * tree of this unit.
+     */
+    public MessageSink getMessageSink() {
+        return messageSink;
+    }
+    
     public void setJavaLangPackage(Package javaLangPackage) {
         this.javaLangPackage = javaLangPackage;
     }
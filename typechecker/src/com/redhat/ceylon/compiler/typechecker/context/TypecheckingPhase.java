@@ -0,0 +1,122 @@
+package com.redhat.ceylon.compiler.typechecker.context;
+
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
+
+/**
+ * The typechecking phases run over every
+ * {@link PhasedUnit} of a module, in order.
+ *
+ * Every phase must have been run on all units before
+ * the next phase starts. Only tree validation, which
+ * does not touch the model at all, is
+ * {@link #isParallelizable() parallelizable}. Every
+ * other phase writes to the model shared by all units
+ * of the module: the declaration scanners add members
+ * to packages and other scopes, while refinement
+ * checking, type analysis, flow analysis and usage
+ * analysis set up the inherited members, types,
+ * definite assignment and usage of declarations which
+ * other units see as well, and fill the caches of the
+ * model. So those phases always run sequentially.
+ *
+ * @see PhaseExecutor
+ */
+public enum TypecheckingPhase {
+
+    VALIDATE_TREE("tree", true, true) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.validateTree();
+        }
+    },
+    SCAN_DECLARATIONS("declarations", false, true) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.scanDeclarations();
+        }
+    },
+    SCAN_TYPE_DECLARATIONS("type declarations", false, true) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.scanTypeDeclarations();
+        }
+    },
+    VALIDATE_REFINEMENT("refinement", false, true) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.validateRefinement();
+        }
+    },
+    ANALYSE_TYPES("types", false, false) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.analyseTypes();
+        }
+    },
+    ANALYSE_FLOW("flow", false, false) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.analyseFlow();
+        }
+    },
+    ANALYSE_USAGE("usage", false, false) {
+        @Override
+        protected void execute(PhasedUnit pu) {
+            pu.analyseUsage();
+        }
+    };
+
+    private final String description;
+    private final boolean parallelizable;
+    private final boolean requiredByDependents;
+
+    private TypecheckingPhase(String description,
+            boolean parallelizable,
+            boolean requiredByDependents) {
+        this.description = description;
+        this.parallelizable = parallelizable;
+        this.requiredByDependents = requiredByDependents;
+    }
+
+    /**
+     * Run this phase on the given unit, with the
+     * {@link MessageSink} of the unit active, so that it
+     * records the messages added to nodes which don't
+     * belong to the unit yet.
+     */
+    public final void run(PhasedUnit pu) {
+        MessageSink previousSink = 
+                MessageSink.activate(pu.getMessageSink());
+        try {
+            execute(pu);
+        }
+        finally {
+            MessageSink.activate(previousSink);
+        }
+    }
+
+    protected abstract void execute(PhasedUnit pu);
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Whether this phase may be run concurrently on
+     * distinct units of the same module.
+     */
+    public boolean isParallelizable() {
+        return parallelizable;
+    }
+
+    /**
+     * Whether this phase builds model which other units
+     * depend on, and so must be run on every unit, even
+     * when a {@link DependencyGraph} says that a unit
+     * does not need to be analysed.
+     */
+    public boolean isRequiredByDependents() {
+        return requiredByDependents;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.redhat.ceylon.compiler.typechecker.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.redhat.ceylon.compiler.typechecker.io.impl.IndexedZipFileVirtualFile;
+
+/**
+ * A VFS which reads zip archives in one go, and reads their
+ * central directory once into a sorted index, instead of
+ * opening them as a {@link java.util.zip.ZipFile}. This
+ * is faster for the source archives of dependencies,
+ * which are read in full. Archives which cannot be 
+ * indexed, for example ZIP64 archives, are opened as a 
+ * ZipFile.
+ *
+ * Tools only use it if it is {@link #setEnabled(boolean)
+ * enabled}.
+ */
+public class ZipIndexVFS extends VFS {
+
+    private static boolean enabled =
+            Boolean.getBoolean("com.redhat.ceylon.compiler.typechecker.io.ZipIndexVFS.enabled");
+
+    public static void setEnabled(boolean enabled) {
+        ZipIndexVFS.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public ClosableVirtualFile getFromZipFile(File file) {
+        try {
+            return new IndexedZipFileVirtualFile(file);
+        }
+        catch (IOException e) {
+            return super.getFromZipFile(file);
+        }
+    }
+
+    @Override
+    public ClosableVirtualFile openAsContainer(VirtualFile file) {
+        if (file instanceof IndexedZipFileVirtualFile) {
+            return (IndexedZipFileVirtualFile) file;
+        }
+        return super.openAsContainer(file);
+    }
+}
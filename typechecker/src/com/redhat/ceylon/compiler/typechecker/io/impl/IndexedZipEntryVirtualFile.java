@@ -0,0 +1,120 @@
+package com.redhat.ceylon.compiler.typechecker.io.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+
+/**
+ * A file or folder of a {@link IndexedZipFileVirtualFile},
+ * identified by its position in the index of the archive.
+ */
+class IndexedZipEntryVirtualFile implements VirtualFile {
+
+    private final IndexedZipFileVirtualFile archive;
+    private final int entry;
+    private final String entryName;
+    private final String name;
+    private final String path;
+    private List<VirtualFile> children;
+
+    IndexedZipEntryVirtualFile(IndexedZipFileVirtualFile archive, int entry, String entryName) {
+        this.archive = archive;
+        this.entry = entry;
+        this.entryName = entryName;
+        this.name = Helper.getSimpleName(entryName);
+        String tempPath = archive.getPath() + "!/" + entryName;
+        this.path = tempPath.endsWith("/") ? tempPath.substring(0, tempPath.length() - 1 ) : tempPath;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isFolder() {
+        return entryName.endsWith("/");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String getRelativePath(VirtualFile ancestor) {
+        if (ancestor instanceof IndexedZipEntryVirtualFile) {
+            if (getPath().equals(ancestor.getPath())) {
+                return "";
+            } else if (getPath().startsWith(ancestor.getPath() + "/")) {
+                return getPath().substring(ancestor.getPath().length() + 1);
+            }
+        } else if (ancestor instanceof IndexedZipFileVirtualFile) {
+            if (getPath().equals(ancestor.getPath())) {
+                return "";
+            } else if (getPath().startsWith(ancestor.getPath() + "!/")) {
+                return getPath().substring(ancestor.getPath().length() + 2);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        if (isFolder()) {
+            throw new IllegalStateException("Cannot call getInputStream() on a directory: " + getPath() );
+        }
+        try {
+            return archive.getIndex().getInputStream(entry);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized List<VirtualFile> getChildren() {
+        if (children == null) {
+            children = isFolder() ? 
+                    archive.getChildren(entryName) : 
+                    ZipEntryVirtualFile.EMPTY_CHILDREN;
+        }
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("IndexedZipEntryVirtualFile");
+        sb.append("{name='").append(name).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return getPath().hashCode();
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof VirtualFile) {
+            return ((VirtualFile) obj).getPath().equals(getPath());
+        }
+        else {
+            return super.equals(obj);
+        }
+    }
+
+    @Override
+    public int compareTo(VirtualFile o) {
+        return getPath().compareTo(o.getPath());
+    }
+}
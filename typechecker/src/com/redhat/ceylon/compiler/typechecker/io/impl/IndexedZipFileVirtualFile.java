@@ -0,0 +1,131 @@
+package com.redhat.ceylon.compiler.typechecker.io.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.redhat.ceylon.compiler.typechecker.io.ClosableVirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+
+/**
+ * A zip archive which is read in one go, and whose central
+ * directory is read once into a sorted index, instead of
+ * being enumerated through a {@link java.util.zip.ZipFile}.
+ * The children of each folder are only created when they
+ * are first requested.
+ * 
+ * The archive is not kept open, and closing it releases
+ * its contents.
+ */
+public class IndexedZipFileVirtualFile implements ClosableVirtualFile {
+
+    private final String path;
+    private final String name;
+    private volatile ZipIndex index;
+    private List<VirtualFile> children;
+
+    public IndexedZipFileVirtualFile(File file) throws IOException {
+        this.path = file.getPath();
+        this.name = file.getName();
+        this.index = new ZipIndex(file);
+    }
+
+    ZipIndex getIndex() {
+        if (index == null) {
+            throw new IllegalStateException("Zip archive is closed: " + path);
+        }
+        return index;
+    }
+
+    /**
+     * The files and folders directly contained in the given
+     * folder of the archive.
+     */
+    List<VirtualFile> getChildren(String folderName) {
+        ZipIndex index = getIndex();
+        List<VirtualFile> result = new ArrayList<VirtualFile>();
+        for (int child : index.getChildren(folderName)) {
+            result.add(new IndexedZipEntryVirtualFile(this, child, index.getName(child)));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isFolder() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return path;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String getRelativePath(VirtualFile ancestor) {
+        if (ancestor.equals(this)) {
+            return "";
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        throw new IllegalStateException("Cannot call getInputStream() on a directory: " + getPath() );
+    }
+
+    @Override
+    public synchronized List<VirtualFile> getChildren() {
+        if (children == null) {
+            children = getChildren("");
+        }
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("IndexedZipFileVirtualFile");
+        sb.append("{name='").append(name).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return getPath().hashCode();
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof VirtualFile) {
+            return ((VirtualFile) obj).getPath().equals(getPath());
+        }
+        else {
+            return super.equals(obj);
+        }
+    }
+
+    @Override
+    public int compareTo(VirtualFile o) {
+        return getPath().compareTo(o.getPath());
+    }
+
+    @Override
+    public void close() {
+        index = null;
+    }
+}
@@ -0,0 +1,267 @@
+package com.redhat.ceylon.compiler.typechecker.io.impl;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * A zip archive, read in one go, whose central directory
+ * is read once into a sorted index of entry names. Missing
+ * ancestor directories are added to the index, so that
+ * the children of any folder form a contiguous range of
+ * it. Entry streams are read directly from the contents
+ * of the archive.
+ *
+ * The archive is not mapped, because a mapped file can't
+ * be deleted or replaced on Windows until the mapping is
+ * garbage collected.
+ *
+ * ZIP64 archives and archives larger than 2GB are not
+ * supported.
+ */
+final class ZipIndex {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private final ByteBuffer buffer;
+    //sorted, folder names end with a slash
+    private final String[] names;
+    //-1 for folders which have no entry in the archive
+    private final int[] localHeaderOffsets;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+    private final short[] methods;
+
+    ZipIndex(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Zip archive too large to index: " + file);
+            }
+            byte[] contents = new byte[(int) length];
+            raf.readFully(contents);
+            buffer = ByteBuffer.wrap(contents)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        finally {
+            raf.close();
+        }
+
+        int end = findEndOfCentralDirectory(file);
+        int count = buffer.getShort(end + 10) & 0xffff;
+        int offset = buffer.getInt(end + 16);
+        if (count == 0xffff || offset == -1) {
+            throw new IOException("ZIP64 archives are not supported: " + file);
+        }
+
+        Map<String,Integer> entries = new HashMap<String,Integer>(count * 2);
+        List<String> entryNames = new ArrayList<String>(count);
+        int[] centralHeaders = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (offset + CENTRAL_HEADER_SIZE > buffer.limit()
+                    || buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid central directory in zip archive: " + file);
+            }
+            int nameLength = buffer.getShort(offset + 28) & 0xffff;
+            int extraLength = buffer.getShort(offset + 30) & 0xffff;
+            int commentLength = buffer.getShort(offset + 32) & 0xffff;
+            String name = readString(offset + CENTRAL_HEADER_SIZE, nameLength);
+            if (!entries.containsKey(name)) {
+                entries.put(name, i);
+                entryNames.add(name);
+            }
+            centralHeaders[i] = offset;
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        //add the ancestor directories (for the case directories are not in the archive)
+        for (String name : new ArrayList<String>(entryNames)) {
+            int slash = name.indexOf('/');
+            while (slash >= 0 && slash < name.length() - 1) {
+                String folder = name.substring(0, slash + 1);
+                if (!entries.containsKey(folder)) {
+                    entries.put(folder, -1);
+                    entryNames.add(folder);
+                }
+                slash = name.indexOf('/', slash + 1);
+            }
+        }
+
+        names = entryNames.toArray(new String[entryNames.size()]);
+        Arrays.sort(names);
+        localHeaderOffsets = new int[names.length];
+        compressedSizes = new int[names.length];
+        sizes = new int[names.length];
+        methods = new short[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int entry = entries.get(names[i]);
+            if (entry < 0) {
+                localHeaderOffsets[i] = -1;
+            }
+            else {
+                int header = centralHeaders[entry];
+                methods[i] = buffer.getShort(header + 10);
+                compressedSizes[i] = buffer.getInt(header + 20);
+                sizes[i] = buffer.getInt(header + 24);
+                localHeaderOffsets[i] = buffer.getInt(header + 42);
+            }
+        }
+    }
+
+    private int findEndOfCentralDirectory(File file) throws IOException {
+        int min = Math.max(0, buffer.limit() - END_SIZE - MAX_COMMENT_SIZE);
+        for (int i = buffer.limit() - END_SIZE; i >= min; i--) {
+            if (buffer.getInt(i) == END_SIGNATURE) {
+                return i;
+            }
+        }
+        throw new IOException("Not a zip archive: " + file);
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * The indexes of the entries directly contained in the
+     * given folder, or in the root of the archive if the
+     * folder name is empty.
+     */
+    List<Integer> getChildren(String folderName) {
+        List<Integer> children = new ArrayList<Integer>();
+        int start = Arrays.binarySearch(names, folderName);
+        start = start < 0 ? -start - 1 : start + 1;
+        for (int i = start; i < names.length
+                && names[i].startsWith(folderName); i++) {
+            int slash = names[i].indexOf('/', folderName.length());
+            if (slash < 0 || slash == names[i].length() - 1) {
+                children.add(i);
+            }
+        }
+        return children;
+    }
+
+    InputStream getInputStream(int index) throws IOException {
+        int header = localHeaderOffsets[index];
+        if (header < 0 || buffer.getInt(header) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local header for zip entry: " + names[index]);
+        }
+        int nameLength = buffer.getShort(header + 26) & 0xffff;
+        int extraLength = buffer.getShort(header + 28) & 0xffff;
+        int start = header + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        ByteBuffer data = buffer.duplicate();
+        data.position(start);
+        data.limit(start + compressedSizes[index]);
+        InputStream stream = new ByteBufferInputStream(data);
+        switch (methods[index]) {
+        case ZipEntry.STORED:
+            return stream;
+        case ZipEntry.DEFLATED:
+            return new EntryInflaterInputStream(stream,
+                    Math.max(1, Math.min(sizes[index], 8192)));
+        default:
+            throw new IOException("Unsupported compression method for zip entry: " + names[index]);
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer data;
+
+        ByteBufferInputStream(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return data.hasRemaining() ? data.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, data.remaining());
+            data.get(bytes, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, data.remaining()));
+            data.position(data.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return data.remaining();
+        }
+    }
+
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+
+        EntryInflaterInputStream(InputStream in, int size) {
+            super(in, new Inflater(true), size);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of zip entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                //the inflater may need a dummy byte when
+                //using the "nowrap" option
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inf.end();
+            super.close();
+        }
+    }
+}
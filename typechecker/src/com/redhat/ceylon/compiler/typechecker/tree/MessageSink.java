@@ -0,0 +1,183 @@
+package com.redhat.ceylon.compiler.typechecker.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckerUnit;
+import com.redhat.ceylon.model.typechecker.model.Unit;
+
+/**
+ * Records the messages added to the nodes of the tree of a
+ * unit, as they are added, so that a unit without messages
+ * can be recognized without visiting its tree.
+ *
+ * A message is recorded by the sink of the unit of its
+ * node, if the node already belongs to a unit, or else by
+ * the sink {@link #activate(MessageSink) activated} by the
+ * phase which added it. The messages of a node which
+ * belongs to no unit, added while no sink was active, are
+ * recorded when the node joins a unit. So messages added
+ * to nodes which never join a unit must be added while
+ * the sink of the unit is active.
+ */
+public final class MessageSink {
+
+    private static final ThreadLocal<MessageSink> active =
+            new ThreadLocal<MessageSink>();
+
+    //false until merged with the sink which recorded
+    //the parsing of the tree
+    private boolean complete;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Set<Message> recorded =
+            Collections.newSetFromMap(
+                    new IdentityHashMap<Message,Boolean>());
+
+    /**
+     * A sink for a tree which is about to be parsed.
+     */
+    public MessageSink() {
+        this(true);
+    }
+
+    /**
+     * @param fromStart true if no message was added to the
+     *        tree before the sink was created, or false
+     *        if the sink is incomplete until {@link
+     *        #merge(MessageSink) merged} with a sink which
+     *        recorded the parsing of the tree
+     */
+    public MessageSink(boolean fromStart) {
+        complete = fromStart;
+    }
+
+    /**
+     * Make the given sink record the messages added to
+     * nodes which don't belong to any unit yet, by the
+     * current thread.
+     *
+     * @return the previously active sink, to be restored
+     *         when the phase is done
+     */
+    public static MessageSink activate(MessageSink sink) {
+        MessageSink previous = active.get();
+        if (sink == null) {
+            active.remove();
+        }
+        else {
+            active.set(sink);
+        }
+        return previous;
+    }
+
+    /**
+     * The sink which records the messages added to the
+     * given node by the current thread, or null if they
+     * are not recorded.
+     */
+    public static MessageSink of(Node node) {
+        Unit unit = node.getUnit();
+        return unit instanceof TypecheckerUnit ?
+                ((TypecheckerUnit) unit).getMessageSink() :
+                active.get();
+    }
+
+    static void record(Node node, Message message) {
+        MessageSink sink = of(node);
+        if (sink != null) {
+            sink.add(node, message);
+        }
+    }
+
+    /**
+     * Record the messages which were added to the given
+     * node before it joined its unit.
+     */
+    static void adopt(Node node) {
+        Unit unit = node.getUnit();
+        if (unit instanceof TypecheckerUnit) {
+            MessageSink sink =
+                    ((TypecheckerUnit) unit).getMessageSink();
+            for (Message message: node.getErrors()) {
+                sink.add(node, message);
+            }
+        }
+    }
+
+    private synchronized void add(Node node, Message message) {
+        if (recorded.add(message)) {
+            entries.add(new Entry(node, message));
+        }
+    }
+
+    /**
+     * Record the messages recorded by the given sink, for
+     * example while the tree of this unit was parsed,
+     * before the unit existed.
+     */
+    public void merge(MessageSink other) {
+        List<Entry> otherEntries;
+        boolean otherComplete;
+        synchronized (other) {
+            otherEntries = new ArrayList<Entry>(other.entries);
+            otherComplete = other.complete;
+        }
+        synchronized (this) {
+            for (Entry entry: otherEntries) {
+                add(entry.node, entry.message);
+            }
+            complete = otherComplete;
+        }
+    }
+
+    /**
+     * Were all the messages added to the tree of this unit
+     * recorded by this sink?
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * The number of messages recorded by this sink.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A mark of the messages recorded so far, to {@link
+     * #rollback(int) roll back} to.
+     */
+    public synchronized int mark() {
+        return entries.size();
+    }
+
+    /**
+     * Remove every message recorded since the given {@link
+     * #mark() mark}, both from this sink and from the node
+     * it was added to, for example when an analysis which
+     * was cancelled part way through is to be run again.
+     */
+    public synchronized void rollback(int mark) {
+        for (int i=entries.size()-1; i>=mark; i--) {
+            Entry entry = entries.remove(i);
+            recorded.remove(entry.message);
+            entry.node.removeError(entry.message);
+        }
+    }
+
+    private static final class Entry {
+        final Node node;
+        final Message message;
+
+        Entry(Node node, Message message) {
+            this.node = node;
+            this.message = message;
+        }
+    }
+
+}
@@ -54,6 +54,9 @@ public abstract class Node {
     
     public void setUnit(Unit unit) {
         this.unit = unit;
+        if (errors != null) {
+            MessageSink.adopt(this);
+        }
     }
     
     /**
@@ -259,11 +262,34 @@ public abstract class Node {
         return false;
     }
     
+    /**
+     * Trim the lists of children and errors of this node
+     * to their current size. Does not trim the children
+     * themselves.
+     */
+    public void trimToSize() {
+        if (errors instanceof ArrayList) {
+            ((ArrayList<Message>) errors).trimToSize();
+        }
+    }
+
     public void addError(Message error){
         if (errors == null) {
             errors = new ArrayList<Message>(2);
         }
         errors.add(error);
+        MessageSink.record(this, error);
+    }
+    
+    void removeError(Message error) {
+        if (errors != null) {
+            for (int i=errors.size()-1; i>=0; i--) {
+                if (errors.get(i) == error) {
+                    errors.remove(i);
+                    return;
+                }
+            }
+        }
     }
     
     public void addError(String message) {
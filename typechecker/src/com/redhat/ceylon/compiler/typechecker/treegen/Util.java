@@ -3,6 +3,15 @@ package com.redhat.ceylon.compiler.typechecker.treegen;
 public class Util {
     
     public static java.io.PrintStream out = System.out;
+    
+    /**
+     * Generate compact nodes, whose child lists are
+     * initially empty instead of having room for three
+     * children. Set with {@code -Dtreegen.compact=true}.
+     */
+    public static boolean compact = Boolean.getBoolean("treegen.compact");
+    
+    private static final StringBuilder trimmedLists = new StringBuilder();
 
     public static String className(String nodeName) { 
         return toJavaIdentifier(nodeName, true); 
@@ -37,6 +46,29 @@ public class Util {
         return nodeName.toLowerCase().replace('_', ' ');
     }
     
+    public static int initialListCapacity() {
+        return compact ? 0 : 3;
+    }
+    
+    /**
+     * Remember a child list of the node being generated, to
+     * be trimmed by its {@code trimToSize()} method.
+     */
+    public static void trimList(String field, String className) {
+        trimmedLists.append("            ((ArrayList<" + className + ">) " + 
+                field + ").trimToSize();\n");
+    }
+    
+    public static void printTrimToSize() {
+        if (trimmedLists.length()>0) {
+            println("        @Override public void trimToSize() {");
+            println("            super.trimToSize();");
+            print(trimmedLists.toString());
+            println("        }\n");
+            trimmedLists.setLength(0);
+        }
+    }
+    
     public static void print(String text) {
        out.print(text); 
     }
@@ -0,0 +1,604 @@
+package com.redhat.ceylon.compiler.typechecker.util;
+
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.getNativeBackends;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.getReservedImportError;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.getReservedModuleNameError;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.isCeylonImport;
+import static com.redhat.ceylon.compiler.typechecker.analyzer.ModuleHelper.isOldStyleMavenImport;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.ASTRING_LITERAL;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.AVERBATIM_STRING;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.COMMA;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.COMPILER_ANNOTATION;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.IMPORT;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.LBRACE;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.LIDENTIFIER;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.LPAREN;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.MEMBER_OP;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.MODULE;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.RBRACE;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.RPAREN;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.SEGMENT_OP;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.SEMICOLON;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.SPECIFY;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.STRING_LITERAL;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.UIDENTIFIER;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.VALUE_MODIFIER;
+import static com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer.VERBATIM_STRING;
+import static com.redhat.ceylon.model.typechecker.model.ModelUtil.formatPath;
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.runtime.ANTLRInputStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+import com.redhat.ceylon.cmr.impl.MavenRepository;
+import com.redhat.ceylon.common.Backends;
+import com.redhat.ceylon.compiler.typechecker.analyzer.LiteralVisitor;
+import com.redhat.ceylon.compiler.typechecker.parser.CeylonLexer;
+import com.redhat.ceylon.compiler.typechecker.tree.MessageSink;
+import com.redhat.ceylon.compiler.typechecker.tree.Tree;
+import com.redhat.ceylon.model.typechecker.model.Annotation;
+import com.redhat.ceylon.model.typechecker.model.Module;
+import com.redhat.ceylon.model.typechecker.model.ModuleImport;
+
+/**
+ * Reads the name, version, annotations and imports of a
+ * module descriptor using only the lexer, without parsing
+ * and typechecking the descriptor, for tools which only
+ * need to know what a module descriptor says.
+ *
+ * The values are those the {@code ModuleVisitor} would
+ * assign to the module. A descriptor which doesn't have
+ * the usual form, for example one with a syntax error, or
+ * with an annotation argument which isn't a string, is
+ * not read, and must be typechecked instead.
+ *
+ * Descriptors are cached until the file is modified.
+ */
+public final class ModuleDescriptorScanner {
+
+    private static final Map<String,CachedDescriptor> cache =
+            new ConcurrentHashMap<String,CachedDescriptor>();
+
+    private ModuleDescriptorScanner() {}
+
+    /**
+     * The descriptor declared by the given module file.
+     *
+     * @param moduleFile the {@code module.ceylon} file
+     * @param encoding the encoding of the file, or null
+     *        for the platform encoding
+     *
+     * @return the descriptor, or null if the file could
+     *         not be read without parsing it
+     */
+    public static Descriptor scan(File moduleFile, String encoding) {
+        String key = moduleFile.getAbsolutePath() + '|' + encoding;
+        long lastModified = moduleFile.lastModified();
+        long length = moduleFile.length();
+        CachedDescriptor cached = cache.get(key);
+        if (cached != null
+                && cached.lastModified == lastModified
+                && cached.length == length) {
+            return cached.descriptor;
+        }
+        Descriptor descriptor;
+        try {
+            descriptor = read(moduleFile, encoding);
+        }
+        catch (IOException e) {
+            return null;
+        }
+        cache.put(key, new CachedDescriptor(lastModified, length,
+                descriptor));
+        return descriptor;
+    }
+
+    private static Descriptor read(File moduleFile, String encoding)
+            throws IOException {
+        InputStream stream = new FileInputStream(moduleFile);
+        List<Token> tokens = new ArrayList<Token>();
+        CeylonLexer lexer;
+        try {
+            lexer = new CeylonLexer(
+                    new ANTLRInputStream(stream, encoding));
+            for (Token token = lexer.nextToken();
+                    token.getType() != Token.EOF;
+                    token = lexer.nextToken()) {
+                if (token.getChannel() != Token.HIDDEN_CHANNEL) {
+                    tokens.add(token);
+                }
+            }
+        }
+        finally {
+            stream.close();
+        }
+        if (!lexer.getErrors().isEmpty()) {
+            return null;
+        }
+        //the literals may add errors which we don't report,
+        //and which must not be attributed to another unit
+        MessageSink previousSink =
+                MessageSink.activate(new MessageSink());
+        try {
+            return new Reader(tokens).moduleDescriptor();
+        }
+        catch (UnreadableException e) {
+            return null;
+        }
+        finally {
+            MessageSink.activate(previousSink);
+        }
+    }
+
+    private static final class CachedDescriptor {
+        final long lastModified;
+        final long length;
+        final Descriptor descriptor;
+        CachedDescriptor(long lastModified, long length,
+                Descriptor descriptor) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.descriptor = descriptor;
+        }
+    }
+
+    /**
+     * A module descriptor.
+     */
+    public static final class Descriptor {
+        private final List<String> name;
+        private final String version;
+        private final String groupId;
+        private final String artifactId;
+        private final String classifier;
+        private final List<Annotation> annotations;
+        private final List<Import> imports;
+
+        Descriptor(List<String> name, String version,
+                String groupId, String artifactId,
+                String classifier,
+                List<Annotation> annotations,
+                List<Import> imports) {
+            this.name = Collections.unmodifiableList(name);
+            this.version = version;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.classifier = classifier;
+            this.annotations =
+                    Collections.unmodifiableList(annotations);
+            this.imports =
+                    Collections.unmodifiableList(imports);
+        }
+
+        public List<String> getName() {
+            return name;
+        }
+
+        public String getNameAsString() {
+            return formatPath(name);
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getClassifier() {
+            return classifier;
+        }
+
+        public List<Annotation> getAnnotations() {
+            return annotations;
+        }
+
+        /**
+         * The imports, in order, including those which the
+         * {@code ModuleVisitor} would reject.
+         */
+        public List<Import> getImports() {
+            return imports;
+        }
+
+        /**
+         * The module the {@code ModuleVisitor} would build
+         * from this descriptor, or null if the descriptor
+         * must be typechecked, because the module visitor
+         * would reject it.
+         */
+        public Module toModule() {
+            Backends backends = getNativeBackends(annotations);
+            if (getReservedModuleNameError(name)!=null || 
+                    backends.header()) {
+                return null;
+            }
+            Module module = new Module();
+            module.setName(name);
+            module.setVersion(version);
+            module.getAnnotations().addAll(annotations);
+            module.setNativeBackends(backends);
+            module.setGroupId(groupId);
+            module.setArtifactId(artifactId);
+            module.setClassifier(classifier);
+            Set<String> imported = new HashSet<String>();
+            for (Import imp: imports) {
+                List<String> importName = imp.getName();
+                String path = imp.getNameAsString();
+                String namespace = imp.getNamespace();
+                if (getReservedImportError(importName)!=null) {
+                    if (isCeylonImport(namespace, path, 
+                            imp.isImportPath())) {
+                        return null;
+                    }
+                    //the module visitor ignores a reserved
+                    //name even when it doesn't report it
+                    continue;
+                }
+                if (!imported.add(path + '/' + imp.getVersion())) {
+                    continue;
+                }
+                if (isOldStyleMavenImport(namespace, path)) {
+                    namespace = MavenRepository.NAMESPACE;
+                }
+                Module importedModule = new Module();
+                importedModule.setName(importName);
+                importedModule.setVersion(imp.getVersion());
+                ModuleImport moduleImport = 
+                        new ModuleImport(namespace, importedModule, 
+                                imp.hasAnnotation("optional"), 
+                                imp.hasAnnotation("shared"), 
+                                getNativeBackends(imp.getAnnotations()));
+                moduleImport.getAnnotations().addAll(imp.getAnnotations());
+                module.addImport(moduleImport);
+            }
+            return module;
+        }
+
+        @Override
+        public String toString() {
+            return "module " + getNameAsString() + 
+                    " \"" + version + "\"";
+        }
+    }
+
+    /**
+     * A module import of a module descriptor.
+     */
+    public static final class Import {
+        private final String namespace;
+        private final List<String> name;
+        private final String version;
+        private final List<Annotation> annotations;
+        private final boolean importPath;
+
+        Import(String namespace, List<String> name, String version,
+                List<Annotation> annotations, boolean importPath) {
+            this.namespace = namespace;
+            this.name = Collections.unmodifiableList(name);
+            this.importPath = importPath;
+            this.version = version;
+            this.annotations =
+                    Collections.unmodifiableList(annotations);
+        }
+
+        /**
+         * The namespace, as written, or null if there is
+         * none.
+         */
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public List<String> getName() {
+            return name;
+        }
+
+        public String getNameAsString() {
+            return formatPath(name);
+        }
+
+        /**
+         * Is the module named by an import path, rather than
+         * by a quoted name?
+         */
+        public boolean isImportPath() {
+            return importPath;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public List<Annotation> getAnnotations() {
+            return annotations;
+        }
+
+        public boolean hasAnnotation(String name) {
+            for (Annotation annotation: annotations) {
+                if (annotation.getName().equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "import " + getNameAsString() + 
+                    " \"" + version + "\"";
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class UnreadableException
+            extends RuntimeException {
+        UnreadableException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Follows the {@code moduleDescriptor} rule of the
+     * grammar, over the tokens of the default channel.
+     */
+    private static final class Reader {
+        private final List<Token> tokens;
+        private int index;
+        private final Map<String,String> constants =
+                new HashMap<String,String>(0);
+
+        Reader(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        private int la(int offset) {
+            int i = index + offset;
+            return i < tokens.size() ?
+                    tokens.get(i).getType() : Token.EOF;
+        }
+
+        private Token match(int type) {
+            if (la(0) != type) {
+                throw new UnreadableException();
+            }
+            return tokens.get(index++);
+        }
+
+        private boolean accept(int type) {
+            if (la(0) == type) {
+                index++;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+
+        Descriptor moduleDescriptor() {
+            compilerAnnotations();
+            List<Annotation> annotations = annotations();
+            match(MODULE);
+            List<String> name = packagePath();
+            String groupId = null;
+            String artifactId = null;
+            String classifier = null;
+            if (la(0) == LIDENTIFIER && la(1) == SEGMENT_OP) {
+                index += 2;
+                if (la(0) == STRING_LITERAL) {
+                    groupId = nameString(match(STRING_LITERAL));
+                }
+                else {
+                    groupId = formatPath(packagePath());
+                }
+                if (accept(SEGMENT_OP)) {
+                    artifactId = nameString(match(STRING_LITERAL));
+                    if (accept(SEGMENT_OP)) {
+                        classifier = nameString(match(STRING_LITERAL));
+                    }
+                }
+            }
+            String version = la(0) == STRING_LITERAL ?
+                    versionString(quotedText(match(STRING_LITERAL))) :
+                    "0";
+            List<Import> imports = new ArrayList<Import>();
+            match(LBRACE);
+            while (!accept(RBRACE)) {
+                compilerAnnotations();
+                List<Annotation> importAnnotations = annotations();
+                if (la(0) == VALUE_MODIFIER) {
+                    constant();
+                }
+                else {
+                    imports.add(importModule(importAnnotations));
+                }
+            }
+            if (index != tokens.size()) {
+                throw new UnreadableException();
+            }
+            return new Descriptor(name, version, groupId, artifactId,
+                    classifier,
+                    annotations, imports);
+        }
+
+        private void constant() {
+            match(VALUE_MODIFIER);
+            String name = match(LIDENTIFIER).getText();
+            match(SPECIFY);
+            String value = stringText(stringLiteral(), false);
+            match(SEMICOLON);
+            constants.put(name, "\"" + value + "\"");
+        }
+
+        private Import importModule(List<Annotation> annotations) {
+            match(IMPORT);
+            String namespace = null;
+            if (la(0) == LIDENTIFIER && la(1) == SEGMENT_OP) {
+                namespace = match(LIDENTIFIER).getText();
+                match(SEGMENT_OP);
+            }
+            List<String> name;
+            boolean importPath = la(0) != STRING_LITERAL;
+            if (importPath) {
+                name = packagePath();
+            }
+            else {
+                String nameString = nameString(match(STRING_LITERAL));
+                name = asList(nameString.split("\\."));
+            }
+            if (accept(SEGMENT_OP)) {
+                name = new ArrayList<String>(name);
+                String artifact = nameString(match(STRING_LITERAL));
+                name.add("");
+                name.addAll(asList(artifact.split("\\.")));
+                if (accept(SEGMENT_OP)) {
+                    String classifier =
+                            nameString(match(STRING_LITERAL));
+                    name.add("");
+                    name.addAll(asList(classifier.split("\\.")));
+                }
+            }
+            String version;
+            if (la(0) == STRING_LITERAL) {
+                version = versionString(
+                        quotedText(match(STRING_LITERAL)));
+            }
+            else if (la(0) == LIDENTIFIER) {
+                String constant = constants.get(match(LIDENTIFIER).getText());
+                version = constant == null ?
+                        "0" : versionString(constant);
+            }
+            else {
+                version = "0";
+            }
+            match(SEMICOLON);
+            return new Import(namespace, name, version,
+                    annotations, importPath);
+        }
+
+        private List<String> packagePath() {
+            List<String> path = new ArrayList<String>();
+            do {
+                if (la(0) == LIDENTIFIER || la(0) == UIDENTIFIER) {
+                    path.add(tokens.get(index++).getText());
+                }
+                else {
+                    throw new UnreadableException();
+                }
+            }
+            while (accept(MEMBER_OP));
+            return path;
+        }
+
+        private void compilerAnnotations() {
+            while (accept(COMPILER_ANNOTATION)) {
+                match(LIDENTIFIER);
+                if (accept(SEGMENT_OP)) {
+                    stringLiteral();
+                }
+            }
+        }
+
+        private List<Annotation> annotations() {
+            List<Annotation> annotations =
+                    new ArrayList<Annotation>();
+            if (la(0) == STRING_LITERAL ||
+                la(0) == VERBATIM_STRING) {
+                Annotation doc = new Annotation("doc");
+                doc.addPositionalArgument(
+                        stringText(stringLiteral(), true));
+                annotations.add(doc);
+            }
+            while (la(0) == LIDENTIFIER &&
+                    la(1) != SEGMENT_OP) {
+                Annotation annotation =
+                        new Annotation(match(LIDENTIFIER).getText());
+                if (accept(LPAREN)) {
+                    if (!accept(RPAREN)) {
+                        do {
+                            annotation.addPositionalArgument(
+                                    stringText(stringLiteral(), true));
+                        }
+                        while (accept(COMMA));
+                        match(RPAREN);
+                    }
+                }
+                else if (la(0) == LBRACE) {
+                    //named arguments
+                    throw new UnreadableException();
+                }
+                annotations.add(annotation);
+            }
+            return annotations;
+        }
+
+        private Token stringLiteral() {
+            if (la(0) == STRING_LITERAL ||
+                la(0) == VERBATIM_STRING) {
+                return tokens.get(index++);
+            }
+            else {
+                throw new UnreadableException();
+            }
+        }
+
+    }
+
+    /**
+     * The text of a string literal, as processed by the
+     * {@link LiteralVisitor}.
+     */
+    private static String stringText(Token token,
+            boolean annotation) {
+        CommonToken copy = new CommonToken(token);
+        if (annotation) {
+            copy.setType(token.getType() == VERBATIM_STRING ?
+                    AVERBATIM_STRING : ASTRING_LITERAL);
+        }
+        Tree.StringLiteral literal = new Tree.StringLiteral(copy);
+        literal.visit(new LiteralVisitor());
+        return literal.getText();
+    }
+
+    /**
+     * The text of a quoted literal, as processed by the
+     * {@link LiteralVisitor}, still quoted.
+     */
+    private static String quotedText(Token token) {
+        Tree.QuotedLiteral literal =
+                new Tree.QuotedLiteral(new CommonToken(token));
+        literal.visit(new LiteralVisitor());
+        return literal.getText();
+    }
+
+    private static String nameString(Token token) {
+        String quoted = quotedText(token);
+        return quoted.length() < 2 ?
+                "" : quoted.substring(1, quoted.length()-1);
+    }
+
+    private static String versionString(String quoted) {
+        return quoted.length() < 2 ?
+                "" : quoted.substring(1, quoted.length()-1);
+    }
+
+}
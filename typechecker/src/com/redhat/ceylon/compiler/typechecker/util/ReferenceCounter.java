@@ -1,5 +1,6 @@
 package com.redhat.ceylon.compiler.typechecker.util;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -32,6 +33,13 @@ public class ReferenceCounter extends Visitor {
         }
     }
     
+    /**
+     * Every declaration referenced in the visited tree.
+     */
+    public Set<Declaration> getReferencedDeclarations() {
+        return Collections.unmodifiableSet(referencedDeclarations);
+    }
+    
     boolean isReferenced(Declaration d) {
         for (Declaration rd: referencedDeclarations) {
             Scope container = rd.getContainer();
@@ -0,0 +1,18 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+@RunWith(Suite.class) 
+@SuiteClasses({
+    ArtifactPrefetcherTests.class,
+    CancellationTests.class,
+    DependencyGraphTests.class,
+    ModuleDescriptorScannerTests.class,
+    PhaseProfilerTests.class,
+    PhaseExecutorTests.class,
+    ZipIndexVFSTests.class
+})
+public class AllTypecheckerTests {
+}
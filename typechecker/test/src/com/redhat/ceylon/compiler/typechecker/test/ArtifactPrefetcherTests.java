@@ -0,0 +1,183 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.cmr.api.ArtifactContext;
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.common.log.DeferredLog;
+import com.redhat.ceylon.common.log.DeferredLog.Level;
+import com.redhat.ceylon.common.log.Logger;
+import com.redhat.ceylon.compiler.typechecker.analyzer.ArtifactPrefetcher;
+import com.redhat.ceylon.model.cmr.ArtifactResult;
+
+public class ArtifactPrefetcherTests {
+
+    private static final String[] SUFFIXES = { ".car" };
+
+    /**
+     * A logger which can only be used by the test thread,
+     * like the javac log.
+     */
+    static class ConfinedLogger implements Logger {
+        final Thread owner = Thread.currentThread();
+        final List<String> messages = 
+                Collections.synchronizedList(new ArrayList<String>());
+        @Override
+        public void error(String str) {
+            log(Level.ERROR, str);
+        }
+        @Override
+        public void warning(String str) {
+            log(Level.WARNING, str);
+        }
+        @Override
+        public void info(String str) {
+            log(Level.INFO, str);
+        }
+        @Override
+        public void debug(String str) {
+            log(Level.DEBUG, str);
+        }
+        private void log(Level level, String str) {
+            if (!DeferredLog.defer(this, level, str)) {
+                Assert.assertSame(owner, Thread.currentThread());
+                messages.add(level + " " + str);
+            }
+        }
+    }
+
+    /**
+     * A repository of modules which import each other, 
+     * recording the threads which retrieve them.
+     */
+    static class Repository implements InvocationHandler {
+        final Map<String,List<String>> imports;
+        final ConfinedLogger logger;
+        final Map<String,Thread> retrieved = 
+                Collections.synchronizedMap(new HashMap<String,Thread>());
+        final CountDownLatch latch;
+        Repository(Map<String,List<String>> imports, 
+                ConfinedLogger logger, int expected) {
+            this.imports = imports;
+            this.logger = logger;
+            this.latch = new CountDownLatch(expected);
+        }
+        RepositoryManager manager() {
+            return (RepositoryManager) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), 
+                    new Class<?>[] { RepositoryManager.class }, 
+                    this);
+        }
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "isValidNamespace":
+                return true;
+            case "getArtifactResult":
+                if (args.length == 1) {
+                    ArtifactContext context = (ArtifactContext) args[0];
+                    String name = context.getName();
+                    retrieved.put(name, Thread.currentThread());
+                    logger.info("retrieved " + name);
+                    latch.countDown();
+                    return artifact(name);
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+        ArtifactResult artifact(final String name) {
+            return (ArtifactResult) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), 
+                    new Class<?>[] { ArtifactResult.class }, 
+                    new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                    case "name":
+                        return name;
+                    case "version":
+                        return "1";
+                    case "namespace":
+                        return null;
+                    case "dependencies":
+                        logger.warning("dependencies of " + name);
+                        List<ArtifactResult> dependencies = 
+                                new ArrayList<ArtifactResult>();
+                        List<String> names = imports.get(name);
+                        if (names != null) {
+                            for (String dependency: names) {
+                                dependencies.add(artifact(dependency));
+                            }
+                        }
+                        return dependencies;
+                    case "toString":
+                        return name;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testPrefetchesTransitiveImports() throws Exception {
+        Map<String,List<String>> imports = new HashMap<String,List<String>>();
+        imports.put("a", Arrays.asList("b", "c"));
+        imports.put("b", Arrays.asList("c", "d", "skipped"));
+        imports.put("d", Arrays.asList("e"));
+        ConfinedLogger logger = new ConfinedLogger();
+        Repository repository = new Repository(imports, logger, 5);
+        ArtifactPrefetcher prefetcher = 
+                new ArtifactPrefetcher(repository.manager(), SUFFIXES, 4);
+        try {
+            prefetcher.skip("skipped", "1");
+            prefetcher.prefetch(null, "a", "1");
+            Assert.assertTrue(repository.latch.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(5, repository.retrieved.size());
+            for (Thread thread: repository.retrieved.values()) {
+                Assert.assertNotSame(logger.owner, thread);
+            }
+            Assert.assertFalse(repository.retrieved.containsKey("skipped"));
+            // nothing is logged until the artifact is used
+            Assert.assertTrue(logger.messages.isEmpty());
+
+            ArtifactResult d = prefetcher.getArtifactResult(
+                    new ArtifactContext(null, "d", "1", SUFFIXES));
+            Assert.assertEquals("d", d.name());
+            Assert.assertEquals(Arrays.asList("INFO retrieved d"), 
+                    logger.messages);
+            Assert.assertNotSame(logger.owner, repository.retrieved.get("d"));
+
+            // a module is retrieved again for another namespace
+            ArtifactResult a = prefetcher.getArtifactResult(
+                    new ArtifactContext("maven", "a", "1", SUFFIXES));
+            Assert.assertEquals("a", a.name());
+            Assert.assertEquals(Arrays.asList("INFO retrieved d", 
+                    "INFO retrieved a"), logger.messages);
+            Assert.assertSame(logger.owner, repository.retrieved.get("a"));
+
+            // modules which were not prefetched are retrieved now
+            prefetcher.getArtifactResult(
+                    new ArtifactContext(null, "skipped", "1", SUFFIXES));
+            Assert.assertSame(logger.owner, 
+                    repository.retrieved.get("skipped"));
+        }
+        finally {
+            prefetcher.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseProfiler;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckingPhase;
+import com.redhat.ceylon.model.typechecker.model.Cancellable;
+
+public class CancellationTests {
+
+    private static final String SOURCE = 
+            "shared void f() { Integer i = \"x\"; print(i); }\n" +
+            "shared class C() {\n" +
+            "    shared String s = 1;\n" +
+            "    void g() { value x = nothing.foo; }\n" +
+            "}\n" +
+            "shared Integer h() => \"y\";\n" +
+            "shared interface I { shared formal String m(); }\n" +
+            "shared object o satisfies I { m() => 1; }\n" +
+            "deprecated shared void old() {}\n" +
+            "void k() { old(); value unused = 1; }\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Cancels once it has been checked a number of times.
+     */
+    static class Budget implements Cancellable {
+        private int left;
+        Budget(int checks) {
+            left = checks;
+        }
+        @Override
+        public boolean isCancelled() {
+            return left-- <= 0;
+        }
+    }
+
+    private static boolean isTested(PhasedUnit pu) {
+        return pu.getPathRelativeToSrcDir().startsWith("p/");
+    }
+
+    /**
+     * Analyses the types of the tested units with a growing
+     * budget, until an analysis completes.
+     */
+    static class Interrupter extends PhaseProfiler {
+        int interruptions;
+        @Override
+        public void run(TypecheckingPhase phase, PhasedUnit pu) {
+            if (phase == TypecheckingPhase.ANALYSE_TYPES
+                    && isTested(pu)) {
+                for (int checks=0;; checks+=10) {
+                    try {
+                        pu.analyseTypes(new Budget(checks));
+                        break;
+                    }
+                    catch (CancellationException ce) {
+                        interruptions++;
+                    }
+                }
+            }
+            super.run(phase, pu);
+        }
+    }
+
+    private List<PhasedUnit> testedUnits(TypeChecker typeChecker) {
+        List<PhasedUnit> units = new ArrayList<PhasedUnit>();
+        for (PhasedUnit pu: 
+                typeChecker.getPhasedUnits().getPhasedUnits()) {
+            if (isTested(pu)) {
+                units.add(pu);
+            }
+        }
+        return units;
+    }
+
+    @Test
+    public void testResumedAnalysisHasSameDiagnostics() 
+            throws IOException {
+        File src = folder.newFolder("src");
+        TestTypeChecker.write(src, "p/a.ceylon", SOURCE);
+
+        TypeChecker uninterrupted = 
+                TestTypeChecker.builder(src).getTypeChecker();
+        uninterrupted.process(true);
+        List<String> expected = 
+                Diagnostics.of(testedUnits(uninterrupted));
+        Assert.assertTrue(expected.toString(), expected.size() > 5);
+
+        Interrupter interrupter = new Interrupter();
+        TypeChecker interrupted = TestTypeChecker.builder(src)
+                .profiler(interrupter)
+                .getTypeChecker();
+        interrupted.process(true);
+        List<PhasedUnit> units = testedUnits(interrupted);
+        Assert.assertTrue(interrupter.interruptions > 5);
+        Assert.assertEquals(expected, Diagnostics.of(units));
+        // the sink doesn't report the discarded errors
+        PhasedUnit unit = units.get(0);
+        Assert.assertTrue(unit.getMessageSink().isComplete());
+        Assert.assertEquals(expected.size(), 
+                unit.getMessageSink().size());
+    }
+
+}
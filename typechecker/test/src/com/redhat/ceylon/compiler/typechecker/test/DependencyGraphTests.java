@@ -0,0 +1,140 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.context.DependencyGraph;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+
+public class DependencyGraphTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TypeChecker typecheck(File srcDir, DependencyGraph graph) {
+        TypeChecker typeChecker = TestTypeChecker.builder(srcDir)
+                .dependencyGraph(graph)
+                .getTypeChecker();
+        typeChecker.process(true);
+        return typeChecker;
+    }
+
+    /**
+     * The paths of the units of the test sources which the
+     * given graph says need to be analysed.
+     */
+    private static List<String> getUnitsToAnalyse(
+            DependencyGraph graph, TypeChecker typeChecker) {
+        List<String> paths = new ArrayList<String>();
+        for (PhasedUnit pu: graph.getUnitsToAnalyse(
+                typeChecker.getPhasedUnits().getPhasedUnits())) {
+            String path = pu.getPathRelativeToSrcDir();
+            if (!path.startsWith("ceylon/language/")) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * The diagnostics of the test sources.
+     */
+    private static List<String> getDiagnostics(
+            TypeChecker typeChecker) {
+        List<String> diagnostics = new ArrayList<String>();
+        for (String diagnostic: Diagnostics.of(typeChecker)) {
+            if (!diagnostic.startsWith("ceylon/language/")) {
+                diagnostics.add(diagnostic);
+            }
+        }
+        return diagnostics;
+    }
+
+    private static DependencyGraph copy(DependencyGraph graph, 
+            File file) throws IOException {
+        graph.save(file);
+        return DependencyGraph.load(file);
+    }
+
+    @Test
+    public void testNewToplevelShadowsLanguageModule() 
+            throws IOException {
+        File src = folder.newFolder("source");
+        TestTypeChecker.write(src, "p/a.ceylon", 
+                "shared class C() { shared Integer x = 1; }\n");
+        TestTypeChecker.write(src, "p/b.ceylon", 
+                "shared void useIt() { print(1); }\n");
+        TestTypeChecker.write(src, "p/c.ceylon", 
+                "shared void other() {}\n");
+        TestTypeChecker.write(src, "q/d.ceylon", 
+                "import p { ... }\n" +
+                "shared void useFromQ() { print(2); }\n");
+        TestTypeChecker.write(src, "r/e.ceylon", 
+                "shared void unrelated() { print(3); }\n");
+        DependencyGraph graph = new DependencyGraph();
+        Assert.assertEquals(new ArrayList<String>(), 
+                getDiagnostics(typecheck(src, graph)));
+        DependencyGraph incremental = 
+                copy(graph, folder.newFile("graph"));
+
+        // p::print now hides ceylon.language::print in p, and
+        // in the packages which import p
+        TestTypeChecker.write(src, "p/c.ceylon", 
+                "shared void other() {}\n" +
+                "shared void print(String s) {}\n");
+        TypeChecker full = typecheck(src, null);
+        List<String> expected = getDiagnostics(full);
+        Assert.assertEquals(2, expected.size());
+        for (String diagnostic: expected) {
+            Assert.assertTrue(diagnostic, 
+                    diagnostic.contains("'Integer' is not assignable to 'String'"));
+        }
+        // but not r/e.ceylon
+        Assert.assertEquals(
+                new HashSet<String>(Arrays.asList(
+                        "p/a.ceylon", "p/b.ceylon", "p/c.ceylon", 
+                        "q/d.ceylon")),
+                new HashSet<String>(getUnitsToAnalyse(graph, full)));
+
+        Assert.assertEquals(expected, 
+                getDiagnostics(typecheck(src, incremental)));
+    }
+
+    @Test
+    public void testUnchangedUnitsWithWarningsAreClean() 
+            throws IOException {
+        File src = folder.newFolder("source");
+        TestTypeChecker.write(src, "p/a.ceylon", 
+                "import ceylon.language { Unused=Integer }\n" +
+                "shared void useIt() { print(1); }\n");
+        TestTypeChecker.write(src, "p/b.ceylon", 
+                "shared void broken() { print(nothing.foo); }\n");
+        DependencyGraph graph = new DependencyGraph();
+        TypeChecker first = typecheck(src, graph);
+        String diagnostics = getDiagnostics(first).toString();
+        Assert.assertTrue(diagnostics, 
+                diagnostics.contains("p/a.ceylon:1:25-1:38: import is never used"));
+        Assert.assertTrue(diagnostics, 
+                diagnostics.contains("p/b.ceylon:1:29-1:39: method or attribute is not defined"));
+        // fingerprints are stable, warnings don't make a
+        // unit need to be analysed again, errors do
+        TypeChecker second = typecheck(src, null);
+        Assert.assertEquals(Arrays.asList("p/b.ceylon"), 
+                getUnitsToAnalyse(graph, second));
+        Assert.assertEquals(Arrays.asList("p/b.ceylon"), 
+                getUnitsToAnalyse(
+                        copy(graph, folder.newFile("graph")), 
+                        second));
+    }
+
+}
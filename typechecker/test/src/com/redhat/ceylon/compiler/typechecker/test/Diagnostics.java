@@ -0,0 +1,40 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.tree.Message;
+import com.redhat.ceylon.compiler.typechecker.tree.Node;
+import com.redhat.ceylon.compiler.typechecker.tree.Visitor;
+
+/**
+ * Collects the errors and warnings of the units of a type
+ * checker, unit by unit, in the order of their nodes.
+ */
+class Diagnostics {
+
+    static List<String> of(TypeChecker typeChecker) {
+        return of(typeChecker.getPhasedUnits().getPhasedUnits());
+    }
+
+    static List<String> of(List<PhasedUnit> units) {
+        final List<String> messages = new ArrayList<String>();
+        for (PhasedUnit pu: units) {
+            final String path = pu.getPathRelativeToSrcDir();
+            pu.getCompilationUnit().visit(new Visitor() {
+                @Override
+                public void visitAny(Node node) {
+                    for (Message message: node.getErrors()) {
+                        messages.add(path + ":" + node.getLocation() 
+                                + ": " + message.getMessage());
+                    }
+                    super.visitAny(node);
+                }
+            });
+        }
+        return messages;
+    }
+
+}
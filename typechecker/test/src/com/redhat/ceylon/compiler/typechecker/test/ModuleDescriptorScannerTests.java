@@ -0,0 +1,280 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import static com.redhat.ceylon.model.typechecker.util.ModuleManager.splitModuleName;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.ceylon.compiler.typechecker.analyzer.ModuleSourceMapper;
+import com.redhat.ceylon.compiler.typechecker.context.Context;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnit;
+import com.redhat.ceylon.compiler.typechecker.context.PhasedUnits;
+import com.redhat.ceylon.compiler.typechecker.io.VFS;
+import com.redhat.ceylon.compiler.typechecker.util.ModuleDescriptorScanner;
+import com.redhat.ceylon.model.typechecker.model.Annotation;
+import com.redhat.ceylon.model.typechecker.model.Module;
+import com.redhat.ceylon.model.typechecker.model.ModuleImport;
+
+/**
+ * Checks that the {@link ModuleDescriptorScanner} reads the
+ * module the typechecker builds from the same descriptor,
+ * and that it leaves the descriptors it can't read to the
+ * typechecker.
+ */
+public class ModuleDescriptorScannerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File src;
+
+    @Before
+    public void createSourceDirectory() throws IOException {
+        src = folder.newFolder("source");
+    }
+
+    private File getModuleFile(String moduleName) {
+        return new File(src,
+                moduleName.replace('.', '/') + "/module.ceylon");
+    }
+
+    private void write(String moduleName, String source)
+            throws IOException {
+        TestTypeChecker.write(src,
+                moduleName.replace('.', '/') + "/module.ceylon",
+                source);
+    }
+
+    /**
+     * Runs the module phases on the descriptor of the given
+     * module, like the tools which typecheck a descriptor
+     * to read it.
+     */
+    private PhasedUnits typecheck(String moduleName) {
+        VFS vfs = new VFS();
+        Context context = new Context(
+                TestTypeChecker.repositoryManager(), vfs);
+        PhasedUnits phasedUnits = new PhasedUnits(context);
+        ModuleSourceMapper moduleSourceMapper =
+                phasedUnits.getModuleSourceMapper();
+        for (String part: splitModuleName(moduleName)) {
+            moduleSourceMapper.push(part);
+        }
+        moduleSourceMapper.visitModuleFile();
+        phasedUnits.parseUnit(
+                vfs.getFromFile(getModuleFile(moduleName)),
+                vfs.getFromFile(src));
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            pu.visitSrcModulePhase();
+        }
+        for (PhasedUnit pu: phasedUnits.getPhasedUnits()) {
+            pu.visitRemainingModulePhase();
+        }
+        return phasedUnits;
+    }
+
+    private ModuleDescriptorScanner.Descriptor scan(String moduleName) {
+        return ModuleDescriptorScanner.scan(
+                getModuleFile(moduleName), "UTF-8");
+    }
+
+    /**
+     * Asserts that the scanner reads the same module as the
+     * typechecker.
+     */
+    private Module assertSameModule(String moduleName) {
+        ModuleDescriptorScanner.Descriptor descriptor =
+                scan(moduleName);
+        Assert.assertNotNull("not scanned", descriptor);
+        Assert.assertEquals(moduleName, descriptor.getNameAsString());
+        Module scanned = descriptor.toModule();
+        Assert.assertNotNull("not converted", scanned);
+        Module typechecked =
+                typecheck(moduleName).getModuleManager()
+                    .getOrCreateModule(splitModuleName(moduleName),
+                            null);
+        Assert.assertEquals(describe(typechecked), describe(scanned));
+        return scanned;
+    }
+
+    private static List<String> describe(Module module) {
+        List<String> lines = new ArrayList<String>();
+        lines.add("module " + module.getNameAsString() +
+                " \"" + module.getVersion() + "\"");
+        lines.add("group " + module.getGroupId() +
+                " artifact " + module.getArtifactId() +
+                " classifier " + module.getClassifier());
+        lines.add("native " + module.getNativeBackends().names());
+        for (Annotation annotation: module.getAnnotations()) {
+            lines.add(annotation.toString());
+        }
+        for (ModuleImport moduleImport: module.getImports()) {
+            lines.add("import " + moduleImport.getNamespace() + ":" +
+                    moduleImport.getModule().getNameAsString() +
+                    " \"" + moduleImport.getModule().getVersion() + "\"" +
+                    (moduleImport.isOptional() ? " optional" : "") +
+                    (moduleImport.isExport() ? " shared" : "") +
+                    " native " + moduleImport.getNativeBackends().names());
+            for (Annotation annotation: moduleImport.getAnnotations()) {
+                lines.add("    " + annotation);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testAnnotations() throws IOException {
+        write("com.example.annotations",
+                "\"The module \\\"doc\\\",\n" +
+                " with escapes: \\{#0041}\\t.\"\n" +
+                "by (\"Tom\", \"Jerry\")\n" +
+                "license (\"http://example.com/license\")\n" +
+                "native (\"jvm\")\n" +
+                "module com.example.annotations \"1.0.0\" {\n" +
+                "    \"\"\"Verbatim \\doc.\"\"\"\n" +
+                "    shared import com.example.a \"1\";\n" +
+                "    optional import com.example.b \"2\";\n" +
+                "    shared optional native (\"jvm\") import com.example.c \"3\";\n" +
+                "    native (\"js\") import com.example.d \"4\";\n" +
+                "}\n");
+        Module module = assertSameModule("com.example.annotations");
+        Assert.assertEquals(4, module.getAnnotations().size());
+        Assert.assertEquals(4, module.getImports().size());
+    }
+
+    @Test
+    public void testVersionConstants() throws IOException {
+        write("com.example.constants",
+                "module com.example.constants \"1.0\" {\n" +
+                "    value aVersion = \"1.2.3\";\n" +
+                "    import com.example.a aVersion;\n" +
+                "    import com.example.b undefinedVersion;\n" +
+                "    import com.example.c;\n" +
+                "    value laterVersion = \"2\";\n" +
+                "    import com.example.d laterVersion;\n" +
+                "}\n");
+        Module module = assertSameModule("com.example.constants");
+        Assert.assertEquals("1.2.3",
+                module.getImports().get(0).getModule().getVersion());
+    }
+
+    @Test
+    public void testNamespacedImports() throws IOException {
+        write("com.example.namespaces",
+                "module com.example.namespaces \"1\" {\n" +
+                "    import maven:\"org.example:lib\" \"1.1\";\n" +
+                "    import maven:\"org.example\":\"other\" \"1.2\";\n" +
+                "    import maven:org.example:\"third\":\"tests\" \"1.3\";\n" +
+                "    import npm:\"left-pad\" \"1.4\";\n" +
+                "    import ceylon:com.example.a \"1.5\";\n" +
+                "    import \"com.example.quoted\" \"1.6\";\n" +
+                "}\n");
+        assertSameModule("com.example.namespaces");
+    }
+
+    @Test
+    public void testMavenImports() throws IOException {
+        write("com.example.maven",
+                "module com.example.maven maven:\"org.example\":\"artifact\" \"1\" {\n" +
+                "    import \"org.example:old\" \"1.1\";\n" +
+                "    shared import \"org.example:shared\" \"1.2\";\n" +
+                "}\n");
+        Module module = assertSameModule("com.example.maven");
+        Assert.assertEquals("maven",
+                module.getImports().get(0).getNamespace());
+        write("com.example.artifact",
+                "module com.example.artifact \"1\" {\n" +
+                "    import org.example:\"artifact\" \"1.1\";\n" +
+                "}\n");
+        module = assertSameModule("com.example.artifact");
+        Assert.assertEquals("maven",
+                module.getImports().get(0).getNamespace());
+        write("com.example.group",
+                "module com.example.group maven:org.example:\"artifact\":\"classifier\" \"1\" {}\n");
+        assertSameModule("com.example.group");
+    }
+
+    @Test
+    public void testReservedAndDuplicateImports() throws IOException {
+        write("com.example.reserved",
+                "module com.example.reserved \"1\" {\n" +
+                "    import maven:\"default\" \"1\";\n" +
+                "    import maven:ceylon.language \"1\";\n" +
+                "    import com.example.a \"1\";\n" +
+                "    import com.example.a \"1\";\n" +
+                "    import com.example.a \"2\";\n" +
+                "}\n");
+        Module module = assertSameModule("com.example.reserved");
+        Assert.assertEquals(2, module.getImports().size());
+    }
+
+    @Test
+    public void testUnusualDescriptorsAreNotScanned() throws IOException {
+        write("com.example.named",
+                "license { url = \"http://example.com/license\"; }\n" +
+                "module com.example.named \"1\" {}\n");
+        Assert.assertNull(scan("com.example.named"));
+        write("com.example.number",
+                "deprecated (1)\n" +
+                "module com.example.number \"1\" {}\n");
+        Assert.assertNull(scan("com.example.number"));
+        write("com.example.broken",
+                "module com.example.broken \"1\" {\n" +
+                "    import ;\n" +
+                "}\n");
+        Assert.assertNull(scan("com.example.broken"));
+    }
+
+    @Test
+    public void testRejectedDescriptorsAreTypechecked() throws IOException {
+        write("com.example.header",
+                "native module com.example.header \"1\" {}\n");
+        assertTypecheckedWithError("com.example.header",
+                "missing backend argument for native annotation on module");
+        write("ceylon",
+                "module ceylon \"1\" {}\n");
+        assertTypecheckedWithError("ceylon",
+                "reserved module name: 'ceylon'");
+        write("com.example.language",
+                "module com.example.language \"1\" {\n" +
+                "    import ceylon.language \"1\";\n" +
+                "}\n");
+        assertTypecheckedWithError("com.example.language",
+                "the language module is imported implicitly");
+        write("com.example.defaultimport",
+                "module com.example.defaultimport \"1\" {\n" +
+                "    import \"default\" \"1\";\n" +
+                "}\n");
+        assertTypecheckedWithError("com.example.defaultimport",
+                "reserved module name: 'default'");
+        //an import path with an artifact is still checked
+        //against the reserved names
+        write("com.example.languageartifact",
+                "module com.example.languageartifact \"1\" {\n" +
+                "    import ceylon.language:\"x\" \"1\";\n" +
+                "}\n");
+        assertTypecheckedWithError("com.example.languageartifact",
+                "the language module is imported implicitly");
+    }
+
+    private void assertTypecheckedWithError(String moduleName,
+            String error) {
+        ModuleDescriptorScanner.Descriptor descriptor =
+                scan(moduleName);
+        Assert.assertNotNull("not scanned", descriptor);
+        Assert.assertNull(descriptor.toModule());
+        List<String> diagnostics = Diagnostics.of(
+                typecheck(moduleName).getPhasedUnits());
+        Assert.assertTrue(diagnostics.toString(),
+                diagnostics.toString().contains(error));
+    }
+
+}
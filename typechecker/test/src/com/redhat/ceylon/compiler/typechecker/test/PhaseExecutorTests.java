@@ -0,0 +1,46 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckingPhase;
+
+public class PhaseExecutorTests {
+
+    private static final int RUNS = 4;
+    private static final int JOBS = 4;
+
+    private List<String> typecheck(int jobs) {
+        // a lot of erroneous code
+        TypeChecker typeChecker = TestTypeChecker
+                .builder(new File("test/main"))
+                .jobs(jobs)
+                .getTypeChecker();
+        typeChecker.process(true);
+        return Diagnostics.of(typeChecker);
+    }
+
+    @Test
+    public void testOnlyTreeValidationIsParallel() {
+        for (TypecheckingPhase phase: TypecheckingPhase.values()) {
+            Assert.assertEquals(phase.name(),
+                    phase == TypecheckingPhase.VALIDATE_TREE,
+                    phase.isParallelizable());
+        }
+    }
+
+    @Test
+    public void testParallelDiagnosticsAreDeterministic() {
+        List<String> expected = typecheck(1);
+        Assert.assertFalse(expected.isEmpty());
+        for (int i=0; i<RUNS; i++) {
+            Assert.assertEquals("run " + i, 
+                    expected, typecheck(JOBS));
+        }
+    }
+
+}
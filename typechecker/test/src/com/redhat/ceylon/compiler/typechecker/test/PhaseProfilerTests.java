@@ -0,0 +1,114 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.ceylon.compiler.typechecker.TypeChecker;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseProfiler;
+import com.redhat.ceylon.compiler.typechecker.context.PhaseProfiler.Sample;
+import com.redhat.ceylon.compiler.typechecker.context.TypecheckingPhase;
+
+public class PhaseProfilerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PhaseProfiler profile(int jobs, File... srcDirs) {
+        PhaseProfiler profiler = new PhaseProfiler();
+        TypeChecker typeChecker = TestTypeChecker.builder(srcDirs)
+                .profiler(profiler)
+                .jobs(jobs)
+                .getTypeChecker();
+        typeChecker.process(true);
+        return profiler;
+    }
+
+    private static int count(String string, String substring) {
+        int count = 0;
+        for (int i = string.indexOf(substring); i >= 0; 
+                i = string.indexOf(substring, i+1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testUnitsOfDistinctSourceDirectories() 
+            throws IOException {
+        File src1 = folder.newFolder("src1");
+        File src2 = folder.newFolder("src2");
+        TestTypeChecker.write(src1, "p/a.ceylon", "shared void one() {}\n");
+        TestTypeChecker.write(src2, "p/a.ceylon", "shared void two() {}\n");
+        PhaseProfiler profiler = profile(1, src1, src2);
+        int phases = TypecheckingPhase.values().length;
+
+        int found = 0;
+        for (Map.Entry<String,List<Sample>> entry: 
+                profiler.getUnitSamples().entrySet()) {
+            Sample sample = entry.getValue().get(0);
+            if (sample.getUnit().equals("p/a.ceylon")) {
+                found++;
+                Assert.assertEquals(phases, entry.getValue().size());
+                for (Sample s: entry.getValue()) {
+                    Assert.assertEquals(sample.getSrcDir(), s.getSrcDir());
+                }
+            }
+        }
+        Assert.assertEquals(2, found);
+
+        StringWriter json = new StringWriter();
+        profiler.writeJson(json);
+        String srcDir1 = src1.getPath().replace("\\", "\\\\");
+        String srcDir2 = src2.getPath().replace("\\", "\\\\");
+        Assert.assertTrue(json.toString().startsWith("{\"phases\":["));
+        Assert.assertEquals(1, count(json.toString(), 
+                "{\"srcDir\":\"" + srcDir1 + "\",\"unit\":\"p/a.ceylon\","));
+        Assert.assertEquals(1, count(json.toString(), 
+                "{\"srcDir\":\"" + srcDir2 + "\",\"unit\":\"p/a.ceylon\","));
+
+        StringWriter trace = new StringWriter();
+        profiler.writeChromeTrace(trace);
+        Assert.assertTrue(trace.toString().startsWith("{\"traceEvents\":["));
+        Assert.assertTrue(trace.toString().endsWith("\"displayTimeUnit\":\"ms\"}\n"));
+        Assert.assertEquals(profiler.getSamples().size(), 
+                count(trace.toString(), "\"ph\":\"X\""));
+        Assert.assertEquals(2, count(trace.toString(), 
+                "{\"name\":\"p/a.ceylon\",\"cat\":\"" 
+                        + TypecheckingPhase.ANALYSE_TYPES.getDescription() + "\""));
+        Assert.assertEquals(phases, count(trace.toString(), 
+                "\"args\":{\"srcDir\":\"" + srcDir1 + "\""));
+    }
+
+    @Test
+    public void testEscaping() throws IOException {
+        // such file names can't be created everywhere
+        Assume.assumeTrue(File.separatorChar == '/');
+        File src = folder.newFolder("src \"1\"");
+        TestTypeChecker.write(src, "p/a\"b\\c\td.ceylon", 
+                "shared void one() {}\n");
+        PhaseProfiler profiler = profile(2, src);
+
+        StringWriter json = new StringWriter();
+        profiler.writeJson(json);
+        String srcDir = src.getPath().replace("\"", "\\\"");
+        Assert.assertEquals(1, count(json.toString(), 
+                "{\"srcDir\":\"" + srcDir + "\",\"unit\":\"p/a\\\"b\\\\c\\td.ceylon\","));
+
+        StringWriter trace = new StringWriter();
+        profiler.writeChromeTrace(trace);
+        Assert.assertEquals(TypecheckingPhase.values().length, 
+                count(trace.toString(), 
+                        "{\"name\":\"p/a\\\"b\\\\c\\td.ceylon\","));
+        Assert.assertFalse(trace.toString().contains("\t"));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.redhat.ceylon.cmr.api.RepositoryManager;
+import com.redhat.ceylon.cmr.ceylon.CeylonUtils;
+import com.redhat.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import com.redhat.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+
+/**
+ * Helpers to typecheck test sources together with the
+ * language module, from source, so that the tests don't
+ * need a distribution.
+ */
+class TestTypeChecker {
+
+    static final File LANGUAGE_SRC = new File("../language/src");
+
+    /**
+     * A builder for a type checker of the language module
+     * and the given source directories.
+     */
+    static TypeCheckerBuilder builder(File... srcDirs) {
+        TypeCheckerBuilder builder = new TypeCheckerBuilder()
+                .verbose(false)
+                .skipDependenciesVerification()
+                .setRepositoryManager(repositoryManager())
+                .addSrcDirectory(LANGUAGE_SRC);
+        for (File srcDir: srcDirs) {
+            builder.addSrcDirectory(srcDir);
+        }
+        return builder;
+    }
+
+    /**
+     * A repository manager without any repository, so that
+     * only the sources are typechecked.
+     */
+    static RepositoryManager repositoryManager() {
+        return CeylonUtils.repoManager()
+                .noDefaultRepos(true)
+                .noSystemRepo(true)
+                .noCacheRepo(true)
+                .noOutRepo(true)
+                .logger(new LeakingLogger())
+                .buildManager();
+    }
+
+    /**
+     * Write a source file, creating its directory.
+     */
+    static void write(File srcDir, String path, String source) 
+            throws IOException {
+        File file = new File(srcDir, path);
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(source);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.redhat.ceylon.compiler.typechecker.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.ceylon.compiler.typechecker.io.ClosableVirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.VFS;
+import com.redhat.ceylon.compiler.typechecker.io.VirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.ZipIndexVFS;
+import com.redhat.ceylon.compiler.typechecker.io.impl.IndexedZipFileVirtualFile;
+import com.redhat.ceylon.compiler.typechecker.io.impl.ZipFileVirtualFile;
+
+public class ZipIndexVFSTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] contents(String name, int size) {
+        byte[] bytes = new byte[size];
+        for (int i=0; i<size; i++) {
+            bytes[i] = (byte) (name.charAt(i % name.length()) + i / 7);
+        }
+        return bytes;
+    }
+
+    private static void add(ZipOutputStream zip, String name, 
+            int method, byte[] bytes) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setCrc(crc.getValue());
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+        }
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    private File makeArchive() throws IOException {
+        File file = folder.newFile("sources.src");
+        ZipOutputStream zip = 
+                new ZipOutputStream(new FileOutputStream(file));
+        try {
+            // no entries for the folders a/ and a/b/
+            add(zip, "a/b/stored.ceylon", ZipEntry.STORED, 
+                    contents("stored", 1000));
+            add(zip, "a/b/deflated.ceylon", ZipEntry.DEFLATED, 
+                    contents("deflated", 100000));
+            add(zip, "a/empty.ceylon", ZipEntry.DEFLATED, 
+                    new byte[0]);
+            add(zip, "a/\u00e9t\u00e9.ceylon", ZipEntry.DEFLATED, 
+                    contents("utf8", 10));
+            // an explicit folder entry, after its contents
+            add(zip, "c/d.ceylon", ZipEntry.STORED, 
+                    contents("d", 3));
+            add(zip, "c/", ZipEntry.STORED, new byte[0]);
+            add(zip, "module.properties", ZipEntry.DEFLATED, 
+                    contents("root", 20));
+        }
+        finally {
+            zip.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(VirtualFile file) throws IOException {
+        InputStream stream = file.getInputStream();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[333];
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    private static List<VirtualFile> sorted(List<? extends VirtualFile> files) {
+        List<VirtualFile> result = new ArrayList<VirtualFile>(files);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Compare the given trees, returning the number of files.
+     */
+    private static int assertSameTree(VirtualFile expected, 
+            VirtualFile actual, VirtualFile expectedRoot, 
+            VirtualFile actualRoot) throws IOException {
+        String path = expected.getPath();
+        Assert.assertEquals(path, actual.getPath());
+        Assert.assertEquals(path, expected.getName(), actual.getName());
+        Assert.assertEquals(path, expected.isFolder(), actual.isFolder());
+        Assert.assertEquals(path, expected.getRelativePath(expectedRoot), 
+                actual.getRelativePath(actualRoot));
+        if (!expected.isFolder()) {
+            Assert.assertArrayEquals(path, read(expected), read(actual));
+            return 1;
+        }
+        List<VirtualFile> expectedChildren = sorted(expected.getChildren());
+        List<VirtualFile> actualChildren = sorted(actual.getChildren());
+        Assert.assertEquals(path, expectedChildren.size(), 
+                actualChildren.size());
+        int files = 0;
+        for (int i=0; i<expectedChildren.size(); i++) {
+            files += assertSameTree(expectedChildren.get(i), 
+                    actualChildren.get(i), expectedRoot, actualRoot);
+        }
+        return files;
+    }
+
+    @Test
+    public void testSameTreeAsZipFile() throws IOException {
+        File file = makeArchive();
+        ClosableVirtualFile expected = new VFS().getFromZipFile(file);
+        ClosableVirtualFile actual = new ZipIndexVFS().getFromZipFile(file);
+        try {
+            Assert.assertTrue(expected instanceof ZipFileVirtualFile);
+            Assert.assertTrue(actual instanceof IndexedZipFileVirtualFile);
+            Assert.assertEquals(6, 
+                    assertSameTree(expected, actual, expected, actual));
+        }
+        finally {
+            expected.close();
+            actual.close();
+        }
+        // the archive is not kept open
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test
+    public void testZip64FallsBackToZipFile() throws IOException {
+        File file = folder.newFile("many.src");
+        ZipOutputStream zip = 
+                new ZipOutputStream(new FileOutputStream(file));
+        try {
+            // too many entries for a plain zip archive
+            for (int i=0; i<0x10000; i++) {
+                zip.putNextEntry(new ZipEntry("p/f" + i));
+                zip.closeEntry();
+            }
+        }
+        finally {
+            zip.close();
+        }
+        ClosableVirtualFile archive = new ZipIndexVFS().getFromZipFile(file);
+        try {
+            Assert.assertTrue(archive instanceof ZipFileVirtualFile);
+            Assert.assertEquals(0x10000, 
+                    archive.getChildren().get(0).getChildren().size());
+        }
+        finally {
+            archive.close();
+        }
+    }
+
+}